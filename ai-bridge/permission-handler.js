@@ -5,9 +5,14 @@
  * 为 Claude SDK 提供权限请求的交互式处理
  */
 
-import { writeFileSync, readFileSync, existsSync, unlinkSync, readdirSync } from 'fs';
+import { writeFileSync, readFileSync, existsSync, unlinkSync, readdirSync, renameSync } from 'fs';
 import { join, basename } from 'path';
 import { tmpdir } from 'os';
+import {
+  isStdinChannelOpen,
+  setStdinChannelListeners,
+  setStdinChannelReading
+} from './utils/stdin-utils.js';
 
 // ========== 调试日志辅助函数 ==========
 function debugLog(tag, message, data = null) {
@@ -34,8 +39,115 @@ try {
   debugLog('INIT_ERROR', `Failed to create permission dir: ${e.message}`);
 }
 
+// ========== bridge 通道（首选） ==========
+// 请求作为带标记的行写到 stdout，Java 侧把响应作为一行 JSON 写回 stdin；
+// 通道不可用时（Java 未启用或 stdin 已关闭）退回文件模式
+
+// 需要略长于 IDE 前端的超时时间，避免 Node 先于前端超时
+const RESPONSE_TIMEOUT = 60000;
+
+// requestId -> { resolve, timer }
+const pendingChannelRequests = new Map();
+
+function settleChannelRequest(requestId, response) {
+  const pending = pendingChannelRequests.get(requestId);
+  if (!pending) {
+    return;
+  }
+  pendingChannelRequests.delete(requestId);
+  clearTimeout(pending.timer);
+  if (pendingChannelRequests.size === 0) {
+    setStdinChannelReading(false);
+  }
+  pending.resolve(response);
+}
+
+setStdinChannelListeners(
+  (line) => {
+    let message;
+    try {
+      message = JSON.parse(line);
+    } catch (e) {
+      debugLog('CHANNEL_PARSE_ERROR', `Invalid channel line: ${e.message}`);
+      return;
+    }
+    if (message && Array.isArray(message.responses)) {
+      // 批量弹窗的结果：一行包含多个请求的响应
+      for (const response of message.responses) {
+        if (response && response.requestId) {
+          settleChannelRequest(response.requestId, response);
+        }
+      }
+    } else if (message && message.requestId) {
+      settleChannelRequest(message.requestId, message);
+    }
+  },
+  () => {
+    // stdin 已关闭，等待中的请求无法再收到响应
+    for (const requestId of [...pendingChannelRequests.keys()]) {
+      settleChannelRequest(requestId, null);
+    }
+  }
+);
+
+/**
+ * 通过 bridge 通道发送请求并等待响应
+ * @param {string} tag - 输出行标记
+ * @param {Object} requestData - 请求内容（与文件模式的请求文件相同）
+ * @returns {Promise<Object|null>} - Java 返回的响应，超时或通道关闭时返回 null
+ */
+function requestOverChannel(tag, requestData) {
+  return new Promise((resolve) => {
+    const timer = setTimeout(() => {
+      debugLog('CHANNEL_TIMEOUT', `Timeout waiting for channel response`, { requestId: requestData.requestId });
+      settleChannelRequest(requestData.requestId, null);
+    }, RESPONSE_TIMEOUT);
+    pendingChannelRequests.set(requestData.requestId, { resolve, timer });
+    setStdinChannelReading(true);
+    console.log(`${tag} ${JSON.stringify(requestData)}`);
+  });
+}
+
+/**
+ * 先写临时文件再原子重命名为请求文件
+ * Java 侧只监听最终文件名，看到文件时内容一定完整
+ */
+function writeFileAtomically(targetFile, content) {
+  const tempFile = join(PERMISSION_DIR, `.${basename(targetFile)}.${process.pid}.tmp`);
+  writeFileSync(tempFile, content);
+  try {
+    renameSync(tempFile, targetFile);
+  } catch (e) {
+    try {
+      unlinkSync(tempFile);
+    } catch (cleanupError) {
+      // 忽略
+    }
+    throw e;
+  }
+}
+
+/**
+ * 向 Java 回报读到响应的时间，与请求中的 requestedAt / sentAt 一起构成完整的往返耗时
+ */
+function reportResponseRead(requestId) {
+  console.log(`[PERMISSION_TRACE] ${JSON.stringify({ requestId, responseReadAt: Date.now() })}`);
+}
+
 const TEMP_PATH_PREFIXES = ['/tmp', '/var/tmp', '/private/tmp'];
 
+/**
+ * 权限请求的来源标记
+ * Java 侧按项目令牌直接定位发起请求的窗口；没有令牌时按文件路径和项目根匹配
+ */
+function getRequestOrigin() {
+  return {
+    channelId: process.env.CLAUDE_PERMISSION_CHANNEL_ID || null,
+    projectToken: process.env.CLAUDE_PERMISSION_PROJECT || null,
+    projectRoot: getProjectRoot()
+  };
+}
+
 function getProjectRoot() {
   return process.env.IDEA_PROJECT_PATH || process.env.PROJECT_PATH || process.cwd();
 }
@@ -105,9 +217,21 @@ async function requestAskUserQuestionAnswers(input) {
   debugLog('ASK_USER_QUESTION_START', 'Requesting answers for questions', { input });
 
   try {
-    const requestId = `ask-${Date.now()}-${Math.random().toString(36).substring(7)}`;
+    const requestId = `ask-${process.pid}-${Date.now()}-${Math.random().toString(36).substring(7)}`;
     debugLog('ASK_USER_QUESTION_ID', `Generated request ID: ${requestId}`);
 
+    if (isStdinChannelOpen()) {
+      const response = await requestOverChannel('[ASK_USER_QUESTION_REQUEST]', {
+        requestId,
+        toolName: 'AskUserQuestion',
+        questions: input.questions || [],
+        timestamp: new Date().toISOString(),
+        ...getRequestOrigin()
+      });
+      debugLog('ASK_USER_QUESTION_CHANNEL_RESPONSE', `Channel response received`, { elapsed: `${Date.now() - requestStartTime}ms` });
+      return response ? response.answers : null;
+    }
+
     const requestFile = join(PERMISSION_DIR, `ask-user-question-${requestId}.json`);
     const responseFile = join(PERMISSION_DIR, `ask-user-question-response-${requestId}.json`);
 
@@ -115,13 +239,14 @@ async function requestAskUserQuestionAnswers(input) {
       requestId,
       toolName: 'AskUserQuestion',
       questions: input.questions || [],
-      timestamp: new Date().toISOString()
+      timestamp: new Date().toISOString(),
+      ...getRequestOrigin()
     };
 
     debugLog('ASK_USER_QUESTION_FILE_WRITE', `Writing question request file`, { requestFile, responseFile });
 
     try {
-      writeFileSync(requestFile, JSON.stringify(requestData, null, 2));
+      writeFileAtomically(requestFile, JSON.stringify(requestData, null, 2));
       debugLog('ASK_USER_QUESTION_FILE_WRITE_OK', `Question request file written successfully`);
 
       if (existsSync(requestFile)) {
@@ -135,7 +260,7 @@ async function requestAskUserQuestionAnswers(input) {
     }
 
     // 等待响应文件（最多60秒）
-    const timeout = 60000;
+    const timeout = RESPONSE_TIMEOUT;
     let pollCount = 0;
     const pollInterval = 100;
 
@@ -193,9 +318,10 @@ async function requestAskUserQuestionAnswers(input) {
  * 通过文件系统与 Java 进程通信请求权限
  * @param {string} toolName - 工具名称
  * @param {Object} input - 工具参数
+ * @param {number} [requestedAt] - canUseTool 被调用的时间，用于统计往返耗时
  * @returns {Promise<boolean>} - 是否允许
  */
-export async function requestPermissionFromJava(toolName, input) {
+export async function requestPermissionFromJava(toolName, input, requestedAt = Date.now()) {
   const requestStartTime = Date.now();
   debugLog('REQUEST_START', `Tool: ${toolName}`, { input });
 
@@ -231,10 +357,28 @@ export async function requestPermissionFromJava(toolName, input) {
       }
     }
 
-    // 生成请求ID
-    const requestId = `${Date.now()}-${Math.random().toString(36).substring(7)}`;
+    // 生成请求ID（以进程号开头，Java 侧据此区分来源通道并保持同一通道内的顺序）
+    const requestId = `${process.pid}-${Date.now()}-${Math.random().toString(36).substring(7)}`;
     debugLog('REQUEST_ID', `Generated request ID: ${requestId}`);
 
+    if (isStdinChannelOpen()) {
+      const response = await requestOverChannel('[PERMISSION_REQUEST]', {
+        requestId,
+        toolName,
+        inputs: input,
+        timestamp: new Date().toISOString(),
+        requestedAt,
+        sentAt: Date.now(),
+        ...getRequestOrigin()
+      });
+      if (response) {
+        reportResponseRead(requestId);
+      }
+      const allow = response ? response.allow === true : false;
+      debugLog('CHANNEL_RESPONSE', `Channel response received`, { allow, elapsed: `${Date.now() - requestStartTime}ms` });
+      return allow;
+    }
+
     // 创建请求文件
     const requestFile = join(PERMISSION_DIR, `request-${requestId}.json`);
     const responseFile = join(PERMISSION_DIR, `response-${requestId}.json`);
@@ -243,13 +387,16 @@ export async function requestPermissionFromJava(toolName, input) {
       requestId,
       toolName,
       inputs: input,
-      timestamp: new Date().toISOString()
+      timestamp: new Date().toISOString(),
+      requestedAt,
+      sentAt: Date.now(),
+      ...getRequestOrigin()
     };
 
     debugLog('FILE_WRITE', `Writing request file`, { requestFile, responseFile });
 
     try {
-      writeFileSync(requestFile, JSON.stringify(requestData, null, 2));
+      writeFileAtomically(requestFile, JSON.stringify(requestData, null, 2));
       debugLog('FILE_WRITE_OK', `Request file written successfully`);
 
       // 验证文件是否确实创建
@@ -263,8 +410,8 @@ export async function requestPermissionFromJava(toolName, input) {
       return false;
     }
 
-    // 等待响应文件（最多60秒）——需要略长于 IDE 前端的超时时间，避免 Node 先于前端超时
-    const timeout = 60000;
+    // 等待响应文件（最多60秒）
+    const timeout = RESPONSE_TIMEOUT;
     let pollCount = 0;
     const pollInterval = 100;
 
@@ -296,6 +443,7 @@ export async function requestPermissionFromJava(toolName, input) {
 
           const responseData = JSON.parse(responseContent);
           const result = responseData.allow;
+          reportResponseRead(requestId);
           debugLog('RESPONSE_PARSED', `Parsed response`, { allow: result, elapsed: `${Date.now() - requestStartTime}ms` });
 
           // 清理响应文件
@@ -408,7 +556,7 @@ export async function canUseTool(toolName, input, options = {}) {
 
   // 其他工具需要请求权限
   debugLog('PERMISSION_NEEDED', `Tool ${toolName} requires permission, calling requestPermissionFromJava`);
-  const allowed = await requestPermissionFromJava(toolName, input);
+  const allowed = await requestPermissionFromJava(toolName, input, callStartTime);
   const elapsed = Date.now() - callStartTime;
 
   if (allowed) {
@@ -3,6 +3,142 @@
  * 支持 Claude 和 Codex 两种 SDK
  */
 
+// 权限通道模式下，首行之后的 stdin 行交给该监听器（见 permission-handler.js）
+let channelLineListener = null;
+let channelClosedListener = null;
+let channelOpen = false;
+let channelBuffer = '';
+
+/**
+ * 是否启用了 stdin 权限通道（Java 侧设置 CLAUDE_PERMISSION_CHANNEL=stdio）
+ */
+export function isPermissionChannelRequested() {
+  return process.env.CLAUDE_PERMISSION_CHANNEL === 'stdio';
+}
+
+/**
+ * stdin 权限通道当前是否可用（首行参数已读取且 Java 侧尚未关闭 stdin）
+ */
+export function isStdinChannelOpen() {
+  return channelOpen;
+}
+
+/**
+ * 注册 stdin 通道的行监听器和关闭监听器
+ */
+export function setStdinChannelListeners(onLine, onClose) {
+  channelLineListener = onLine;
+  channelClosedListener = onClose;
+}
+
+/**
+ * 开始/暂停读取 stdin 通道
+ * 没有等待中的请求时暂停读取，避免打开的 stdin 阻止进程退出
+ */
+export function setStdinChannelReading(reading) {
+  if (!channelOpen) {
+    return;
+  }
+  if (reading) {
+    process.stdin.ref?.();
+    process.stdin.resume();
+  } else {
+    process.stdin.pause();
+    // 暂停后管道句柄仍会让事件循环保持运行，需要取消引用
+    process.stdin.unref?.();
+  }
+}
+
+function dispatchChannelData(chunk) {
+  channelBuffer += chunk;
+  let newlineIndex;
+  while ((newlineIndex = channelBuffer.indexOf('\n')) >= 0) {
+    const line = channelBuffer.slice(0, newlineIndex).trim();
+    channelBuffer = channelBuffer.slice(newlineIndex + 1);
+    if (line && channelLineListener) {
+      channelLineListener(line);
+    }
+  }
+}
+
+function closeChannel() {
+  if (!channelOpen) {
+    return;
+  }
+  channelOpen = false;
+  if (channelClosedListener) {
+    channelClosedListener();
+  }
+}
+
+/**
+ * 权限通道模式：首行是命令参数，之后 stdin 保持打开，逐行接收权限响应
+ */
+function readFirstStdinLine() {
+  return new Promise((resolve) => {
+    let data = '';
+    let resolved = false;
+    const stdin = process.stdin;
+
+    stdin.setEncoding('utf8');
+
+    const finish = (text) => {
+      resolved = true;
+      clearTimeout(timeout);
+      if (!text.trim()) {
+        resolve(null);
+        return;
+      }
+      try {
+        resolve(JSON.parse(text.trim()));
+      } catch (e) {
+        console.error('[STDIN_PARSE_ERROR]', e.message);
+        resolve(null);
+      }
+    };
+
+    const timeout = setTimeout(() => {
+      resolved = true;
+      stdin.pause();
+      resolve(null);
+    }, 5000);
+
+    stdin.on('data', (chunk) => {
+      if (resolved) {
+        dispatchChannelData(chunk);
+        return;
+      }
+      data += chunk;
+      const newlineIndex = data.indexOf('\n');
+      if (newlineIndex >= 0) {
+        channelOpen = true;
+        setStdinChannelReading(false);
+        const rest = data.slice(newlineIndex + 1);
+        finish(data.slice(0, newlineIndex));
+        if (rest) {
+          dispatchChannelData(rest);
+        }
+      }
+    });
+    stdin.on('end', () => {
+      if (!resolved) {
+        // Java 侧没有保持 stdin 打开，按普通模式处理
+        finish(data);
+      }
+      closeChannel();
+    });
+    stdin.on('error', (err) => {
+      console.error('[STDIN_ERROR]', err.message);
+      if (!resolved) {
+        clearTimeout(timeout);
+        resolved = true;
+        resolve(null);
+      }
+      closeChannel();
+    });
+  });
+}
+
 /**
  * 从 stdin 读取 JSON 数据
  * @param {string} provider - 'claude' 或 'codex'
@@ -15,6 +151,10 @@ export async function readStdinData(provider = 'claude') {
     return null;
   }
 
+  if (provider === 'claude' && isPermissionChannelRequested()) {
+    return readFirstStdinLine();
+  }
+
   return new Promise((resolve) => {
     let data = '';
     const stdin = process.stdin;
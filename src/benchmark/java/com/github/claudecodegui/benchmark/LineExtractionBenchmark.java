@@ -0,0 +1,142 @@
+package com.github.claudecodegui.benchmark;
+
+import com.github.claudecodegui.history.JsonlTailReader;
+import com.github.claudecodegui.history.SessionLineFields;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话行字段提取的吞吐与分配对比
+ * 旧路径:每行用 Gson 绑定为完整的消息对象(message.content 生成完整的 Map/List 树)。
+ * 新路径:SessionLineFields 用 JsonReader 流式读取,只保留统计需要的字段,跳过 content;
+ * 另外测量 captureContent=true 的情况(会话标题尚未确定时)。
+ *
+ * 分配量来自 com.sun.management.ThreadMXBean,按行平均。
+ *
+ * 运行:./gradlew benchmarkLineExtraction [-PbenchmarkArgs="--projects 2 --sessions 20 --turns 60"]
+ */
+public final class LineExtractionBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    private LineExtractionBenchmark() {
+    }
+
+    /**
+     * 改动前 ClaudeHistoryReader.ConversationMessage 的结构(含 summary 和 message.model)
+     */
+    static final class LegacyMessage {
+        String uuid;
+        String sessionId;
+        String parentUuid;
+        String timestamp;
+        String type;
+        String summary;
+        Message message;
+        Boolean isMeta;
+        Boolean isSidechain;
+        String cwd;
+
+        static final class Message {
+            String role;
+            String model;
+            Object content;
+            Usage usage;
+        }
+
+        static final class Usage {
+            int input_tokens;
+            int output_tokens;
+            int cache_creation_input_tokens;
+            int cache_read_input_tokens;
+        }
+    }
+
+    /**
+     * 一次提取要执行的工作,返回校验和,防止被 JIT 消除
+     */
+    private interface Extractor {
+        long run(List<String> lines) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SyntheticCorpus corpus = SyntheticCorpus.fromArgs(args, 2, 20, 60);
+        Path root = Files.createTempDirectory("line-extraction-benchmark");
+        List<String> lines = new ArrayList<>();
+        long bytes;
+        try {
+            List<Path> files = corpus.write(root);
+            bytes = SyntheticCorpus.totalBytes(files);
+            for (Path file : files) {
+                JsonlTailReader.read(file, 0, (String line) -> lines.add(line));
+            }
+        } finally {
+            SyntheticCorpus.deleteRecursively(root);
+        }
+        System.out.printf("语料: %d 行, %.1f MB%n", lines.size(), bytes / 1048576.0);
+
+        Gson gson = new Gson();
+        Extractor legacy = input -> {
+            long checksum = 0;
+            for (String line : input) {
+                LegacyMessage msg = gson.fromJson(line, LegacyMessage.class);
+                if (msg != null && msg.message != null && msg.message.usage != null) {
+                    checksum += msg.message.usage.input_tokens + msg.message.usage.output_tokens;
+                }
+            }
+            return checksum;
+        };
+        Extractor streaming = input -> extractAll(input, false);
+        Extractor streamingWithContent = input -> extractAll(input, true);
+
+        long expected = legacy.run(lines);
+        System.out.println("路径                          最佳耗时(ms)    吞吐(MB/s)    每行分配(KB)");
+        measure("Gson 绑定 (旧)", legacy, lines, bytes, expected);
+        measure("SessionLineFields", streaming, lines, bytes, expected);
+        measure("SessionLineFields + content", streamingWithContent, lines, bytes, expected);
+    }
+
+    private static long extractAll(List<String> lines, boolean captureContent) throws IOException {
+        SessionLineFields fields = new SessionLineFields();
+        long checksum = 0;
+        for (String line : lines) {
+            if (fields.extract(line, captureContent) && fields.hasUsage) {
+                checksum += fields.inputTokens + fields.outputTokens;
+            }
+        }
+        return checksum;
+    }
+
+    private static void measure(String name, Extractor extractor, List<String> lines, long bytes, long expected)
+            throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // 预热
+        for (int i = 0; i < 2; i++) {
+            extractor.run(lines);
+        }
+
+        long best = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long checksum = extractor.run(lines);
+            best = Math.min(best, System.nanoTime() - start);
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - allocatedBefore);
+            if (checksum != expected) {
+                throw new IllegalStateException(name + " 的用量合计不一致: " + checksum + " != " + expected);
+            }
+        }
+        double millis = best / 1e6;
+        System.out.printf("%-28s  %12.1f    %10.1f    %12.2f%n",
+            name, millis, bytes / 1048576.0 / (millis / 1000), allocated / 1024.0 / lines.size());
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.claudecodegui.benchmark;
+
+import com.github.claudecodegui.history.JsonlTailReader;
+import com.github.claudecodegui.history.SessionLineFields;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * "所有项目"统计扫描的线程数扩展测试
+ * 在合成语料上按 1/2/4/8 个线程并行扫描会话文件:每个文件一个任务,
+ * 任务内与 ClaudeHistoryReader.scanSessionFile 相同,用 JsonlTailReader 逐行读取、SessionLineFields 提取字段,
+ * 累加为该文件的部分统计(按模型的用量、按 15 分钟时段的消息数),最后在归约步骤中合并。
+ *
+ * 插件中的线程池来自 IDE(AppExecutorUtil),这里用同样大小的固定线程池代替,测量的是文件解析本身的扩展性。
+ *
+ * 运行:./gradlew benchmarkSessionScan [-PbenchmarkArgs="--projects 8 --sessions 10 --turns 40 --threads 1,2,4,8"]
+ */
+public final class SessionScanBenchmark {
+
+    private static final long SLOT_MILLIS = 15 * 60 * 1000L;
+    private static final int ITERATIONS = 3;
+
+    private SessionScanBenchmark() {
+    }
+
+    /**
+     * 一个文件或多个文件合并后的统计
+     */
+    private static final class Totals {
+        long messages;
+        final Map<String, long[]> tokensByModel = new HashMap<>();
+        final Map<Long, Integer> messagesBySlot = new HashMap<>();
+
+        void add(SessionLineFields fields) {
+            messages++;
+            if (fields.timestamp != null) {
+                try {
+                    long slot = Math.floorDiv(Instant.parse(fields.timestamp).toEpochMilli(), SLOT_MILLIS);
+                    messagesBySlot.merge(slot, 1, Integer::sum);
+                } catch (RuntimeException e) {
+                    // 忽略无法解析的时间戳
+                }
+            }
+            if ("assistant".equals(fields.type) && fields.hasUsage) {
+                long[] tokens = tokensByModel.computeIfAbsent(fields.model != null ? fields.model : "unknown", m -> new long[4]);
+                tokens[0] += fields.inputTokens;
+                tokens[1] += fields.outputTokens;
+                tokens[2] += fields.cacheCreationTokens;
+                tokens[3] += fields.cacheReadTokens;
+            }
+        }
+
+        void merge(Totals other) {
+            messages += other.messages;
+            other.tokensByModel.forEach((model, tokens) -> {
+                long[] target = tokensByModel.computeIfAbsent(model, m -> new long[4]);
+                for (int i = 0; i < 4; i++) {
+                    target[i] += tokens[i];
+                }
+            });
+            other.messagesBySlot.forEach((slot, count) -> messagesBySlot.merge(slot, count, Integer::sum));
+        }
+
+        String checksum() {
+            long tokens = 0;
+            for (long[] values : tokensByModel.values()) {
+                for (long value : values) {
+                    tokens += value;
+                }
+            }
+            return messages + " 条消息, " + tokensByModel.size() + " 个模型, " + messagesBySlot.size() + " 个时段, " + tokens + " tokens";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SyntheticCorpus corpus = SyntheticCorpus.fromArgs(args, 8, 10, 40);
+        int[] threadCounts = parseThreads(args);
+
+        Path root = Files.createTempDirectory("session-scan-benchmark");
+        try {
+            List<Path> files = corpus.write(root);
+            long bytes = SyntheticCorpus.totalBytes(files);
+            System.out.printf("语料: %d 个文件, %.1f MB, 可用处理器 %d%n",
+                files.size(), bytes / 1048576.0, Runtime.getRuntime().availableProcessors());
+
+            // 预热:JIT 编译和页缓存
+            scan(files, threadCounts[threadCounts.length - 1]);
+
+            double baseline = 0;
+            String expected = null;
+            System.out.println("线程数    最佳耗时(ms)    吞吐(MB/s)    加速比");
+            for (int threads : threadCounts) {
+                long best = Long.MAX_VALUE;
+                Totals totals = null;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long start = System.nanoTime();
+                    totals = scan(files, threads);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                double millis = best / 1e6;
+                if (baseline == 0) {
+                    baseline = millis;
+                }
+                String checksum = totals.checksum();
+                if (expected == null) {
+                    expected = checksum;
+                } else if (!expected.equals(checksum)) {
+                    throw new IllegalStateException("并行扫描结果不一致: " + checksum + " != " + expected);
+                }
+                System.out.printf("%6d    %12.1f    %10.1f    %6.2fx%n",
+                    threads, millis, bytes / 1048576.0 / (millis / 1000), baseline / millis);
+            }
+            System.out.println("统计结果: " + expected);
+        } finally {
+            SyntheticCorpus.deleteRecursively(root);
+        }
+    }
+
+    private static Totals scan(List<Path> files, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Totals>> partials = new ArrayList<>(files.size());
+            for (Path file : files) {
+                partials.add(executor.submit(() -> scanFile(file)));
+            }
+            // 归约:合并每个文件的部分统计
+            Totals totals = new Totals();
+            for (Future<Totals> partial : partials) {
+                totals.merge(partial.get());
+            }
+            return totals;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Totals scanFile(Path file) throws IOException {
+        SessionLineFields fields = new SessionLineFields();
+        Totals totals = new Totals();
+        JsonlTailReader.read(file, 0, line -> {
+            if (line.trim().isEmpty()) {
+                return;
+            }
+            try {
+                if (fields.extract(line, false)) {
+                    totals.add(fields);
+                }
+            } catch (IOException e) {
+                // 跳过无法解析的行
+            }
+        });
+        return totals;
+    }
+
+    private static int[] parseThreads(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                String[] parts = args[i + 1].split(",");
+                int[] counts = new int[parts.length];
+                for (int j = 0; j < parts.length; j++) {
+                    counts[j] = Integer.parseInt(parts[j].trim());
+                }
+                return counts;
+            }
+        }
+        return new int[]{1, 2, 4, 8};
+    }
+}
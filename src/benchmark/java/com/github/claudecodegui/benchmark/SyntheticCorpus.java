@@ -0,0 +1,168 @@
+package com.github.claudecodegui.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的合成会话语料
+ * 按 ~/.claude/projects/<项目>/<会话>.jsonl 的结构生成:每轮对话包含用户输入、若干条助手消息
+ * (带 model、id、usage)和工具结果;工具结果大小按长尾分布,少数达到 MB 级,与真实会话接近。
+ *
+ * 相同的参数和种子总是生成相同的语料。
+ */
+final class SyntheticCorpus {
+
+    private static final String[] MODELS = {
+        "claude-sonnet-4-5-20250929", "claude-opus-4-1-20250805", "claude-haiku-4-5-20251001"
+    };
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private final int projects;
+    private final int sessionsPerProject;
+    private final int turnsPerSession;
+    private final long seed;
+
+    SyntheticCorpus(int projects, int sessionsPerProject, int turnsPerSession, long seed) {
+        this.projects = projects;
+        this.sessionsPerProject = sessionsPerProject;
+        this.turnsPerSession = turnsPerSession;
+        this.seed = seed;
+    }
+
+    /**
+     * 按 "--name value" 形式的参数创建,未指定的使用默认值
+     */
+    static SyntheticCorpus fromArgs(String[] args, int defaultProjects, int defaultSessions, int defaultTurns) {
+        return new SyntheticCorpus(
+            intArg(args, "--projects", defaultProjects),
+            intArg(args, "--sessions", defaultSessions),
+            intArg(args, "--turns", defaultTurns),
+            intArg(args, "--seed", 42));
+    }
+
+    static int intArg(String[] args, String name, int defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(name)) {
+                return Integer.parseInt(args[i + 1]);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 在 root 下生成语料
+     *
+     * @return 所有会话文件
+     */
+    List<Path> write(Path root) throws IOException {
+        Random random = new Random(seed);
+        long start = Instant.parse("2026-09-01T00:00:00Z").toEpochMilli();
+        List<Path> files = new ArrayList<>();
+        for (int p = 0; p < projects; p++) {
+            Path projectDir = root.resolve("-home-user-project-" + p);
+            Files.createDirectories(projectDir);
+            for (int s = 0; s < sessionsPerProject; s++) {
+                Path file = projectDir.resolve(String.format("%08x-0000-4000-8000-%012x.jsonl", p, s));
+                long sessionStart = start + (long) (random.nextDouble() * 30 * DAY_MILLIS);
+                try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    writeSession(writer, random, sessionStart);
+                }
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private void writeSession(Writer writer, Random random, long time) throws IOException {
+        String model = MODELS[random.nextInt(MODELS.length)];
+        if (random.nextInt(4) == 0) {
+            writer.write("{\"type\":\"summary\",\"summary\":\"" + text(random, 40) + "\",\"leafUuid\":\"leaf\"}\n");
+        }
+        for (int turn = 0; turn < turnsPerSession; turn++) {
+            time += 1_000 + random.nextInt(60_000);
+            writer.write("{\"type\":\"user\",\"uuid\":\"u" + turn + "\",\"timestamp\":\"" + Instant.ofEpochMilli(time)
+                + "\",\"message\":{\"role\":\"user\",\"content\":\"" + text(random, 80 + random.nextInt(400)) + "\"}}\n");
+
+            int steps = 1 + random.nextInt(4);
+            for (int step = 0; step < steps; step++) {
+                time += 500 + random.nextInt(20_000);
+                String messageId = "msg_" + Long.toHexString(random.nextLong());
+                String requestId = "req_" + Long.toHexString(random.nextLong());
+                String toolId = "toolu_" + Long.toHexString(random.nextLong());
+                writer.write("{\"type\":\"assistant\",\"uuid\":\"a" + turn + "-" + step + "\",\"requestId\":\"" + requestId
+                    + "\",\"timestamp\":\"" + Instant.ofEpochMilli(time)
+                    + "\",\"message\":{\"id\":\"" + messageId + "\",\"role\":\"assistant\",\"model\":\"" + model
+                    + "\",\"content\":[{\"type\":\"text\",\"text\":\"" + text(random, 200 + random.nextInt(4000))
+                    + "\"},{\"type\":\"tool_use\",\"id\":\"" + toolId + "\",\"name\":\"Read\",\"input\":{\"file_path\":\"/home/user/src/File"
+                    + random.nextInt(1000) + ".java\"}}],\"usage\":{\"input_tokens\":" + random.nextInt(5000)
+                    + ",\"output_tokens\":" + random.nextInt(2000)
+                    + ",\"cache_creation_input_tokens\":" + random.nextInt(20000)
+                    + ",\"cache_read_input_tokens\":" + random.nextInt(100000) + "}}}\n");
+
+                time += 100 + random.nextInt(5_000);
+                writer.write("{\"type\":\"user\",\"timestamp\":\"" + Instant.ofEpochMilli(time)
+                    + "\",\"message\":{\"role\":\"user\",\"content\":[{\"type\":\"tool_result\",\"tool_use_id\":\"" + toolId
+                    + "\",\"content\":\"" + text(random, toolResultSize(random)) + "\"}]}}\n");
+            }
+        }
+    }
+
+    /**
+     * 工具结果大小:多数为几 KB,约 2% 为 256 KB ~ 2 MB
+     */
+    private static int toolResultSize(Random random) {
+        if (random.nextInt(50) == 0) {
+            return 256 * 1024 + random.nextInt(1792 * 1024);
+        }
+        return 200 + random.nextInt(16 * 1024);
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int r = random.nextInt(64);
+            if (r < 10) {
+                builder.append(' ');
+            } else if (r == 10) {
+                builder.append("\\n");
+            } else if (r == 11) {
+                builder.append("\\\"");
+            } else if (r == 12) {
+                // 非 ASCII 字符,覆盖 UTF-8 多字节解码
+                builder.append('中');
+            } else {
+                builder.append((char) ('a' + r % 26));
+            }
+        }
+        return builder.toString();
+    }
+
+    static long totalBytes(List<Path> files) throws IOException {
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        return total;
+    }
+
+    static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (var paths = Files.walk(root)) {
+            List<Path> all = new ArrayList<>();
+            paths.forEach(all::add);
+            for (int i = all.size() - 1; i >= 0; i--) {
+                Files.deleteIfExists(all.get(i));
+            }
+        }
+    }
+}
@@ -3,14 +3,23 @@ package com.github.claudecodegui;
 import com.google.gson.Gson;
 import com.google.gson.JsonParser;
 
+import com.github.claudecodegui.history.FullTextIndex;
+import com.github.claudecodegui.history.JsonlTailReader;
+import com.github.claudecodegui.history.SessionLineFields;
+import com.github.claudecodegui.history.SessionMetadata;
+import com.github.claudecodegui.history.SessionMetadataIndex;
+import com.github.claudecodegui.history.UsageColumnStore;
 import com.github.claudecodegui.util.PathUtils;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -26,8 +35,57 @@ public class ClaudeHistoryReader {
     private static final Path HISTORY_FILE = CLAUDE_DIR.resolve("history.jsonl");
     private static final Path PROJECTS_DIR = CLAUDE_DIR.resolve("projects");
 
+    /**
+     * 会话文件解析线程池(按 CPU 核数限制并发),Gson 实例线程安全,
+     * 每个文件的读取缓冲由 JsonlTailReader 在各自线程内分配
+     */
+    private static final ExecutorService FILE_SCAN_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+        "ClaudeHistory-FileScan", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * "所有项目"统计时按项目目录并行,与文件解析使用不同线程池,避免目录任务等待文件任务时占满线程
+     */
+    private static final ExecutorService PROJECT_SCAN_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+        "ClaudeHistory-ProjectScan", Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+
+    /**
+     * 快速读取标题时依次尝试的开头窗口大小,都找不到时改为完整解析
+     */
+    private static final int[] TITLE_PREFIX_WINDOWS = {64 * 1024, 1024 * 1024};
+
+    /**
+     * 快速读取最后时间戳时依次尝试的末尾窗口大小
+     */
+    private static final int[] TIMESTAMP_TAIL_WINDOWS = {16 * 1024, 256 * 1024};
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    /**
+     * 用量分组的时段长度
+     * 按小时分组时 +05:30 等半小时时区的本地日期分界落在小时中间,跨日的用量会计入错误的日期
+     */
+    private static final long USAGE_SLOT_MILLIS = UsageColumnStore.SLOT_MILLIS;
+
+    /**
+     * 所有项目的列式用量存储,任一项目索引变化时重建
+     */
+    private static UsageColumnStore usageStore;
+    private static Map<Path, Long> usageStoreVersions = Collections.emptyMap();
+
     private final Gson gson = new Gson();
 
+    private final SessionMetadataIndex.Parser metadataParser = new SessionMetadataIndex.Parser() {
+        @Override
+        public long scan(Path file, SessionMetadata metadata, long offset) throws IOException {
+            return scanSessionFile(file, metadata, offset);
+        }
+
+        @Override
+        public boolean quickScan(Path file, SessionMetadata metadata) throws IOException {
+            return quickScanSessionFile(file, metadata);
+        }
+    };
+
     /**
      * 历史记录条目
      */
@@ -163,138 +221,260 @@ public class ClaudeHistoryReader {
         public long lastUpdated;
     }
 
+    /**
+     * 项目对应的会话目录 ~/.claude/projects/<项目>
+     * 转换项目路径为安全的目录名（与 VSCode 扩展逻辑一致），使用 PathUtils 处理跨平台路径规范化
+     */
+    public static Path getProjectSessionDir(String projectPath) {
+        return PROJECTS_DIR.resolve(PathUtils.sanitizePath(projectPath));
+    }
+
     /**
      * 从 projects 目录读取项目的所有会话
+     * 未完整解析过的会话只读取开头和末尾,消息数为 SessionMetadata.UNKNOWN_COUNT
      */
     public List<SessionInfo> readProjectSessions(String projectPath) throws IOException {
+        return readProjectSessions(projectPath, false);
+    }
+
+    /**
+     * 从 projects 目录读取项目的所有会话
+     *
+     * @param countMessages 是否完整解析未解析过的会话以统计消息数(已解析过的会话只解析追加部分)
+     */
+    public List<SessionInfo> readProjectSessions(String projectPath, boolean countMessages) throws IOException {
         List<SessionInfo> sessions = new ArrayList<>();
 
         if (projectPath == null || projectPath.isEmpty()) {
             return sessions;
         }
 
-        // 转换项目路径为安全的目录名（与 VSCode 扩展逻辑一致）
-        // 使用 PathUtils 处理跨平台路径规范化
-        String sanitizedPath = PathUtils.sanitizePath(projectPath);
-        Path projectDir = PROJECTS_DIR.resolve(sanitizedPath);
+        Path projectDir = getProjectSessionDir(projectPath);
 
         if (!Files.exists(projectDir) || !Files.isDirectory(projectDir)) {
             return sessions;
         }
 
-        // 读取项目目录下所有 .jsonl 文件
-        Map<String, List<ConversationMessage>> sessionMessagesMap = new HashMap<>();
+        // 通过元数据索引读取,只有新增或变更的 .jsonl 文件才会被重新解析
+        Map<String, SessionMetadata> metadataMap = SessionMetadataIndex.forProjectDir(projectDir).refresh(metadataParser, FILE_SCAN_EXECUTOR, countMessages);
 
-        Files.list(projectDir)
-            .filter(path -> path.toString().endsWith(".jsonl"))
-            .filter(path -> {
-                try {
-                    return Files.size(path) > 0;
-                } catch (IOException e) {
-                    return false;
-                }
-            })
-            .forEach(path -> {
-                try (BufferedReader reader = Files.newBufferedReader(path)) {
-                    // 从文件名提取 sessionId
-                    String fileName = path.getFileName().toString();
-                    String sessionId = fileName.substring(0, fileName.lastIndexOf(".jsonl"));
+        for (Map.Entry<String, SessionMetadata> entry : metadataMap.entrySet()) {
+            String sessionId = entry.getKey();
+            SessionMetadata metadata = entry.getValue();
+
+            // 过滤无效会话
+            if (!isValidSession(sessionId, metadata.title, metadata.messageCount)) {
+                continue;
+            }
 
-                    List<ConversationMessage> messages = new ArrayList<>();
-                    String line;
+            SessionInfo session = new SessionInfo();
+            session.sessionId = sessionId;
+            session.title = metadata.title;
+            session.messageCount = metadata.messageCount;
+            session.lastTimestamp = metadata.lastTimestamp;
+            session.firstTimestamp = metadata.firstTimestamp;
 
-                    while ((line = reader.readLine()) != null) {
-                        if (line.trim().isEmpty()) continue;
+            sessions.add(session);
+        }
 
-                        try {
-                            ConversationMessage msg = gson.fromJson(line, ConversationMessage.class);
-                            if (msg != null) {
-                                messages.add(msg);
-                            }
-                        } catch (Exception e) {
-                            // 跳过解析失败的行，记录日志用于调试
-                            LOG.error("[ClaudeHistoryReader] 解析消息行失败: " + e.getMessage() + " - 行内容: " + (line.length() > 100 ? line.substring(0, 100) + "..." : line));
-                        }
-                    }
+        // 按最后更新时间倒序排序
+        sessions.sort((a, b) -> Long.compare(b.lastTimestamp, a.lastTimestamp));
+
+        return sessions;
+    }
+
+    /**
+     * 扫描会话文件,把 offset 之后的完整行累加到索引用的元数据
+     * 每行只流式提取需要的字段,message.content 仅在还没有标题时才解析
+     * @return 已解析内容的结束位置,下次文件追加后从这里继续
+     */
+    private long scanSessionFile(Path path, SessionMetadata metadata, long offset) throws IOException {
+        SessionLineFields fields = new SessionLineFields();
+        return JsonlTailReader.read(path, offset, line -> {
+            if (line.trim().isEmpty()) return;
+
+            try {
+                if (!fields.extract(line, metadata.title == null)) {
+                    return;
+                }
+            } catch (Exception e) {
+                // 跳过解析失败的行，记录日志用于调试
+                LOG.error("[ClaudeHistoryReader] 解析消息行失败: " + e.getMessage() + " - 行内容: " + (line.length() > 100 ? line.substring(0, 100) + "..." : line));
+                return;
+            }
+            accumulateMetadata(metadata, fields);
+        });
+    }
 
-                    if (!messages.isEmpty()) {
-                        sessionMessagesMap.put(sessionId, messages);
+    /**
+     * 只读取文件开头和末尾生成列表信息(标题、首末时间戳)
+     * 开头窗口内逐行解析,遇到第一条有效用户消息即停止;末尾窗口从后往前找到第一个时间戳即停止;
+     * 消息数需要读取整个文件,这里不统计,由完整解析补上
+     *
+     * @return 开头窗口内找不到标题时返回 false
+     */
+    private boolean quickScanSessionFile(Path path, SessionMetadata metadata) throws IOException {
+        SessionLineFields fields = new SessionLineFields();
+
+        if (metadata.title == null) {
+            boolean found = false;
+            for (int window : TITLE_PREFIX_WINDOWS) {
+                metadata.firstTimestamp = 0;
+                found = JsonlTailReader.readHead(path, window, line -> {
+                    if (!extractQuietly(fields, line, true)) {
+                        return false;
+                    }
+                    if (metadata.firstTimestamp == 0 && fields.timestamp != null) {
+                        metadata.firstTimestamp = parseTimestamp(fields.timestamp);
                     }
+                    metadata.title = generateSummary(fields);
+                    return metadata.title != null;
+                });
+                if (found || window >= Files.size(path)) {
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
 
-                } catch (Exception e) {
-                    // 跳过读取失败的文件，记录日志用于调试
-                    LOG.error("[ClaudeHistoryReader] 读取会话文件失败: " + e.getMessage());
+        for (int window : TIMESTAMP_TAIL_WINDOWS) {
+            boolean found = JsonlTailReader.readTailReverse(path, window, line -> {
+                if (!extractQuietly(fields, line, false) || fields.timestamp == null) {
+                    return false;
+                }
+                long ts = parseTimestamp(fields.timestamp);
+                if (ts <= 0) {
+                    return false;
                 }
+                metadata.lastTimestamp = Math.max(ts, metadata.firstTimestamp);
+                return true;
             });
+            if (found || window >= Files.size(path)) {
+                break;
+            }
+        }
+        if (metadata.lastTimestamp == 0) {
+            metadata.lastTimestamp = metadata.firstTimestamp;
+        }
 
-        // 为每个会话生成 SessionInfo
-        for (Map.Entry<String, List<ConversationMessage>> entry : sessionMessagesMap.entrySet()) {
-            String sessionId = entry.getKey();
-            List<ConversationMessage> messages = entry.getValue();
-
-            if (messages.isEmpty()) continue;
+        metadata.messageCount = SessionMetadata.UNKNOWN_COUNT;
+        return true;
+    }
 
-            // 生成摘要：找到第一条非 meta 的用户消息
-            String summary = generateSummary(messages);
+    private static boolean extractQuietly(SessionLineFields fields, String line, boolean captureContent) {
+        if (line.trim().isEmpty()) {
+            return false;
+        }
+        try {
+            return fields.extract(line, captureContent);
+        } catch (Exception e) {
+            return false;
+        }
+    }
 
-            // 获取最后一条消息的时间戳
-            long lastTimestamp = 0;
-            for (ConversationMessage msg : messages) {
-                if (msg.timestamp != null) {
-                    try {
-                        long ts = parseTimestamp(msg.timestamp);
-                        if (ts > lastTimestamp) {
-                            lastTimestamp = ts;
-                        }
-                    } catch (Exception e) {
-                        // 忽略无效的时间戳
-                    }
+    /**
+     * 把一行消息的字段累加到会话元数据
+     */
+    private void accumulateMetadata(SessionMetadata metadata, SessionLineFields fields) {
+        metadata.messageCount++;
+
+        if (fields.timestamp != null) {
+            long ts = parseTimestamp(fields.timestamp);
+            if (ts > 0) {
+                if (metadata.firstTimestamp == 0) {
+                    metadata.firstTimestamp = ts;
+                }
+                if (ts > metadata.lastTimestamp) {
+                    metadata.lastTimestamp = ts;
                 }
             }
+        }
 
-            // 过滤无效会话
-            if (!isValidSession(sessionId, summary, messages.size())) {
-                continue;
-            }
+        // 标题：第一条非 meta 的用户消息
+        if (metadata.title == null) {
+            metadata.title = generateSummary(fields);
+        }
 
-            SessionInfo session = new SessionInfo();
-            session.sessionId = sessionId;
-            session.title = summary;
-            session.messageCount = messages.size();
-            session.lastTimestamp = lastTimestamp;
-            session.firstTimestamp = lastTimestamp; // 简化处理
+        if ("summary".equals(fields.type) && fields.summary != null) {
+            metadata.summary = fields.summary;
+        }
 
-            sessions.add(session);
+        if ("assistant".equals(fields.type) && fields.hasUsage) {
+            if (fields.inputTokens > 0 || fields.outputTokens > 0 || fields.cacheCreationTokens > 0 || fields.cacheReadTokens > 0) {
+                if ("unknown".equals(metadata.model) && fields.model != null) {
+                    metadata.model = fields.model;
+                }
+                accumulateUsage(metadata, fields);
+            }
         }
+    }
 
-        // 按最后更新时间倒序排序
-        sessions.sort((a, b) -> Long.compare(b.lastTimestamp, a.lastTimestamp));
+    /**
+     * 累加一条助手消息的用量
+     * 流式输出时同一条消息(相同 message.id + requestId)的每个内容块各占一行且都带 usage,
+     * 只按该消息出现过的最大值计入一次,避免重复计算
+     */
+    private void accumulateUsage(SessionMetadata metadata, SessionLineFields fields) {
+        String key = fields.messageId != null
+            ? fields.messageId + ":" + (fields.requestId != null ? fields.requestId : "")
+            : null;
+        SessionMetadata.UsageMark mark = key != null ? metadata.findRecentUsage(key) : null;
+
+        if (mark != null) {
+            // 后续分块只补上比已计入部分多出的用量
+            long input = Math.max(0, fields.inputTokens - mark.inputTokens);
+            long output = Math.max(0, fields.outputTokens - mark.outputTokens);
+            long cacheWrite = Math.max(0, fields.cacheCreationTokens - mark.cacheWriteTokens);
+            long cacheRead = Math.max(0, fields.cacheReadTokens - mark.cacheReadTokens);
+            metadata.addUsage(mark.bucket, input, output, cacheWrite, cacheRead);
+            mark.inputTokens += input;
+            mark.outputTokens += output;
+            mark.cacheWriteTokens += cacheWrite;
+            mark.cacheReadTokens += cacheRead;
+            return;
+        }
 
-        return sessions;
+        long ts = fields.timestamp != null ? parseTimestamp(fields.timestamp) : 0;
+        if (ts <= 0) {
+            ts = metadata.lastTimestamp > 0 ? metadata.lastTimestamp : System.currentTimeMillis();
+        }
+        String model = fields.model != null ? fields.model : metadata.model;
+        String bucket = Math.floorDiv(ts, USAGE_SLOT_MILLIS) + "|" + model;
+        metadata.addUsage(bucket, fields.inputTokens, fields.outputTokens, fields.cacheCreationTokens, fields.cacheReadTokens);
+
+        if (key != null) {
+            mark = new SessionMetadata.UsageMark();
+            mark.key = key;
+            mark.bucket = bucket;
+            mark.inputTokens = fields.inputTokens;
+            mark.outputTokens = fields.outputTokens;
+            mark.cacheWriteTokens = fields.cacheCreationTokens;
+            mark.cacheReadTokens = fields.cacheReadTokens;
+            metadata.rememberUsage(mark);
+        }
     }
 
     /**
      * 生成会话摘要
+     * @return 消息不是有效的用户消息时返回 null
      */
-    private String generateSummary(List<ConversationMessage> messages) {
-        for (ConversationMessage msg : messages) {
-            if ("user".equals(msg.type) &&
-                (msg.isMeta == null || !msg.isMeta) &&
-                msg.message != null &&
-                msg.message.content != null) {
-
-                String text = extractTextFromContent(msg.message.content);
-                if (text != null && !text.isEmpty()) {
-                    // 去除换行符并截断
-                    text = text.replace("\n", " ").trim();
-                    if (text.length() > 45) {
-                        text = text.substring(0, 45) + "...";
-                    }
-                    return text;
+    private String generateSummary(SessionLineFields fields) {
+        if ("user".equals(fields.type) && !fields.isMeta && fields.content != null) {
+            String text = fields.content.isJsonPrimitive()
+                ? fields.content.getAsString()
+                : extractTextFromContent(fields.content);
+            if (text != null && !text.isEmpty()) {
+                // 去除换行符并截断
+                text = text.replace("\n", " ").trim();
+                if (text.length() > 45) {
+                    text = text.substring(0, 45) + "...";
                 }
+                return text;
             }
         }
-        return null; // 返回 null 表示没有有效内容
+        return null;
     }
 
     /**
@@ -320,8 +500,8 @@ public class ClaudeHistoryReader {
             return false;
         }
 
-        // 过滤消息数太少的会话（少于2条消息通常没什么内容）
-        if (messageCount < 2) {
+        // 过滤消息数太少的会话（少于2条消息通常没什么内容）;消息数未统计时先保留
+        if (messageCount != SessionMetadata.UNKNOWN_COUNT && messageCount < 2) {
             return false;
         }
 
@@ -641,7 +821,7 @@ public class ClaudeHistoryReader {
 
             // 计算总消息数
             int totalMessages = sessions.stream()
-                .mapToInt(s -> s.messageCount)
+                .mapToInt(s -> Math.max(0, s.messageCount))
                 .sum();
 
             Map<String, Object> result = new HashMap<>();
@@ -657,6 +837,29 @@ public class ClaudeHistoryReader {
         }
     }
 
+    /**
+     * 在项目的会话内容(用户/助手消息、工具输入和工具结果)中全文检索
+     * 首次调用时在后台建立索引并返回空列表,建立完成后只增量索引新增内容
+     * @return 按相关度排序,每个会话一条命中
+     */
+    public List<FullTextIndex.SearchHit> searchProjectContent(String projectPath, String query, int limit) throws IOException {
+        if (projectPath == null || projectPath.isEmpty() || query == null || query.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Path projectDir = PROJECTS_DIR.resolve(PathUtils.sanitizePath(projectPath));
+        if (!Files.isDirectory(projectDir)) {
+            return new ArrayList<>();
+        }
+
+        // 索引首次建立在后台进行,完成前不返回内容命中(调用方只按标题过滤)
+        FullTextIndex index = FullTextIndex.forProjectDir(projectDir);
+        if (!index.refreshIfReady()) {
+            return new ArrayList<>();
+        }
+        return index.search(query, limit);
+    }
+
     /**
      * 读取单个会话的所有消息
      * @param projectPath 项目路径
@@ -793,20 +996,33 @@ public class ClaudeHistoryReader {
         stats.lastUpdated = System.currentTimeMillis();
 
         try {
-            List<SessionSummary> allSessions = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            StatsAccumulator accumulator = new StatsAccumulator(now);
 
             if ("all".equals(projectPath)) {
-                // 读取所有项目
+                // 读取所有项目：各项目目录并行解析并各自聚合，最后合并
                 if (Files.exists(PROJECTS_DIR)) {
-                    Files.list(PROJECTS_DIR)
-                        .filter(Files::isDirectory)
-                        .forEach(dir -> {
-                            try {
-                                allSessions.addAll(readSessionsFromDir(dir));
-                            } catch (Exception e) {
-                                // 跳过读取失败的目录
-                            }
-                        });
+                    List<Path> projectDirs;
+                    try (java.util.stream.Stream<Path> stream = Files.list(PROJECTS_DIR)) {
+                        projectDirs = stream.filter(Files::isDirectory).collect(Collectors.toList());
+                    }
+
+                    List<CompletableFuture<StatsAccumulator>> partials = new ArrayList<>();
+                    for (Path dir : projectDirs) {
+                        partials.add(CompletableFuture.supplyAsync(() -> {
+                            StatsAccumulator partial = new StatsAccumulator(now);
+                            // readSessionsFromDir 内部已忽略读取失败的目录
+                            readSessionsFromDir(dir, partial);
+                            return partial;
+                        }, PROJECT_SCAN_EXECUTOR));
+                    }
+                    for (CompletableFuture<StatsAccumulator> partial : partials) {
+                        try {
+                            accumulator.merge(partial.join());
+                        } catch (Exception e) {
+                            // 跳过读取失败的目录
+                        }
+                    }
                 }
             } else {
                 // 读取特定项目
@@ -819,19 +1035,17 @@ public class ClaudeHistoryReader {
                 Path dir2 = PROJECTS_DIR.resolve(folderName2);
                 
                 if (Files.exists(dir1)) {
-                    allSessions.addAll(readSessionsFromDir(dir1));
+                    readSessionsFromDir(dir1, accumulator);
                 } else if (Files.exists(dir2)) {
-                    allSessions.addAll(readSessionsFromDir(dir2));
+                    readSessionsFromDir(dir2, accumulator);
                 } else {
                     // 尝试在 history.jsonl 中查找项目对应的真实路径
                     // 暂时略过，假设路径正确
                 }
             }
 
-            stats.totalSessions = allSessions.size();
-
             // 聚合数据
-            processSessions(allSessions, stats);
+            accumulator.finishInto(stats);
 
             return stats;
 
@@ -841,209 +1055,320 @@ public class ClaudeHistoryReader {
         }
     }
 
-    private List<SessionSummary> readSessionsFromDir(Path projectDir) {
-        List<SessionSummary> sessions = new ArrayList<>();
-        Set<String> processedHashes = new HashSet<>();
-
+    /**
+     * 把项目目录下所有会话的用量汇总到 accumulator
+     * 只有新增或变更的会话文件会被解析,其余直接使用索引中按 时段|模型 汇总好的用量
+     */
+    private void readSessionsFromDir(Path projectDir, StatsAccumulator accumulator) {
         try {
-            Files.list(projectDir)
-                .filter(p -> p.toString().endsWith(".jsonl"))
-                .forEach(p -> {
-                    SessionSummary session = parseSessionFile(p, processedHashes);
-                    if (session != null) {
-                        sessions.add(session);
-                    }
-                });
+            Map<String, SessionMetadata> metadataMap = SessionMetadataIndex.forProjectDir(projectDir).refresh(metadataParser, FILE_SCAN_EXECUTOR, true);
+            for (Map.Entry<String, SessionMetadata> entry : metadataMap.entrySet()) {
+                SessionSummary session = toSessionSummary(entry.getKey(), entry.getValue());
+                if (session != null) {
+                    accumulator.add(session, entry.getValue());
+                }
+            }
         } catch (IOException e) {
             // 忽略读取失败
         }
-        return sessions;
     }
 
-    private SessionSummary parseSessionFile(Path filePath, Set<String> processedHashes) {
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            UsageData usage = new UsageData();
-            double totalCost = 0;
-            String model = "unknown";
-            long firstTimestamp = 0;
-            String summary = null;
+    /**
+     * 由索引中的元数据生成统计用的会话摘要
+     * @return 没有任何 token 用量的会话返回 null
+     */
+    private SessionSummary toSessionSummary(String sessionId, SessionMetadata metadata) {
+        UsageData usage = new UsageData();
+        usage.inputTokens = metadata.inputTokens;
+        usage.outputTokens = metadata.outputTokens;
+        usage.cacheWriteTokens = metadata.cacheWriteTokens;
+        usage.cacheReadTokens = metadata.cacheReadTokens;
+        usage.totalTokens = metadata.getTotalTokens();
+
+        if (usage.totalTokens == 0) return null;
+
+        // 按每个分组实际使用的模型计价
+        double cost = 0;
+        for (Map.Entry<String, long[]> bucket : metadata.slotUsage.entrySet()) {
+            cost += calculateCost(bucketModel(bucket.getKey()), bucket.getValue());
+        }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                
+        SessionSummary session = new SessionSummary();
+        session.sessionId = sessionId;
+        session.timestamp = metadata.firstTimestamp > 0 ? metadata.firstTimestamp : System.currentTimeMillis();
+        session.model = metadata.model;
+        session.usage = usage;
+        session.cost = cost;
+        session.summary = metadata.summary;
+        return session;
+    }
+
+    /**
+     * 获取所有项目的列式用量存储
+     * 先刷新各项目的会话元数据索引(只解析新增或变更的文件),所有索引版本都未变化时直接复用已有存储
+     */
+    public UsageColumnStore getUsageStore() throws IOException {
+        List<Path> projectDirs = new ArrayList<>();
+        if (Files.exists(PROJECTS_DIR)) {
+            try (java.util.stream.Stream<Path> stream = Files.list(PROJECTS_DIR)) {
+                projectDirs = stream.filter(Files::isDirectory).collect(Collectors.toList());
+            }
+        }
+
+        Map<Path, CompletableFuture<Map<String, SessionMetadata>>> refreshed = new LinkedHashMap<>();
+        for (Path dir : projectDirs) {
+            refreshed.put(dir, CompletableFuture.supplyAsync(() -> {
                 try {
-                    ConversationMessage msg = gson.fromJson(line, ConversationMessage.class);
-                    
-                    // 记录时间戳
-                    if (firstTimestamp == 0 && msg.timestamp != null) {
-                        firstTimestamp = parseTimestamp(msg.timestamp);
-                    }
+                    return SessionMetadataIndex.forProjectDir(dir).refresh(metadataParser, FILE_SCAN_EXECUTOR, true);
+                } catch (IOException e) {
+                    // 跳过读取失败的目录
+                    return Collections.<String, SessionMetadata>emptyMap();
+                }
+            }, PROJECT_SCAN_EXECUTOR));
+        }
 
-                    // 查找 summary
-                    if ("summary".equals(msg.type) && msg.message != null && msg.message.content instanceof String) { // summary usually in separate field in raw json, but here mapping might be tricky. 
-                        // Wait, ConversationMessage structure defined earlier:
-                        // public String type;
-                        // public Message message;
-                        // In VSCode: data.summary is at top level. 
-                        // My ConversationMessage doesn't have 'summary' field at top level.
-                        // I need to check the raw JSON structure or use a generic map for flexible parsing.
-                        // Let's use a flexible parser for this line to capture 'summary' field.
-                        Map<String, Object> rawMap = gson.fromJson(line, Map.class);
-                        if (rawMap.containsKey("summary")) {
-                            Object s = rawMap.get("summary");
-                            if (s instanceof String) summary = (String) s;
-                        }
-                    }
+        Map<Path, Map<String, SessionMetadata>> metadataByDir = new LinkedHashMap<>();
+        Map<Path, Long> versions = new HashMap<>();
+        for (Map.Entry<Path, CompletableFuture<Map<String, SessionMetadata>>> entry : refreshed.entrySet()) {
+            metadataByDir.put(entry.getKey(), entry.getValue().join());
+            versions.put(entry.getKey(), SessionMetadataIndex.forProjectDir(entry.getKey()).getVersion());
+        }
 
-                    // 查找 usage
-                    if ("assistant".equals(msg.type) && msg.message != null && msg.message.usage != null) {
-                        ConversationMessage.Usage u = msg.message.usage;
-                        
-                        // 简单去重 (TODO: 完善去重逻辑，这里假设每行都是唯一的或者是流式的最后一行)
-                        // VSCode logic: message.id + requestId. My ConversationMessage missing id/requestId.
-                        // Assuming simpler accumulation for now or just taking valid chunks.
-                        // Actually, jsonl often contains stream chunks or final message.
-                        // If we sum up everything, we might double count if structure is complex.
-                        // But usually 'usage' is only present in the final message of a turn or specific events.
-                        
-                        if (u.input_tokens > 0 || u.output_tokens > 0 || u.cache_creation_input_tokens > 0 || u.cache_read_input_tokens > 0) {
-                             usage.inputTokens += u.input_tokens;
-                             usage.outputTokens += u.output_tokens;
-                             usage.cacheWriteTokens += u.cache_creation_input_tokens;
-                             usage.cacheReadTokens += u.cache_read_input_tokens;
-                             
-                             if (msg.message.role != null && model.equals("unknown")) {
-                                 // message.model is needed. My Message class doesn't have model.
-                                 // It's usually at top level or inside message?
-                                 // VSCode: message.model
-                                 Map<String, Object> rawMap = gson.fromJson(line, Map.class);
-                                 if (rawMap.containsKey("message")) {
-                                     Map m = (Map) rawMap.get("message");
-                                     if (m.containsKey("model")) {
-                                         model = (String) m.get("model");
-                                     }
-                                 }
-                             }
-                             
-                             // Calculate cost
-                             Map<String, Double> pricing = getModelPricing(model);
-                             double cost = (u.input_tokens * pricing.get("input") +
-                                          u.output_tokens * pricing.get("output") +
-                                          u.cache_creation_input_tokens * pricing.get("cacheWrite") +
-                                          u.cache_read_input_tokens * pricing.get("cacheRead")) / 1_000_000.0;
-                             totalCost += cost;
-                        }
-                    }
-                } catch (Exception e) {
-                    // ignore
+        synchronized (ClaudeHistoryReader.class) {
+            if (usageStore != null && versions.equals(usageStoreVersions)) {
+                return usageStore;
+            }
+        }
+
+        UsageColumnStore.Builder builder = new UsageColumnStore.Builder();
+        for (Map.Entry<Path, Map<String, SessionMetadata>> entry : metadataByDir.entrySet()) {
+            String project = entry.getKey().getFileName().toString();
+            for (SessionMetadata metadata : entry.getValue().values()) {
+                for (Map.Entry<String, long[]> bucket : metadata.slotUsage.entrySet()) {
+                    builder.add(project, bucketSlot(bucket.getKey()), bucketModel(bucket.getKey()), bucket.getValue());
                 }
             }
+        }
+        UsageColumnStore store = builder.build(this::calculateCost);
 
-            usage.totalTokens = usage.inputTokens + usage.outputTokens + usage.cacheWriteTokens + usage.cacheReadTokens;
-            
-            if (usage.totalTokens == 0) return null;
+        synchronized (ClaudeHistoryReader.class) {
+            usageStore = store;
+            usageStoreVersions = versions;
+        }
+        return store;
+    }
 
-            SessionSummary session = new SessionSummary();
-            session.sessionId = filePath.getFileName().toString().replace(".jsonl", "");
-            session.timestamp = firstTimestamp > 0 ? firstTimestamp : System.currentTimeMillis();
-            session.model = model;
-            session.usage = usage;
-            session.cost = totalCost;
-            session.summary = summary;
-            
-            return session;
+    /**
+     * 计算一组 token 用量的费用
+     *
+     * @param tokens [input, output, cacheWrite, cacheRead]
+     */
+    private double calculateCost(String model, long[] tokens) {
+        Map<String, Double> pricing = getModelPricing(model);
+        return (tokens[0] * pricing.get("input") +
+                tokens[1] * pricing.get("output") +
+                tokens[2] * pricing.get("cacheWrite") +
+                tokens[3] * pricing.get("cacheRead")) / 1_000_000.0;
+    }
 
-        } catch (IOException e) {
-            return null;
+    private static long bucketSlot(String bucket) {
+        int separator = bucket.indexOf('|');
+        try {
+            return Long.parseLong(separator >= 0 ? bucket.substring(0, separator) : bucket);
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
-    private void processSessions(List<SessionSummary> sessions, ProjectStatistics stats) {
-        Map<String, DailyUsage> dailyMap = new HashMap<>();
-        Map<String, ModelUsage> modelMap = new HashMap<>();
+    /**
+     * 分组所在的本地日期 (yyyy-MM-dd)
+     */
+    private static String bucketDate(String bucket) {
+        return String.format("%tF", new Date(bucketSlot(bucket) * USAGE_SLOT_MILLIS));
+    }
 
-        // 时间范围
-        long now = System.currentTimeMillis();
-        long oneWeekAgo = now - 7L * 24 * 3600 * 1000;
-        long twoWeeksAgo = now - 14L * 24 * 3600 * 1000;
-        
-        WeeklyComparison.WeekData currentWeek = new WeeklyComparison.WeekData();
-        WeeklyComparison.WeekData lastWeek = new WeeklyComparison.WeekData();
+    private static String bucketModel(String bucket) {
+        int separator = bucket.indexOf('|');
+        return separator >= 0 ? bucket.substring(separator + 1) : "unknown";
+    }
 
-        for (SessionSummary session : sessions) {
-            // 1. 总计
-            stats.totalUsage.inputTokens += session.usage.inputTokens;
-            stats.totalUsage.outputTokens += session.usage.outputTokens;
-            stats.totalUsage.cacheWriteTokens += session.usage.cacheWriteTokens;
-            stats.totalUsage.cacheReadTokens += session.usage.cacheReadTokens;
-            stats.totalUsage.totalTokens += session.usage.totalTokens;
-            stats.estimatedCost += session.cost;
-
-            // 2. 日统计
-            String dateStr = String.format("%tF", new Date(session.timestamp));
-            DailyUsage daily = dailyMap.computeIfAbsent(dateStr, k -> {
-                DailyUsage d = new DailyUsage();
-                d.date = k;
-                d.usage = new UsageData();
-                d.modelsUsed = new ArrayList<>();
-                return d;
-            });
-            daily.sessions++;
-            daily.cost += session.cost;
-            daily.usage.inputTokens += session.usage.inputTokens;
-            daily.usage.outputTokens += session.usage.outputTokens;
-            // ... others
-            if (!daily.modelsUsed.contains(session.model)) {
-                daily.modelsUsed.add(session.model);
-            }
+    /**
+     * 使用统计聚合器
+     * 每个项目目录可以各自累加一个部分结果，再通过 merge 合并，最后由 finishInto 写入 ProjectStatistics
+     * 日统计、模型统计和周对比的用量来自索引中按 时段|模型 汇总好的分组,会话数按会话开始时间计算
+     */
+    private final class StatsAccumulator {
+        private final long oneWeekAgo;
+        private final long twoWeeksAgo;
+        private final String oneWeekAgoDate;
+        private final String twoWeeksAgoDate;
+
+        private final UsageData totalUsage = new UsageData();
+        private double estimatedCost;
+        private final Map<String, DailyUsage> dailyMap = new HashMap<>();
+        private final Map<String, ModelUsage> modelMap = new HashMap<>();
+        private final WeeklyComparison.WeekData currentWeek = new WeeklyComparison.WeekData();
+        private final WeeklyComparison.WeekData lastWeek = new WeeklyComparison.WeekData();
+        private final List<SessionSummary> sessions = new ArrayList<>();
+
+        StatsAccumulator(long now) {
+            // 时间范围
+            this.oneWeekAgo = now - 7L * 24 * 3600 * 1000;
+            this.twoWeeksAgo = now - 14L * 24 * 3600 * 1000;
+            this.oneWeekAgoDate = String.format("%tF", new Date(oneWeekAgo));
+            this.twoWeeksAgoDate = String.format("%tF", new Date(twoWeeksAgo));
+        }
 
-            // 3. 模型统计
-            ModelUsage modelStat = modelMap.computeIfAbsent(session.model, k -> {
-                ModelUsage m = new ModelUsage();
-                m.model = k;
-                return m;
-            });
-            modelStat.sessionCount++;
-            modelStat.totalCost += session.cost;
-            modelStat.totalTokens += session.usage.totalTokens;
-            modelStat.inputTokens += session.usage.inputTokens;
-            modelStat.outputTokens += session.usage.outputTokens;
-            modelStat.cacheCreationTokens += session.usage.cacheWriteTokens;
-            modelStat.cacheReadTokens += session.usage.cacheReadTokens;
-
-            // 4. 周对比
+        void add(SessionSummary session, SessionMetadata metadata) {
+            sessions.add(session);
+
+            // 1. 总计
+            totalUsage.inputTokens += session.usage.inputTokens;
+            totalUsage.outputTokens += session.usage.outputTokens;
+            totalUsage.cacheWriteTokens += session.usage.cacheWriteTokens;
+            totalUsage.cacheReadTokens += session.usage.cacheReadTokens;
+            totalUsage.totalTokens += session.usage.totalTokens;
+            estimatedCost += session.cost;
+
+            // 2. 会话数:按会话开始日期
+            dailyMap.computeIfAbsent(String.format("%tF", new Date(session.timestamp)), this::newDailyUsage).sessions++;
             if (session.timestamp > oneWeekAgo) {
                 currentWeek.sessions++;
-                currentWeek.cost += session.cost;
-                currentWeek.tokens += session.usage.totalTokens;
             } else if (session.timestamp > twoWeeksAgo) {
                 lastWeek.sessions++;
-                lastWeek.cost += session.cost;
-                lastWeek.tokens += session.usage.totalTokens;
+            }
+
+            Set<String> sessionModels = new HashSet<>();
+            for (Map.Entry<String, long[]> bucket : metadata.slotUsage.entrySet()) {
+                String date = bucketDate(bucket.getKey());
+                String model = bucketModel(bucket.getKey());
+                long[] tokens = bucket.getValue();
+                long total = tokens[0] + tokens[1] + tokens[2] + tokens[3];
+                double cost = calculateCost(model, tokens);
+
+                // 3. 日统计
+                DailyUsage daily = dailyMap.computeIfAbsent(date, this::newDailyUsage);
+                daily.cost += cost;
+                daily.usage.inputTokens += tokens[0];
+                daily.usage.outputTokens += tokens[1];
+                daily.usage.cacheWriteTokens += tokens[2];
+                daily.usage.cacheReadTokens += tokens[3];
+                daily.usage.totalTokens += total;
+                if (!daily.modelsUsed.contains(model)) {
+                    daily.modelsUsed.add(model);
+                }
+
+                // 4. 模型统计
+                ModelUsage modelStat = modelMap.computeIfAbsent(model, this::newModelUsage);
+                if (sessionModels.add(model)) {
+                    modelStat.sessionCount++;
+                }
+                modelStat.totalCost += cost;
+                modelStat.totalTokens += total;
+                modelStat.inputTokens += tokens[0];
+                modelStat.outputTokens += tokens[1];
+                modelStat.cacheCreationTokens += tokens[2];
+                modelStat.cacheReadTokens += tokens[3];
+
+                // 5. 周对比(日期字符串按 yyyy-MM-dd 可直接比较)
+                if (date.compareTo(oneWeekAgoDate) > 0) {
+                    currentWeek.cost += cost;
+                    currentWeek.tokens += total;
+                } else if (date.compareTo(twoWeeksAgoDate) > 0) {
+                    lastWeek.cost += cost;
+                    lastWeek.tokens += total;
+                }
             }
         }
 
-        // Finalize Lists
-        stats.dailyUsage = new ArrayList<>(dailyMap.values());
-        stats.dailyUsage.sort(Comparator.comparing(d -> d.date));
+        /**
+         * 合并另一个部分结果(需使用相同的 now 创建)
+         */
+        void merge(StatsAccumulator other) {
+            sessions.addAll(other.sessions);
+
+            totalUsage.inputTokens += other.totalUsage.inputTokens;
+            totalUsage.outputTokens += other.totalUsage.outputTokens;
+            totalUsage.cacheWriteTokens += other.totalUsage.cacheWriteTokens;
+            totalUsage.cacheReadTokens += other.totalUsage.cacheReadTokens;
+            totalUsage.totalTokens += other.totalUsage.totalTokens;
+            estimatedCost += other.estimatedCost;
+
+            for (DailyUsage otherDaily : other.dailyMap.values()) {
+                DailyUsage daily = dailyMap.computeIfAbsent(otherDaily.date, this::newDailyUsage);
+                daily.sessions += otherDaily.sessions;
+                daily.cost += otherDaily.cost;
+                daily.usage.inputTokens += otherDaily.usage.inputTokens;
+                daily.usage.outputTokens += otherDaily.usage.outputTokens;
+                daily.usage.cacheWriteTokens += otherDaily.usage.cacheWriteTokens;
+                daily.usage.cacheReadTokens += otherDaily.usage.cacheReadTokens;
+                daily.usage.totalTokens += otherDaily.usage.totalTokens;
+                for (String model : otherDaily.modelsUsed) {
+                    if (!daily.modelsUsed.contains(model)) {
+                        daily.modelsUsed.add(model);
+                    }
+                }
+            }
 
-        stats.byModel = new ArrayList<>(modelMap.values());
-        stats.byModel.sort((a, b) -> Double.compare(b.totalCost, a.totalCost));
+            for (ModelUsage otherModel : other.modelMap.values()) {
+                ModelUsage modelStat = modelMap.computeIfAbsent(otherModel.model, this::newModelUsage);
+                modelStat.sessionCount += otherModel.sessionCount;
+                modelStat.totalCost += otherModel.totalCost;
+                modelStat.totalTokens += otherModel.totalTokens;
+                modelStat.inputTokens += otherModel.inputTokens;
+                modelStat.outputTokens += otherModel.outputTokens;
+                modelStat.cacheCreationTokens += otherModel.cacheCreationTokens;
+                modelStat.cacheReadTokens += otherModel.cacheReadTokens;
+            }
 
-        stats.sessions = sessions;
-        stats.sessions.sort((a, b) -> Long.compare(b.timestamp, a.timestamp));
-        if (stats.sessions.size() > 200) {
-            stats.sessions = stats.sessions.subList(0, 200);
+            currentWeek.sessions += other.currentWeek.sessions;
+            currentWeek.cost += other.currentWeek.cost;
+            currentWeek.tokens += other.currentWeek.tokens;
+            lastWeek.sessions += other.lastWeek.sessions;
+            lastWeek.cost += other.lastWeek.cost;
+            lastWeek.tokens += other.lastWeek.tokens;
         }
 
-        // Calculate Trends
-        stats.weeklyComparison.currentWeek = currentWeek;
-        stats.weeklyComparison.lastWeek = lastWeek;
-        stats.weeklyComparison.trends = new WeeklyComparison.Trends();
-        stats.weeklyComparison.trends.sessions = calculateTrend(currentWeek.sessions, lastWeek.sessions);
-        stats.weeklyComparison.trends.cost = calculateTrend(currentWeek.cost, lastWeek.cost);
-        stats.weeklyComparison.trends.tokens = calculateTrend(currentWeek.tokens, lastWeek.tokens);
+        void finishInto(ProjectStatistics stats) {
+            stats.totalSessions = sessions.size();
+            stats.totalUsage = totalUsage;
+            stats.estimatedCost = estimatedCost;
+
+            // Finalize Lists
+            stats.dailyUsage = new ArrayList<>(dailyMap.values());
+            stats.dailyUsage.sort(Comparator.comparing(d -> d.date));
+
+            stats.byModel = new ArrayList<>(modelMap.values());
+            stats.byModel.sort((a, b) -> Double.compare(b.totalCost, a.totalCost));
+
+            stats.sessions = sessions;
+            stats.sessions.sort((a, b) -> Long.compare(b.timestamp, a.timestamp));
+            if (stats.sessions.size() > 200) {
+                stats.sessions = stats.sessions.subList(0, 200);
+            }
+
+            // Calculate Trends
+            stats.weeklyComparison.currentWeek = currentWeek;
+            stats.weeklyComparison.lastWeek = lastWeek;
+            stats.weeklyComparison.trends = new WeeklyComparison.Trends();
+            stats.weeklyComparison.trends.sessions = calculateTrend(currentWeek.sessions, lastWeek.sessions);
+            stats.weeklyComparison.trends.cost = calculateTrend(currentWeek.cost, lastWeek.cost);
+            stats.weeklyComparison.trends.tokens = calculateTrend(currentWeek.tokens, lastWeek.tokens);
+        }
+
+        private DailyUsage newDailyUsage(String date) {
+            DailyUsage d = new DailyUsage();
+            d.date = date;
+            d.usage = new UsageData();
+            d.modelsUsed = new ArrayList<>();
+            return d;
+        }
+
+        private ModelUsage newModelUsage(String model) {
+            ModelUsage m = new ModelUsage();
+            m.model = model;
+            return m;
+        }
     }
 
     private double calculateTrend(double current, double last) {
@@ -1053,6 +1378,20 @@ public class ClaudeHistoryReader {
 
 
 
+    /**
+     * 解析时间范围参数
+     *
+     * @param value 毫秒时间戳或 yyyy-MM-dd
+     * @param end   是否是结束日期(日期格式的结束日期包含当天)
+     */
+    private long parseRangeBound(String value, java.time.ZoneId zone, boolean end) {
+        if (value.matches("\\d+")) {
+            return Long.parseLong(value);
+        }
+        java.time.LocalDate date = java.time.LocalDate.parse(value);
+        return (end ? date.plusDays(1) : date).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
     /**
      * 处理API请求
      */
@@ -1069,6 +1408,16 @@ public class ClaudeHistoryReader {
 
                 case "/search":
                     String query = params.get("q");
+                    if (params.containsKey("project")) {
+                        // 在项目会话内容中全文检索
+                        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : 50;
+                        List<FullTextIndex.SearchHit> hits = searchProjectContent(params.get("project"), query, limit);
+                        Map<String, Object> contentResponse = new HashMap<>();
+                        contentResponse.put("query", query);
+                        contentResponse.put("count", hits.size());
+                        contentResponse.put("results", hits);
+                        return gson.toJson(ApiResponse.success(contentResponse));
+                    }
                     List<HistoryEntry> historyForSearch = readHistory();
                     List<HistoryEntry> searchResults = searchHistory(historyForSearch, query);
                     Map<String, Object> searchResponse = new HashMap<>();
@@ -1077,6 +1426,23 @@ public class ClaudeHistoryReader {
                     searchResponse.put("results", searchResults);
                     return gson.toJson(ApiResponse.success(searchResponse));
 
+                case "/usage":
+                    // 任意时间范围的用量查询: from/to 为毫秒时间戳或 yyyy-MM-dd, groupBy 为 model/project/day/hour/none
+                    java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+                    long now = System.currentTimeMillis();
+                    long from = params.containsKey("from") ? parseRangeBound(params.get("from"), zone, false) : now - 30L * 24 * HOUR_MILLIS;
+                    long to = params.containsKey("to") ? parseRangeBound(params.get("to"), zone, true) : now + 1;
+                    String groupBy = params.getOrDefault("groupBy", UsageColumnStore.GROUP_DAY);
+                    String usageProject = params.containsKey("project") ? getProjectFolderName(params.get("project")) : null;
+
+                    List<UsageColumnStore.Group> groups = getUsageStore().query(from, to, groupBy, usageProject, zone);
+                    Map<String, Object> usageResponse = new HashMap<>();
+                    usageResponse.put("from", from);
+                    usageResponse.put("to", to);
+                    usageResponse.put("groupBy", groupBy);
+                    usageResponse.put("groups", groups);
+                    return gson.toJson(ApiResponse.success(usageResponse));
+
                 case "/project":
                     String projectPath = params.get("path");
                     Map<String, Object> projectDetails = getProjectDetails(projectPath);
@@ -9,6 +9,9 @@ import com.github.claudecodegui.bridge.EnvironmentConfigurator;
 import com.github.claudecodegui.bridge.NodeDetector;
 import com.github.claudecodegui.bridge.ProcessManager;
 import com.github.claudecodegui.model.NodeDetectionResult;
+import com.github.claudecodegui.permission.PermissionChannel;
+import com.github.claudecodegui.permission.PermissionLatencyTracker;
+import com.github.claudecodegui.permission.PermissionService;
 import com.github.claudecodegui.util.PlatformUtils;
 import com.intellij.openapi.diagnostic.Logger;
 
@@ -41,6 +44,9 @@ public class ClaudeSDKBridge {
     private final ProcessManager processManager = new ProcessManager();
     private final EnvironmentConfigurator envConfigurator = new EnvironmentConfigurator();
 
+    // 所属项目的权限令牌，随环境变量传给 Node 侧，权限请求据此路由到本窗口
+    private volatile String permissionProjectToken;
+
     /**
      * SDK 消息回调接口
      */
@@ -146,6 +152,13 @@ public class ClaudeSDKBridge {
         return directoryResolver.getSdkDir();
     }
 
+    /**
+     * 设置所属项目的权限令牌（见 PermissionService#getProjectToken）
+     */
+    public void setPermissionProjectToken(String token) {
+        this.permissionProjectToken = token;
+    }
+
     // ============================================================================
     // 进程管理相关方法（委托给 ProcessManager）
     // ============================================================================
@@ -623,11 +636,23 @@ public class ClaudeSDKBridge {
                 envConfigurator.configureTempDir(env, processTempDir);
                 // 始终使用 stdin 传递参数
                 env.put("CLAUDE_USE_STDIN", "true");
+                // 权限服务已启动时，权限请求通过 stdout/stdin 传递，否则 Node 侧退回文件模式
+                PermissionService permissionService = PermissionService.getStartedInstance();
+                if (permissionService != null) {
+                    env.put(PermissionChannel.CHANNEL_ENV, PermissionChannel.CHANNEL_STDIO);
+                }
+                // 文件模式下权限请求经过权限目录，对话期间缩短目录的兜底轮询间隔
+                PermissionService fileModeService = permissionService == null ? PermissionService.getExistingInstance() : null;
 
                 pb.redirectErrorStream(true);
                 envConfigurator.updateProcessEnvironment(pb, node);
+                envConfigurator.configurePermissionEnv(env, channelId, permissionProjectToken);
 
                 Process process = null;
+                PermissionChannel permissionChannel = null;
+                if (fileModeService != null) {
+                    fileModeService.onTurnStarted();
+                }
                 try {
                     // perfTimestamps[2] = System.currentTimeMillis();
                     // LOG.info("[PERF][" + perfTimestamps[2] + "] 准备启动 Node.js 进程，准备耗时: " + (perfTimestamps[2] - perfTimestamps[1]) + "ms");
@@ -674,9 +699,18 @@ public class ClaudeSDKBridge {
                     processManager.registerProcess(channelId, process);
 
                     // 通过 stdin 写入所有参数（包括消息和附件）
-                    try (java.io.OutputStream stdin = process.getOutputStream()) {
-                        stdin.write(stdinJson.getBytes(StandardCharsets.UTF_8));
-                        stdin.flush();
+                    // 使用权限通道时参数作为第一行写入，stdin 保持打开用于回写权限响应
+                    java.io.OutputStream stdin = process.getOutputStream();
+                    try {
+                        if (permissionService != null) {
+                            stdin.write((stdinJson + "\n").getBytes(StandardCharsets.UTF_8));
+                            stdin.flush();
+                            permissionChannel = new PermissionChannel(permissionService, stdin);
+                        } else {
+                            stdin.write(stdinJson.getBytes(StandardCharsets.UTF_8));
+                            stdin.flush();
+                            stdin.close();
+                        }
                         // perfTimestamps[4] = System.currentTimeMillis();
                         // LOG.info("[PERF][" + perfTimestamps[4] + "] stdin 写入完成，数据长度: " + stdinJson.length() + " 字节，写入耗时: " + (perfTimestamps[4] - perfTimestamps[3]) + "ms");
                     } catch (Exception e) {
@@ -729,6 +763,17 @@ public class ClaudeSDKBridge {
                                 // if (line.contains("[PERM_DEBUG]") || line.contains("[DEBUG]")) {
                                 //     System.out.println("[Node.js] " + line);
                                 // }
+                                if (permissionChannel != null && permissionChannel.handleLine(line)) {
+                                    continue;
+                                }
+                                if (line.startsWith(PermissionLatencyTracker.TRACE_TAG)) {
+                                    // 文件模式下权限服务可能在进程启动后才启动，按需获取
+                                    PermissionService tracingService = PermissionService.getStartedInstance();
+                                    if (tracingService != null) {
+                                        tracingService.getLatencyTracker().handleTraceLine(line);
+                                    }
+                                    continue;
+                                }
                                 if (line.startsWith("[MESSAGE]")) {
                                     String jsonStr = line.substring("[MESSAGE]".length()).trim();
                                     try {
@@ -819,6 +864,10 @@ public class ClaudeSDKBridge {
                                 } else if (line.startsWith("[MESSAGE_START]")) {
                                     callback.onMessage("message_start", "");
                                 } else if (line.startsWith("[MESSAGE_END]")) {
+                                    // 本轮对话结束后不会再有权限请求，关闭 stdin 让 Node 进程正常退出
+                                    if (permissionChannel != null) {
+                                        permissionChannel.close();
+                                    }
                                     // perfTimestamps[7] = now;
                                     // LOG.info("[PERF][" + now + "] >>> 收到 MESSAGE_END <<<，距开始: " + (now - sendStartTime) + "ms");
                                     // 立即通知前端消息结束，不等待进程退出
@@ -951,9 +1000,15 @@ public class ClaudeSDKBridge {
 
                         return result;
                     } finally {
+                        if (permissionChannel != null) {
+                            permissionChannel.close();
+                        }
                         processManager.unregisterProcess(channelId, process);
                     }
                 } finally {
+                    if (fileModeService != null) {
+                        fileModeService.onTurnEnded();
+                    }
                     processManager.waitForProcessTermination(process);
                     processManager.cleanupClaudeTempFiles(processTempDir, existingTempMarkers);
                 }
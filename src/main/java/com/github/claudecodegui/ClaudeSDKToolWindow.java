@@ -5,12 +5,14 @@ import com.github.claudecodegui.cache.SlashCommandCache;
 import com.github.claudecodegui.handler.*;
 import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.permission.PermissionService;
+import com.github.claudecodegui.session.MessageSnapshot;
 import com.github.claudecodegui.ui.ErrorPanelBuilder;
 import com.github.claudecodegui.util.FontConfigService;
 import com.github.claudecodegui.util.HtmlLoader;
 import com.github.claudecodegui.util.JBCefBrowserFactory;
 import com.github.claudecodegui.util.JsUtils;
 import com.github.claudecodegui.util.LanguageConfigService;
+import com.github.claudecodegui.util.WebviewConsoleForwarder;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -318,9 +320,20 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         private void setupPermissionService() {
             PermissionService permissionService = PermissionService.getInstance(project);
             permissionService.start();
+            // 本窗口发起的权限请求带上项目令牌，直接路由回本窗口
+            claudeSDKBridge.setPermissionProjectToken(permissionService.getProjectToken(project));
             // 使用项目注册机制，支持多窗口场景
-            permissionService.registerDialogShower(project, (toolName, inputs) ->
-                permissionHandler.showFrontendPermissionDialog(toolName, inputs));
+            permissionService.registerDialogShower(project, new PermissionService.PermissionDialogShower() {
+                @Override
+                public CompletableFuture<Integer> showPermissionDialog(String toolName, JsonObject inputs, long deadline) {
+                    return permissionHandler.showFrontendPermissionDialog(toolName, inputs, deadline);
+                }
+
+                @Override
+                public CompletableFuture<List<Integer>> showPermissionBatchDialog(List<JsonObject> requests, long deadline) {
+                    return permissionHandler.showFrontendPermissionBatchDialog(requests, deadline);
+                }
+            });
             // 注册 AskUserQuestion 对话框显示器
             permissionService.registerAskUserQuestionDialogShower(project, (requestId, questionsData) ->
                 permissionHandler.showAskUserQuestionDialog(requestId, questionsData));
@@ -355,6 +368,7 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             messageDispatcher.registerHandler(new DiffHandler(handlerContext));
             messageDispatcher.registerHandler(new PromptEnhancerHandler(handlerContext));
             messageDispatcher.registerHandler(new AgentHandler(handlerContext));
+            messageDispatcher.registerHandler(new ToolResultHandler(handlerContext));
 
             // 权限处理器（需要特殊回调）
             this.permissionHandler = new PermissionHandler(handlerContext);
@@ -571,23 +585,8 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                             "};";
                         cefBrowser.executeJavaScript(clipboardPathInjection, cefBrowser.getURL(), 0);
 
-                        // 将控制台日志转发到 IDEA 控制台
-                        String consoleForward =
-                            "const originalLog = console.log;" +
-                            "const originalError = console.error;" +
-                            "const originalWarn = console.warn;" +
-                            "console.log = function(...args) {" +
-                            "  originalLog.apply(console, args);" +
-                            "  window.sendToJava(JSON.stringify({type: 'console.log', args: args}));" +
-                            "};" +
-                            "console.error = function(...args) {" +
-                            "  originalError.apply(console, args);" +
-                            "  window.sendToJava(JSON.stringify({type: 'console.error', args: args}));" +
-                            "};" +
-                            "console.warn = function(...args) {" +
-                            "  originalWarn.apply(console, args);" +
-                            "  window.sendToJava(JSON.stringify({type: 'console.warn', args: args}));" +
-                            "};";
+                        // 将控制台日志按级别过滤后批量转发到 IDEA 控制台
+                        String consoleForward = WebviewConsoleForwarder.buildInjectionScript();
                         cefBrowser.executeJavaScript(consoleForward, cefBrowser.getURL(), 0);
 
                         // 传递 IDEA 编辑器字体配置到前端
@@ -749,29 +748,9 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         private void handleJavaScriptMessage(String message) {
             // long receiveTime = System.currentTimeMillis();
 
-            // 处理控制台日志转发
-            if (message.startsWith("{\"type\":\"console.")) {
-                try {
-                    JsonObject json = new Gson().fromJson(message, JsonObject.class);
-                    String logType = json.get("type").getAsString();
-                    JsonArray args = json.getAsJsonArray("args");
-
-                    StringBuilder logMessage = new StringBuilder("[Webview] ");
-                    for (int i = 0; i < args.size(); i++) {
-                        if (i > 0) logMessage.append(" ");
-                        logMessage.append(args.get(i).toString());
-                    }
-
-                    if ("console.error".equals(logType)) {
-                        LOG.warn(logMessage.toString());
-                    } else if ("console.warn".equals(logType)) {
-                        LOG.info(logMessage.toString());
-                    } else {
-                        LOG.debug(logMessage.toString());
-                    }
-                } catch (Exception e) {
-                    LOG.warn("解析控制台日志失败: " + e.getMessage());
-                }
+            // 处理控制台日志转发（批量）
+            if (message.startsWith(WebviewConsoleForwarder.BATCH_MESSAGE_PREFIX)) {
+                WebviewConsoleForwarder.handleBatch(message);
                 return;
             }
 
@@ -909,19 +888,22 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         }
 
         private void setupSessionCallbacks() {
+            final ClaudeSession boundSession = session;
             session.setCallback(new ClaudeSession.SessionCallback() {
                 @Override
                 public void onMessageUpdate(List<ClaudeSession.Message> messages) {
-                    LOG.info("[ClaudeSDKToolWindow] onMessageUpdate called, message count: " + messages.size());
-                    if (!messages.isEmpty()) {
-                        ClaudeSession.Message first = messages.get(0);
-                        LOG.info("[ClaudeSDKToolWindow] First message: type=" + first.type +
-                                ", content=" + (first.content != null ? first.content.substring(0, Math.min(50, first.content.length())) : "null") +
-                                ", hasRaw=" + (first.raw != null));
-                    }
+                    LOG.debug("[ClaudeSDKToolWindow] onMessageUpdate called, message count: " + messages.size());
+                    // messages 是不可变快照，可直接交给 EDT 读取，无需拷贝
+                    final long snapshotVersion = messages instanceof MessageSnapshot
+                        ? ((MessageSnapshot) messages).getVersion()
+                        : -1;
                     ApplicationManager.getApplication().invokeLater(() -> {
+                        // 已有更新的快照在排队时跳过这一次过期渲染
+                        if (snapshotVersion >= 0 && snapshotVersion < boundSession.getMessagesVersion()) {
+                            return;
+                        }
                         String messagesJson = convertMessagesToJson(messages);
-                        LOG.info("[ClaudeSDKToolWindow] Calling updateMessages, json length: " + messagesJson.length());
+                        LOG.debug("[ClaudeSDKToolWindow] Calling updateMessages, json length: " + messagesJson.length());
                         callJavaScript("updateMessages", JsUtils.escapeJs(messagesJson));
                     });
                     pushUsageUpdateFromMessages(messages);
@@ -966,6 +948,12 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                     });
                 }
 
+                @Override
+                public void onOlderMessagesAvailable(boolean hasOlder) {
+                    ApplicationManager.getApplication().invokeLater(() ->
+                        callJavaScript("setHasOlderMessages", String.valueOf(hasOlder)));
+                }
+
                 @Override
                 public void onSlashCommandsReceived(List<String> slashCommands) {
                     // 不再发送旧格式（字符串数组）的命令到前端
@@ -1158,7 +1146,6 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                         String js = "(function() {" +
                                 "  if (typeof window.onUsageUpdate === 'function') {" +
                                 "    window.onUsageUpdate('" + JsUtils.escapeJs(usageJson) + "');" +
-                                "    console.log('[Backend->Frontend] Usage update sent successfully');" +
                                 "  } else {" +
                                 "    console.warn('[Backend->Frontend] window.onUsageUpdate not found');" +
                                 "  }" +
@@ -1296,7 +1283,6 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                         "  try {" +
                         "    if (typeof " + callee + " === 'function') {" +
                         "      " + callee + "(" + argsJs + ");" +
-                        "      console.log('[Backend->Frontend] Successfully called " + functionName + "');" +
                         "    } else {" +
                         "      console.warn('[Backend->Frontend] Function " + functionName + " not found: ' + (typeof " + callee + "));" +
                         "    }" +
@@ -1396,6 +1382,11 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 slashCommandCache = null;
             }
 
+            // 停止监听历史会话目录
+            if (historyHandler != null) {
+                historyHandler.dispose();
+            }
+
             // 注销权限服务的 dialogShower 和 askUserQuestionDialogShower，防止内存泄漏
             try {
                 PermissionService permissionService = PermissionService.getInstance(project);
@@ -6,6 +6,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.github.claudecodegui.permission.PermissionManager;
+import com.github.claudecodegui.history.SessionMessagePager;
 import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.session.ClaudeMessageHandler;
 import com.github.claudecodegui.session.CodexMessageHandler;
@@ -14,6 +15,9 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.concurrency.AppExecutorUtil;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +47,12 @@ public class ClaudeSession {
     // 回调处理器
     private final com.github.claudecodegui.session.CallbackHandler callbackHandler;
 
+    // 大型工具结果存储（按内容哈希保存完整正文，消息中只保留预览）
+    private final com.github.claudecodegui.session.ToolResultStore toolResultStore;
+
+    // 会话事件循环：所有消息列表的修改都串行在这里执行
+    private final com.github.claudecodegui.session.SessionEventLoop eventLoop;
+
     // SDK 桥接
     private final ClaudeSDKBridge claudeSDKBridge;
     private final CodexSDKBridge codexSDKBridge;
@@ -50,6 +60,13 @@ public class ClaudeSession {
     // 权限管理
     private final PermissionManager permissionManager = new PermissionManager();
 
+    // 打开历史会话时首页读取的行数,以及向上滚动时每页读取的行数
+    private static final int INITIAL_HISTORY_LINES = 200;
+    private static final int OLDER_HISTORY_LINES = 200;
+
+    // 历史会话分页读取器(仅在从会话文件加载时存在)
+    private volatile SessionMessagePager historyPager;
+
     /**
      * 消息类
      */
@@ -85,6 +102,7 @@ public class ClaudeSession {
         void onPermissionRequested(PermissionRequest request);
         void onThinkingStatusChanged(boolean isThinking);
         void onSlashCommandsReceived(List<String> slashCommands);
+        void onOlderMessagesAvailable(boolean hasOlder);
     }
 
     public ClaudeSession(Project project, ClaudeSDKBridge claudeSDKBridge, CodexSDKBridge codexSDKBridge) {
@@ -97,6 +115,8 @@ public class ClaudeSession {
         this.messageMerger = new com.github.claudecodegui.session.MessageMerger();
         this.contextCollector = new com.github.claudecodegui.session.EditorContextCollector(project);
         this.callbackHandler = new com.github.claudecodegui.session.CallbackHandler();
+        this.toolResultStore = new com.github.claudecodegui.session.ToolResultStore();
+        this.eventLoop = new com.github.claudecodegui.session.SessionEventLoop("ClaudeSession-EventLoop");
 
         // 设置权限管理器回调
         permissionManager.setOnPermissionRequestedCallback(request -> {
@@ -129,10 +149,21 @@ public class ClaudeSession {
         return state.getError();
     }
 
+    /**
+     * 获取当前消息快照（不可变，可在任意线程无锁读取）
+     */
     public List<Message> getMessages() {
         return state.getMessages();
     }
 
+    /**
+     * 获取当前消息快照的版本号
+     * 界面可据此跳过已被更新快照取代的过期刷新
+     */
+    public long getMessagesVersion() {
+        return state.getMessages().getVersion();
+    }
+
     public String getSummary() {
         return state.getSummary();
     }
@@ -177,8 +208,8 @@ public class ClaudeSession {
             return CompletableFuture.completedFuture(state.getChannelId());
         }
 
-        state.setError(null);
         state.setChannelId(UUID.randomUUID().toString());
+        updateStateOnLoop(() -> state.setError(null));
 
         return CompletableFuture.supplyAsync(() -> {
             try {
@@ -215,9 +246,8 @@ public class ClaudeSession {
 
                 return currentChannelId;
             } catch (Exception e) {
-                state.setError(e.getMessage());
                 state.setChannelId(null);
-                updateState();
+                updateStateOnLoop(() -> state.setError(e.getMessage()));
                 throw new RuntimeException("Failed to launch: " + e.getMessage(), e);
             }
         }).orTimeout(com.github.claudecodegui.config.TimeoutConfig.QUICK_OPERATION_TIMEOUT,
@@ -227,9 +257,8 @@ public class ClaudeSession {
                   String timeoutMsg = "启动 Channel 超时（" +
                       com.github.claudecodegui.config.TimeoutConfig.QUICK_OPERATION_TIMEOUT + "秒），请重试";
                   LOG.warn(timeoutMsg);
-                  state.setError(timeoutMsg);
                   state.setChannelId(null);
-                  updateState();
+                  updateStateOnLoop(() -> state.setError(timeoutMsg));
                   throw new RuntimeException(timeoutMsg);
               }
               throw new RuntimeException(ex.getCause());
@@ -268,10 +297,11 @@ public class ClaudeSession {
                 sendMessageToProvider(chId, normalizedInput, attachments, openedFilesJson)
             )
         ).exceptionally(ex -> {
-            state.setError(ex.getMessage());
-            state.setBusy(false);
-            state.setLoading(false);
-            updateState();
+            updateStateOnLoop(() -> {
+                state.setError(ex.getMessage());
+                state.setBusy(false);
+                state.setLoading(false);
+            });
             return null;
         });
     }
@@ -412,9 +442,11 @@ public class ClaudeSession {
      * 解释：记录消息、更新摘要、设置状态
      */
     private void updateSessionStateForSend(Message userMessage, String normalizedInput) {
-        // 添加消息到历史
-        state.addMessage(userMessage);
-        notifyMessageUpdate();
+        // 添加消息到历史（在会话事件循环上执行，保证排在本轮回复之前）
+        eventLoop.execute(() -> {
+            state.addMessage(userMessage);
+            notifyMessageUpdate();
+        });
 
         // 更新摘要（第一条消息）
         // Update summary (first message)
@@ -431,10 +463,11 @@ public class ClaudeSession {
         // Update state
         // 解释：告诉系统现在正在忙，正在加载
         state.updateLastModifiedTime();
-        state.setError(null);
-        state.setBusy(true);
-        state.setLoading(true);
-        updateState();
+        updateStateOnLoop(() -> {
+            state.setError(null);
+            state.setBusy(true);
+            state.setLoading(true);
+        });
     }
 
     /**
@@ -475,7 +508,7 @@ public class ClaudeSession {
         String input,
         List<Attachment> attachments
     ) {
-        CodexMessageHandler handler = new CodexMessageHandler(state, callbackHandler);
+        CodexMessageHandler handler = new CodexMessageHandler(state, eventLoop, callbackHandler);
 
         return codexSDKBridge.sendMessage(
             channelId,
@@ -503,9 +536,11 @@ public class ClaudeSession {
     ) {
         ClaudeMessageHandler handler = new ClaudeMessageHandler(
             state,
+            eventLoop,
             callbackHandler,
             messageParser,
             messageMerger,
+            toolResultStore,
             gson
         );
 
@@ -572,12 +607,12 @@ public class ClaudeSession {
                 } else {
                     claudeSDKBridge.interruptChannel(currentChannelId);
                 }
-                state.setError(null);  // 清除之前的错误状态
-                state.setBusy(false);
-                updateState();
+                updateStateOnLoop(() -> {
+                    state.setError(null);  // 清除之前的错误状态
+                    state.setBusy(false);
+                });
             } catch (Exception e) {
-                state.setError(e.getMessage());
-                updateState();
+                updateStateOnLoop(() -> state.setError(e.getMessage()));
             }
         });
     }
@@ -588,8 +623,7 @@ public class ClaudeSession {
     public CompletableFuture<Void> restart() {
         return interrupt().thenCompose(v -> {
             state.setChannelId(null);
-            state.setBusy(false);
-            updateState();
+            updateStateOnLoop(() -> state.setBusy(false));
             return launchClaude().thenApply(chId -> null);
         });
     }
@@ -602,8 +636,7 @@ public class ClaudeSession {
             return CompletableFuture.completedFuture(null);
         }
 
-        state.setLoading(true);
-        updateState();
+        updateStateOnLoop(() -> state.setLoading(true));
 
         return CompletableFuture.runAsync(() -> {
             try {
@@ -613,41 +646,99 @@ public class ClaudeSession {
 
                 LOG.info("Loading session from server: sessionId=" + currentSessionId + ", cwd=" + currentCwd);
                 List<JsonObject> serverMessages;
+                boolean hasOlder = false;
+                SessionMessagePager pager = null;
+                Path sessionFile = currentCwd != null
+                    ? ClaudeHistoryReader.getProjectSessionDir(currentCwd).resolve(currentSessionId + ".jsonl")
+                    : null;
                 if ("codex".equals(currentProvider)) {
                     serverMessages = codexSDKBridge.getSessionMessages(currentSessionId, currentCwd);
+                } else if (sessionFile != null && Files.isRegularFile(sessionFile)) {
+                    // 直接从会话文件末尾读取最近的消息,更早的消息在向上滚动时分页加载
+                    pager = new SessionMessagePager(sessionFile);
+                    SessionMessagePager.Page page = pager.readLatest(INITIAL_HISTORY_LINES);
+                    serverMessages = page.lines;
+                    hasOlder = page.hasOlder;
                 } else {
                     serverMessages = claudeSDKBridge.getSessionMessages(currentSessionId, currentCwd);
                 }
                 LOG.debug("Received " + serverMessages.size() + " messages from server");
 
-                state.clearMessages();
-                for (JsonObject msg : serverMessages) {
-                    Message message = messageParser.parseServerMessage(msg);
-                    if (message != null) {
-                        state.addMessage(message);
-                        // System.out.println("[ClaudeSession] Parsed message: type=" + message.type + ", content length=" + message.content.length());
-                    } else {
-                        // System.out.println("[ClaudeSession] Failed to parse message: " + msg);
-                    }
-                }
-
-                LOG.debug("Total messages in session: " + state.getMessages().size());
-                notifyMessageUpdate();
+                List<Message> loadedMessages = parseHistoryMessages(serverMessages);
+                final SessionMessagePager loadedPager = pager;
+
+                // 在会话事件循环上一次性替换，界面不会看到加载到一半的列表
+                eventLoop.submit(() -> {
+                    historyPager = loadedPager;
+                    state.replaceMessages(loadedMessages);
+                    LOG.debug("Total messages in session: " + loadedMessages.size());
+                    notifyMessageUpdate();
+                }).join();
+                callbackHandler.notifyOlderMessagesAvailable(hasOlder);
             } catch (Exception e) {
                 LOG.error("Error loading session: " + e.getMessage(), e);
-                state.setError(e.getMessage());
+                updateStateOnLoop(() -> state.setError(e.getMessage()));
             } finally {
-                state.setLoading(false);
-                updateState();
+                updateStateOnLoop(() -> state.setLoading(false));
             }
         });
     }
 
     /**
-     * 通知消息更新
+     * 加载当前历史会话中更早的一页消息,插入到已有消息之前
+     *
+     * @return 之后是否还有更早的消息
+     */
+    public CompletableFuture<Boolean> loadOlderMessages() {
+        SessionMessagePager pager = historyPager;
+        if (pager == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                SessionMessagePager.Page page = pager.readOlder(OLDER_HISTORY_LINES);
+                List<Message> olderMessages = parseHistoryMessages(page.lines);
+                eventLoop.submit(() -> {
+                    // 期间已切换到其他会话时丢弃
+                    if (historyPager != pager) {
+                        return;
+                    }
+                    state.prependMessages(olderMessages);
+                    if (!page.hasOlder) {
+                        historyPager = null;
+                    }
+                    notifyMessageUpdate();
+                }).join();
+                callbackHandler.notifyOlderMessagesAvailable(page.hasOlder);
+                return page.hasOlder;
+            } catch (IOException e) {
+                LOG.error("Error loading older messages: " + e.getMessage(), e);
+                callbackHandler.notifyOlderMessagesAvailable(false);
+                return false;
+            }
+        }, AppExecutorUtil.getAppExecutorService());
+    }
+
+    private List<Message> parseHistoryMessages(List<JsonObject> rawMessages) {
+        List<Message> messages = new ArrayList<>();
+        for (JsonObject msg : rawMessages) {
+            Message message = messageParser.parseServerMessage(msg);
+            if (message != null) {
+                if (message.type == Message.Type.USER) {
+                    toolResultStore.externalizeMessage(message.raw);
+                }
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 通知消息更新（仅限会话事件循环线程）
      */
     private void notifyMessageUpdate() {
-        callbackHandler.notifyMessageUpdate(getMessages());
+        callbackHandler.notifyMessageUpdate(state.publishMessages());
     }
 
     /**
@@ -657,6 +748,17 @@ public class ClaudeSession {
         callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
     }
 
+    /**
+     * 在会话事件循环上修改 busy/loading/error 并通知界面
+     * 与消息回调中的状态修改排在同一队列里，不会被其他线程的写入打乱顺序
+     */
+    private void updateStateOnLoop(Runnable change) {
+        eventLoop.execute(() -> {
+            change.run();
+            updateState();
+        });
+    }
+
     /**
      * 附件类
      */
@@ -672,6 +774,13 @@ public class ClaudeSession {
         }
     }
 
+    /**
+     * 获取大型工具结果存储
+     */
+    public com.github.claudecodegui.session.ToolResultStore getToolResultStore() {
+        return toolResultStore;
+    }
+
     /**
      * 获取权限管理器
      */
@@ -18,6 +18,8 @@ public class EnvironmentConfigurator {
 
     private static final Logger LOG = Logger.getInstance(EnvironmentConfigurator.class);
     private static final String CLAUDE_PERMISSION_ENV = "CLAUDE_PERMISSION_DIR";
+    private static final String CLAUDE_PERMISSION_CHANNEL_ID_ENV = "CLAUDE_PERMISSION_CHANNEL_ID";
+    private static final String CLAUDE_PERMISSION_PROJECT_ENV = "CLAUDE_PERMISSION_PROJECT";
 
     private volatile String cachedPermissionDir = null;
 
@@ -121,6 +123,26 @@ public class EnvironmentConfigurator {
         }
     }
 
+    /**
+     * 配置权限环境变量，并标记请求来源
+     * Node 侧把通道 ID 和项目令牌带回到每个权限请求中，Java 侧据此直接定位发起请求的窗口
+     *
+     * @param channelId    会话通道 ID
+     * @param projectToken PermissionService 为项目分配的令牌，为 null 时不设置
+     */
+    public void configurePermissionEnv(Map<String, String> env, String channelId, String projectToken) {
+        configurePermissionEnv(env);
+        if (env == null) {
+            return;
+        }
+        if (channelId != null && !channelId.isEmpty()) {
+            env.put(CLAUDE_PERMISSION_CHANNEL_ID_ENV, channelId);
+        }
+        if (projectToken != null && !projectToken.isEmpty()) {
+            env.put(CLAUDE_PERMISSION_PROJECT_ENV, projectToken);
+        }
+    }
+
     /**
      * 获取权限目录
      */
@@ -0,0 +1,318 @@
+package com.github.claudecodegui.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.messages.MessageBusConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件选择器的目录列表缓存
+ *
+ * 功能：
+ * 1. 按目录路径缓存已序列化的子文件数组(JSON 字符串),重复浏览同一目录时直接返回
+ * 2. 通过 VFS 事件失效:目录下有文件新建/删除/重命名/移动时只失效该目录,目录本身被删除时连同子目录一起失效
+ * 3. 子文件从 VFS 读取,按 IDE 的忽略状态过滤(.gitignore、项目排除目录、IDE 忽略的文件类型)
+ *
+ * .gitignore 变化或项目结构变化时清空整个缓存。
+ * 工作目录不在项目内容根目录下时加入文件监听(否则不会产生 VFS 事件),缓存释放时移除。
+ */
+public class DirectoryListingCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(DirectoryListingCache.class);
+
+    /** 最多缓存的目录数,超出时淘汰最久未访问的目录 */
+    private static final int MAX_DIRECTORIES = 256;
+
+    private static final Map<Project, DirectoryListingCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private static final Comparator<VirtualFile> DIRECTORIES_FIRST = Comparator
+        .comparing((VirtualFile file) -> !file.isDirectory())
+        .thenComparing(VirtualFile::getName, String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * 缓存的目录列表,相对路径依赖于列表时的工作目录,工作目录不同时重新生成
+     */
+    private static final class Listing {
+        final String basePath;
+        final String json;
+
+        Listing(String basePath, String json) {
+            this.basePath = basePath;
+            this.json = json;
+        }
+    }
+
+    private final Project project;
+    private final Gson gson = new Gson();
+
+    /** 目录路径 → 列表,按访问顺序排列 */
+    private final LinkedHashMap<String, Listing> listings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+            return size() > MAX_DIRECTORIES;
+        }
+    };
+
+    /** 每次失效递增,用于丢弃失效前开始生成的列表 */
+    private long generation;
+
+    /** 已检查过的工作目录 → 额外添加的文件监听(已在监听范围内时为 null) */
+    private final Map<String, LocalFileSystem.WatchRequest> watchedBases = new HashMap<>();
+    private boolean disposed;
+
+    private DirectoryListingCache(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * 获取项目的目录列表缓存
+     */
+    public static DirectoryListingCache forProject(Project project) {
+        return INSTANCES.computeIfAbsent(project, p -> {
+            DirectoryListingCache cache = new DirectoryListingCache(p);
+            Disposer.register(p, cache);
+            cache.init();
+            return cache;
+        });
+    }
+
+    /**
+     * 列出目录的直接子文件/文件夹,目录在前,按名称排序
+     *
+     * @param basePath    工作目录,返回的 path 相对于该目录
+     * @param currentPath 相对于工作目录的目标目录
+     * @return 序列化后的文件对象数组;目录不在 VFS 中时返回 null,调用方应回退到直接读取磁盘
+     */
+    public String list(String basePath, String currentPath, int maxFiles) {
+        String base = normalize(basePath);
+        String directory = currentPath == null || currentPath.isEmpty()
+            ? base
+            : normalize(base + "/" + currentPath);
+
+        long startGeneration;
+        synchronized (this) {
+            Listing cached = listings.get(directory);
+            if (cached != null && cached.basePath.equals(base)) {
+                return cached.json;
+            }
+            startGeneration = generation;
+        }
+
+        ensureWatched(base);
+        String json = ReadAction.compute(() -> buildListing(base, directory, maxFiles));
+        if (json == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (generation == startGeneration) {
+                listings.put(directory, new Listing(base, json));
+            }
+        }
+        return json;
+    }
+
+    private void ensureWatched(String base) {
+        synchronized (this) {
+            if (disposed || watchedBases.containsKey(base)) {
+                return;
+            }
+        }
+        LocalFileSystem.WatchRequest request = FilePathIndex.watchOutsideContent(project, base);
+        synchronized (this) {
+            if (!disposed && !watchedBases.containsKey(base)) {
+                watchedBases.put(base, request);
+                return;
+            }
+        }
+        // 并发请求已添加过或缓存已释放
+        FilePathIndex.unwatch(request);
+    }
+
+    private String buildListing(String basePath, String directory, int maxFiles) {
+        VirtualFile dir = LocalFileSystem.getInstance().findFileByPath(directory);
+        if (dir == null || !dir.isDirectory() || project.isDisposed()) {
+            return null;
+        }
+
+        VirtualFile[] children = dir.getChildren().clone();
+        Arrays.sort(children, DIRECTORIES_FIRST);
+
+        JsonArray files = new JsonArray();
+        for (VirtualFile child : children) {
+            if (files.size() >= maxFiles) {
+                break;
+            }
+            if (isIgnored(project, child)) {
+                continue;
+            }
+            files.add(toJson(child, basePath));
+        }
+        return gson.toJson(files);
+    }
+
+    /**
+     * 是否被 IDE 忽略:.gitignore 等 VCS 忽略规则、项目排除目录、"忽略的文件和文件夹"设置
+     */
+    static boolean isIgnored(Project project, VirtualFile file) {
+        if (FileTypeManager.getInstance().isFileIgnored(file)) {
+            return true;
+        }
+        if (ProjectFileIndex.getInstance(project).isExcluded(file)) {
+            return true;
+        }
+        return ChangeListManager.getInstance(project).isIgnoredFile(file);
+    }
+
+    /**
+     * 与 FileHandler 返回给前端的文件对象格式一致
+     */
+    private static JsonObject toJson(VirtualFile file, String basePath) {
+        String name = file.getName();
+        String path = file.getPath();
+        String relativePath = path.startsWith(basePath + "/") ? path.substring(basePath.length() + 1) : name;
+
+        JsonObject fileObj = new JsonObject();
+        fileObj.addProperty("name", name);
+        fileObj.addProperty("path", relativePath);
+        fileObj.addProperty("absolutePath", path);
+        fileObj.addProperty("type", file.isDirectory() ? "directory" : "file");
+
+        if (!file.isDirectory()) {
+            int dotIndex = name.lastIndexOf('.');
+            if (dotIndex > 0) {
+                fileObj.addProperty("extension", name.substring(dotIndex + 1));
+            }
+        }
+        return fileObj;
+    }
+
+    private void init() {
+        MessageBusConnection appConnection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        appConnection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    handleEvent(event);
+                }
+            }
+        });
+
+        // 排除目录等项目结构变化会影响过滤结果
+        MessageBusConnection projectConnection = project.getMessageBus().connect(this);
+        projectConnection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(ModuleRootEvent event) {
+                invalidateAll();
+            }
+        });
+    }
+
+    private void handleEvent(VFileEvent event) {
+        if (event.getPath().endsWith("/.gitignore")) {
+            invalidateAll();
+            return;
+        }
+        if (event instanceof VFileDeleteEvent) {
+            invalidateTree(event.getPath());
+            invalidate(parentOf(event.getPath()));
+        } else if (event instanceof VFileMoveEvent) {
+            VFileMoveEvent move = (VFileMoveEvent) event;
+            invalidateTree(move.getOldPath());
+            invalidate(parentOf(move.getOldPath()));
+            invalidate(parentOf(move.getNewPath()));
+        } else if (event instanceof VFilePropertyChangeEvent) {
+            VFilePropertyChangeEvent change = (VFilePropertyChangeEvent) event;
+            if (change.isRename()) {
+                invalidateTree(change.getOldPath());
+                invalidate(parentOf(change.getOldPath()));
+            }
+        } else if (event instanceof VFileCreateEvent) {
+            invalidate(parentOf(event.getPath()));
+        } else if (event instanceof VFileCopyEvent) {
+            invalidate(((VFileCopyEvent) event).getNewParent().getPath());
+        }
+    }
+
+    private synchronized void invalidate(String directory) {
+        if (directory != null) {
+            // 即使目录未缓存也递增,正在生成的该目录列表可能已过期
+            listings.remove(directory);
+            generation++;
+        }
+    }
+
+    /**
+     * 失效目录本身及其下所有已缓存的目录
+     */
+    private synchronized void invalidateTree(String directory) {
+        String prefix = directory + "/";
+        List<String> removed = new ArrayList<>();
+        for (String key : listings.keySet()) {
+            if (key.equals(directory) || key.startsWith(prefix)) {
+                removed.add(key);
+            }
+        }
+        listings.keySet().removeAll(removed);
+        generation++;
+    }
+
+    private synchronized void invalidateAll() {
+        listings.clear();
+        generation++;
+        LOG.debug("[DirectoryListingCache] Cleared all listings");
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash > 0 ? path.substring(0, slash) : null;
+    }
+
+    private static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    @Override
+    public void dispose() {
+        INSTANCES.remove(project);
+        synchronized (this) {
+            disposed = true;
+            listings.clear();
+            watchedBases.values().forEach(FilePathIndex::unwatch);
+            watchedBases.clear();
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.github.claudecodegui.cache;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 文件路径索引(用于 @ 文件补全)
+ *
+ * 功能：
+ * 1. 首次使用时在后台从 VFS 遍历工作目录,建立相对路径表,跳过 .gitignore 忽略的文件、项目排除目录和 IDE 忽略的文件
+ * 2. 通过 VFS 事件增量更新:删除/重命名/移动时移除旧路径,新建/复制/移动后的路径重新遍历该子树
+ * 3. 查询使用 {@link PathTable} 快照,只在内存中匹配,不访问磁盘;索引变化后下次查询时重建快照
+ *
+ * 工作目录不在项目内容根目录下时,IDE 的文件监听不会覆盖它,VFS 事件也就不会产生,
+ * 此时额外把工作目录加入文件监听,索引释放时移除。
+ *
+ * 索引按工作目录共享,随项目关闭释放。
+ */
+public class FilePathIndex implements Disposable {
+    private static final Logger LOG = Logger.getInstance(FilePathIndex.class);
+
+    /**
+     * 单个工作目录最多索引的条目数,防止工作目录是用户主目录等超大目录时占用过多内存
+     */
+    private static final int MAX_ENTRIES = 300_000;
+
+    private static final Set<String> SKIPPED_DIRECTORIES = Set.of(
+        ".git", ".svn", ".hg", "node_modules", "target", "build", "dist", "out", "__pycache__"
+    );
+
+    /**
+     * 索引构建和子树重扫共用一个线程,保证对同一子树的更新按事件顺序执行
+     */
+    private static final ExecutorService INDEX_EXECUTOR =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("FilePathIndex", 1);
+
+    private static final Map<String, FilePathIndex> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Project project;
+    private final String rootPath;
+
+    /** 相对路径(/ 分隔)→ 是否为目录,有序以便按前缀删除整个子树 */
+    private final TreeMap<String, Boolean> entries = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 查询使用的路径表快照,索引变化后在下一次查询时重建 */
+    private PathTable table;
+    private volatile boolean tableStale = true;
+
+    private volatile boolean ready;
+    private volatile boolean disposed;
+    private MessageBusConnection messageBusConnection;
+    private LocalFileSystem.WatchRequest watchRequest;
+
+    private FilePathIndex(Project project, String rootPath) {
+        this.project = project;
+        this.rootPath = rootPath;
+    }
+
+    /**
+     * 获取工作目录的索引,不存在时创建并在后台开始构建
+     */
+    public static FilePathIndex forRoot(Project project, String rootPath) {
+        String normalized = normalize(rootPath);
+        return INSTANCES.computeIfAbsent(project.getLocationHash() + "|" + normalized, key -> {
+            FilePathIndex index = new FilePathIndex(project, normalized);
+            Disposer.register(project, index);
+            index.init();
+            return index;
+        });
+    }
+
+    /**
+     * 索引是否已构建完成
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 获取当前索引的路径表快照,索引未变化时返回同一个对象
+     *
+     * @return 索引尚未构建完成时返回 null,调用方应回退到直接遍历
+     */
+    public synchronized PathTable snapshot() {
+        if (!ready) {
+            return null;
+        }
+        if (table == null || tableStale) {
+            lock.readLock().lock();
+            try {
+                tableStale = false;
+                table = PathTable.build(rootPath, entries);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return table;
+    }
+
+    private void init() {
+        messageBusConnection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        messageBusConnection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    handleEvent(event);
+                }
+            }
+        });
+
+        INDEX_EXECUTOR.execute(() -> {
+            long startTime = System.currentTimeMillis();
+            watchRoot();
+            rescan("");
+            ready = true;
+            LOG.info("[FilePathIndex] Indexed " + size() + " paths under " + rootPath
+                + " in " + (System.currentTimeMillis() - startTime) + "ms");
+        });
+    }
+
+    private synchronized void watchRoot() {
+        if (disposed || project.isDisposed()) {
+            return;
+        }
+        watchRequest = watchOutsideContent(project, rootPath);
+    }
+
+    /**
+     * 目录不在项目内容根目录下时加入文件监听,使其变化能产生 VFS 事件
+     *
+     * @return 已在监听范围内时返回 null;否则返回监听请求,不再使用时需调用 {@link #unwatch}
+     */
+    static LocalFileSystem.WatchRequest watchOutsideContent(Project project, String path) {
+        boolean inContent = ReadAction.compute(() -> {
+            if (project.isDisposed()) {
+                return true;
+            }
+            VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+            return file != null && ProjectFileIndex.getInstance(project).isInContent(file);
+        });
+        if (inContent) {
+            return null;
+        }
+        LOG.debug("[FilePathIndex] Watching directory outside content roots: " + path);
+        return LocalFileSystem.getInstance().addRootToWatch(path, true);
+    }
+
+    static void unwatch(LocalFileSystem.WatchRequest request) {
+        if (request != null) {
+            LocalFileSystem.getInstance().removeWatchedRoot(request);
+        }
+    }
+
+    private void handleEvent(VFileEvent event) {
+        if (event instanceof VFileDeleteEvent) {
+            remove(relativePath(event.getPath()));
+        } else if (event instanceof VFileMoveEvent) {
+            VFileMoveEvent move = (VFileMoveEvent) event;
+            remove(relativePath(move.getOldPath()));
+            scheduleRescan(relativePath(move.getNewPath()));
+        } else if (event instanceof VFilePropertyChangeEvent) {
+            VFilePropertyChangeEvent change = (VFilePropertyChangeEvent) event;
+            if (change.isRename()) {
+                remove(relativePath(change.getOldPath()));
+                scheduleRescan(relativePath(change.getNewPath()));
+            }
+        } else if (event instanceof VFileCreateEvent) {
+            scheduleRescan(relativePath(event.getPath()));
+        } else if (event instanceof VFileCopyEvent) {
+            VFileCopyEvent copy = (VFileCopyEvent) event;
+            scheduleRescan(relativePath(copy.getNewParent().getPath() + "/" + copy.getNewChildName()));
+        }
+    }
+
+    private void scheduleRescan(String relativePath) {
+        if (relativePath != null && !relativePath.isEmpty()) {
+            INDEX_EXECUTOR.execute(() -> rescan(relativePath));
+        }
+    }
+
+    /**
+     * 重新遍历一个子树并替换索引中的对应部分,relativePath 为空时遍历整个工作目录
+     */
+    private void rescan(String relativePath) {
+        if (disposed || project.isDisposed()) {
+            return;
+        }
+        if (!relativePath.isEmpty() && !isParentIndexed(relativePath)) {
+            // 父目录被跳过(例如 node_modules 内的变化),不加入索引
+            return;
+        }
+
+        String absolutePath = relativePath.isEmpty() ? rootPath : rootPath + "/" + relativePath;
+        try {
+            Map<String, Boolean> collected = ReadAction
+                .nonBlocking(() -> collect(absolutePath, relativePath))
+                .executeSynchronously();
+            lock.writeLock().lock();
+            try {
+                removeSubtree(relativePath);
+                entries.putAll(collected);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            LOG.warn("[FilePathIndex] Failed to index " + absolutePath + ": " + e.getMessage());
+        }
+    }
+
+    private Map<String, Boolean> collect(String absolutePath, String relativePath) {
+        Map<String, Boolean> collected = new HashMap<>();
+        VirtualFile start = LocalFileSystem.getInstance().findFileByPath(absolutePath);
+        if (start == null || project.isDisposed()) {
+            return collected;
+        }
+        if (!relativePath.isEmpty() && shouldSkip(start)) {
+            return collected;
+        }
+
+        int budget = MAX_ENTRIES - (relativePath.isEmpty() ? 0 : size());
+        String prefix = relativePath.isEmpty() ? "" : relativePath + "/";
+        int prefixStart = start.getPath().length() + 1;
+
+        if (!relativePath.isEmpty()) {
+            collected.put(relativePath, start.isDirectory());
+        }
+        if (!start.isDirectory()) {
+            return collected;
+        }
+
+        VfsUtilCore.visitChildrenRecursively(start, new VirtualFileVisitor<Void>(VirtualFileVisitor.NO_FOLLOW_SYMLINKS) {
+            @Override
+            public boolean visitFile(VirtualFile file) {
+                ProgressManager.checkCanceled();
+                if (file.equals(start)) {
+                    return true;
+                }
+                if (collected.size() >= budget || shouldSkip(file)) {
+                    return false;
+                }
+                collected.put(prefix + file.getPath().substring(prefixStart), file.isDirectory());
+                return file.isDirectory();
+            }
+        });
+
+        if (collected.size() >= budget) {
+            LOG.warn("[FilePathIndex] Index limit reached under " + absolutePath + ", some paths are not indexed");
+        }
+        return collected;
+    }
+
+    /**
+     * 跳过常见的构建/依赖目录,以及 IDE 忽略的文件(.gitignore、项目排除目录等)
+     */
+    private boolean shouldSkip(VirtualFile file) {
+        if (file.isDirectory() && SKIPPED_DIRECTORIES.contains(file.getName())) {
+            return true;
+        }
+        return DirectoryListingCache.isIgnored(project, file);
+    }
+
+    private boolean isParentIndexed(String relativePath) {
+        int slash = relativePath.lastIndexOf('/');
+        if (slash < 0) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(relativePath.substring(0, slash));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void remove(String relativePath) {
+        if (relativePath == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeSubtree(relativePath);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除路径本身及其下所有路径,调用方需持有写锁
+     */
+    private void removeSubtree(String relativePath) {
+        tableStale = true;
+        if (relativePath.isEmpty()) {
+            entries.clear();
+            return;
+        }
+        entries.remove(relativePath);
+        // '0' 是 '/' 的下一个字符,[path/, path0) 正好覆盖所有子路径
+        entries.subMap(relativePath + "/", relativePath + "0").clear();
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 转换为工作目录内的相对路径,不在工作目录内时返回 null
+     */
+    private String relativePath(String path) {
+        if (path == null) {
+            return null;
+        }
+        if (path.equals(rootPath)) {
+            return "";
+        }
+        if (path.startsWith(rootPath) && path.length() > rootPath.length() && path.charAt(rootPath.length()) == '/') {
+            return path.substring(rootPath.length() + 1);
+        }
+        return null;
+    }
+
+    private static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        INSTANCES.values().remove(this);
+        synchronized (this) {
+            unwatch(watchRequest);
+            watchRequest = null;
+        }
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            table = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.github.claudecodegui.cache;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ 文件补全的模糊匹配器
+ *
+ * 查询字符按顺序出现在路径中即为匹配(子序列匹配,不区分大小写),按以下规则打分:
+ * 1. 落在路径段开头、分隔符(_ - . 空格)之后或驼峰大写字母上的字符加分,连续匹配加分,跳过的字符扣分
+ * 2. 整个查询都能在文件名内匹配时额外加分,路径越短分数越高
+ * 3. 最近在编辑器中打开过的文件按打开顺序加分
+ *
+ * 每个匹配器保存上一次查询的命中列表:新查询是上一次查询的延续(继续输入)时,
+ * 只需在上一次的命中中重新筛选。结果用容量为 K 的小顶堆取分数最高的 K 个。
+ *
+ * 同一个匹配器可能被连续的输入请求并发调用,公开方法均加锁。
+ */
+public class FuzzyFileMatcher {
+
+    private static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int SCORE_MATCH = 16;
+    private static final int PENALTY_GAP_START = 3;
+    private static final int PENALTY_GAP_EXTENSION = 1;
+    private static final int BONUS_SEGMENT = 10;
+    private static final int BONUS_DELIMITER = 8;
+    private static final int BONUS_CAMEL = 7;
+    private static final int BONUS_CONSECUTIVE = 4;
+    private static final int FIRST_CHAR_MULTIPLIER = 2;
+    /** 整个查询都在文件名内匹配时,每个查询字符的加分 */
+    private static final int BONUS_NAME_PER_CHAR = 4;
+    /** 路径每多这么多字符扣 1 分 */
+    private static final int PATH_LENGTH_DIVISOR = 8;
+
+    /** 参与加分的最近打开文件数,第 1 个加 RECENT_FILES 分,依次递减 */
+    private static final int RECENT_FILES = 48;
+
+    private PathTable lastTable;
+    private String lastQuery;
+    private int[] survivors = new int[0];
+    private int survivorCount;
+
+    /**
+     * 匹配并返回分数最高的 maxResults 个文件对象(按分数从高到低)
+     *
+     * @param recentFiles 最近打开的文件绝对路径,最近的在前
+     */
+    public synchronized List<JsonObject> match(PathTable table, String query, int maxResults, List<String> recentFiles) {
+        String lowerQuery = PathTable.toLowerCase(query);
+        char[] q = lowerQuery.toCharArray();
+        if (q.length == 0) {
+            return new ArrayList<>();
+        }
+        int[] recentIndices = new int[0];
+        int[] recentBonuses = new int[0];
+        if (recentFiles != null && !recentFiles.isEmpty()) {
+            int[][] recent = resolveRecent(table, recentFiles);
+            recentIndices = recent[0];
+            recentBonuses = recent[1];
+        }
+
+        // 继续输入时只在上一次的命中中筛选
+        boolean refine = table == lastTable && lastQuery != null && lowerQuery.startsWith(lastQuery);
+        int candidateCount = refine ? survivorCount : table.size();
+        int[] nextSurvivors = new int[candidateCount];
+        int nextCount = 0;
+
+        TopK top = new TopK(maxResults, table);
+        for (int c = 0; c < candidateCount; c++) {
+            int index = refine ? survivors[c] : c;
+            if (!isSubsequence(table, index, q)) {
+                continue;
+            }
+            nextSurvivors[nextCount++] = index;
+
+            int score = score(table, index, q);
+            int recent = Arrays.binarySearch(recentIndices, index);
+            if (recent >= 0) {
+                score += recentBonuses[recent];
+            }
+            top.offer(index, score);
+        }
+
+        lastTable = table;
+        lastQuery = lowerQuery;
+        survivors = nextSurvivors;
+        survivorCount = nextCount;
+
+        int[] ranked = top.drainDescending();
+        List<JsonObject> files = new ArrayList<>(ranked.length);
+        for (int index : ranked) {
+            files.add(table.toJson(index));
+        }
+        return files;
+    }
+
+    /**
+     * 清空上一次的查询状态
+     */
+    public synchronized void reset() {
+        lastTable = null;
+        lastQuery = null;
+        survivors = new int[0];
+        survivorCount = 0;
+    }
+
+    /**
+     * @return [按条目序号排序的最近文件序号, 对应的加分]
+     */
+    private static int[][] resolveRecent(PathTable table, List<String> recentFiles) {
+        int limit = Math.min(RECENT_FILES, recentFiles.size());
+        long[] packed = new long[limit];
+        int count = 0;
+        for (int rank = 0; rank < limit; rank++) {
+            int index = table.indexOf(recentFiles.get(rank));
+            if (index >= 0) {
+                packed[count++] = ((long) index << 32) | (RECENT_FILES - rank);
+            }
+        }
+        Arrays.sort(packed, 0, count);
+
+        int[] indices = new int[count];
+        int[] bonuses = new int[count];
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            int index = (int) (packed[k] >>> 32);
+            if (size > 0 && indices[size - 1] == index) {
+                continue;
+            }
+            indices[size] = index;
+            bonuses[size] = (int) packed[k];
+            size++;
+        }
+        return new int[][]{Arrays.copyOf(indices, size), Arrays.copyOf(bonuses, size)};
+    }
+
+    private static boolean isSubsequence(PathTable table, int index, char[] q) {
+        int end = table.starts[index + 1];
+        int k = 0;
+        for (int p = table.starts[index]; p < end && k < q.length; p++) {
+            if (table.lowerChars[p] == q[k]) {
+                k++;
+            }
+        }
+        return k == q.length;
+    }
+
+    private static int score(PathTable table, int index, char[] q) {
+        int pathStart = table.starts[index];
+        int end = table.starts[index + 1];
+        int best = scoreRange(table, pathStart, pathStart, end, q);
+
+        int nameStart = table.nameStarts[index];
+        if (nameStart > pathStart && end - nameStart >= q.length) {
+            int nameScore = scoreRange(table, pathStart, nameStart, end, q);
+            if (nameScore != NO_MATCH) {
+                best = Math.max(best, nameScore + BONUS_NAME_PER_CHAR * q.length);
+            }
+        } else if (nameStart == pathStart && best != NO_MATCH) {
+            best += BONUS_NAME_PER_CHAR * q.length;
+        }
+        if (best == NO_MATCH) {
+            return NO_MATCH;
+        }
+        return best - (end - pathStart) / PATH_LENGTH_DIVISOR;
+    }
+
+    /**
+     * 在 [from, to) 内打分:先正向找到最早能完成匹配的结束位置,
+     * 再从结束位置反向找到最短的匹配窗口,在该窗口内计算分数
+     */
+    private static int scoreRange(PathTable table, int pathStart, int from, int to, char[] q) {
+        char[] lower = table.lowerChars;
+        int k = 0;
+        int matchEnd = -1;
+        for (int p = from; p < to; p++) {
+            if (lower[p] == q[k] && ++k == q.length) {
+                matchEnd = p;
+                break;
+            }
+        }
+        if (matchEnd < 0) {
+            return NO_MATCH;
+        }
+
+        k = q.length - 1;
+        int matchStart = matchEnd;
+        for (int p = matchEnd; p >= from; p--) {
+            if (lower[p] == q[k] && --k < 0) {
+                matchStart = p;
+                break;
+            }
+        }
+
+        int score = 0;
+        int previous = -1;
+        int consecutiveBonus = 0;
+        k = 0;
+        for (int p = matchStart; p <= matchEnd && k < q.length; p++) {
+            if (lower[p] != q[k]) {
+                continue;
+            }
+            int bonus = boundaryBonus(table.chars, pathStart, p);
+            if (previous >= 0 && p == previous + 1) {
+                // 连续匹配沿用词首的加分,保证整段匹配词首的结果排在前面
+                consecutiveBonus = Math.max(Math.max(consecutiveBonus, bonus), BONUS_CONSECUTIVE);
+                bonus = consecutiveBonus;
+            } else {
+                if (previous >= 0) {
+                    score -= PENALTY_GAP_START + PENALTY_GAP_EXTENSION * (p - previous - 2);
+                }
+                consecutiveBonus = bonus;
+            }
+            score += SCORE_MATCH + (k == 0 ? bonus * FIRST_CHAR_MULTIPLIER : bonus);
+            previous = p;
+            k++;
+        }
+        return score;
+    }
+
+    private static int boundaryBonus(char[] chars, int pathStart, int p) {
+        if (p == pathStart) {
+            return BONUS_SEGMENT;
+        }
+        char prev = chars[p - 1];
+        char current = chars[p];
+        if (prev == '/') {
+            return BONUS_SEGMENT;
+        }
+        if (prev == '_' || prev == '-' || prev == '.' || prev == ' ') {
+            return BONUS_DELIMITER;
+        }
+        if (Character.isUpperCase(current) && !Character.isUpperCase(prev)) {
+            return BONUS_CAMEL;
+        }
+        if (Character.isDigit(current) && !Character.isDigit(prev)) {
+            return BONUS_CAMEL;
+        }
+        return 0;
+    }
+
+    /**
+     * 容量为 K 的小顶堆,堆顶是当前保留结果中最差的一个
+     * 同分时路径短的优先,再按路径字典序
+     */
+    private static final class TopK {
+        private final int capacity;
+        private final PathTable table;
+        private final int[] indices;
+        private final int[] scores;
+        private int size;
+
+        TopK(int capacity, PathTable table) {
+            this.capacity = capacity;
+            this.table = table;
+            this.indices = new int[capacity];
+            this.scores = new int[capacity];
+        }
+
+        void offer(int index, int score) {
+            if (capacity == 0) {
+                return;
+            }
+            if (size < capacity) {
+                indices[size] = index;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (worse(indices[0], scores[0], index, score)) {
+                indices[0] = index;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * 取出所有结果,按从好到差排列
+         */
+        int[] drainDescending() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = indices[0];
+                size--;
+                if (size > 0) {
+                    indices[0] = indices[size];
+                    scores[0] = scores[size];
+                    siftDown(0);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * a 是否比 b 差
+         */
+        private boolean worse(int aIndex, int aScore, int bIndex, int bScore) {
+            if (aScore != bScore) {
+                return aScore < bScore;
+            }
+            int aLength = table.length(aIndex);
+            int bLength = table.length(bIndex);
+            if (aLength != bLength) {
+                return aLength > bLength;
+            }
+            return aIndex > bIndex;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!worse(indices[i], scores[i], indices[parent], scores[parent])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    break;
+                }
+                int child = left;
+                int right = left + 1;
+                if (right < size && worse(indices[right], scores[right], indices[left], scores[left])) {
+                    child = right;
+                }
+                if (!worse(indices[child], scores[child], indices[i], scores[i])) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int index = indices[a];
+            indices[a] = indices[b];
+            indices[b] = index;
+            int score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.claudecodegui.cache;
+
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+
+/**
+ * 路径表(FilePathIndex 的只读快照)
+ * 所有相对路径按字典序首尾相接存放在一个 char 数组中,用偏移数组定位,
+ * 每个路径不再单独占用 String/Entry 对象,匹配时直接在数组上逐字符比较。
+ *
+ * 同时保存原始字符(用于识别驼峰)和小写字符(用于不区分大小写的匹配)。
+ */
+public final class PathTable {
+
+    final String rootPath;
+    final char[] chars;
+    final char[] lowerChars;
+    /** 第 i 个路径占 [starts[i], starts[i + 1]) */
+    final int[] starts;
+    /** 第 i 个路径中文件名的起始位置(绝对偏移) */
+    final int[] nameStarts;
+    final boolean[] directories;
+
+    private PathTable(String rootPath, int size, int totalLength) {
+        this.rootPath = rootPath;
+        this.chars = new char[totalLength];
+        this.lowerChars = new char[totalLength];
+        this.starts = new int[size + 1];
+        this.nameStarts = new int[size];
+        this.directories = new boolean[size];
+    }
+
+    /**
+     * @param paths 相对路径(/ 分隔)→ 是否为目录,需按字典序排列
+     */
+    static PathTable build(String rootPath, Map<String, Boolean> paths) {
+        int totalLength = 0;
+        for (String path : paths.keySet()) {
+            totalLength += path.length();
+        }
+        PathTable table = new PathTable(rootPath, paths.size(), totalLength);
+
+        int i = 0;
+        int offset = 0;
+        for (Map.Entry<String, Boolean> entry : paths.entrySet()) {
+            String path = entry.getKey();
+            path.getChars(0, path.length(), table.chars, offset);
+            for (int j = offset; j < offset + path.length(); j++) {
+                table.lowerChars[j] = toLowerCase(table.chars[j]);
+            }
+            table.starts[i] = offset;
+            table.nameStarts[i] = offset + path.lastIndexOf('/') + 1;
+            table.directories[i] = entry.getValue();
+            offset += path.length();
+            i++;
+        }
+        table.starts[i] = offset;
+        return table;
+    }
+
+    /**
+     * 按字符转小写,与路径表的小写字符一一对应
+     * 不使用 String.toLowerCase():它依赖默认语言环境(土耳其语 I → ı),且部分字符转小写后长度会变化
+     */
+    static char toLowerCase(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    static String toLowerCase(String text) {
+        char[] lower = text.toCharArray();
+        for (int i = 0; i < lower.length; i++) {
+            lower[i] = toLowerCase(lower[i]);
+        }
+        return new String(lower);
+    }
+
+    public int size() {
+        return nameStarts.length;
+    }
+
+    public String path(int index) {
+        return new String(chars, starts[index], starts[index + 1] - starts[index]);
+    }
+
+    int length(int index) {
+        return starts[index + 1] - starts[index];
+    }
+
+    /**
+     * 按绝对路径查找条目(二分查找)
+     *
+     * @return 不在表中时返回 -1
+     */
+    public int indexOf(String absolutePath) {
+        String normalized = absolutePath.replace('\\', '/');
+        if (!normalized.startsWith(rootPath + "/")) {
+            return -1;
+        }
+        String relativePath = normalized.substring(rootPath.length() + 1);
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, relativePath);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 与 String.compareTo 相同的比较规则,和构建时的排序一致
+     */
+    private int compare(int index, String other) {
+        int start = starts[index];
+        int length = length(index);
+        int limit = Math.min(length, other.length());
+        for (int k = 0; k < limit; k++) {
+            char c = chars[start + k];
+            char o = other.charAt(k);
+            if (c != o) {
+                return c - o;
+            }
+        }
+        return length - other.length();
+    }
+
+    /**
+     * 与 FileHandler 返回给前端的文件对象格式一致
+     */
+    public JsonObject toJson(int index) {
+        String path = path(index);
+        String name = new String(chars, nameStarts[index], starts[index + 1] - nameStarts[index]);
+        JsonObject fileObj = new JsonObject();
+        fileObj.addProperty("name", name);
+        fileObj.addProperty("path", path);
+        fileObj.addProperty("absolutePath", rootPath + "/" + path);
+        fileObj.addProperty("type", directories[index] ? "directory" : "file");
+
+        if (!directories[index]) {
+            int dotIndex = name.lastIndexOf('.');
+            if (dotIndex > 0) {
+                fileObj.addProperty("extension", name.substring(dotIndex + 1));
+            }
+        }
+        return fileObj;
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.claudecodegui.handler;
 
+import com.github.claudecodegui.cache.DirectoryListingCache;
+import com.github.claudecodegui.cache.FilePathIndex;
+import com.github.claudecodegui.cache.FuzzyFileMatcher;
+import com.github.claudecodegui.cache.PathTable;
 import com.github.claudecodegui.util.EditorFileUtils;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
@@ -12,6 +16,7 @@ import com.intellij.openapi.fileEditor.FileEditorManager;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -28,6 +33,11 @@ public class FileHandler extends BaseMessageHandler {
         "open_browser"
     };
 
+    /**
+     * 保存上一次查询的命中,继续输入时只在上次的命中中筛选
+     */
+    private final FuzzyFileMatcher fileMatcher = new FuzzyFileMatcher();
+
     public FileHandler(HandlerContext context) {
         super(context);
     }
@@ -92,18 +102,35 @@ public class FileHandler extends BaseMessageHandler {
                 List<JsonObject> files = new ArrayList<>();
 
                 if (query != null && !query.isEmpty()) {
-                    File baseDir = new File(basePath);
-                    collectFiles(baseDir, basePath, files, query.toLowerCase(), 0, 15, 200);
+                    // 优先在内存中的路径索引上模糊匹配(结果已按分数排序),索引构建完成前回退到直接遍历磁盘
+                    PathTable table = FilePathIndex.forRoot(context.getProject(), basePath).snapshot();
+                    if (table != null) {
+                        files.addAll(fileMatcher.match(table, query, 200,
+                            EditorFileUtils.getRecentFiles(context.getProject())));
+                    } else {
+                        File baseDir = new File(basePath);
+                        collectFiles(baseDir, basePath, files, query.toLowerCase(Locale.ROOT), 0, 15, 200);
+                        sortFiles(files);
+                    }
                 } else {
+                    // 目录列表缓存中保存的是已序列化的子文件数组,直接拼接结果
+                    String children = DirectoryListingCache.forProject(context.getProject())
+                        .list(basePath, currentPath, 100);
+                    if (children != null) {
+                        String resultJson = "{\"files\":" + children + "}";
+                        ApplicationManager.getApplication().invokeLater(() -> {
+                            callJavaScript("window.onFileListResult", escapeJs(resultJson));
+                        });
+                        return;
+                    }
+                    // 目录不在 VFS 中时回退到直接读取磁盘
                     File targetDir = new File(basePath, currentPath);
                     if (targetDir.exists() && targetDir.isDirectory()) {
                         listDirectChildren(targetDir, basePath, files, 100);
                     }
+                    sortFiles(files);
                 }
 
-                // 排序
-                sortFiles(files);
-
                 Gson gson = new Gson();
                 JsonObject result = new JsonObject();
                 result.add("files", gson.toJsonTree(files));
@@ -349,9 +376,9 @@ public class FileHandler extends BaseMessageHandler {
 
             // 检查是否匹配查询
             if (!query.isEmpty()) {
-                boolean matchesName = name.toLowerCase().contains(query);
-                boolean matchesPath = relativePath.toLowerCase().contains(query);
-                boolean matchesExtension = query.startsWith(".") && name.toLowerCase().endsWith(query);
+                boolean matchesName = name.toLowerCase(Locale.ROOT).contains(query);
+                boolean matchesPath = relativePath.toLowerCase(Locale.ROOT).contains(query);
+                boolean matchesExtension = query.startsWith(".") && name.toLowerCase(Locale.ROOT).endsWith(query);
 
                 if (!matchesName && !matchesPath && !matchesExtension) {
                     if (child.isDirectory()) {
@@ -1,12 +1,28 @@
 package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.ClaudeSession;
+import com.github.claudecodegui.history.FullTextIndex;
+import com.github.claudecodegui.history.HistoryListing;
+import com.github.claudecodegui.history.HistoryQuery;
+import com.github.claudecodegui.history.HistorySessionEntry;
+import com.github.claudecodegui.history.SessionDirectoryWatcher;
 import com.github.claudecodegui.util.JsUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 
 import javax.swing.*;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 历史数据处理器
@@ -19,6 +35,7 @@ public class HistoryHandler extends BaseMessageHandler {
     private static final String[] SUPPORTED_TYPES = {
         "load_history_data",
         "load_session",
+        "load_older_messages", // 历史会话向上滚动时加载更早的消息
         "delete_session",  // 新增:删除会话
         "export_session",  // 新增:导出会话
         "toggle_favorite", // 新增:切换收藏状态
@@ -32,6 +49,25 @@ public class HistoryHandler extends BaseMessageHandler {
 
     private SessionLoadCallback sessionLoadCallback;
 
+    private static final Type FAVORITES_TYPE = new TypeToken<Map<String, HistoryListing.FavoriteInfo>>() {}.getType();
+    private static final Type TITLES_TYPE = new TypeToken<Map<String, HistoryListing.TitleInfo>>() {}.getType();
+
+    // 全文检索最多合并的会话数
+    private static final int CONTENT_SEARCH_LIMIT = 200;
+
+    private final Gson gson = new Gson();
+
+    // 最近一次加载的会话列表,搜索/排序/翻页直接复用,打开历史面板时(refresh)重新读取
+    private volatile HistoryListing historyListing;
+    private volatile HistoryQuery lastHistoryQuery = HistoryQuery.parse(null).withoutRefresh();
+    private final AtomicLong historyRequestSeq = new AtomicLong();
+
+    // 监听会话目录,CLI 或其他窗口写入会话时增量推送变化
+    private SessionDirectoryWatcher sessionWatcher;
+
+    // 列表先用快速读取的结果推送,消息数在后台完整解析后以增量事件补上
+    private final AtomicBoolean messageCountFillScheduled = new AtomicBoolean();
+
     public HistoryHandler(HandlerContext context) {
         super(context);
     }
@@ -50,12 +86,16 @@ public class HistoryHandler extends BaseMessageHandler {
         switch (type) {
             case "load_history_data":
                 LOG.debug("[HistoryHandler] 处理: load_history_data");
-                handleLoadHistoryData();
+                handleLoadHistoryData(content);
                 return true;
             case "load_session":
                 LOG.debug("[HistoryHandler] 处理: load_session");
                 handleLoadSession(content);
                 return true;
+            case "load_older_messages":
+                LOG.debug("[HistoryHandler] 处理: load_older_messages");
+                handleLoadOlderMessages();
+                return true;
             case "delete_session":
                 LOG.info("[HistoryHandler] 处理: delete_session, sessionId=" + content);
                 handleDeleteSession(content);
@@ -78,55 +118,226 @@ public class HistoryHandler extends BaseMessageHandler {
     }
 
     /**
-     * 加载并注入历史数据到前端（包含收藏信息）
+     * 加载历史数据并分页推送到前端（包含收藏信息和自定义标题）
+     * 第一页立即推送,其余页依次追加;新的查询会让尚未推送完的旧查询停止
      */
-    private void handleLoadHistoryData() {
+    private void handleLoadHistoryData(String content) {
+        loadHistory(HistoryQuery.parse(content));
+    }
+
+    private void loadHistory(HistoryQuery query) {
+        long requestId = historyRequestSeq.incrementAndGet();
+        lastHistoryQuery = query.withoutRefresh();
+
         CompletableFuture.runAsync(() -> {
-            LOG.info("[HistoryHandler] ========== 开始加载历史数据 ==========");
+            try {
+                HistoryListing listing = historyListing;
+                if (listing == null || query.isRefresh()) {
+                    long start = System.currentTimeMillis();
+                    listing = loadHistoryListing();
+                    historyListing = listing;
+                    LOG.info("[HistoryHandler] 历史会话加载完成: " + listing.size() + " 个, 耗时 " + (System.currentTimeMillis() - start) + "ms");
+                }
+                ensureSessionWatcher();
+                if (historyRequestSeq.get() != requestId) {
+                    return;
+                }
+                pushHistoryPages(requestId, query, listing);
+                scheduleMessageCountFill(listing);
+            } catch (Exception e) {
+                LOG.error("[HistoryHandler] ❌ 加载历史数据失败: " + e.getMessage(), e);
 
+                JsonObject error = new JsonObject();
+                error.addProperty("success", false);
+                error.addProperty("requestId", requestId);
+                error.addProperty("error", e.getMessage() != null ? e.getMessage() : "未知错误");
+                callJavaScript("onHistoryPage", escapeJs(gson.toJson(error)));
+            }
+        });
+    }
+
+    /**
+     * 首次加载历史后开始监听会话目录(目录尚不存在时下次加载再尝试)
+     */
+    private synchronized void ensureSessionWatcher() {
+        if (sessionWatcher != null || context.isDisposed()) {
+            return;
+        }
+        SessionDirectoryWatcher watcher = new SessionDirectoryWatcher(
+            ClaudeHistoryReader.getProjectSessionDir(context.getProject().getBasePath()),
+            this::handleSessionDirectoryChanged);
+        if (watcher.start()) {
+            sessionWatcher = watcher;
+        }
+    }
+
+    /**
+     * 会话目录发生变化:通过元数据索引只重新读取变化的文件,与当前列表比较后推送增量事件
+     * 新增和更新的会话只推送符合当前搜索条件的;前端按当前排序插入
+     */
+    private void handleSessionDirectoryChanged() {
+        pushSessionChanges(false);
+    }
+
+    /**
+     * 列表中有未统计消息数的会话时,在后台完整解析这些会话并推送更新
+     * 完整解析的结果保存在元数据索引中,之后只需解析追加部分
+     */
+    private void scheduleMessageCountFill(HistoryListing listing) {
+        if (!listing.hasUnknownMessageCounts() || !messageCountFillScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
             try {
-                String projectPath = context.getProject().getBasePath();
-                ClaudeHistoryReader historyReader = new ClaudeHistoryReader();
-                String historyJson = historyReader.getProjectDataAsJson(projectPath);
+                pushSessionChanges(true);
+            } finally {
+                messageCountFillScheduled.set(false);
+            }
+        });
+    }
 
-                // 加载收藏数据并合并到历史数据中
-                String enhancedJson = enhanceHistoryWithFavorites(historyJson);
+    /**
+     * 重新读取会话目录,与当前列表比较后推送增量事件
+     *
+     * @param countMessages 是否完整解析以统计消息数
+     */
+    private void pushSessionChanges(boolean countMessages) {
+        HistoryListing listing = historyListing;
+        if (listing == null || context.isDisposed()) {
+            return;
+        }
+        try {
+            List<ClaudeHistoryReader.SessionInfo> sessions =
+                new ClaudeHistoryReader().readProjectSessions(context.getProject().getBasePath(), countMessages);
+            HistoryListing.Diff diff = listing.applySessions(sessions);
+            if (!countMessages) {
+                // 新增的会话只快速读取过,稍后补上消息数
+                scheduleMessageCountFill(listing);
+            }
+            if (diff.isEmpty()) {
+                return;
+            }
 
-                // 加载自定义标题并合并到历史数据中
-                String finalJson = enhanceHistoryWithTitles(enhancedJson);
+            HistoryQuery query = lastHistoryQuery;
+            JsonObject event = new JsonObject();
+            event.add("added", toMatchingJson(diff.added, query));
+            event.add("updated", toMatchingJson(diff.updated, query));
+            event.add("removed", gson.toJsonTree(diff.removed));
+            if (query.getQuery().isEmpty()) {
+                event.addProperty("sessionCount", listing.size());
+            }
+            LOG.debug("[HistoryHandler] 会话目录变化: 新增 " + diff.added.size() + ", 更新 " + diff.updated.size() + ", 删除 " + diff.removed.size());
+            callJavaScript("onHistoryEvents", escapeJs(gson.toJson(event)));
+        } catch (Exception e) {
+            LOG.warn("[HistoryHandler] ⚠️ 刷新会话变化失败: " + e.getMessage());
+        }
+    }
 
-                String escapedJson = escapeJs(finalJson);
+    private JsonArray toMatchingJson(List<HistorySessionEntry> entries, HistoryQuery query) {
+        JsonArray array = new JsonArray();
+        for (HistorySessionEntry entry : entries) {
+            if (query.matches(entry)) {
+                array.add(gson.toJsonTree(entry));
+            }
+        }
+        return array;
+    }
 
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    String jsCode = "console.log('[Backend->Frontend] Starting to inject history data');" +
-                        "if (window.setHistoryData) { " +
-                        "  try { " +
-                        "    var jsonStr = '" + escapedJson + "'; " +
-                        "    var data = JSON.parse(jsonStr); " +
-                        "    window.setHistoryData(data); " +
-                        "  } catch(e) { " +
-                        "    console.error('[Backend->Frontend] Failed to parse/set history data:', e); " +
-                        "    window.setHistoryData({ success: false, error: '解析历史数据失败: ' + e.message }); " +
-                        "  } " +
-                        "} else { " +
-                        "  console.error('[Backend->Frontend] setHistoryData not available!'); " +
-                        "}";
+    /**
+     * 停止监听会话目录(窗口关闭时调用)
+     */
+    public synchronized void dispose() {
+        if (sessionWatcher != null) {
+            sessionWatcher.stop();
+            sessionWatcher = null;
+        }
+        // 全文索引延迟写回,窗口关闭时把尚未保存的变化写入磁盘
+        CompletableFuture.runAsync(FullTextIndex::flushAll);
+    }
 
-                    context.executeJavaScriptOnEDT(jsCode);
-                });
+    /**
+     * 读取会话列表并合并收藏和自定义标题
+     */
+    private HistoryListing loadHistoryListing() throws Exception {
+        String projectPath = context.getProject().getBasePath();
+        List<ClaudeHistoryReader.SessionInfo> sessions = new ClaudeHistoryReader().readProjectSessions(projectPath);
 
+        Map<String, HistoryListing.FavoriteInfo> favorites = null;
+        try {
+            favorites = gson.fromJson(callNodeJsFavoritesService("loadFavorites", ""), FAVORITES_TYPE);
+        } catch (Exception e) {
+            LOG.warn("[HistoryHandler] ⚠️ 加载收藏数据失败: " + e.getMessage());
+        }
+
+        Map<String, HistoryListing.TitleInfo> titles = null;
+        try {
+            titles = gson.fromJson(callNodeJsTitlesService("loadTitles", "", ""), TITLES_TYPE);
+        } catch (Exception e) {
+            LOG.warn("[HistoryHandler] ⚠️ 加载标题数据失败: " + e.getMessage());
+        }
+
+        return HistoryListing.build(sessions, favorites, titles);
+    }
+
+    /**
+     * 按页推送查询结果
+     * 第一页附带总数和收藏信息(offset 为 0 时前端替换列表),后续页只包含会话(前端追加)
+     */
+    private void pushHistoryPages(long requestId, HistoryQuery query, HistoryListing listing) {
+        // 有关键词时同时检索会话内容,内容命中的会话即使标题不匹配也会列出,并附带摘要
+        Map<String, FullTextIndex.SearchHit> contentHits = new HashMap<>();
+        if (!query.getQuery().isEmpty()) {
+            try {
+                for (FullTextIndex.SearchHit hit : new ClaudeHistoryReader().searchProjectContent(
+                        context.getProject().getBasePath(), query.getQuery(), CONTENT_SEARCH_LIMIT)) {
+                    contentHits.put(hit.sessionId, hit);
+                }
             } catch (Exception e) {
-                LOG.error("[HistoryHandler] ❌ 加载历史数据失败: " + e.getMessage(), e);
+                LOG.warn("[HistoryHandler] ⚠️ 全文检索失败,仅按标题过滤: " + e.getMessage());
+            }
+        }
 
-                ApplicationManager.getApplication().invokeLater(() -> {
-                    String errorMsg = escapeJs(e.getMessage() != null ? e.getMessage() : "未知错误");
-                    String jsCode = "if (window.setHistoryData) { " +
-                        "  window.setHistoryData({ success: false, error: '" + errorMsg + "' }); " +
-                        "}";
-                    context.executeJavaScriptOnEDT(jsCode);
-                });
+        List<HistorySessionEntry> matches = listing.select(query, contentHits.keySet());
+        int pageSize = query.getPageSize();
+
+        long totalMessages = 0;
+        for (HistorySessionEntry entry : matches) {
+            totalMessages += Math.max(0, entry.messageCount);
+        }
+
+        int offset = 0;
+        do {
+            if (historyRequestSeq.get() != requestId) {
+                // 已有更新的查询,停止推送旧结果
+                return;
             }
-        });
+            int end = Math.min(offset + pageSize, matches.size());
+
+            JsonObject page = new JsonObject();
+            page.addProperty("success", true);
+            page.addProperty("requestId", requestId);
+            page.addProperty("offset", offset);
+            page.addProperty("hasMore", end < matches.size());
+            JsonArray sessions = new JsonArray();
+            for (HistorySessionEntry entry : matches.subList(offset, end)) {
+                JsonObject session = gson.toJsonTree(entry).getAsJsonObject();
+                FullTextIndex.SearchHit hit = contentHits.get(entry.sessionId);
+                if (hit != null && hit.snippet != null) {
+                    session.addProperty("snippet", hit.snippet);
+                }
+                sessions.add(session);
+            }
+            page.add("sessions", sessions);
+            if (offset == 0) {
+                page.addProperty("query", query.getQuery());
+                page.addProperty("sort", query.getSort());
+                page.addProperty("sessionCount", matches.size());
+                page.addProperty("total", totalMessages);
+                page.add("favorites", gson.toJsonTree(listing.getFavorites()));
+            }
+            callJavaScript("onHistoryPage", escapeJs(gson.toJson(page)));
+            offset = end;
+        } while (offset < matches.size());
     }
 
     /**
@@ -143,6 +354,19 @@ public class HistoryHandler extends BaseMessageHandler {
         }
     }
 
+    /**
+     * 加载当前历史会话中更早的一页消息
+     * 结果通过 updateMessages 推送完整消息列表,并通过 setHasOlderMessages 更新是否还有更早的消息
+     */
+    private void handleLoadOlderMessages() {
+        ClaudeSession session = context.getSession();
+        if (session == null) {
+            callJavaScript("setHasOlderMessages", "false");
+            return;
+        }
+        session.loadOlderMessages();
+    }
+
     /**
      * 删除会话历史文件
      * 删除指定 sessionId 的 .jsonl 文件以及相关的 agent-xxx.jsonl 文件
@@ -218,9 +442,12 @@ public class HistoryHandler extends BaseMessageHandler {
                 LOG.info("[HistoryHandler] 主会话文件: " + (mainDeleted ? "已删除" : "未找到"));
                 LOG.info("[HistoryHandler] Agent 文件: 删除了 " + agentFilesDeleted + " 个");
 
-                // 删除完成后，重新加载历史数据并推送给前端
-                LOG.info("[HistoryHandler] 重新加载历史数据...");
-                handleLoadHistoryData();
+                // 删除完成后，从已加载的列表中移除并按当前条件重新推送给前端
+                HistoryListing listing = historyListing;
+                if (listing != null) {
+                    listing.remove(sessionId);
+                }
+                loadHistory(lastHistoryQuery);
 
             } catch (Exception e) {
                 LOG.error("[HistoryHandler] ❌ 删除会话失败: " + e.getMessage(), e);
@@ -307,6 +534,13 @@ public class HistoryHandler extends BaseMessageHandler {
                 String result = callNodeJsFavoritesService("toggleFavorite", sessionId);
                 LOG.info("[HistoryHandler] 收藏状态切换结果: " + result);
 
+                // 同步到已加载的列表,后续搜索/翻页无需重新读取
+                JsonObject resultObj = gson.fromJson(result, JsonObject.class);
+                HistoryListing listing = historyListing;
+                if (listing != null && resultObj.has("success") && resultObj.get("success").getAsBoolean()) {
+                    listing.setFavorite(sessionId, resultObj.get("isFavorited").getAsBoolean(), System.currentTimeMillis());
+                }
+
             } catch (Exception e) {
                 LOG.error("[HistoryHandler] ❌ 切换收藏状态失败: " + e.getMessage(), e);
             }
@@ -337,6 +571,11 @@ public class HistoryHandler extends BaseMessageHandler {
                 com.google.gson.JsonObject resultObj = new com.google.gson.Gson().fromJson(result, com.google.gson.JsonObject.class);
                 boolean success = resultObj.get("success").getAsBoolean();
 
+                HistoryListing listing = historyListing;
+                if (success && listing != null) {
+                    listing.setCustomTitle(sessionId, customTitle);
+                }
+
                 if (!success && resultObj.has("error")) {
                     String error = resultObj.get("error").getAsString();
                     ApplicationManager.getApplication().invokeLater(() -> {
@@ -359,85 +598,6 @@ public class HistoryHandler extends BaseMessageHandler {
         });
     }
 
-    /**
-     * 增强历史数据：添加收藏信息到每个会话
-     */
-    private String enhanceHistoryWithFavorites(String historyJson) {
-        try {
-            // 加载收藏数据
-            String favoritesJson = callNodeJsFavoritesService("loadFavorites", "");
-
-            // 解析历史数据和收藏数据
-            com.google.gson.JsonObject history = new com.google.gson.Gson().fromJson(historyJson, com.google.gson.JsonObject.class);
-            com.google.gson.JsonObject favorites = new com.google.gson.Gson().fromJson(favoritesJson, com.google.gson.JsonObject.class);
-
-            // 为每个会话添加收藏信息
-            if (history.has("sessions") && history.get("sessions").isJsonArray()) {
-                com.google.gson.JsonArray sessions = history.getAsJsonArray("sessions");
-                for (int i = 0; i < sessions.size(); i++) {
-                    com.google.gson.JsonObject session = sessions.get(i).getAsJsonObject();
-                    String sessionId = session.get("sessionId").getAsString();
-
-                    if (favorites.has(sessionId)) {
-                        com.google.gson.JsonObject favoriteInfo = favorites.getAsJsonObject(sessionId);
-                        session.addProperty("isFavorited", true);
-                        session.addProperty("favoritedAt", favoriteInfo.get("favoritedAt").getAsLong());
-                    } else {
-                        session.addProperty("isFavorited", false);
-                    }
-                }
-            }
-
-            // 将收藏数据也添加到历史数据中
-            history.add("favorites", favorites);
-
-            return new com.google.gson.Gson().toJson(history);
-
-        } catch (Exception e) {
-            LOG.warn("[HistoryHandler] ⚠️ 增强历史数据失败，返回原始数据: " + e.getMessage());
-            return historyJson;
-        }
-    }
-
-    /**
-     * 增强历史数据：添加自定义标题到每个会话
-     */
-    private String enhanceHistoryWithTitles(String historyJson) {
-        try {
-            // 加载标题数据
-            String titlesJson = callNodeJsTitlesService("loadTitles", "", "");
-
-            // 解析历史数据和标题数据
-            com.google.gson.JsonObject history = new com.google.gson.Gson().fromJson(historyJson, com.google.gson.JsonObject.class);
-            com.google.gson.JsonObject titles = new com.google.gson.Gson().fromJson(titlesJson, com.google.gson.JsonObject.class);
-
-            // 为每个会话添加自定义标题
-            if (history.has("sessions") && history.get("sessions").isJsonArray()) {
-                com.google.gson.JsonArray sessions = history.getAsJsonArray("sessions");
-                for (int i = 0; i < sessions.size(); i++) {
-                    com.google.gson.JsonObject session = sessions.get(i).getAsJsonObject();
-                    String sessionId = session.get("sessionId").getAsString();
-
-                    if (titles.has(sessionId)) {
-                        com.google.gson.JsonObject titleInfo = titles.getAsJsonObject(sessionId);
-                        // 如果有自定义标题，则覆盖原始标题
-                        if (titleInfo.has("customTitle")) {
-                            String customTitle = titleInfo.get("customTitle").getAsString();
-                            session.addProperty("title", customTitle);
-                            session.addProperty("hasCustomTitle", true);
-                        }
-                    }
-                }
-            }
-
-            return new com.google.gson.Gson().toJson(history);
-
-        } catch (Exception e) {
-            LOG.warn("[HistoryHandler] ⚠️ 增强标题数据失败，返回原始数据: " + e.getMessage());
-            return historyJson;
-        }
-    }
-
     /**
      * 调用 Node.js favorites-service
      */
@@ -3,12 +3,17 @@ package com.github.claudecodegui.handler;
 import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.permission.PermissionService;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -25,12 +30,16 @@ public class PermissionHandler extends BaseMessageHandler {
 
     private static final String[] SUPPORTED_TYPES = {
         "permission_decision",
+        "permission_batch_decision",
         "ask_user_question_response"
     };
 
     // 权限请求映射
     private final Map<String, CompletableFuture<Integer>> pendingPermissionRequests = new ConcurrentHashMap<>();
 
+    // 批量权限请求映射 (channelId -> 与请求顺序一致的 PermissionResponse 值)
+    private final Map<String, CompletableFuture<List<Integer>>> pendingPermissionBatches = new ConcurrentHashMap<>();
+
     // AskUserQuestion 请求映射 (requestId -> CompletableFuture<JsonObject>)
     private final Map<String, CompletableFuture<JsonObject>> pendingAskUserQuestionRequests = new ConcurrentHashMap<>();
 
@@ -61,6 +70,10 @@ public class PermissionHandler extends BaseMessageHandler {
             LOG.debug("[PERM_DEBUG][BRIDGE_RECV] Content: " + content);
             handlePermissionDecision(content);
             return true;
+        } else if ("permission_batch_decision".equals(type)) {
+            LOG.debug("[PERM_DEBUG][BRIDGE_RECV] Received permission_batch_decision from JS");
+            handlePermissionBatchDecision(content);
+            return true;
         } else if ("ask_user_question_response".equals(type)) {
             LOG.debug("[ASK_USER_QUESTION][BRIDGE_RECV] Received ask_user_question_response from JS");
             LOG.debug("[ASK_USER_QUESTION][BRIDGE_RECV] Content: " + content);
@@ -72,8 +85,10 @@ public class PermissionHandler extends BaseMessageHandler {
 
     /**
      * 显示前端权限对话框
+     *
+     * @param deadline 截止时间（毫秒时间戳），到期未决定按拒绝处理
      */
-    public CompletableFuture<Integer> showFrontendPermissionDialog(String toolName, JsonObject inputs) {
+    public CompletableFuture<Integer> showFrontendPermissionDialog(String toolName, JsonObject inputs, long deadline) {
         String channelId = UUID.randomUUID().toString();
         CompletableFuture<Integer> future = new CompletableFuture<>();
 
@@ -106,8 +121,8 @@ public class PermissionHandler extends BaseMessageHandler {
                 context.executeJavaScriptOnEDT(jsCode);
             });
 
-            // 超时处理
-            CompletableFuture.delayedExecutor(35, TimeUnit.SECONDS).execute(() -> {
+            // 超时处理：只使用 Node 侧超时前剩余的时间
+            CompletableFuture.delayedExecutor(remainingMillis(deadline), TimeUnit.MILLISECONDS).execute(() -> {
                 if (!future.isDone()) {
                     pendingPermissionRequests.remove(channelId);
                     future.complete(PermissionService.PermissionResponse.DENY.getValue());
@@ -123,6 +138,73 @@ public class PermissionHandler extends BaseMessageHandler {
         return future;
     }
 
+    /**
+     * 显示批量权限对话框：同一通道连续发起的多个请求在一个对话框中逐项允许或拒绝
+     *
+     * @param requests 每项包含 toolName 和 inputs
+     * @param deadline 截止时间（毫秒时间戳），到期未决定的项全部拒绝
+     * @return 与 requests 顺序一致的 PermissionResponse 值
+     */
+    public CompletableFuture<List<Integer>> showFrontendPermissionBatchDialog(List<JsonObject> requests, long deadline) {
+        String channelId = UUID.randomUUID().toString();
+        CompletableFuture<List<Integer>> future = new CompletableFuture<>();
+        pendingPermissionBatches.put(channelId, future);
+
+        LOG.debug("[PERM_DEBUG][FRONTEND_DIALOG] Starting batch dialog, channelId=" + channelId + ", size=" + requests.size());
+
+        try {
+            JsonArray items = new JsonArray();
+            for (JsonObject request : requests) {
+                JsonObject item = new JsonObject();
+                item.addProperty("toolName", request.get("toolName").getAsString());
+                item.add("inputs", request.get("inputs"));
+                items.add(item);
+            }
+            JsonObject requestData = new JsonObject();
+            requestData.addProperty("channelId", channelId);
+            requestData.addProperty("toolName", requests.get(0).get("toolName").getAsString());
+            requestData.add("inputs", new JsonObject());
+            requestData.add("items", items);
+
+            String escapedJson = escapeJs(new Gson().toJson(requestData));
+            ApplicationManager.getApplication().invokeLater(() -> {
+                String jsCode = "(function retryShowDialog(retries) { " +
+                    "  if (window.showPermissionDialog) { " +
+                    "    window.showPermissionDialog('" + escapedJson + "'); " +
+                    "  } else if (retries > 0) { " +
+                    "    setTimeout(function() { retryShowDialog(retries - 1); }, 200); " +
+                    "  } else { " +
+                    "    console.error('[PERM_DEBUG][JS] FAILED: showPermissionDialog not available!'); " +
+                    "  } " +
+                    "})(30);";
+
+                context.executeJavaScriptOnEDT(jsCode);
+            });
+
+            // 超时处理：全部拒绝，只使用最早的请求在 Node 侧超时前剩余的时间
+            CompletableFuture.delayedExecutor(remainingMillis(deadline), TimeUnit.MILLISECONDS).execute(() -> {
+                if (!future.isDone()) {
+                    pendingPermissionBatches.remove(channelId);
+                    future.complete(denyAll(requests.size()));
+                }
+            });
+        } catch (Exception e) {
+            LOG.error("[PERM_DEBUG][FRONTEND_DIALOG] ERROR: " + e.getMessage(), e);
+            pendingPermissionBatches.remove(channelId);
+            future.complete(denyAll(requests.size()));
+        }
+
+        return future;
+    }
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    private static List<Integer> denyAll(int size) {
+        return new ArrayList<>(Collections.nCopies(size, PermissionService.PermissionResponse.DENY.getValue()));
+    }
+
     /**
      * 显示权限请求对话框（来自 PermissionRequest）
      */
@@ -237,6 +319,45 @@ public class PermissionHandler extends BaseMessageHandler {
         }
     }
 
+    /**
+     * 处理来自 JavaScript 的批量权限决策消息
+     * 格式：{channelId, decisions: [{allow, remember}]}，顺序与请求一致
+     */
+    private void handlePermissionBatchDecision(String jsonContent) {
+        try {
+            JsonObject decision = new Gson().fromJson(jsonContent, JsonObject.class);
+            String channelId = decision.get("channelId").getAsString();
+            CompletableFuture<List<Integer>> pendingFuture = pendingPermissionBatches.remove(channelId);
+            if (pendingFuture == null) {
+                LOG.debug("[PERM_DEBUG][HANDLE_DECISION] Batch already resolved: " + channelId);
+                return;
+            }
+
+            List<Integer> responses = new ArrayList<>();
+            boolean anyDenied = false;
+            for (JsonElement element : decision.getAsJsonArray("decisions")) {
+                JsonObject item = element.getAsJsonObject();
+                boolean allow = item.has("allow") && item.get("allow").getAsBoolean();
+                boolean remember = item.has("remember") && item.get("remember").getAsBoolean();
+                if (allow) {
+                    responses.add(remember ?
+                        PermissionService.PermissionResponse.ALLOW_ALWAYS.getValue() :
+                        PermissionService.PermissionResponse.ALLOW.getValue());
+                } else {
+                    responses.add(PermissionService.PermissionResponse.DENY.getValue());
+                    anyDenied = true;
+                }
+            }
+            pendingFuture.complete(responses);
+
+            if (anyDenied) {
+                notifyPermissionDenied();
+            }
+        } catch (Exception e) {
+            LOG.error("[PERM_DEBUG][HANDLE_DECISION] ERROR: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * 通知权限被拒绝
      */
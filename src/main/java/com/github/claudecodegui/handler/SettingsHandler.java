@@ -4,8 +4,12 @@ import com.github.claudecodegui.ClaudeHistoryReader;
 import com.github.claudecodegui.ClaudeSession;
 import com.github.claudecodegui.bridge.NodeDetector;
 import com.github.claudecodegui.model.NodeDetectionResult;
+import com.github.claudecodegui.permission.PermissionRule;
+import com.github.claudecodegui.permission.PermissionRuleStore;
+import com.github.claudecodegui.permission.PermissionService;
 import com.github.claudecodegui.util.FontConfigService;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
@@ -34,6 +38,10 @@ public class SettingsHandler extends BaseMessageHandler {
         "get_node_path",
         "set_node_path",
         "get_usage_statistics",
+        "get_permission_latency",
+        "clear_permission_latency",
+        "get_permission_rules",
+        "delete_permission_rule",
         "get_working_directory",
         "set_working_directory",
         "get_editor_font_config"
@@ -79,6 +87,18 @@ public class SettingsHandler extends BaseMessageHandler {
             case "get_usage_statistics":
                 handleGetUsageStatistics(content);
                 return true;
+            case "get_permission_latency":
+                handleGetPermissionLatency();
+                return true;
+            case "clear_permission_latency":
+                handleClearPermissionLatency();
+                return true;
+            case "get_permission_rules":
+                handleGetPermissionRules();
+                return true;
+            case "delete_permission_rule":
+                handleDeletePermissionRule(content);
+                return true;
             case "get_working_directory":
                 handleGetWorkingDirectory();
                 return true;
@@ -475,6 +495,75 @@ public class SettingsHandler extends BaseMessageHandler {
         LOG.debug("[SettingsHandler] ========== handleSetNodePath END ==========");
     }
 
+    /**
+     * 获取权限请求往返耗时统计（按工具汇总的分位数）
+     */
+    private void handleGetPermissionLatency() {
+        PermissionService permissionService = PermissionService.getStartedInstance();
+        JsonObject latency;
+        if (permissionService != null) {
+            latency = permissionService.getLatencyTracker().snapshot();
+        } else {
+            latency = new JsonObject();
+            latency.add("tools", new com.google.gson.JsonArray());
+            latency.addProperty("pending", 0);
+        }
+        String json = new Gson().toJson(latency);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            callJavaScript("window.updatePermissionLatency", escapeJs(json));
+        });
+    }
+
+    /**
+     * 清空权限请求耗时统计
+     */
+    private void handleClearPermissionLatency() {
+        PermissionService permissionService = PermissionService.getStartedInstance();
+        if (permissionService != null) {
+            permissionService.getLatencyTracker().clear();
+        }
+        handleGetPermissionLatency();
+    }
+
+    /**
+     * 获取当前项目记住的权限规则(保存在文件中的规则和本次会话内有效的规则)
+     */
+    private void handleGetPermissionRules() {
+        PermissionRuleStore store = PermissionRuleStore.forProject(context.getProject().getBasePath());
+        Gson gson = new Gson();
+        JsonArray rules = new JsonArray();
+        for (PermissionRule rule : store.getRules()) {
+            rules.add(gson.toJsonTree(rule));
+        }
+        for (PermissionRule rule : store.getSessionRules()) {
+            JsonObject json = gson.toJsonTree(rule).getAsJsonObject();
+            json.addProperty("session", true);
+            rules.add(json);
+        }
+        JsonObject result = new JsonObject();
+        result.add("rules", rules);
+        String json = gson.toJson(result);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            callJavaScript("window.updatePermissionRules", escapeJs(json));
+        });
+    }
+
+    /**
+     * 删除一条权限规则(按条件和允许/拒绝匹配)
+     */
+    private void handleDeletePermissionRule(String content) {
+        try {
+            PermissionRule target = new Gson().fromJson(content, PermissionRule.class);
+            if (target != null && target.tool != null) {
+                PermissionRuleStore.forProject(context.getProject().getBasePath())
+                    .removeIf(rule -> rule.sameCondition(target) && rule.allow == target.allow);
+            }
+        } catch (Exception e) {
+            LOG.warn("[SettingsHandler] Failed to delete permission rule: " + e.getMessage());
+        }
+        handleGetPermissionRules();
+    }
+
     /**
      * 获取使用统计数据
      */
@@ -0,0 +1,59 @@
+package com.github.claudecodegui.handler;
+
+import com.github.claudecodegui.ClaudeSession;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+
+/**
+ * 工具结果处理器
+ * 前端展开被截断的大型工具结果时,按句柄返回完整内容
+ */
+public class ToolResultHandler extends BaseMessageHandler {
+
+    private static final Logger LOG = Logger.getInstance(ToolResultHandler.class);
+
+    private static final String[] SUPPORTED_TYPES = {
+        "get_tool_result"
+    };
+
+    private final Gson gson = new Gson();
+
+    public ToolResultHandler(HandlerContext context) {
+        super(context);
+    }
+
+    @Override
+    public String[] getSupportedTypes() {
+        return SUPPORTED_TYPES;
+    }
+
+    @Override
+    public boolean handle(String type, String content) {
+        if ("get_tool_result".equals(type)) {
+            handleGetToolResult(content);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 返回完整工具结果
+     * content 为句柄字符串
+     */
+    private void handleGetToolResult(String content) {
+        String handle = content != null ? content.trim() : "";
+        ClaudeSession session = context.getSession();
+        String body = session != null ? session.getToolResultStore().get(handle) : null;
+
+        JsonObject response = new JsonObject();
+        response.addProperty("handle", handle);
+        response.addProperty("found", body != null);
+        if (body != null) {
+            response.addProperty("content", body);
+        } else {
+            LOG.debug("Tool result not available (evicted or unknown): " + handle);
+        }
+        callJavaScript("onToolResultContent", escapeJs(gson.toJson(response)));
+    }
+}
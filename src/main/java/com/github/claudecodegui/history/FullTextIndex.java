@@ -0,0 +1,809 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.settings.ConfigPathManager;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 会话内容全文索引
+ * 每个 ~/.claude/projects/<项目> 目录对应一个倒排索引 (~/.codemoss/search-index/<项目>.idx),
+ * 以会话文件中的每条用户/助手消息(含工具输入和工具结果文本)为一个文档。
+ *
+ * - 增量建立:和 SessionMetadataIndex 一样按字节偏移只索引追加的行,文件被截断或重写时旧文档作废后重新索引
+ * - 排序:BM25;多个查询词之间为"与"关系
+ * - 子串匹配:查询词不足以精确命中时,通过词表上的三元组(trigram)找出包含该子串的词,适用于代码标识符
+ * - 摘要:只保存文档在文件中的位置,命中后回读该行生成摘要
+ * - 首次建立(读取索引文件并补齐)在后台进行,完成前检索调用方只按标题过滤;
+ *   索引变化后延迟一段时间在后台写回磁盘,连续的检索只写一次
+ */
+public class FullTextIndex {
+
+    private static final Logger LOG = Logger.getInstance(FullTextIndex.class);
+
+    private static final int MAGIC = 0x43435849;
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_DIR_NAME = "search-index";
+
+    private static final int HEAD_LENGTH = 4096;
+    /** 单个文档最多索引的字符数,避免超大工具输出撑大索引 */
+    private static final int MAX_DOC_CHARS = 64 * 1024;
+    /** 子串扩展最多匹配的词数 */
+    private static final int MAX_EXPANSIONS = 64;
+    private static final float SUBSTRING_WEIGHT = 0.8f;
+    private static final int SNIPPET_RADIUS = 60;
+    private static final int MAX_SNIPPET_LINE_BYTES = 8 * 1024 * 1024;
+
+    /** 作废文档超过一半时整体重建 */
+    private static final int COMPACT_MIN_DOCS = 1000;
+
+    /** 索引变化后延迟写回磁盘的时间 */
+    private static final long SAVE_DELAY_MS = 10_000;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final byte ROLE_USER = 0;
+    private static final byte ROLE_ASSISTANT = 1;
+
+    private static final Map<Path, FullTextIndex> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 检索结果(每个会话只保留得分最高的一条消息)
+     */
+    public static class SearchHit {
+        public String sessionId;
+        public String role;
+        public long timestamp;
+        public double score;
+        public String snippet;
+    }
+
+    /**
+     * 单个会话文件的索引进度
+     */
+    private static class FileState {
+        int fileId;
+        long parsedBytes;
+        long size;
+        long lastModified;
+        int headLength;
+        long headCrc;
+        int docCount;
+    }
+
+    /**
+     * 倒排表:按 (docId, 词频) 成对存放
+     */
+    private static final class PostingList {
+        int[] data;
+        int size;
+
+        PostingList(int capacity) {
+            data = new int[Math.max(2, capacity)];
+        }
+
+        void add(int doc, int tf) {
+            if (size + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = doc;
+            data[size++] = tf;
+        }
+
+        int docFrequency() {
+            return size / 2;
+        }
+    }
+
+    private final Path projectDir;
+    private final Path indexFile;
+
+    private boolean loaded;
+    /** 首次 refresh 完成后为 true */
+    private volatile boolean ready;
+    private final AtomicBoolean building = new AtomicBoolean();
+    /** 内存中的索引比磁盘上的新 */
+    private boolean unsaved;
+    private ScheduledFuture<?> pendingSave;
+    private Map<String, FileState> files;
+    private List<String> fileNames;
+    private BitSet deadFiles;
+
+    private int docCount;
+    private int[] docFile;
+    private long[] docOffset;
+    private int[] docLength;
+    private long[] docTimestamp;
+    private byte[] docRole;
+    private long totalTokens;
+    private int deadDocs;
+
+    private Map<String, PostingList> postings;
+    /** 三元组 -> 包含它的词,首次子串查询时建立,之后随新词增量维护 */
+    private Map<String, Set<String>> trigramTerms;
+
+    private FullTextIndex(Path projectDir, Path indexFile) {
+        this.projectDir = projectDir;
+        this.indexFile = indexFile;
+        reset();
+    }
+
+    /**
+     * 获取项目会话目录对应的索引(进程内共享)
+     */
+    public static FullTextIndex forProjectDir(Path projectDir) {
+        Path normalized = projectDir.toAbsolutePath().normalize();
+        return INSTANCES.computeIfAbsent(normalized, dir -> new FullTextIndex(
+            dir,
+            new ConfigPathManager().getConfigDir()
+                .resolve(INDEX_DIR_NAME)
+                .resolve(dir.getFileName().toString() + ".idx")
+        ));
+    }
+
+    /**
+     * 索引已建立时同步增量更新并返回 true;
+     * 尚未建立时在后台开始建立并立即返回 false,调用方应跳过全文检索
+     */
+    public boolean refreshIfReady() throws IOException {
+        if (ready) {
+            refresh();
+            return true;
+        }
+        if (building.compareAndSet(false, true)) {
+            AppExecutorUtil.getAppExecutorService().execute(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    refresh();
+                    LOG.info("[FullTextIndex] " + projectDir.getFileName() + ": 索引建立完成, " + docCount + " 个文档, 耗时 "
+                        + (System.currentTimeMillis() - start) + "ms");
+                } catch (Exception e) {
+                    LOG.warn("[FullTextIndex] 建立索引失败: " + e.getMessage());
+                } finally {
+                    building.set(false);
+                }
+            });
+        }
+        return false;
+    }
+
+    /**
+     * 与磁盘同步:索引新文件和追加内容,作废被删除或重写的文件
+     */
+    public synchronized void refresh() throws IOException {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+
+        List<Path> sessionFiles;
+        try (Stream<Path> stream = Files.list(projectDir)) {
+            sessionFiles = stream
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    // agent-*.jsonl 是子代理的侧链会话,不在历史列表中展示
+                    return name.endsWith(".jsonl") && !name.startsWith("agent-");
+                })
+                .collect(Collectors.toList());
+        }
+
+        boolean dirty = false;
+        Set<String> seen = new HashSet<>();
+        for (Path file : sessionFiles) {
+            String fileName = file.getFileName().toString();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                continue;
+            }
+            seen.add(fileName);
+
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            FileState state = files.get(fileName);
+            if (state != null && state.size == attrs.size() && state.lastModified == lastModified) {
+                continue;
+            }
+
+            try {
+                if (state == null || !canResume(file, attrs.size(), state)) {
+                    if (state != null) {
+                        markDead(state);
+                    }
+                    state = newFileState(fileName);
+                }
+                state.parsedBytes = indexLines(file, state, state.parsedBytes);
+
+                int headLength = (int) Math.min(attrs.size(), HEAD_LENGTH);
+                if (headLength != state.headLength) {
+                    state.headLength = headLength;
+                    state.headCrc = JsonlTailReader.headCrc(file, headLength);
+                }
+                state.size = attrs.size();
+                state.lastModified = lastModified;
+                dirty = true;
+            } catch (IOException e) {
+                LOG.warn("[FullTextIndex] 索引会话文件失败: " + fileName + " - " + e.getMessage());
+            }
+        }
+
+        Iterator<Map.Entry<String, FileState>> it = files.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, FileState> entry = it.next();
+            if (!seen.contains(entry.getKey())) {
+                markDead(entry.getValue());
+                it.remove();
+                dirty = true;
+            }
+        }
+
+        if (docCount >= COMPACT_MIN_DOCS && deadDocs * 2 > docCount) {
+            LOG.info("[FullTextIndex] " + projectDir.getFileName() + ": 作废文档过多,重建索引");
+            reset();
+            refresh();
+            return;
+        }
+
+        ready = true;
+        if (dirty) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * 延迟写回磁盘:期间的多次变化只写一次,写入在后台线程进行
+     */
+    private void scheduleSave() {
+        unsaved = true;
+        if (pendingSave != null && !pendingSave.isDone()) {
+            return;
+        }
+        pendingSave = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+            this::flush, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写回所有索引尚未保存的变化(窗口关闭时调用)
+     */
+    public static void flushAll() {
+        for (FullTextIndex index : INSTANCES.values()) {
+            index.flush();
+        }
+    }
+
+    /**
+     * 立即写回尚未保存的变化
+     */
+    public synchronized void flush() {
+        if (unsaved) {
+            unsaved = false;
+            save();
+        }
+    }
+
+    /**
+     * 检索
+     *
+     * @param query 查询文本,分词后各词之间为"与"关系
+     * @param limit 最多返回的会话数
+     * @return 按得分倒序,每个会话一条
+     */
+    public synchronized List<SearchHit> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if (terms.isEmpty() || docCount == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        float avgLength = Math.max(1f, totalTokens / (float) docCount);
+        Map<Integer, Float> scores = null;
+        for (String term : terms) {
+            Map<Integer, Float> termScores = scoreTerm(term, avgLength);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<Integer, Float> merged = new HashMap<>();
+                for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+                    Float other = termScores.get(entry.getKey());
+                    if (other != null) {
+                        merged.put(entry.getKey(), entry.getValue() + other);
+                    }
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        // 每个会话保留得分最高的文档
+        final Map<Integer, Float> finalScores = scores;
+        Map<Integer, Integer> bestDocByFile = new HashMap<>();
+        for (int doc : finalScores.keySet()) {
+            bestDocByFile.merge(docFile[doc], doc, (a, b) -> finalScores.get(a) >= finalScores.get(b) ? a : b);
+        }
+
+        // 小顶堆取前 limit 个
+        PriorityQueue<Integer> top = new PriorityQueue<>(
+            (a, b) -> Float.compare(finalScores.get(a), finalScores.get(b)));
+        for (int doc : bestDocByFile.values()) {
+            top.offer(doc);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            int doc = top.poll();
+            String fileName = fileNames.get(docFile[doc]);
+            SearchHit hit = new SearchHit();
+            hit.sessionId = fileName.substring(0, fileName.length() - ".jsonl".length());
+            hit.role = docRole[doc] == ROLE_ASSISTANT ? "assistant" : "user";
+            hit.timestamp = docTimestamp[doc];
+            hit.score = finalScores.get(doc);
+            hit.snippet = buildSnippet(fileName, docOffset[doc], terms);
+            hits.add(hit);
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    /**
+     * 计算单个查询词在各文档上的得分(精确匹配 + 子串扩展)
+     */
+    private Map<Integer, Float> scoreTerm(String term, float avgLength) {
+        Map<Integer, Float> termScores = new HashMap<>();
+        PostingList exact = postings.get(term);
+        if (exact != null) {
+            accumulate(exact, 1f, avgLength, termScores);
+        }
+        if (term.length() >= 3) {
+            for (String expansion : expandSubstring(term)) {
+                accumulate(postings.get(expansion), SUBSTRING_WEIGHT, avgLength, termScores);
+            }
+        }
+        return termScores;
+    }
+
+    private void accumulate(PostingList list, float weight, float avgLength, Map<Integer, Float> termScores) {
+        if (list == null) {
+            return;
+        }
+        int df = list.docFrequency();
+        double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        for (int i = 0; i < list.size; i += 2) {
+            int doc = list.data[i];
+            if (deadFiles.get(docFile[doc])) {
+                continue;
+            }
+            int tf = list.data[i + 1];
+            float norm = K1 * (1 - B + B * docLength[doc] / avgLength);
+            float score = (float) (weight * idf * tf * (K1 + 1) / (tf + norm));
+            termScores.merge(doc, score, Math::max);
+        }
+    }
+
+    /**
+     * 通过三元组找出词表中包含 term 的其他词
+     */
+    private List<String> expandSubstring(String term) {
+        if (trigramTerms == null) {
+            trigramTerms = new HashMap<>();
+            for (String t : postings.keySet()) {
+                addTrigrams(t);
+            }
+        }
+
+        Set<String> candidates = null;
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            Set<String> set = trigramTerms.get(term.substring(i, i + 3));
+            if (set == null) {
+                return Collections.emptyList();
+            }
+            if (candidates == null || set.size() < candidates.size()) {
+                candidates = set;
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        if (candidates == null) {
+            return result;
+        }
+        for (String candidate : candidates) {
+            if (!candidate.equals(term) && candidate.contains(term)) {
+                result.add(candidate);
+                if (result.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addTrigrams(String term) {
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            trigramTerms.computeIfAbsent(term.substring(i, i + 3), k -> new HashSet<>()).add(term);
+        }
+    }
+
+    /**
+     * 回读命中的消息行,截取第一个命中词附近的文本作为摘要
+     */
+    private String buildSnippet(String fileName, long offset, List<String> terms) {
+        try {
+            String line = JsonlTailReader.readLineAt(projectDir.resolve(fileName), offset, MAX_SNIPPET_LINE_BYTES);
+            String text = extractSearchText(JsonParser.parseString(line).getAsJsonObject());
+            if (text == null) {
+                return null;
+            }
+            String lower = text.toLowerCase(Locale.ROOT);
+            int index = -1;
+            int matchLength = 0;
+            for (String term : terms) {
+                int i = lower.indexOf(term);
+                if (i >= 0 && (index < 0 || i < index)) {
+                    index = i;
+                    matchLength = term.length();
+                }
+            }
+            if (index < 0) {
+                index = 0;
+            }
+            int start = Math.max(0, index - SNIPPET_RADIUS);
+            int end = Math.min(text.length(), index + matchLength + SNIPPET_RADIUS);
+            String snippet = text.substring(start, end).replaceAll("\\s+", " ").trim();
+            return (start > 0 ? "…" : "") + snippet + (end < text.length() ? "…" : "");
+        } catch (Exception e) {
+            LOG.debug("[FullTextIndex] 生成摘要失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 从 offset 开始索引文件中的完整行
+     */
+    private long indexLines(Path file, FileState state, long offset) throws IOException {
+        return JsonlTailReader.read(file, offset, (line, lineOffset) -> {
+            if (line.trim().isEmpty()) {
+                return;
+            }
+            JsonObject obj;
+            try {
+                obj = JsonParser.parseString(line).getAsJsonObject();
+            } catch (Exception e) {
+                return;
+            }
+            String text = extractSearchText(obj);
+            if (text == null || text.isEmpty()) {
+                return;
+            }
+
+            Map<String, Integer> termFrequencies = new HashMap<>();
+            int length = 0;
+            for (String token : SearchTokenizer.tokenize(text)) {
+                termFrequencies.merge(token, 1, Integer::sum);
+                length++;
+            }
+            if (length == 0) {
+                return;
+            }
+
+            byte role = "assistant".equals(obj.get("type").getAsString()) ? ROLE_ASSISTANT : ROLE_USER;
+            int doc = addDoc(state, lineOffset, length, parseTimestamp(obj), role);
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                PostingList list = postings.get(entry.getKey());
+                if (list == null) {
+                    list = new PostingList(4);
+                    postings.put(entry.getKey(), list);
+                    if (trigramTerms != null) {
+                        addTrigrams(entry.getKey());
+                    }
+                }
+                list.add(doc, entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * 提取消息中可检索的文本:用户/助手文本、工具输入中的字符串、工具结果文本
+     *
+     * @return 非用户/助手消息返回 null
+     */
+    static String extractSearchText(JsonObject obj) {
+        String type = obj.has("type") && obj.get("type").isJsonPrimitive() ? obj.get("type").getAsString() : null;
+        if (!"user".equals(type) && !"assistant".equals(type)) {
+            return null;
+        }
+        if (!obj.has("message") || !obj.get("message").isJsonObject()) {
+            return null;
+        }
+        JsonElement content = obj.getAsJsonObject("message").get("content");
+        StringBuilder sb = new StringBuilder();
+        appendContent(content, sb);
+        return sb.length() > MAX_DOC_CHARS ? sb.substring(0, MAX_DOC_CHARS) : sb.toString();
+    }
+
+    private static void appendContent(JsonElement content, StringBuilder sb) {
+        if (content == null || content.isJsonNull() || sb.length() > MAX_DOC_CHARS) {
+            return;
+        }
+        if (content.isJsonPrimitive()) {
+            appendText(content.getAsString(), sb);
+            return;
+        }
+        if (!content.isJsonArray()) {
+            return;
+        }
+        for (JsonElement element : content.getAsJsonArray()) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject block = element.getAsJsonObject();
+            String blockType = block.has("type") && block.get("type").isJsonPrimitive() ? block.get("type").getAsString() : "";
+            switch (blockType) {
+                case "text":
+                    if (block.has("text") && block.get("text").isJsonPrimitive()) {
+                        appendText(block.get("text").getAsString(), sb);
+                    }
+                    break;
+                case "tool_use":
+                    if (block.has("input") && block.get("input").isJsonObject()) {
+                        for (Map.Entry<String, JsonElement> field : block.getAsJsonObject("input").entrySet()) {
+                            if (field.getValue().isJsonPrimitive()) {
+                                appendText(field.getValue().getAsString(), sb);
+                            }
+                        }
+                    }
+                    break;
+                case "tool_result":
+                    appendContent(block.get("content"), sb);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void appendText(String text, StringBuilder sb) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        if (sb.length() > 0) {
+            sb.append('\n');
+        }
+        sb.append(text);
+    }
+
+    private static long parseTimestamp(JsonObject obj) {
+        try {
+            if (obj.has("timestamp") && obj.get("timestamp").isJsonPrimitive()) {
+                return java.time.Instant.parse(obj.get("timestamp").getAsString()).toEpochMilli();
+            }
+        } catch (Exception e) {
+            // 忽略无效的时间戳
+        }
+        return 0;
+    }
+
+    private static boolean canResume(Path file, long size, FileState state) throws IOException {
+        if (state.parsedBytes <= 0 || size < state.parsedBytes || state.headLength <= 0) {
+            return false;
+        }
+        return JsonlTailReader.headCrc(file, state.headLength) == state.headCrc;
+    }
+
+    private FileState newFileState(String fileName) {
+        FileState state = new FileState();
+        state.fileId = fileNames.size();
+        fileNames.add(fileName);
+        files.put(fileName, state);
+        return state;
+    }
+
+    private void markDead(FileState state) {
+        deadFiles.set(state.fileId);
+        deadDocs += state.docCount;
+    }
+
+    private int addDoc(FileState state, long offset, int length, long timestamp, byte role) {
+        if (docCount == docFile.length) {
+            int capacity = docFile.length * 2;
+            docFile = Arrays.copyOf(docFile, capacity);
+            docOffset = Arrays.copyOf(docOffset, capacity);
+            docLength = Arrays.copyOf(docLength, capacity);
+            docTimestamp = Arrays.copyOf(docTimestamp, capacity);
+            docRole = Arrays.copyOf(docRole, capacity);
+        }
+        int doc = docCount++;
+        docFile[doc] = state.fileId;
+        docOffset[doc] = offset;
+        docLength[doc] = length;
+        docTimestamp[doc] = timestamp;
+        docRole[doc] = role;
+        totalTokens += length;
+        state.docCount++;
+        return doc;
+    }
+
+    private void reset() {
+        files = new HashMap<>();
+        fileNames = new ArrayList<>();
+        deadFiles = new BitSet();
+        docCount = 0;
+        docFile = new int[1024];
+        docOffset = new long[1024];
+        docLength = new int[1024];
+        docTimestamp = new long[1024];
+        docRole = new byte[1024];
+        totalTokens = 0;
+        deadDocs = 0;
+        postings = new HashMap<>();
+        trigramTerms = null;
+    }
+
+    private void load() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+
+            int fileNameCount = in.readInt();
+            for (int i = 0; i < fileNameCount; i++) {
+                fileNames.add(in.readUTF());
+            }
+            long[] deadWords = new long[in.readInt()];
+            for (int i = 0; i < deadWords.length; i++) {
+                deadWords[i] = in.readLong();
+            }
+            deadFiles = BitSet.valueOf(deadWords);
+
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                String name = in.readUTF();
+                FileState state = new FileState();
+                state.fileId = in.readInt();
+                state.parsedBytes = in.readLong();
+                state.size = in.readLong();
+                state.lastModified = in.readLong();
+                state.headLength = in.readInt();
+                state.headCrc = in.readLong();
+                state.docCount = in.readInt();
+                files.put(name, state);
+            }
+
+            docCount = in.readInt();
+            totalTokens = in.readLong();
+            deadDocs = in.readInt();
+            int capacity = Math.max(1024, docCount);
+            docFile = new int[capacity];
+            docOffset = new long[capacity];
+            docLength = new int[capacity];
+            docTimestamp = new long[capacity];
+            docRole = new byte[capacity];
+            for (int i = 0; i < docCount; i++) {
+                docFile[i] = in.readInt();
+                docOffset[i] = in.readLong();
+                docLength[i] = in.readInt();
+                docTimestamp[i] = in.readLong();
+                docRole[i] = in.readByte();
+            }
+
+            int termCount = in.readInt();
+            postings = new HashMap<>(Math.max(16, termCount * 4 / 3));
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int size = in.readInt();
+                PostingList list = new PostingList(size);
+                for (int j = 0; j < size; j++) {
+                    list.data[j] = in.readInt();
+                }
+                list.size = size;
+                postings.put(term, list);
+            }
+        } catch (Exception e) {
+            LOG.warn("[FullTextIndex] 读取索引失败,将重新建立: " + e.getMessage());
+            reset();
+        }
+    }
+
+    /**
+     * 先写临时文件再重命名,避免中途失败留下损坏的索引
+     */
+    private void save() {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+
+                out.writeInt(fileNames.size());
+                for (String name : fileNames) {
+                    out.writeUTF(name);
+                }
+                long[] deadWords = deadFiles.toLongArray();
+                out.writeInt(deadWords.length);
+                for (long word : deadWords) {
+                    out.writeLong(word);
+                }
+
+                out.writeInt(files.size());
+                for (Map.Entry<String, FileState> entry : files.entrySet()) {
+                    FileState state = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(state.fileId);
+                    out.writeLong(state.parsedBytes);
+                    out.writeLong(state.size);
+                    out.writeLong(state.lastModified);
+                    out.writeInt(state.headLength);
+                    out.writeLong(state.headCrc);
+                    out.writeInt(state.docCount);
+                }
+
+                out.writeInt(docCount);
+                out.writeLong(totalTokens);
+                out.writeInt(deadDocs);
+                for (int i = 0; i < docCount; i++) {
+                    out.writeInt(docFile[i]);
+                    out.writeLong(docOffset[i]);
+                    out.writeInt(docLength[i]);
+                    out.writeLong(docTimestamp[i]);
+                    out.writeByte(docRole[i]);
+                }
+
+                out.writeInt(postings.size());
+                for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+                    PostingList list = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(list.size);
+                    for (int i = 0; i < list.size; i++) {
+                        out.writeInt(list.data[i]);
+                    }
+                }
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOG.warn("[FullTextIndex] 保存索引失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 项目历史会话列表
+ * 会话信息、收藏和自定义标题在 Java 端以类型化对象合并一次,之后的过滤、排序和分页都在内存中完成,
+ * 收藏/改标题/删除直接修改这里的条目,不需要重新读取磁盘或重新解析 JSON。
+ */
+public class HistoryListing {
+
+    /**
+     * favorites-service.cjs loadFavorites 返回的单条收藏
+     */
+    public static class FavoriteInfo {
+        public Long favoritedAt;
+    }
+
+    /**
+     * session-titles-service.cjs loadTitles 返回的单条标题
+     */
+    public static class TitleInfo {
+        public String customTitle;
+        public Long updatedAt;
+    }
+
+    private static final Comparator<HistorySessionEntry> BY_RECENT =
+        Comparator.comparingLong((HistorySessionEntry e) -> e.lastTimestamp).reversed();
+
+    private static final Comparator<HistorySessionEntry> BY_MESSAGES =
+        Comparator.comparingInt((HistorySessionEntry e) -> e.messageCount).reversed().thenComparing(BY_RECENT);
+
+    private static final Comparator<HistorySessionEntry> BY_TITLE =
+        Comparator.comparing((HistorySessionEntry e) -> e.title != null ? e.title.toLowerCase(Locale.ROOT) : "")
+            .thenComparing(BY_RECENT);
+
+    /**
+     * 收藏的会话排在前面(按收藏时间倒序)
+     */
+    private static final Comparator<HistorySessionEntry> FAVORITES_FIRST =
+        Comparator.comparing((HistorySessionEntry e) -> !e.isFavorited)
+            .thenComparing(Comparator.comparingLong(
+                (HistorySessionEntry e) -> e.favoritedAt != null ? e.favoritedAt : 0L).reversed());
+
+    /**
+     * 与磁盘上最新会话列表的差异(applySessions 的结果)
+     */
+    public static class Diff {
+        public final List<HistorySessionEntry> added = new ArrayList<>();
+        public final List<HistorySessionEntry> updated = new ArrayList<>();
+        public final List<String> removed = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private final List<HistorySessionEntry> entries;
+    private final Map<String, FavoriteInfo> favorites;
+    private final Map<String, TitleInfo> titles;
+
+    private HistoryListing(List<HistorySessionEntry> entries, Map<String, FavoriteInfo> favorites,
+                           Map<String, TitleInfo> titles) {
+        this.entries = entries;
+        this.favorites = favorites;
+        this.titles = titles;
+    }
+
+    /**
+     * 合并会话、收藏和自定义标题
+     */
+    public static HistoryListing build(List<ClaudeHistoryReader.SessionInfo> sessions,
+                                       Map<String, FavoriteInfo> favorites,
+                                       Map<String, TitleInfo> titles) {
+        Map<String, FavoriteInfo> favoriteMap = favorites != null ? new HashMap<>(favorites) : new HashMap<>();
+        Map<String, TitleInfo> titleMap = titles != null ? new HashMap<>(titles) : new HashMap<>();
+
+        HistoryListing listing = new HistoryListing(new ArrayList<>(sessions.size()), favoriteMap, titleMap);
+        for (ClaudeHistoryReader.SessionInfo info : sessions) {
+            listing.entries.add(listing.toEntry(info));
+        }
+        return listing;
+    }
+
+    private HistorySessionEntry toEntry(ClaudeHistoryReader.SessionInfo info) {
+        HistorySessionEntry entry = HistorySessionEntry.from(info);
+
+        FavoriteInfo favorite = favorites.get(entry.sessionId);
+        if (favorite != null) {
+            entry.isFavorited = true;
+            entry.favoritedAt = favorite.favoritedAt != null ? favorite.favoritedAt : 0L;
+        }
+
+        TitleInfo title = titles.get(entry.sessionId);
+        if (title != null && title.customTitle != null) {
+            // 有自定义标题时覆盖原始标题
+            entry.title = title.customTitle;
+            entry.hasCustomTitle = true;
+        }
+        return entry;
+    }
+
+    /**
+     * 用磁盘上最新的会话列表更新条目,收藏和自定义标题保持不变
+     *
+     * @return 新增、内容变化和已删除的会话
+     */
+    public synchronized Diff applySessions(List<ClaudeHistoryReader.SessionInfo> sessions) {
+        Diff diff = new Diff();
+        Map<String, HistorySessionEntry> current = new HashMap<>();
+        for (HistorySessionEntry entry : entries) {
+            current.put(entry.sessionId, entry);
+        }
+
+        List<HistorySessionEntry> next = new ArrayList<>(sessions.size());
+        for (ClaudeHistoryReader.SessionInfo info : sessions) {
+            HistorySessionEntry existing = current.remove(info.sessionId);
+            HistorySessionEntry entry = toEntry(info);
+            if (existing == null) {
+                diff.added.add(entry);
+            } else if (existing.messageCount != entry.messageCount
+                || existing.lastTimestamp != entry.lastTimestamp
+                || !Objects.equals(existing.title, entry.title)) {
+                diff.updated.add(entry);
+            } else {
+                entry = existing;
+            }
+            next.add(entry);
+        }
+        diff.removed.addAll(current.keySet());
+
+        entries.clear();
+        entries.addAll(next);
+        return diff;
+    }
+
+    /**
+     * 按条件过滤并排序
+     *
+     * @return 新列表,调用方可自由分页
+     */
+    public List<HistorySessionEntry> select(HistoryQuery query) {
+        return select(query, Collections.emptySet());
+    }
+
+    /**
+     * 按条件过滤并排序
+     *
+     * @param contentMatches 会话内容命中关键词的会话(来自全文索引),标题不匹配时也保留
+     * @return 新列表,调用方可自由分页
+     */
+    public synchronized List<HistorySessionEntry> select(HistoryQuery query, Set<String> contentMatches) {
+        List<HistorySessionEntry> result = new ArrayList<>();
+        for (HistorySessionEntry entry : entries) {
+            if (query.matches(entry) || contentMatches.contains(entry.sessionId)) {
+                result.add(entry);
+            }
+        }
+
+        Comparator<HistorySessionEntry> order;
+        switch (query.getSort()) {
+            case HistoryQuery.SORT_MESSAGES:
+                order = BY_MESSAGES;
+                break;
+            case HistoryQuery.SORT_TITLE:
+                order = BY_TITLE;
+                break;
+            default:
+                order = BY_RECENT;
+                break;
+        }
+        result.sort(FAVORITES_FIRST.thenComparing(order));
+        return result;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 是否有会话的消息数尚未统计(只快速读取过)
+     */
+    public synchronized boolean hasUnknownMessageCounts() {
+        for (HistorySessionEntry entry : entries) {
+            if (entry.messageCount == SessionMetadata.UNKNOWN_COUNT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized Map<String, FavoriteInfo> getFavorites() {
+        return new HashMap<>(favorites);
+    }
+
+    /**
+     * 记录收藏状态变化
+     */
+    public synchronized void setFavorite(String sessionId, boolean favorited, long favoritedAt) {
+        if (favorited) {
+            FavoriteInfo info = new FavoriteInfo();
+            info.favoritedAt = favoritedAt;
+            favorites.put(sessionId, info);
+        } else {
+            favorites.remove(sessionId);
+        }
+        for (HistorySessionEntry entry : entries) {
+            if (entry.sessionId.equals(sessionId)) {
+                entry.isFavorited = favorited;
+                entry.favoritedAt = favorited ? favoritedAt : null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 记录自定义标题变化
+     */
+    public synchronized void setCustomTitle(String sessionId, String customTitle) {
+        TitleInfo info = new TitleInfo();
+        info.customTitle = customTitle;
+        info.updatedAt = System.currentTimeMillis();
+        titles.put(sessionId, info);
+        for (HistorySessionEntry entry : entries) {
+            if (entry.sessionId.equals(sessionId)) {
+                entry.title = customTitle;
+                entry.hasCustomTitle = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 移除已删除的会话
+     */
+    public synchronized void remove(String sessionId) {
+        entries.removeIf(entry -> entry.sessionId.equals(sessionId));
+        favorites.remove(sessionId);
+        titles.remove(sessionId);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.Locale;
+
+/**
+ * 历史列表查询条件
+ * 由前端 load_history_data 消息携带,格式:
+ * { "query": "关键词", "sort": "recent|messages|title", "pageSize": 100, "refresh": true }
+ * 内容为空或解析失败时使用默认值(按最近更新倒序、不过滤)
+ */
+public class HistoryQuery {
+
+    public static final String SORT_RECENT = "recent";
+    public static final String SORT_MESSAGES = "messages";
+    public static final String SORT_TITLE = "title";
+
+    static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final String query;
+    private final String lowerQuery;
+    private final String sort;
+    private final int pageSize;
+    private final boolean refresh;
+
+    public HistoryQuery(String query, String sort, int pageSize, boolean refresh) {
+        this.query = query != null ? query.trim() : "";
+        this.lowerQuery = this.query.toLowerCase(Locale.ROOT);
+        this.sort = SORT_MESSAGES.equals(sort) || SORT_TITLE.equals(sort) ? sort : SORT_RECENT;
+        this.pageSize = pageSize > 0 ? Math.min(pageSize, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+        this.refresh = refresh;
+    }
+
+    public static HistoryQuery parse(String content) {
+        if (content == null || content.trim().isEmpty()) {
+            return new HistoryQuery("", SORT_RECENT, DEFAULT_PAGE_SIZE, true);
+        }
+        try {
+            JsonObject json = JsonParser.parseString(content).getAsJsonObject();
+            return new HistoryQuery(
+                json.has("query") && !json.get("query").isJsonNull() ? json.get("query").getAsString() : "",
+                json.has("sort") && !json.get("sort").isJsonNull() ? json.get("sort").getAsString() : SORT_RECENT,
+                json.has("pageSize") ? json.get("pageSize").getAsInt() : DEFAULT_PAGE_SIZE,
+                json.has("refresh") && json.get("refresh").getAsBoolean()
+            );
+        } catch (Exception e) {
+            return new HistoryQuery("", SORT_RECENT, DEFAULT_PAGE_SIZE, true);
+        }
+    }
+
+    /**
+     * 相同过滤和排序条件,但不强制重新读取磁盘
+     */
+    public HistoryQuery withoutRefresh() {
+        return new HistoryQuery(query, sort, pageSize, false);
+    }
+
+    /**
+     * 过滤关键词是否匹配标题(不区分大小写)
+     */
+    public boolean matches(HistorySessionEntry entry) {
+        if (query.isEmpty()) {
+            return true;
+        }
+        return entry.title != null
+            && entry.title.toLowerCase(Locale.ROOT).contains(lowerQuery);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean isRefresh() {
+        return refresh;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+
+/**
+ * 历史面板中的一条会话
+ * 在 ClaudeHistoryReader.SessionInfo 的基础上合并收藏和自定义标题,直接由 Gson 序列化给前端
+ */
+public class HistorySessionEntry {
+    public String sessionId;
+    public String title;
+    public int messageCount;
+    public long lastTimestamp;
+    public long firstTimestamp;
+    public boolean isFavorited;
+    public Long favoritedAt;
+    public boolean hasCustomTitle;
+
+    public static HistorySessionEntry from(ClaudeHistoryReader.SessionInfo info) {
+        HistorySessionEntry entry = new HistorySessionEntry();
+        entry.sessionId = info.sessionId;
+        entry.title = info.title;
+        entry.messageCount = info.messageCount;
+        entry.lastTimestamp = info.lastTimestamp;
+        entry.firstTimestamp = info.firstTimestamp;
+        return entry;
+    }
+}
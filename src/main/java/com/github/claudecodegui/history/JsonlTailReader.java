@@ -0,0 +1,262 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * JSONL 增量读取
+ * 从指定字节偏移开始逐行读取,只交出完整的行,并返回最后一个被消费的字节位置,
+ * 下次可以从该位置继续读取追加的内容。
+ *
+ * 文件末尾没有换行的片段可能是写入方还没写完的行:只有它本身是完整的 JSON 对象时才会被消费,
+ * 否则留到下次读取。
+ */
+public final class JsonlTailReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 行处理器,同时提供行首的字节位置
+     */
+    public interface LineConsumer {
+        void accept(String line, long lineOffset);
+    }
+
+    private JsonlTailReader() {
+    }
+
+    /**
+     * 从 offset 开始读取完整行
+     *
+     * @param file     JSONL 文件
+     * @param offset   起始字节位置(必须位于行首)
+     * @param consumer 每个完整行(已按 UTF-8 解码,不含换行符)
+     * @return 已消费内容的结束位置,作为下次读取的 offset
+     */
+    public static long read(Path file, long offset, Consumer<String> consumer) throws IOException {
+        return read(file, offset, (line, lineOffset) -> consumer.accept(line));
+    }
+
+    /**
+     * 从 offset 开始读取完整行,并提供每行的起始位置
+     *
+     * @return 已消费内容的结束位置,作为下次读取的 offset
+     */
+    public static long read(Path file, long offset, LineConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long position = offset;
+            long consumed = offset;
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b == '\n') {
+                        consumer.accept(decode(line), consumed);
+                        line.reset();
+                        consumed = position;
+                    } else {
+                        line.write(b);
+                    }
+                }
+                buffer.clear();
+            }
+
+            if (line.size() > 0) {
+                String fragment = decode(line);
+                if (isCompleteObject(fragment)) {
+                    consumer.accept(fragment, consumed);
+                    consumed = position;
+                }
+            }
+            return consumed;
+        }
+    }
+
+    /**
+     * 读取 offset 处的单行(不含换行符)
+     *
+     * @param maxBytes 最多读取的字节数,超出部分截断
+     */
+    public static String readLineAt(Path file, long offset, int maxBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+            ByteBuffer buffer = ByteBuffer.allocate(Math.min(BUFFER_SIZE, maxBytes));
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            while (line.size() < maxBytes && channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n' || line.size() >= maxBytes) {
+                        return decode(line);
+                    }
+                    line.write(b);
+                }
+                buffer.clear();
+            }
+            return decode(line);
+        }
+    }
+
+    /**
+     * 按顺序读取文件开头 maxBytes 字节内的完整行
+     *
+     * @param consumer 返回 true 表示已找到需要的内容,停止读取
+     * @return 是否被 consumer 提前停止
+     */
+    public static boolean readHead(Path file, int maxBytes, Predicate<String> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(maxBytes, Math.max(1, channel.size())));
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // 读满窗口或到达文件末尾
+            }
+            byte[] bytes = buffer.array();
+            int limit = buffer.position();
+            boolean wholeFile = limit >= channel.size();
+
+            int start = 0;
+            for (int i = 0; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    if (consumer.test(decode(bytes, start, i))) {
+                        return true;
+                    }
+                    start = i + 1;
+                }
+            }
+            // 窗口覆盖整个文件时,最后没有换行的一行也是完整的
+            return wholeFile && start < limit && consumer.test(decode(bytes, start, limit));
+        }
+    }
+
+    /**
+     * 从文件末尾向前逐行读取,最多读取末尾 maxBytes 字节
+     * 窗口开头被截断的半行会被忽略
+     *
+     * @param consumer 返回 true 表示已找到需要的内容,停止读取
+     * @return 是否被 consumer 提前停止
+     */
+    public static boolean readTailReverse(Path file, int maxBytes, Predicate<String> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int length = (int) Math.min(size, maxBytes);
+            long windowStart = size - length;
+
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(1, length));
+            channel.position(windowStart);
+            while (buffer.position() < length && channel.read(buffer) != -1) {
+                // 读满窗口
+            }
+            byte[] bytes = buffer.array();
+            int limit = buffer.position();
+
+            int end = limit;
+            for (int i = limit - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    if (i + 1 < end && consumer.test(decode(bytes, i + 1, end))) {
+                        return true;
+                    }
+                    end = i;
+                }
+            }
+            // 窗口从文件开头开始时,第一行也是完整的
+            return windowStart == 0 && end > 0 && consumer.test(decode(bytes, 0, end));
+        }
+    }
+
+    /**
+     * 扫描 [0, end) 内每一行的起始位置(只查找换行符,不解析内容)
+     * 按位置读入复用的缓冲区,不做内存映射:映射在 Windows 上要到 GC 时才释放,期间无法删除会话文件
+     *
+     * @param end 扫描的结束位置(应位于行首)
+     * @return 升序排列的行首偏移
+     */
+    public static long[] lineOffsets(Path file, long end) throws IOException {
+        long[] offsets = new long[1024];
+        int count = 0;
+        if (end > 0) {
+            offsets[count++] = 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            long position = 0;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(end - position, BUFFER_SIZE));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n' && position + i + 1 < end) {
+                        if (count == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, count * 2);
+                        }
+                        offsets[count++] = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * 计算文件开头 length 字节的 CRC32,用于识别文件被截断或重写
+     */
+    public static long headCrc(Path file, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // 读满 length 字节或到达文件末尾
+            }
+            buffer.flip();
+            CRC32 crc = new CRC32();
+            crc.update(buffer);
+            return crc.getValue();
+        }
+    }
+
+    private static String decode(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(ByteArrayOutputStream line) {
+        int length = line.size();
+        byte[] bytes = line.toByteArray();
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isCompleteObject(String fragment) {
+        String trimmed = fragment.trim();
+        if (!trimmed.startsWith("{") || !trimmed.endsWith("}")) {
+            return false;
+        }
+        try {
+            return JsonParser.parseString(trimmed).isJsonObject();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.claudecodegui.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 全文检索分词器
+ * - 字母/数字/下划线组成的词整体转小写作为一个词,代码标识符另外按 camelCase / snake_case 拆出子词
+ * - 中日韩文字按相邻两字(bigram)切分,单字词保留单字
+ * 索引和查询使用同一套规则
+ */
+public final class SearchTokenizer {
+
+    static final int MAX_TOKEN_LENGTH = 64;
+
+    private SearchTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                addCjkTokens(text.substring(start, i), tokens);
+            } else if (isWordChar(cp)) {
+                int start = i;
+                while (i < length && isWordChar(text.codePointAt(i)) && !isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                addWordTokens(text.substring(start, i), tokens);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    private static void addWordTokens(String word, List<String> tokens) {
+        if (word.length() > MAX_TOKEN_LENGTH) {
+            // 过长的词多半是哈希、base64 等,没有检索价值
+            return;
+        }
+        String lower = word.toLowerCase(Locale.ROOT);
+        if (lower.length() >= 2 || Character.isDigit(lower.charAt(0))) {
+            tokens.add(lower);
+        }
+
+        // 拆分 camelCase / snake_case 标识符
+        List<String> parts = splitIdentifier(word);
+        if (parts.size() > 1) {
+            for (String part : parts) {
+                if (part.length() >= 2) {
+                    tokens.add(part.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    private static List<String> splitIdentifier(String word) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= word.length(); i++) {
+            boolean boundary = i == word.length();
+            if (!boundary) {
+                char prev = word.charAt(i - 1);
+                char c = word.charAt(i);
+                boundary = c == '_'
+                    || prev == '_'
+                    || (Character.isLowerCase(prev) && Character.isUpperCase(c))
+                    || (Character.isLetter(prev) && Character.isDigit(c))
+                    || (Character.isDigit(prev) && Character.isLetter(c))
+                    // HTTPServer -> HTTP / Server
+                    || (i + 1 < word.length() && Character.isUpperCase(prev) && Character.isUpperCase(c)
+                        && Character.isLowerCase(word.charAt(i + 1)));
+            }
+            if (boundary) {
+                String part = word.substring(start, i);
+                if (!part.isEmpty() && !"_".equals(part)) {
+                    parts.add(part.replace("_", ""));
+                }
+                start = i;
+            }
+        }
+        return parts;
+    }
+
+    private static void addCjkTokens(String run, List<String> tokens) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            tokens.add(new String(cps, 0, 1));
+            return;
+        }
+        for (int i = 0; i + 1 < cps.length; i++) {
+            tokens.add(new String(cps, i, 2));
+        }
+    }
+
+    private static boolean isWordChar(int cp) {
+        return Character.isLetterOrDigit(cp) || cp == '_';
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.claudecodegui.history;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话目录监听
+ * 监听 ~/.claude/projects/<项目> 下 .jsonl 文件的新增、修改和删除(包括终端中的 CLI 或其他 IDE 窗口写入的会话),
+ * 一段时间内的连续变化合并为一次回调;持续写入(例如 CLI 正在流式输出)时至少每 {@link #MAX_WAIT_MS} 通知一次。
+ * 目录被删除时通知一次,并定期检查目录是否重新创建,重新创建后自动恢复监听。
+ *
+ * 该目录通常不在 IDE 的 VFS 根目录内,因此直接使用 WatchService。
+ */
+public class SessionDirectoryWatcher {
+
+    private static final Logger LOG = Logger.getInstance(SessionDirectoryWatcher.class);
+
+    /**
+     * 防抖间隔:会话写入时每条消息都会触发修改事件,合并后再通知
+     */
+    private static final long DEBOUNCE_MS = 500;
+
+    /**
+     * 连续变化时两次通知之间的最长间隔,避免持续写入期间一直不通知
+     */
+    private static final long MAX_WAIT_MS = 2000;
+
+    /**
+     * 目录被删除后检查其是否重新创建的间隔
+     */
+    private static final long REARM_INTERVAL_MS = 2000;
+
+    private final Path directory;
+    private final Runnable onChange;
+    private final Object debounceLock = new Object();
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private volatile boolean running = false;
+    /** 调用 stop() 后为 true,此后不再通知也不再恢复监听 */
+    private volatile boolean stopped = false;
+    private ScheduledFuture<?> pendingNotify;
+    /** 尚未通知的第一次变化的时间 */
+    private long firstPendingAt;
+    /** 每次安排通知时递增,用于判断执行中的通知是否仍是最新安排的那一次 */
+    private long notifySeq;
+    private ScheduledFuture<?> rearmTask;
+
+    /**
+     * @param directory 会话目录
+     * @param onChange  目录内会话文件变化时回调(在后台线程执行)
+     */
+    public SessionDirectoryWatcher(Path directory, Runnable onChange) {
+        this.directory = directory;
+        this.onChange = onChange;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 开始监听
+     *
+     * @return 目录不存在或无法监听时返回 false
+     */
+    public synchronized boolean start() {
+        stopped = false;
+        if (running) {
+            return true;
+        }
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            LOG.warn("[SessionDirectoryWatcher] 无法监听会话目录: " + directory + " - " + e.getMessage());
+            closeWatchService();
+            return false;
+        }
+
+        running = true;
+        // 监听线程使用自己的引用,stop() 把字段置空不影响正在等待的线程
+        WatchService service = watchService;
+        watchThread = new Thread(() -> watchLoop(service), "ClaudeHistory-Watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        LOG.debug("[SessionDirectoryWatcher] 开始监听: " + directory);
+        return true;
+    }
+
+    private void watchLoop(WatchService service) {
+        while (running) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            boolean sessionChanged = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 事件丢失时按有变化处理
+                    sessionChanged = true;
+                    continue;
+                }
+                Object context = event.context();
+                if (context instanceof Path && context.toString().endsWith(".jsonl")) {
+                    sessionChanged = true;
+                }
+            }
+            if (sessionChanged) {
+                scheduleNotify();
+            }
+
+            if (!key.reset()) {
+                // 目录被删除:通知一次,等待目录重新创建后恢复监听
+                LOG.debug("[SessionDirectoryWatcher] 会话目录已失效: " + directory);
+                onDirectoryInvalidated();
+                return;
+            }
+        }
+        running = false;
+    }
+
+    private synchronized void onDirectoryInvalidated() {
+        running = false;
+        closeWatchService();
+        if (stopped) {
+            return;
+        }
+        scheduleNotify();
+        rearmTask = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+            this::tryRearm, REARM_INTERVAL_MS, REARM_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 目录重新创建后恢复监听,并通知一次(重新创建期间写入的会话不会产生事件)
+     */
+    private synchronized void tryRearm() {
+        if (stopped) {
+            cancelRearm();
+            return;
+        }
+        if (!Files.isDirectory(directory) || !start()) {
+            return;
+        }
+        cancelRearm();
+        LOG.debug("[SessionDirectoryWatcher] 会话目录已重新创建,恢复监听: " + directory);
+        scheduleNotify();
+    }
+
+    private void cancelRearm() {
+        if (rearmTask != null) {
+            rearmTask.cancel(false);
+            rearmTask = null;
+        }
+    }
+
+    /**
+     * 安排一次通知:每次变化把通知推迟 DEBOUNCE_MS,但距第一次未通知的变化不超过 MAX_WAIT_MS
+     */
+    private void scheduleNotify() {
+        synchronized (debounceLock) {
+            long now = System.currentTimeMillis();
+            if (pendingNotify != null) {
+                pendingNotify.cancel(false);
+            } else {
+                firstPendingAt = now;
+            }
+            long delay = Math.max(0, Math.min(DEBOUNCE_MS, firstPendingAt + MAX_WAIT_MS - now));
+            long seq = ++notifySeq;
+            pendingNotify = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+                synchronized (debounceLock) {
+                    if (seq == notifySeq) {
+                        pendingNotify = null;
+                    }
+                }
+                // 只在 stop() 后跳过;目录被删除时监听线程已退出,但仍需通知
+                if (stopped) {
+                    return;
+                }
+                try {
+                    onChange.run();
+                } catch (Exception e) {
+                    LOG.warn("[SessionDirectoryWatcher] 处理会话目录变化失败: " + e.getMessage(), e);
+                }
+            }, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 停止监听
+     */
+    public synchronized void stop() {
+        stopped = true;
+        running = false;
+        cancelRearm();
+        synchronized (debounceLock) {
+            if (pendingNotify != null) {
+                pendingNotify.cancel(false);
+                pendingNotify = null;
+            }
+        }
+        closeWatchService();
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+            watchService = null;
+        }
+    }
+}
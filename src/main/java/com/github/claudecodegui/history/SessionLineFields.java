@@ -0,0 +1,191 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 会话 JSONL 行的字段提取器
+ * 基于 JsonReader 流式读取统计和索引需要的少数字段,其余子树(尤其是 message.content)直接跳过,
+ * 不会绑定成对象树。同一个实例可以在扫描一个文件时反复使用。
+ */
+public final class SessionLineFields {
+
+    public String type;
+    public String timestamp;
+    public String summary;
+    public String requestId;
+    public boolean isMeta;
+
+    public String role;
+    public String model;
+    public String messageId;
+
+    public boolean hasUsage;
+    public long inputTokens;
+    public long outputTokens;
+    public long cacheCreationTokens;
+    public long cacheReadTokens;
+
+    /**
+     * message.content,仅在 extract 时要求保留时才会解析
+     */
+    public JsonElement content;
+
+    /**
+     * 解析一行
+     *
+     * @param line           JSONL 行
+     * @param captureContent 是否保留 message.content(用于生成标题),否则跳过
+     * @return 行是 JSON 对象时返回 true
+     * @throws IOException 行不是合法 JSON 时抛出
+     */
+    public boolean extract(String line, boolean captureContent) throws IOException {
+        reset();
+        JsonReader reader = new JsonReader(new StringReader(line));
+        reader.setLenient(true);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            return false;
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    type = nextString(reader);
+                    break;
+                case "timestamp":
+                    timestamp = nextString(reader);
+                    break;
+                case "summary":
+                    summary = nextString(reader);
+                    break;
+                case "requestId":
+                    requestId = nextString(reader);
+                    break;
+                case "isMeta":
+                    isMeta = nextBoolean(reader);
+                    break;
+                case "message":
+                    readMessage(reader, captureContent);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return true;
+    }
+
+    private void readMessage(JsonReader reader, boolean captureContent) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "role":
+                    role = nextString(reader);
+                    break;
+                case "model":
+                    model = nextString(reader);
+                    break;
+                case "id":
+                    messageId = nextString(reader);
+                    break;
+                case "usage":
+                    readUsage(reader);
+                    break;
+                case "content":
+                    if (captureContent && reader.peek() != JsonToken.NULL) {
+                        content = JsonParser.parseReader(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readUsage(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        hasUsage = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "input_tokens":
+                    inputTokens = nextLong(reader);
+                    break;
+                case "output_tokens":
+                    outputTokens = nextLong(reader);
+                    break;
+                case "cache_creation_input_tokens":
+                    cacheCreationTokens = nextLong(reader);
+                    break;
+                case "cache_read_input_tokens":
+                    cacheReadTokens = nextLong(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void reset() {
+        type = null;
+        timestamp = null;
+        summary = null;
+        requestId = null;
+        isMeta = false;
+        role = null;
+        model = null;
+        messageId = null;
+        hasUsage = false;
+        inputTokens = 0;
+        outputTokens = 0;
+        cacheCreationTokens = 0;
+        cacheReadTokens = 0;
+        content = null;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    private static long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            // 兼容 1.0 这类写法
+            return (long) reader.nextDouble();
+        }
+        reader.skipValue();
+        return 0;
+    }
+}
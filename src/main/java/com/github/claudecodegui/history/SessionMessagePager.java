@@ -0,0 +1,291 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 会话消息分页读取
+ * 打开历史会话时从文件末尾向前读取最近的若干行立即显示,耗时与会话文件大小无关;
+ * 同时在后台对之前的部分做一次换行扫描,建立行偏移索引,
+ * 向上滚动加载更早的消息时按索引定位,一次读取一页。
+ *
+ * 每页都从一轮对话的开头(用户输入的消息)开始,避免工具调用和工具结果被分在两页。
+ */
+public class SessionMessagePager {
+
+    private static final Logger LOG = Logger.getInstance(SessionMessagePager.class);
+
+    private static final int REVERSE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 为了对齐到对话开头,一页最多可以扩展到的行数倍数
+     */
+    private static final int MAX_PAGE_EXPANSION = 4;
+
+    /**
+     * 一页消息
+     */
+    public static class Page {
+        /** 按文件顺序排列的 JSON 行 */
+        public final List<JsonObject> lines;
+        /** 之前是否还有更早的消息 */
+        public final boolean hasOlder;
+
+        Page(List<JsonObject> lines, boolean hasOlder) {
+            this.lines = lines;
+            this.hasOlder = hasOlder;
+        }
+    }
+
+    private final Path file;
+
+    /** 已加载部分的起始偏移,更早的页面在它之前 */
+    private long cursor = -1;
+
+    /** 第一页之前所有行的起始偏移(后台建立) */
+    private CompletableFuture<long[]> lineIndex;
+
+    public SessionMessagePager(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取最近的消息(第一页)
+     *
+     * @param minLines 至少读取的行数,不足时读取整个文件
+     */
+    public synchronized Page readLatest(int minLines) throws IOException {
+        List<JsonObject> lines = new ArrayList<>();
+        long start;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            start = readBackward(channel, channel.size(), minLines, lines);
+        }
+        Collections.reverse(lines);
+        cursor = start;
+
+        long indexEnd = start;
+        lineIndex = CompletableFuture.supplyAsync(() -> {
+            try {
+                return JsonlTailReader.lineOffsets(file, indexEnd);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, AppExecutorUtil.getAppExecutorService());
+
+        LOG.debug("[SessionMessagePager] 首页 " + lines.size() + " 行, 起始位置 " + start + " / " + file.getFileName());
+        return new Page(lines, start > 0);
+    }
+
+    /**
+     * 读取已加载部分之前的一页
+     *
+     * @param minLines 至少读取的行数
+     */
+    public synchronized Page readOlder(int minLines) throws IOException {
+        if (cursor <= 0 || lineIndex == null) {
+            return new Page(new ArrayList<>(), false);
+        }
+
+        long[] offsets;
+        try {
+            offsets = lineIndex.join();
+        } catch (Exception e) {
+            // 索引建立失败时退回到从 cursor 向前逐块读取
+            LOG.warn("[SessionMessagePager] 行索引不可用: " + e.getMessage());
+            List<JsonObject> lines = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                cursor = readBackward(channel, cursor, minLines, lines);
+            }
+            Collections.reverse(lines);
+            return new Page(lines, cursor > 0);
+        }
+
+        // cursor 本身是某一行的起始位置,它之前的行是 offsets[0, end)
+        int end = Arrays.binarySearch(offsets, cursor);
+        if (end < 0) {
+            end = -end - 1;
+        }
+        int first = Math.max(0, end - minLines);
+        int limit = Math.max(0, end - minLines * MAX_PAGE_EXPANSION);
+
+        List<JsonObject> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            parseLines(readRange(channel, offsets[first], cursor), lines);
+            // 向前扩展到一轮对话的开头
+            while (first > limit && (lines.isEmpty() || !isTurnStart(lines.get(0)))) {
+                first--;
+                List<JsonObject> previous = new ArrayList<>();
+                parseLines(readRange(channel, offsets[first], offsets[first + 1]), previous);
+                lines.addAll(0, previous);
+            }
+        }
+        cursor = offsets[first];
+        return new Page(lines, first > 0);
+    }
+
+    /**
+     * 从 end 向前逐块读取,直到读够 minLines 行并且最早的一行是对话开头
+     *
+     * @param lines 按从新到旧的顺序追加
+     * @return 最早一行的起始位置
+     */
+    private static long readBackward(FileChannel channel, long end, int minLines, List<JsonObject> lines) throws IOException {
+        int maxLines = minLines * MAX_PAGE_EXPANSION;
+        ByteBuffer buffer = ByteBuffer.allocate(REVERSE_CHUNK_SIZE);
+        byte[] chunk = buffer.array();
+        long position = end;
+        // 当前行的结束位置(文件偏移),它之前还没有遇到换行符
+        long lineEnd = end;
+        int chunkSize = 0;
+
+        while (position > 0) {
+            chunkSize = (int) Math.min(REVERSE_CHUNK_SIZE, position);
+            position -= chunkSize;
+            readFully(channel, buffer, position, chunkSize);
+
+            for (int i = chunkSize - 1; i >= 0; i--) {
+                if (chunk[i] != '\n') {
+                    continue;
+                }
+                long lineStart = position + i + 1;
+                JsonObject line = parseLineAt(channel, chunk, position, chunkSize, lineStart, lineEnd);
+                lineEnd = position + i;
+                if (line == null) {
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() >= maxLines || (lines.size() >= minLines && isTurnStart(line))) {
+                    return lineStart;
+                }
+            }
+        }
+
+        JsonObject first = parseLineAt(channel, chunk, 0, chunkSize, 0, lineEnd);
+        if (first != null) {
+            lines.add(first);
+        }
+        // 已经读到文件开头
+        return 0;
+    }
+
+    /**
+     * 解析 [lineStart, lineEnd) 的一行
+     * 整行都在当前块内时直接从块中解析;跨越多个块的长行(例如很大的工具结果)按偏移一次性读取,
+     * 不在向前扫描的过程中反复拼接
+     *
+     * @param chunkStart 当前块在文件中的起始位置
+     */
+    private static JsonObject parseLineAt(FileChannel channel, byte[] chunk, long chunkStart, int chunkSize,
+                                          long lineStart, long lineEnd) throws IOException {
+        if (lineEnd <= chunkStart + chunkSize) {
+            return parseLine(chunk, (int) (lineStart - chunkStart), (int) (lineEnd - chunkStart));
+        }
+        byte[] data = readRange(channel, lineStart, lineEnd);
+        return parseLine(data, 0, data.length);
+    }
+
+    /**
+     * 是否是一轮对话的开头:用户输入的消息(不是 meta 消息,也不是工具结果)
+     */
+    static boolean isTurnStart(JsonObject line) {
+        if (!line.has("type") || !"user".equals(line.get("type").getAsString())) {
+            return false;
+        }
+        if (line.has("isMeta") && line.get("isMeta").isJsonPrimitive() && line.get("isMeta").getAsBoolean()) {
+            return false;
+        }
+        if (!line.has("message") || !line.get("message").isJsonObject()) {
+            return false;
+        }
+        JsonElement content = line.getAsJsonObject("message").get("content");
+        if (content == null || content.isJsonNull()) {
+            return false;
+        }
+        if (content.isJsonArray()) {
+            JsonArray blocks = content.getAsJsonArray();
+            for (JsonElement block : blocks) {
+                if (block.isJsonObject() && block.getAsJsonObject().has("type")
+                    && "tool_result".equals(block.getAsJsonObject().get("type").getAsString())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void parseLines(byte[] data, List<JsonObject> lines) {
+        int start = 0;
+        for (int i = 0; i <= data.length; i++) {
+            if (i == data.length || data[i] == '\n') {
+                JsonObject line = parseLine(data, start, i);
+                if (line != null) {
+                    lines.add(line);
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    private static JsonObject parseLine(byte[] data, int start, int end) {
+        if (end > start && data[end - 1] == '\r') {
+            end--;
+        }
+        if (end <= start) {
+            return null;
+        }
+        String text = new String(data, start, end - start, StandardCharsets.UTF_8);
+        if (text.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            JsonElement element = JsonParser.parseString(text);
+            return element.isJsonObject() ? element.getAsJsonObject() : null;
+        } catch (Exception e) {
+            // 跳过解析失败的行(例如正在写入的半行)
+            return null;
+        }
+    }
+
+    private static byte[] readRange(FileChannel channel, long from, long to) throws IOException {
+        return read(channel, from, (int) (to - from));
+    }
+
+    /**
+     * 把 [position, position + length) 读入 buffer 开头
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.claudecodegui.history;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个会话文件的元数据
+ * 由 ClaudeHistoryReader 扫描 .jsonl 得到,保存在 SessionMetadataIndex 中;
+ * size / lastModified 与磁盘文件一致时直接复用,不再重新解析。
+ * 会话文件只追加写入,文件变长时从 parsedBytes 继续累加,不需要从头解析
+ */
+public class SessionMetadata {
+
+    /**
+     * 最多记住的最近计入用量的消息数
+     * 同一条消息的流式分块在文件中是相邻的,只需要记住最近的少量消息即可在增量解析时继续去重
+     */
+    private static final int MAX_RECENT_USAGE = 32;
+
+    /**
+     * 消息数未统计(只快速读取过开头和末尾)
+     */
+    public static final int UNKNOWN_COUNT = -1;
+
+    /**
+     * 已计入用量的一条助手消息(message.id + requestId)
+     */
+    public static class UsageMark {
+        public String key;
+        /** 计入的 时段|模型 分组 */
+        public String bucket;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheWriteTokens;
+        public long cacheReadTokens;
+    }
+
+    /** 文件大小和修改时间,用于判断索引是否过期 */
+    public long size;
+    public long lastModified;
+
+    /** 已解析的字节数(最后一个完整行之后的位置) */
+    public long parsedBytes;
+    /** 文件开头 headLength 字节的 CRC32,用于识别文件被截断或重写 */
+    public int headLength;
+    public long headCrc;
+
+    /**
+     * 是否完整解析过(token 用量、摘要可用)
+     * 历史列表只需要标题和时间戳,新文件先用 quickScan 读取开头和末尾,
+     * 统计页面需要用量或历史列表需要消息数时再完整解析
+     */
+    public boolean usageScanned;
+
+    /** 成功解析的消息行数,只快速读取过(usageScanned 为 false)时为 {@link #UNKNOWN_COUNT} */
+    public int messageCount;
+    /** 第一条非 meta 用户消息生成的标题(已截断) */
+    public String title;
+    /** type=summary 行中的摘要 */
+    public String summary;
+    public long firstTimestamp;
+    public long lastTimestamp;
+
+    /** 第一条带 usage 的助手消息使用的模型 */
+    public String model = "unknown";
+    /** 去重后的 token 总量(同一 message.id + requestId 的多个分块只计一次) */
+    public long inputTokens;
+    public long outputTokens;
+    public long cacheWriteTokens;
+    public long cacheReadTokens;
+
+    /**
+     * 按 "时段|模型" 汇总的去重后用量,值为 [input, output, cacheWrite, cacheRead]
+     * 时段为消息时间戳自 1970-01-01T00:00Z 起的 15 分钟数,按日统计时再换算为本地日期;
+     * 各时区与 UTC 的偏移都是 15 分钟的整数倍(例如 +05:30),时段不会跨越本地日期的分界
+     */
+    public Map<String, long[]> slotUsage = new HashMap<>();
+
+    /** 最近计入用量的消息,按计入顺序排列 */
+    public List<UsageMark> recentUsage = new ArrayList<>();
+
+    /**
+     * 查找最近计入过用量的同一条消息
+     */
+    public UsageMark findRecentUsage(String key) {
+        for (int i = recentUsage.size() - 1; i >= 0; i--) {
+            if (recentUsage.get(i).key.equals(key)) {
+                return recentUsage.get(i);
+            }
+        }
+        return null;
+    }
+
+    public void rememberUsage(UsageMark mark) {
+        recentUsage.add(mark);
+        if (recentUsage.size() > MAX_RECENT_USAGE) {
+            recentUsage.remove(0);
+        }
+    }
+
+    /**
+     * 累加到总量和对应的 时段|模型 分组
+     */
+    public void addUsage(String bucket, long input, long output, long cacheWrite, long cacheRead) {
+        inputTokens += input;
+        outputTokens += output;
+        cacheWriteTokens += cacheWrite;
+        cacheReadTokens += cacheRead;
+
+        long[] tokens = slotUsage.computeIfAbsent(bucket, k -> new long[4]);
+        tokens[0] += input;
+        tokens[1] += output;
+        tokens[2] += cacheWrite;
+        tokens[3] += cacheRead;
+    }
+
+    /**
+     * 复制一份用于继续累加,已发布给调用方的实例保持不变
+     */
+    public SessionMetadata copy() {
+        SessionMetadata copy = new SessionMetadata();
+        copy.size = size;
+        copy.lastModified = lastModified;
+        copy.parsedBytes = parsedBytes;
+        copy.headLength = headLength;
+        copy.headCrc = headCrc;
+        copy.usageScanned = usageScanned;
+        copy.messageCount = messageCount;
+        copy.title = title;
+        copy.summary = summary;
+        copy.firstTimestamp = firstTimestamp;
+        copy.lastTimestamp = lastTimestamp;
+        copy.model = model;
+        copy.inputTokens = inputTokens;
+        copy.outputTokens = outputTokens;
+        copy.cacheWriteTokens = cacheWriteTokens;
+        copy.cacheReadTokens = cacheReadTokens;
+        if (slotUsage != null) {
+            for (Map.Entry<String, long[]> entry : slotUsage.entrySet()) {
+                copy.slotUsage.put(entry.getKey(), entry.getValue().clone());
+            }
+        }
+        if (recentUsage != null) {
+            for (UsageMark mark : recentUsage) {
+                UsageMark markCopy = new UsageMark();
+                markCopy.key = mark.key;
+                markCopy.bucket = mark.bucket;
+                markCopy.inputTokens = mark.inputTokens;
+                markCopy.outputTokens = mark.outputTokens;
+                markCopy.cacheWriteTokens = mark.cacheWriteTokens;
+                markCopy.cacheReadTokens = mark.cacheReadTokens;
+                copy.recentUsage.add(markCopy);
+            }
+        }
+        return copy;
+    }
+
+    public long getTotalTokens() {
+        return inputTokens + outputTokens + cacheWriteTokens + cacheReadTokens;
+    }
+}
@@ -0,0 +1,320 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.settings.ConfigPathManager;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 会话元数据索引
+ * 每个 ~/.claude/projects/<项目> 目录对应一个索引文件 (~/.codemoss/history-index/<项目>.json),
+ * 记录每个会话文件的标题、消息数、首末时间戳和 token 用量。
+ *
+ * 刷新时只对文件大小或修改时间发生变化的新文件/变更文件重新解析,其余直接复用索引,
+ * 因此打开历史面板时不再需要把所有会话完整读一遍。
+ * 会话文件是只追加的日志:文件变长且开头内容未变时只解析追加部分,
+ * 文件被截断或重写时才从头解析。
+ *
+ * 只需要列表信息时(requireUsage=false),没有完整解析过的文件走 Parser.quickScan:
+ * 只读取文件开头的一小段取标题、末尾的一小段取最后时间戳,不解析中间内容。
+ */
+public class SessionMetadataIndex {
+
+    private static final Logger LOG = Logger.getInstance(SessionMetadataIndex.class);
+
+    /**
+     * 索引格式版本,SessionMetadata 的含义变化时递增以丢弃旧索引
+     */
+    private static final int INDEX_VERSION = 7;
+
+    /**
+     * 用于识别文件重写的开头字节数
+     */
+    private static final int HEAD_LENGTH = 4096;
+    private static final String INDEX_DIR_NAME = "history-index";
+
+    private static final Map<Path, SessionMetadataIndex> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 会话文件解析器(由 ClaudeHistoryReader 提供)
+     */
+    public interface Parser {
+        /**
+         * 从 offset 开始解析完整行并累加到 metadata
+         *
+         * @return 已解析内容的结束位置
+         */
+        long scan(Path file, SessionMetadata metadata, long offset) throws IOException;
+
+        /**
+         * 只读取文件开头和末尾,填充标题和首末时间戳,消息数记为 SessionMetadata.UNKNOWN_COUNT
+         * metadata.title 已有值时不需要再读取开头
+         *
+         * @return 在读取范围内找不到标题时返回 false,由调用方改为完整解析
+         */
+        boolean quickScan(Path file, SessionMetadata metadata) throws IOException;
+    }
+
+    /**
+     * 索引文件的持久化结构
+     */
+    private static class IndexFile {
+        int version;
+        Map<String, SessionMetadata> files;
+    }
+
+    private final Path projectDir;
+    private final Path indexFile;
+    private final Gson gson = new Gson();
+    private Map<String, SessionMetadata> entries;
+    /** 每次索引内容变化时递增,供派生数据判断是否需要重建 */
+    private long version;
+
+    private SessionMetadataIndex(Path projectDir, Path indexFile) {
+        this.projectDir = projectDir;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * 获取项目会话目录对应的索引(进程内共享)
+     */
+    public static SessionMetadataIndex forProjectDir(Path projectDir) {
+        Path normalized = projectDir.toAbsolutePath().normalize();
+        return INSTANCES.computeIfAbsent(normalized, dir -> new SessionMetadataIndex(
+            dir,
+            new ConfigPathManager().getConfigDir()
+                .resolve(INDEX_DIR_NAME)
+                .resolve(dir.getFileName().toString() + ".json")
+        ));
+    }
+
+    /**
+     * 与磁盘同步并返回所有非空会话文件的元数据(在调用线程上解析)
+     *
+     * @return sessionId(文件名去掉 .jsonl) -> 元数据
+     */
+    public Map<String, SessionMetadata> refresh(Parser parser) throws IOException {
+        return refresh(parser, null, true);
+    }
+
+    /**
+     * 与磁盘同步并返回所有非空会话文件的元数据
+     *
+     * @param executor     需要重新解析的文件分发到该线程池并行解析;为 null 时在调用线程上依次解析
+     * @param requireUsage 是否需要 token 用量;为 false 时未完整解析过的文件只读取开头和末尾
+     * @return sessionId(文件名去掉 .jsonl) -> 元数据
+     */
+    public synchronized Map<String, SessionMetadata> refresh(Parser parser, Executor executor, boolean requireUsage) throws IOException {
+        if (entries == null) {
+            entries = load();
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(projectDir)) {
+            files = stream
+                .filter(path -> path.getFileName().toString().endsWith(".jsonl"))
+                .collect(Collectors.toList());
+        }
+
+        Executor scanExecutor = executor != null ? executor : Runnable::run;
+        Map<String, SessionMetadata> next = new HashMap<>();
+        Map<String, CompletableFuture<SessionMetadata>> pending = new LinkedHashMap<>();
+        AtomicInteger parsed = new AtomicInteger();
+        AtomicInteger resumed = new AtomicInteger();
+        AtomicInteger quick = new AtomicInteger();
+
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // 文件可能刚被删除
+                continue;
+            }
+            if (attrs.size() == 0) {
+                continue;
+            }
+
+            SessionMetadata previous = entries.get(fileName);
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            if (previous != null && previous.size == attrs.size() && previous.lastModified == lastModified
+                && (previous.usageScanned || !requireUsage)) {
+                next.put(fileName, previous);
+            } else {
+                pending.put(fileName, CompletableFuture.supplyAsync(
+                    () -> scanFile(file, attrs, previous, parser, requireUsage, parsed, resumed, quick), scanExecutor));
+            }
+        }
+
+        for (Map.Entry<String, CompletableFuture<SessionMetadata>> entry : pending.entrySet()) {
+            try {
+                next.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                LOG.warn("[SessionMetadataIndex] 解析会话文件失败: " + entry.getKey() + " - " + cause.getMessage());
+            }
+        }
+
+        // 有文件被解析或被删除时需要保存
+        boolean dirty = !pending.isEmpty() || next.size() != entries.size() || !next.keySet().equals(entries.keySet());
+        entries = next;
+
+        if (dirty) {
+            version++;
+            LOG.debug("[SessionMetadataIndex] " + projectDir.getFileName() + ": 完整解析 " + parsed.get() + " 个, 增量解析 " + resumed.get() + " 个, 快速读取 " + quick.get() + " 个, 共 " + next.size() + " 个会话文件");
+            save();
+        }
+
+        Map<String, SessionMetadata> result = new LinkedHashMap<>();
+        for (Map.Entry<String, SessionMetadata> entry : next.entrySet()) {
+            String fileName = entry.getKey();
+            result.put(fileName.substring(0, fileName.length() - ".jsonl".length()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 索引内容的版本号,refresh 发现文件新增、变更或删除时递增
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * 解析单个新增或变更的会话文件(可能在线程池中执行)
+     */
+    private SessionMetadata scanFile(Path file, BasicFileAttributes attrs, SessionMetadata previous, Parser parser,
+                                     boolean requireUsage, AtomicInteger parsed, AtomicInteger resumed,
+                                     AtomicInteger quick) {
+        try {
+            SessionMetadata metadata = null;
+            if (previous != null && previous.usageScanned && canResume(file, attrs.size(), previous)) {
+                // 只解析追加的部分
+                metadata = previous.copy();
+                metadata.parsedBytes = parser.scan(file, metadata, metadata.parsedBytes);
+                resumed.incrementAndGet();
+            } else if (!requireUsage) {
+                // 开头未变时沿用已有标题,只需重新读取末尾
+                metadata = previous != null && !previous.usageScanned && headUnchanged(file, attrs.size(), previous)
+                    ? previous.copy()
+                    : new SessionMetadata();
+                if (parser.quickScan(file, metadata)) {
+                    metadata.usageScanned = false;
+                    metadata.parsedBytes = 0;
+                    quick.incrementAndGet();
+                } else {
+                    metadata = null;
+                }
+            }
+
+            if (metadata == null) {
+                metadata = new SessionMetadata();
+                metadata.parsedBytes = parser.scan(file, metadata, 0);
+                metadata.usageScanned = true;
+                parsed.incrementAndGet();
+            }
+            updateHead(file, attrs.size(), metadata);
+            metadata.size = attrs.size();
+            metadata.lastModified = attrs.lastModifiedTime().toMillis();
+            return metadata;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 判断文件是否只是在上次解析之后追加了内容
+     * 文件比已解析部分短(被截断),或开头内容与记录不一致(被重写)时需要完整解析
+     */
+    private static boolean canResume(Path file, long size, SessionMetadata metadata) throws IOException {
+        if (metadata.parsedBytes <= 0 || size < metadata.parsedBytes || metadata.headLength <= 0) {
+            return false;
+        }
+        return JsonlTailReader.headCrc(file, metadata.headLength) == metadata.headCrc;
+    }
+
+    /**
+     * 判断文件开头是否与记录一致(用于沿用快速读取得到的标题)
+     */
+    private static boolean headUnchanged(Path file, long size, SessionMetadata metadata) throws IOException {
+        if (metadata.headLength <= 0 || size < metadata.headLength) {
+            return false;
+        }
+        return JsonlTailReader.headCrc(file, metadata.headLength) == metadata.headCrc;
+    }
+
+    /**
+     * 记录文件开头的校验值
+     * 开头不足 HEAD_LENGTH 字节时随文件增长更新(已记录部分已在 canResume 中校验过)
+     */
+    private static void updateHead(Path file, long size, SessionMetadata metadata) throws IOException {
+        int length = (int) Math.min(size, HEAD_LENGTH);
+        if (length != metadata.headLength) {
+            metadata.headLength = length;
+            metadata.headCrc = JsonlTailReader.headCrc(file, length);
+        }
+    }
+
+    private Map<String, SessionMetadata> load() {
+        if (!Files.exists(indexFile)) {
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            IndexFile data = gson.fromJson(reader, IndexFile.class);
+            if (data == null || data.version != INDEX_VERSION || data.files == null) {
+                return new HashMap<>();
+            }
+            return new HashMap<>(data.files);
+        } catch (IOException | JsonSyntaxException e) {
+            LOG.warn("[SessionMetadataIndex] 读取索引失败,将重新建立: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 先写临时文件再重命名,避免中途失败留下损坏的索引
+     */
+    private void save() {
+        IndexFile data = new IndexFile();
+        data.version = INDEX_VERSION;
+        data.files = entries;
+
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(data, writer);
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOG.warn("[SessionMetadataIndex] 保存索引失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.github.claudecodegui.history;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 15 分钟时段分桶的列式 token 用量存储
+ * 每一行是 (时段, 模型, 项目) 的汇总,各列分别保存在基本类型数组中并按时段排序,
+ * 任意时间范围的查询只需二分定位起止行再顺序累加,不需要读取 JSONL。
+ *
+ * 时段不按小时而按 15 分钟划分:各时区与 UTC 的偏移都是 15 分钟的整数倍,
+ * 按本地日期/小时分组时(例如 +05:30)每个时段都完整落在一个分组内。
+ *
+ * 只有实际有用量的 (时段, 模型, 项目) 才占一行,每行约 56 字节,
+ * 常见使用量下整个存储在几 MB 以内。
+ */
+public final class UsageColumnStore {
+
+    public static final String GROUP_MODEL = "model";
+    public static final String GROUP_PROJECT = "project";
+    public static final String GROUP_DAY = "day";
+    public static final String GROUP_HOUR = "hour";
+    public static final String GROUP_NONE = "none";
+
+    /** 时段长度,与 SessionMetadata 中用量分组的时段一致 */
+    public static final long SLOT_MILLIS = 15 * 60_000L;
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:00");
+
+    /**
+     * 计价函数(由 ClaudeHistoryReader 提供)
+     */
+    public interface CostFunction {
+        /**
+         * @param tokens [input, output, cacheWrite, cacheRead]
+         */
+        double cost(String model, long[] tokens);
+    }
+
+    /**
+     * 查询结果中的一个分组
+     */
+    public static class Group {
+        public String key;
+        public long inputTokens;
+        public long outputTokens;
+        public long cacheWriteTokens;
+        public long cacheReadTokens;
+        public long totalTokens;
+        public double cost;
+    }
+
+    /**
+     * 逐条添加 (项目, 时段, 模型) 用量,相同键自动合并
+     */
+    public static class Builder {
+        private final Map<String, Integer> modelIds = new HashMap<>();
+        private final Map<String, Integer> projectIds = new HashMap<>();
+        private final List<String> models = new ArrayList<>();
+        private final List<String> projects = new ArrayList<>();
+        private final Map<Long, long[]> rows = new HashMap<>();
+
+        /**
+         * @param epochSlot 自 1970-01-01T00:00Z 起的时段数(15 分钟)
+         * @param tokens    [input, output, cacheWrite, cacheRead]
+         */
+        public Builder add(String project, long epochSlot, String model, long[] tokens) {
+            int modelId = modelIds.computeIfAbsent(model, name -> {
+                models.add(name);
+                return models.size() - 1;
+            });
+            int projectId = projectIds.computeIfAbsent(project, name -> {
+                projects.add(name);
+                return projects.size() - 1;
+            });
+            long[] row = rows.computeIfAbsent(rowKey(epochSlot, modelId, projectId), k -> new long[4]);
+            for (int i = 0; i < 4; i++) {
+                row[i] += tokens[i];
+            }
+            return this;
+        }
+
+        public UsageColumnStore build(CostFunction costFunction) {
+            long[] keys = rows.keySet().stream().mapToLong(Long::longValue).toArray();
+            // 行键的高位是时段,排序后即按时间排列
+            Arrays.sort(keys);
+
+            UsageColumnStore store = new UsageColumnStore(keys.length,
+                models.toArray(new String[0]), projects.toArray(new String[0]));
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                long[] tokens = rows.get(key);
+                store.slots[i] = (int) (key >>> 36);
+                store.modelIds[i] = (int) ((key >>> 20) & 0xFFFF);
+                store.projectIds[i] = (int) (key & 0xFFFFF);
+                store.inputTokens[i] = tokens[0];
+                store.outputTokens[i] = tokens[1];
+                store.cacheWriteTokens[i] = tokens[2];
+                store.cacheReadTokens[i] = tokens[3];
+                store.costs[i] = costFunction.cost(store.models[store.modelIds[i]], tokens);
+            }
+            return store;
+        }
+
+        private static long rowKey(long epochSlot, int modelId, int projectId) {
+            return (epochSlot << 36) | ((long) (modelId & 0xFFFF) << 20) | (projectId & 0xFFFFF);
+        }
+    }
+
+    private final int size;
+    private final String[] models;
+    private final String[] projects;
+
+    private final int[] slots;
+    private final int[] modelIds;
+    private final int[] projectIds;
+    private final long[] inputTokens;
+    private final long[] outputTokens;
+    private final long[] cacheWriteTokens;
+    private final long[] cacheReadTokens;
+    private final double[] costs;
+
+    private UsageColumnStore(int size, String[] models, String[] projects) {
+        this.size = size;
+        this.models = models;
+        this.projects = projects;
+        this.slots = new int[size];
+        this.modelIds = new int[size];
+        this.projectIds = new int[size];
+        this.inputTokens = new long[size];
+        this.outputTokens = new long[size];
+        this.cacheWriteTokens = new long[size];
+        this.cacheReadTokens = new long[size];
+        this.costs = new double[size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查询时间范围内的用量
+     *
+     * @param fromMillis 起始时间(含),按所在时段对齐
+     * @param toMillis   结束时间(不含)
+     * @param groupBy    model / project / day / hour / none
+     * @param project    只统计该项目(会话目录名),为 null 时统计全部项目
+     * @param zone       day / hour 分组使用的时区
+     * @return day / hour 分组按时间升序,其余按费用降序
+     */
+    public List<Group> query(long fromMillis, long toMillis, String groupBy, String project, ZoneId zone) {
+        int fromSlot = (int) Math.floorDiv(fromMillis, SLOT_MILLIS);
+        int toSlot = (int) Math.floorDiv(toMillis - 1, SLOT_MILLIS);
+
+        int projectFilter = -1;
+        if (project != null) {
+            projectFilter = Arrays.asList(projects).indexOf(project);
+            if (projectFilter < 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (int i = lowerBound(fromSlot); i < size && slots[i] <= toSlot; i++) {
+            if (projectFilter >= 0 && projectIds[i] != projectFilter) {
+                continue;
+            }
+            String key = groupKey(i, groupBy, zone);
+            Group group = groups.computeIfAbsent(key, k -> {
+                Group g = new Group();
+                g.key = k;
+                return g;
+            });
+            group.inputTokens += inputTokens[i];
+            group.outputTokens += outputTokens[i];
+            group.cacheWriteTokens += cacheWriteTokens[i];
+            group.cacheReadTokens += cacheReadTokens[i];
+            group.totalTokens += inputTokens[i] + outputTokens[i] + cacheWriteTokens[i] + cacheReadTokens[i];
+            group.cost += costs[i];
+        }
+
+        List<Group> result = new ArrayList<>(groups.values());
+        if (GROUP_MODEL.equals(groupBy) || GROUP_PROJECT.equals(groupBy)) {
+            result.sort((a, b) -> Double.compare(b.cost, a.cost));
+        }
+        return result;
+    }
+
+    private String groupKey(int row, String groupBy, ZoneId zone) {
+        switch (groupBy) {
+            case GROUP_MODEL:
+                return models[modelIds[row]];
+            case GROUP_PROJECT:
+                return projects[projectIds[row]];
+            case GROUP_DAY:
+                return Instant.ofEpochMilli(slots[row] * SLOT_MILLIS).atZone(zone).toLocalDate().toString();
+            case GROUP_HOUR:
+                return HOUR_FORMAT.format(Instant.ofEpochMilli(slots[row] * SLOT_MILLIS).atZone(zone));
+            default:
+                return "total";
+        }
+    }
+
+    /**
+     * 第一个 slots[i] >= slot 的行
+     */
+    private int lowerBound(int slot) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (slots[mid] < slot) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * bridge 进程内的权限通道
+ * Node 侧把权限请求和 AskUserQuestion 请求作为带标记的行输出到 stdout,
+ * Java 侧处理后把响应作为一行 JSON 写回同一进程的 stdin,不再经过权限目录中转。
+ *
+ * 启动 Node 进程时未设置 {@link #CHANNEL_ENV} 的情况(例如权限服务尚未启动),
+ * permission-handler.js 仍然使用文件模式。
+ */
+public class PermissionChannel implements PermissionService.ResponseSink {
+
+    private static final Logger LOG = Logger.getInstance(PermissionChannel.class);
+
+    public static final String CHANNEL_ENV = "CLAUDE_PERMISSION_CHANNEL";
+    public static final String CHANNEL_STDIO = "stdio";
+
+    public static final String PERMISSION_REQUEST_TAG = "[PERMISSION_REQUEST]";
+    public static final String ASK_USER_QUESTION_REQUEST_TAG = "[ASK_USER_QUESTION_REQUEST]";
+
+    private final PermissionService permissionService;
+    private final OutputStream stdin;
+    private final Gson gson = new Gson();
+    private boolean closed = false;
+
+    /**
+     * @param stdin Node 进程的标准输入,首行参数已写入且保持打开
+     */
+    public PermissionChannel(PermissionService permissionService, OutputStream stdin) {
+        this.permissionService = permissionService;
+        this.stdin = stdin;
+    }
+
+    /**
+     * 处理一行 Node 输出
+     *
+     * @return 该行是权限通道消息时返回 true
+     */
+    public boolean handleLine(String line) {
+        if (line.startsWith(PERMISSION_REQUEST_TAG)) {
+            JsonObject request = parse(line.substring(PERMISSION_REQUEST_TAG.length()));
+            if (request != null) {
+                // 由 PermissionService 的调度器异步处理,不占用读取 stdout 的线程
+                permissionService.handleChannelPermissionRequest(request, this);
+            }
+            return true;
+        }
+        if (line.startsWith(ASK_USER_QUESTION_REQUEST_TAG)) {
+            JsonObject request = parse(line.substring(ASK_USER_QUESTION_REQUEST_TAG.length()));
+            if (request != null) {
+                permissionService.handleChannelAskUserQuestion(request, this);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void sendPermissionResponse(String requestId, boolean allow) {
+        JsonObject response = new JsonObject();
+        response.addProperty("type", "permission_response");
+        response.addProperty("requestId", requestId);
+        response.addProperty("allow", allow);
+        send(response);
+    }
+
+    /**
+     * 批量弹窗的结果作为一行写回
+     */
+    @Override
+    public void sendPermissionResponses(Map<String, Boolean> responses) {
+        JsonArray items = new JsonArray();
+        responses.forEach((requestId, allow) -> {
+            JsonObject item = new JsonObject();
+            item.addProperty("requestId", requestId);
+            item.addProperty("allow", allow);
+            items.add(item);
+        });
+        JsonObject response = new JsonObject();
+        response.addProperty("type", "permission_batch_response");
+        response.add("responses", items);
+        send(response);
+    }
+
+    @Override
+    public void sendAskUserQuestionResponse(String requestId, JsonObject answers) {
+        JsonObject response = new JsonObject();
+        response.addProperty("type", "ask_user_question_response");
+        response.addProperty("requestId", requestId);
+        response.add("answers", answers);
+        send(response);
+    }
+
+    private synchronized void send(JsonObject response) {
+        if (closed) {
+            LOG.debug("[PermissionChannel] 通道已关闭,丢弃响应: " + response.get("type"));
+            return;
+        }
+        try {
+            stdin.write((gson.toJson(response) + "\n").getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+        } catch (IOException e) {
+            // 进程已退出
+            LOG.debug("[PermissionChannel] 写入响应失败: " + e.getMessage());
+            closed = true;
+        }
+    }
+
+    /**
+     * 关闭 Node 进程的标准输入,之后的响应被丢弃
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    private JsonObject parse(String json) {
+        try {
+            return gson.fromJson(json.trim(), JsonObject.class);
+        } catch (Exception e) {
+            LOG.warn("[PermissionChannel] 无法解析权限请求: " + e.getMessage());
+            return null;
+        }
+    }
+}
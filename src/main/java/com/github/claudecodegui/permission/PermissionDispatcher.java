@@ -0,0 +1,384 @@
+package com.github.claudecodegui.permission;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 权限请求调度
+ * 请求在一个小线程池上并发解析和路由,同一通道(同一个 Node 进程)的请求按到达顺序依次处理;
+ * 需要弹窗的请求进入公平队列:每个对话框显示器同时只显示一个弹窗,各通道轮流出队,
+ * 一个通道(例如子代理批量发起的工具调用)排队的请求不会让其他通道一直等待。
+ *
+ * 可合并的弹窗(见 {@link #showBatchableDialog})轮到某个通道时,该通道排队中的同类请求一起出队,
+ * 合并为一个弹窗显示;显示器空闲且该通道还有排队中的请求时,第一个请求先等待 {@link #BATCH_WINDOW_MS},
+ * 让同一轮中连续发起的请求(例如多文件编辑)也能进入同一个弹窗;单独的请求直接显示。
+ *
+ * 带截止时间的弹窗(Node 侧已按超时自动拒绝)在出队时丢弃,结果以 {@link TimeoutException} 结束。
+ */
+public class PermissionDispatcher {
+
+    private static final Logger LOG = Logger.getInstance(PermissionDispatcher.class);
+
+    private static final int POOL_SIZE = 3;
+
+    /**
+     * 显示器空闲时等待同一通道后续请求的时间
+     */
+    private static final long BATCH_WINDOW_MS = 150;
+
+    /**
+     * 合并显示多个弹窗
+     *
+     * @param <I> 请求
+     * @param <T> 每个请求的结果
+     */
+    public interface Batcher<I, T> {
+        /**
+         * 在一个弹窗中显示多个请求
+         *
+         * @return 与 items 顺序一致的结果
+         */
+        CompletableFuture<List<T>> showBatch(List<I> items);
+
+        /**
+         * 把结果交付给各个请求,completeAll 依次完成每个请求的 future;
+         * 可以在这里把各请求的后续处理收拢到一起(例如合并写回响应)
+         */
+        default void deliver(Runnable completeAll) {
+            completeAll.run();
+        }
+    }
+
+    private final ExecutorService executor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("PermissionDispatcher", POOL_SIZE);
+
+    /**
+     * 通道 -> 等待处理的任务,存在即表示该通道有任务正在执行
+     */
+    private final Map<String, ArrayDeque<Runnable>> channelQueues = new HashMap<>();
+
+    /**
+     * 对话框显示器 -> 等待显示的弹窗
+     */
+    private final Map<Object, DialogQueue> dialogQueues = new IdentityHashMap<>();
+
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicInteger runningTasks = new AtomicInteger();
+    private final AtomicInteger queuedDialogs = new AtomicInteger();
+    private final AtomicInteger openDialogs = new AtomicInteger();
+
+    /**
+     * 排队等待显示的弹窗
+     */
+    private static final class PendingDialog {
+        /** 单独显示该弹窗 */
+        final Runnable start;
+        /** 可合并时非 null */
+        final BatchMember<?, ?> member;
+        /** 截止时间(毫秒时间戳),0 表示不过期 */
+        final long deadline;
+        /** 过期时结束该请求 */
+        final Runnable expire;
+
+        PendingDialog(Runnable start, BatchMember<?, ?> member, long deadline, Runnable expire) {
+            this.start = start;
+            this.member = member;
+            this.deadline = deadline;
+            this.expire = expire;
+        }
+
+        boolean isExpired(long now) {
+            return deadline > 0 && now >= deadline;
+        }
+    }
+
+    private static final class BatchMember<I, T> {
+        final Batcher<I, T> batcher;
+        final I item;
+        final CompletableFuture<T> result;
+
+        BatchMember(Batcher<I, T> batcher, I item, CompletableFuture<T> result) {
+            this.batcher = batcher;
+            this.item = item;
+            this.result = result;
+        }
+    }
+
+    /**
+     * 同一个显示器的弹窗队列,按通道轮流出队
+     */
+    private static class DialogQueue {
+        boolean showing;
+        final LinkedHashMap<String, ArrayDeque<PendingDialog>> waiting = new LinkedHashMap<>();
+
+        /**
+         * 取出下一个通道的弹窗:队首可合并时连同该通道排队中使用同一 Batcher 的请求一起取出
+         *
+         * @param expired 收集已过期的弹窗,由调用方在锁外结束
+         */
+        List<PendingDialog> pollFair(long now, List<PendingDialog> expired) {
+            Iterator<Map.Entry<String, ArrayDeque<PendingDialog>>> iterator = waiting.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, ArrayDeque<PendingDialog>> first = iterator.next();
+                ArrayDeque<PendingDialog> queue = first.getValue();
+                PendingDialog head = queue.poll();
+                while (head != null && head.isExpired(now)) {
+                    expired.add(head);
+                    head = queue.poll();
+                }
+                if (head == null) {
+                    iterator.remove();
+                    continue;
+                }
+                List<PendingDialog> next = new ArrayList<>();
+                next.add(head);
+                if (head.member != null) {
+                    Iterator<PendingDialog> rest = queue.iterator();
+                    while (rest.hasNext()) {
+                        PendingDialog pending = rest.next();
+                        if (pending.isExpired(now)) {
+                            expired.add(pending);
+                            rest.remove();
+                        } else if (pending.member != null && pending.member.batcher == head.member.batcher) {
+                            next.add(pending);
+                            rest.remove();
+                        }
+                    }
+                }
+                iterator.remove();
+                if (!queue.isEmpty()) {
+                    // 还有请求的通道排到末尾
+                    waiting.put(first.getKey(), queue);
+                }
+                return next;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 提交一个请求处理任务
+     *
+     * @param channelKey 来源通道,同一通道的任务按提交顺序依次执行
+     */
+    public void submit(String channelKey, Runnable task) {
+        queuedTasks.incrementAndGet();
+        synchronized (channelQueues) {
+            ArrayDeque<Runnable> queue = channelQueues.get(channelKey);
+            if (queue != null) {
+                queue.add(task);
+                return;
+            }
+            channelQueues.put(channelKey, new ArrayDeque<>());
+        }
+        executor.execute(() -> drainChannel(channelKey, task));
+    }
+
+    private void drainChannel(String channelKey, Runnable first) {
+        Runnable task = first;
+        while (task != null) {
+            queuedTasks.decrementAndGet();
+            runningTasks.incrementAndGet();
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOG.error("[PermissionDispatcher] 处理权限请求失败: " + e.getMessage(), e);
+            } finally {
+                runningTasks.decrementAndGet();
+            }
+            synchronized (channelQueues) {
+                ArrayDeque<Runnable> queue = channelQueues.get(channelKey);
+                task = queue.poll();
+                if (task == null) {
+                    channelQueues.remove(channelKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * 通过公平队列显示弹窗
+     *
+     * @param shower     对话框显示器,同一显示器同时只显示一个弹窗
+     * @param channelKey 来源通道
+     * @param show       实际显示弹窗的操作,轮到该请求时才调用,前端的超时从此时开始计算
+     * @return 弹窗结果
+     */
+    public <T> CompletableFuture<T> showDialog(Object shower, String channelKey, Supplier<CompletableFuture<T>> show) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        enqueue(shower, channelKey, new PendingDialog(startSingle(shower, show, result), null, 0, null), false);
+        return result;
+    }
+
+    /**
+     * 通过公平队列显示可合并的弹窗
+     * 轮到该通道时排队中只有这一个请求则调用 showSingle,否则同一 batcher 的请求一起交给 batcher 显示
+     *
+     * @param deadline 截止时间(毫秒时间戳),到期仍未显示的请求不再显示,0 表示不过期
+     * @param batcher  同一个 batcher 的请求才会合并
+     * @return 该请求的结果
+     */
+    public <I, T> CompletableFuture<T> showBatchableDialog(Object shower, String channelKey, I item, long deadline,
+                                                           Function<I, CompletableFuture<T>> showSingle,
+                                                           Batcher<I, T> batcher) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = startSingle(shower, () -> showSingle.apply(item), result);
+        Runnable expire = () -> {
+            queuedDialogs.decrementAndGet();
+            result.completeExceptionally(new TimeoutException("权限请求在显示前已超时"));
+        };
+        enqueue(shower, channelKey, new PendingDialog(start, new BatchMember<>(batcher, item, result), deadline, expire),
+            true);
+        return result;
+    }
+
+    private void enqueue(Object shower, String channelKey, PendingDialog pending, boolean batchable) {
+        queuedDialogs.incrementAndGet();
+        if (pending.isExpired(System.currentTimeMillis())) {
+            pending.expire.run();
+            return;
+        }
+        // 通道没有后续请求时不必等待合并
+        boolean waitForBatch = batchable && hasQueuedTasks(channelKey);
+        synchronized (dialogQueues) {
+            DialogQueue queue = dialogQueues.computeIfAbsent(shower, s -> new DialogQueue());
+            if (queue.showing || waitForBatch) {
+                queue.waiting.computeIfAbsent(channelKey, k -> new ArrayDeque<>()).add(pending);
+                if (queue.showing) {
+                    return;
+                }
+                // 显示器空闲:稍等片刻收集同一通道的后续请求
+                queue.showing = true;
+                AppExecutorUtil.getAppScheduledExecutorService()
+                    .schedule(() -> showNext(shower), BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            queue.showing = true;
+        }
+        pending.start.run();
+    }
+
+    /**
+     * 通道是否还有等待处理的请求
+     */
+    private boolean hasQueuedTasks(String channelKey) {
+        synchronized (channelQueues) {
+            ArrayDeque<Runnable> queue = channelQueues.get(channelKey);
+            return queue != null && !queue.isEmpty();
+        }
+    }
+
+    private <T> Runnable startSingle(Object shower, Supplier<CompletableFuture<T>> show, CompletableFuture<T> result) {
+        return () -> {
+            queuedDialogs.decrementAndGet();
+            openDialogs.incrementAndGet();
+            CompletableFuture<T> dialog;
+            try {
+                dialog = show.get();
+            } catch (Exception e) {
+                dialog = CompletableFuture.failedFuture(e);
+            }
+            dialog.whenComplete((value, error) -> {
+                openDialogs.decrementAndGet();
+                showNext(shower);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private <I, T> void startBatch(Object shower, List<PendingDialog> batch) {
+        List<BatchMember<I, T>> members = new ArrayList<>(batch.size());
+        List<I> items = new ArrayList<>(batch.size());
+        for (PendingDialog pending : batch) {
+            BatchMember<I, T> member = (BatchMember<I, T>) pending.member;
+            members.add(member);
+            items.add(member.item);
+        }
+        Batcher<I, T> batcher = members.get(0).batcher;
+        int size = members.size();
+        LOG.debug("[PermissionDispatcher] 合并显示 " + size + " 个弹窗");
+
+        queuedDialogs.addAndGet(-size);
+        openDialogs.addAndGet(size);
+        CompletableFuture<List<T>> dialog;
+        try {
+            dialog = batcher.showBatch(items);
+        } catch (Exception e) {
+            dialog = CompletableFuture.failedFuture(e);
+        }
+        dialog.whenComplete((values, error) -> {
+            openDialogs.addAndGet(-size);
+            showNext(shower);
+            batcher.deliver(() -> {
+                for (int i = 0; i < size; i++) {
+                    CompletableFuture<T> result = members.get(i).result;
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else if (values == null || i >= values.size()) {
+                        result.completeExceptionally(new IllegalStateException("批量弹窗缺少第 " + i + " 项的结果"));
+                    } else {
+                        result.complete(values.get(i));
+                    }
+                }
+            });
+        });
+    }
+
+    private void showNext(Object shower) {
+        List<PendingDialog> next;
+        List<PendingDialog> expired = new ArrayList<>();
+        synchronized (dialogQueues) {
+            DialogQueue queue = dialogQueues.get(shower);
+            next = queue.pollFair(System.currentTimeMillis(), expired);
+            if (next == null) {
+                dialogQueues.remove(shower);
+            }
+        }
+        for (PendingDialog pending : expired) {
+            pending.expire.run();
+        }
+        if (next == null) {
+            return;
+        }
+        if (next.size() > 1) {
+            startBatch(shower, next);
+        } else {
+            next.get(0).start.run();
+        }
+    }
+
+    /**
+     * 等待处理的请求数(包括等待解析的请求和排队等待弹窗的请求)
+     */
+    public int getQueuedCount() {
+        return queuedTasks.get() + queuedDialogs.get();
+    }
+
+    /**
+     * 正在处理的请求数(正在解析路由的请求和正在显示的弹窗)
+     */
+    public int getInFlightCount() {
+        return runningTasks.get() + openDialogs.get();
+    }
+}
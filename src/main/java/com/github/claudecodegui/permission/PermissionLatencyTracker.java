@@ -0,0 +1,286 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 权限请求往返耗时统计
+ * 以 requestId 为关联 ID 记录请求经过的每一跳:
+ * canUseTool 调用(requestedAt)→ 请求写出(sentAt)→ Java 取到请求(pickedUpAt)
+ * → 弹窗显示(dialogShownAt)→ 用户决定(decidedAt)→ 响应写回(respondedAt)→ Node 读到响应(responseReadAt)。
+ * 前两跳和最后一跳由 Node 侧打点,随请求和 {@link #TRACE_TAG} 行带回;Node 与 IDE 在同一台机器上,直接比较毫秒时间戳。
+ *
+ * 完成的请求按工具汇总,每个工具保留最近 {@link #SAMPLES_PER_TOOL} 次的耗时用于计算分位数,
+ * 用户思考时间(think)与其余开销(overhead = total - think)分开统计。
+ */
+public class PermissionLatencyTracker {
+
+    private static final Logger LOG = Logger.getInstance(PermissionLatencyTracker.class);
+
+    public static final String TRACE_TAG = "[PERMISSION_TRACE]";
+
+    private static final int SAMPLES_PER_TOOL = 256;
+
+    /**
+     * 超过该时间仍未收到 Node 侧回执的请求被丢弃(Node 超时为 60 秒)
+     */
+    private static final long TRACE_EXPIRE_MS = 5 * 60 * 1000;
+
+    /**
+     * 统计的各段耗时
+     * total: canUseTool 到 Node 读到响应
+     * transport: 请求从 Node 到 Java 加上响应从 Java 到 Node 的传输时间
+     * queue: Java 取到请求到弹窗显示(规则命中时到写回响应)
+     * think: 弹窗显示到用户决定
+     * overhead: total - think,即与用户无关的全部耗时
+     */
+    private static final String[] METRICS = {"total", "transport", "queue", "think", "overhead"};
+    private static final int TOTAL = 0;
+    private static final int TRANSPORT = 1;
+    private static final int QUEUE = 2;
+    private static final int THINK = 3;
+    private static final int OVERHEAD = 4;
+
+    private static class Trace {
+        final long pickedUpAt;
+        volatile String toolName;
+        volatile long requestedAt;
+        volatile long sentAt;
+        volatile long dialogShownAt;
+        volatile long decidedAt;
+        volatile long respondedAt;
+
+        Trace(long pickedUpAt) {
+            this.pickedUpAt = pickedUpAt;
+        }
+    }
+
+    /**
+     * 一个工具最近若干次请求的各段耗时(环形缓冲)
+     */
+    private static class ToolSamples {
+        final long[][] values = new long[METRICS.length][SAMPLES_PER_TOOL];
+        int next;
+        int size;
+        long count;
+
+        synchronized void add(long[] sample) {
+            for (int i = 0; i < METRICS.length; i++) {
+                values[i][next] = sample[i];
+            }
+            next = (next + 1) % SAMPLES_PER_TOOL;
+            size = Math.min(size + 1, SAMPLES_PER_TOOL);
+            count++;
+        }
+
+        synchronized JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count);
+            json.addProperty("samples", size);
+            for (int i = 0; i < METRICS.length; i++) {
+                long[] sorted = Arrays.copyOf(values[i], size);
+                Arrays.sort(sorted);
+                JsonObject metric = new JsonObject();
+                metric.addProperty("p50", percentile(sorted, 50));
+                metric.addProperty("p90", percentile(sorted, 90));
+                metric.addProperty("p99", percentile(sorted, 99));
+                metric.addProperty("max", sorted.length > 0 ? sorted[sorted.length - 1] : 0);
+                json.add(METRICS[i], metric);
+            }
+            return json;
+        }
+    }
+
+    private final Map<String, Trace> traces = new ConcurrentHashMap<>();
+    private final Map<String, ToolSamples> samples = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+
+    /**
+     * Java 侧取到请求(检测到请求文件或读到通道请求行)
+     */
+    public void onPickedUp(String requestId) {
+        if (requestId == null || requestId.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        traces.putIfAbsent(requestId, new Trace(now));
+        expireStale(now);
+    }
+
+    /**
+     * 请求内容已解析,记录工具名和 Node 侧的时间戳
+     */
+    public void onRequest(JsonObject request) {
+        Trace trace = trace(request.has("requestId") ? request.get("requestId").getAsString() : null);
+        if (trace == null) {
+            return;
+        }
+        trace.toolName = request.has("toolName") ? request.get("toolName").getAsString() : "unknown";
+        trace.requestedAt = getLong(request, "requestedAt");
+        trace.sentAt = getLong(request, "sentAt");
+    }
+
+    public void onDialogShown(String requestId) {
+        Trace trace = trace(requestId);
+        if (trace != null) {
+            trace.dialogShownAt = System.currentTimeMillis();
+        }
+    }
+
+    public void onDecided(String requestId) {
+        Trace trace = trace(requestId);
+        if (trace != null) {
+            trace.decidedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 包装响应通道,写回响应时记录时间
+     * 包装同一个通道得到的对象相等,批量响应可以按通道合并
+     */
+    public PermissionService.ResponseSink wrap(PermissionService.ResponseSink sink) {
+        return new TracedSink(sink);
+    }
+
+    private final class TracedSink implements PermissionService.ResponseSink {
+        private final PermissionService.ResponseSink sink;
+
+        TracedSink(PermissionService.ResponseSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void sendPermissionResponse(String requestId, boolean allow) {
+            onResponded(requestId);
+            sink.sendPermissionResponse(requestId, allow);
+        }
+
+        @Override
+        public void sendPermissionResponses(Map<String, Boolean> responses) {
+            responses.keySet().forEach(PermissionLatencyTracker.this::onResponded);
+            sink.sendPermissionResponses(responses);
+        }
+
+        @Override
+        public void sendAskUserQuestionResponse(String requestId, JsonObject answers) {
+            sink.sendAskUserQuestionResponse(requestId, answers);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TracedSink && ((TracedSink) other).sink.equals(sink);
+        }
+
+        @Override
+        public int hashCode() {
+            return sink.hashCode();
+        }
+    }
+
+    private void onResponded(String requestId) {
+        Trace trace = trace(requestId);
+        if (trace != null && trace.respondedAt == 0) {
+            trace.respondedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 处理一行 Node 输出中的回执({@link #TRACE_TAG} {"requestId", "responseReadAt"})
+     *
+     * @return 该行是回执时返回 true
+     */
+    public boolean handleTraceLine(String line) {
+        if (!line.startsWith(TRACE_TAG)) {
+            return false;
+        }
+        try {
+            JsonObject receipt = gson.fromJson(line.substring(TRACE_TAG.length()).trim(), JsonObject.class);
+            String requestId = receipt.has("requestId") ? receipt.get("requestId").getAsString() : null;
+            Trace trace = requestId != null ? traces.remove(requestId) : null;
+            if (trace != null) {
+                complete(trace, getLong(receipt, "responseReadAt"));
+            }
+        } catch (Exception e) {
+            LOG.debug("[PermissionLatencyTracker] 无法解析回执: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * 按工具汇总的分位数(毫秒)
+     *
+     * @return {tools: [{tool, count, samples, total: {p50, p90, p99, max}, transport, queue, think, overhead}], pending}
+     */
+    public JsonObject snapshot() {
+        JsonArray tools = new JsonArray();
+        for (Map.Entry<String, ToolSamples> entry : new TreeMap<>(samples).entrySet()) {
+            JsonObject tool = entry.getValue().toJson();
+            tool.addProperty("tool", entry.getKey());
+            tools.add(tool);
+        }
+        JsonObject result = new JsonObject();
+        result.add("tools", tools);
+        result.addProperty("pending", traces.size());
+        return result;
+    }
+
+    public void clear() {
+        traces.clear();
+        samples.clear();
+    }
+
+    private void complete(Trace trace, long responseReadAt) {
+        if (trace.toolName == null || trace.respondedAt == 0 || responseReadAt == 0) {
+            return;
+        }
+        long requestedAt = trace.requestedAt > 0 ? trace.requestedAt : trace.pickedUpAt;
+        long sentAt = trace.sentAt > 0 ? trace.sentAt : trace.pickedUpAt;
+        boolean dialog = trace.dialogShownAt > 0 && trace.decidedAt > 0;
+
+        long[] sample = new long[METRICS.length];
+        sample[TOTAL] = nonNegative(responseReadAt - requestedAt);
+        sample[TRANSPORT] = nonNegative(trace.pickedUpAt - sentAt) + nonNegative(responseReadAt - trace.respondedAt);
+        sample[QUEUE] = nonNegative((dialog ? trace.dialogShownAt : trace.respondedAt) - trace.pickedUpAt);
+        sample[THINK] = dialog ? nonNegative(trace.decidedAt - trace.dialogShownAt) : 0;
+        sample[OVERHEAD] = nonNegative(sample[TOTAL] - sample[THINK]);
+
+        samples.computeIfAbsent(trace.toolName, t -> new ToolSamples()).add(sample);
+    }
+
+    private Trace trace(String requestId) {
+        return requestId != null ? traces.get(requestId) : null;
+    }
+
+    private void expireStale(long now) {
+        Iterator<Trace> iterator = traces.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().pickedUpAt > TRACE_EXPIRE_MS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long nonNegative(long value) {
+        return Math.max(0, value);
+    }
+
+    private static long getLong(JsonObject json, String key) {
+        return json.has(key) && json.get(key).isJsonPrimitive() ? json.get(key).getAsLong() : 0;
+    }
+}
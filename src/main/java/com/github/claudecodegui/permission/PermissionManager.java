@@ -1,5 +1,6 @@
 package com.github.claudecodegui.permission;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
 import java.util.*;
@@ -21,8 +22,7 @@ public class PermissionManager {
 
     private PermissionMode mode = PermissionMode.DEFAULT;
     private final Map<String, PermissionRequest> pendingRequests = new ConcurrentHashMap<>();
-    private final Map<String, Boolean> toolPermissionMemory = new ConcurrentHashMap<>(); // 记住工具权限决策（工具+参数）
-    private final Map<String, Boolean> toolOnlyPermissionMemory = new ConcurrentHashMap<>(); // 工具级别权限记忆（仅工具名）
+    private final Gson gson = new Gson();
     private Consumer<PermissionRequest> onPermissionRequestedCallback;
 
     /**
@@ -36,23 +36,11 @@ public class PermissionManager {
      * @return 权限请求对象
      */
     public PermissionRequest createRequest(String channelId, String toolName, Map<String, Object> inputs, JsonObject suggestions, Project project) {
-        // 首先检查工具级别的权限记忆（总是允许）
-        if (toolOnlyPermissionMemory.containsKey(toolName)) {
+        // 首先检查项目的权限规则（记住的决策保存为规则）
+        PermissionRuleEngine.Decision ruled = ruleStore(project).evaluate(toolName, toJson(inputs));
+        if (ruled != null) {
             PermissionRequest request = new PermissionRequest(channelId, toolName, inputs, suggestions, project);
-            if (toolOnlyPermissionMemory.get(toolName)) {
-                request.accept();
-            } else {
-                request.reject("Previously denied by user", true);
-            }
-            return request;
-        }
-
-        // 检查是否有记忆的权限决策（工具+参数）
-        String memoryKey = toolName + ":" + generateInputHash(inputs);
-        if (toolPermissionMemory.containsKey(memoryKey)) {
-            // 自动处理基于记忆的决策
-            PermissionRequest request = new PermissionRequest(channelId, toolName, inputs, suggestions, project);
-            if (toolPermissionMemory.get(memoryKey)) {
+            if (ruled == PermissionRuleEngine.Decision.ALLOW) {
                 request.accept();
             } else {
                 request.reject("Previously denied by user", true);
@@ -109,10 +97,10 @@ public class PermissionManager {
             return;
         }
 
-        // 如果选择记住决策，保存到记忆中
+        // 如果选择记住决策，按本次的命令或文件保存为规则
         if (rememberDecision) {
-            String memoryKey = request.getToolName() + ":" + generateInputHash(request.getInputs());
-            toolPermissionMemory.put(memoryKey, allow);
+            ruleStore(request.getProject()).addRule(
+                PermissionRule.forInputs(request.getToolName(), toJson(request.getInputs()), allow));
         }
 
         if (allow) {
@@ -131,8 +119,8 @@ public class PermissionManager {
             return;
         }
 
-        // 保存工具级别的权限记忆
-        toolOnlyPermissionMemory.put(request.getToolName(), allow);
+        // 保存工具级别的权限规则（允许规则只在本次 IDE 会话内有效）
+        ruleStore(request.getProject()).addRule(PermissionRule.forTool(request.getToolName(), allow));
 
         if (allow) {
             request.accept();
@@ -163,28 +151,28 @@ public class PermissionManager {
     }
 
     /**
-     * 清除权限记忆
+     * 清除项目中按命令或文件记住的权限规则（保留工具级别规则）
      */
-    public void clearPermissionMemory() {
-        toolPermissionMemory.clear();
+    public void clearPermissionMemory(Project project) {
+        ruleStore(project).removeIf(rule -> rule.pathGlob != null || rule.commandPrefix != null);
     }
 
     /**
-     * 清除特定工具的权限记忆
+     * 清除项目中特定工具的权限规则
      */
-    public void clearToolPermissionMemory(String toolName) {
-        toolPermissionMemory.entrySet().removeIf(entry -> entry.getKey().startsWith(toolName + ":"));
+    public void clearToolPermissionMemory(Project project, String toolName) {
+        ruleStore(project).removeIf(rule -> toolName.equals(rule.tool));
     }
 
-    /**
-     * 生成输入参数的哈希值用于记忆
-     */
-    private String generateInputHash(Map<String, Object> inputs) {
-        if (inputs == null || inputs.isEmpty()) {
-            return "empty";
+    private PermissionRuleStore ruleStore(Project project) {
+        return PermissionRuleStore.forProject(project != null ? project.getBasePath() : null);
+    }
+
+    private JsonObject toJson(Map<String, Object> inputs) {
+        if (inputs == null) {
+            return new JsonObject();
         }
-        // 简单的哈希实现，实际可以更复杂
-        return String.valueOf(inputs.toString().hashCode());
+        return gson.toJsonTree(inputs).getAsJsonObject();
     }
 
     private boolean isAutoApprovedInAcceptEditsMode(String toolName) {
@@ -0,0 +1,113 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * 权限规则
+ * 条件之间是"且"的关系:只设置 tool 的规则匹配该工具的所有调用,
+ * 设置了 pathGlob / commandPrefix / projectScope 的规则只匹配满足条件的调用。
+ * 同时匹配允许和拒绝规则时以拒绝为准。
+ */
+public class PermissionRule {
+
+    /** 匹配所有工具 */
+    public static final String ANY_TOOL = "*";
+
+    /** 工具名,"*" 匹配所有工具 */
+    public String tool;
+
+    /**
+     * 文件路径 glob(统一使用 / 分隔):* 匹配一段路径内的任意字符,** 匹配任意多段;
+     * 相对路径相对于项目根目录
+     */
+    public String pathGlob;
+
+    /**
+     * 命令前缀(按单词边界匹配,"git" 不匹配 "gitk");以 * 结尾时按字符前缀匹配。
+     * 包含 ;、&&、|、$( 等组合符号的命令不会被允许规则放行
+     */
+    public String commandPrefix;
+
+    /** commandPrefix 需要与整条命令完全一致(由一次具体调用生成的规则),不做前缀匹配 */
+    public boolean exactCommand;
+
+    /** 只匹配项目目录内的文件路径 */
+    public boolean projectScope;
+
+    public boolean allow;
+
+    public long createdAt;
+
+    public PermissionRule() {
+    }
+
+    public static PermissionRule forTool(String tool, boolean allow) {
+        PermissionRule rule = new PermissionRule();
+        rule.tool = tool;
+        rule.allow = allow;
+        rule.createdAt = System.currentTimeMillis();
+        return rule;
+    }
+
+    public static PermissionRule forPath(String tool, String pathGlob, boolean allow) {
+        PermissionRule rule = forTool(tool, allow);
+        rule.pathGlob = pathGlob;
+        return rule;
+    }
+
+    public static PermissionRule forCommand(String tool, String commandPrefix, boolean allow) {
+        PermissionRule rule = forTool(tool, allow);
+        rule.commandPrefix = commandPrefix;
+        return rule;
+    }
+
+    public static PermissionRule forExactCommand(String tool, String command, boolean allow) {
+        PermissionRule rule = forCommand(tool, command, allow);
+        rule.exactCommand = true;
+        return rule;
+    }
+
+    public static PermissionRule forProject(String tool, boolean allow) {
+        PermissionRule rule = forTool(tool, allow);
+        rule.projectScope = true;
+        return rule;
+    }
+
+    /**
+     * 按一次调用的参数生成规则:有命令时只匹配完全相同的命令,有文件路径时匹配该文件,否则匹配整个工具
+     */
+    public static PermissionRule forInputs(String tool, JsonObject inputs, boolean allow) {
+        String command = PermissionRuleEngine.commandOf(inputs);
+        if (command != null && !command.trim().isEmpty()) {
+            return forExactCommand(tool, command.trim(), allow);
+        }
+        String path = PermissionRuleEngine.pathOf(inputs);
+        if (path != null && !path.isEmpty()) {
+            return forPath(tool, path.replace('\\', '/'), allow);
+        }
+        return forTool(tool, allow);
+    }
+
+    /**
+     * 是否为没有任何条件的允许规则
+     */
+    public boolean isUnconditionalAllow() {
+        return allow
+            && (pathGlob == null || pathGlob.isEmpty())
+            && (commandPrefix == null || commandPrefix.isEmpty())
+            && !projectScope;
+    }
+
+    /**
+     * 条件是否相同(不比较允许/拒绝和创建时间),用于替换已有规则
+     */
+    public boolean sameCondition(PermissionRule other) {
+        return Objects.equals(tool, other.tool)
+            && Objects.equals(pathGlob, other.pathGlob)
+            && Objects.equals(commandPrefix, other.commandPrefix)
+            && exactCommand == other.exactCommand
+            && projectScope == other.projectScope;
+    }
+}
@@ -0,0 +1,440 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.JsonObject;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的权限规则
+ * 规则按工具分组,路径 glob 按字面前缀挂在路径分段前缀树上,命令前缀组成字符前缀树,
+ * 一次判断只沿文件路径和命令各走一遍,耗时与规则数量基本无关。
+ * 同时带有多个条件的规则单独编译为一个组合条件,所有条件都满足才匹配。
+ *
+ * 文件路径先相对项目根目录解析为绝对路径并消除 . 和 ..,无法解析的路径不会被任何允许规则放行。
+ *
+ * 实例不可变,规则变化时整体重新编译。
+ */
+public final class PermissionRuleEngine {
+
+    public enum Decision {
+        ALLOW,
+        DENY
+    }
+
+    /**
+     * 允许规则不放行的命令组合符号:前缀匹配只能保证第一条命令安全
+     */
+    private static final Pattern SHELL_OPERATORS = Pattern.compile("[;&|`\\n<>]|\\$\\(");
+
+    private final Map<String, ToolRules> byTool = new HashMap<>();
+    private final String projectRoot;
+    private final boolean ignoreCase;
+
+    /** 未转小写的项目根目录,用于解析相对路径 */
+    private final Path projectRootPath;
+
+    private PermissionRuleEngine(String projectRoot, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        this.projectRootPath = projectRoot != null ? toNormalizedPath(projectRoot) : null;
+        this.projectRoot = projectRootPath != null ? normalizePath(projectRootPath.toString()) : null;
+    }
+
+    /**
+     * 编译规则
+     *
+     * @param projectRoot 项目根目录,用于 projectScope 和相对路径 glob;为 null 时这两类规则不生效
+     * @param ignoreCase  路径是否大小写不敏感(Windows)
+     */
+    public static PermissionRuleEngine compile(List<PermissionRule> rules, String projectRoot, boolean ignoreCase) {
+        PermissionRuleEngine engine = new PermissionRuleEngine(projectRoot, ignoreCase);
+        for (PermissionRule rule : rules) {
+            if (rule.tool == null || rule.tool.isEmpty()) {
+                continue;
+            }
+            ToolRules toolRules = engine.byTool.computeIfAbsent(rule.tool, t -> new ToolRules());
+            Decisions decisions = rule.allow ? toolRules.allow : toolRules.deny;
+
+            boolean hasGlob = rule.pathGlob != null && !rule.pathGlob.isEmpty();
+            boolean hasCommand = rule.commandPrefix != null && !rule.commandPrefix.isEmpty();
+            String glob = null;
+            if (hasGlob) {
+                glob = engine.resolveGlob(rule.pathGlob);
+                if (glob == null) {
+                    continue;
+                }
+            }
+            if (rule.projectScope && engine.projectRoot == null) {
+                continue;
+            }
+
+            int conditions = (hasGlob ? 1 : 0) + (hasCommand ? 1 : 0) + (rule.projectScope ? 1 : 0);
+            if (conditions == 0) {
+                decisions.unconditional = true;
+            } else if (conditions > 1) {
+                decisions.combined.add(new Conjunction(
+                    glob != null ? GlobTrie.compileGlob(glob, engine.ignoreCase) : null,
+                    hasCommand ? rule.commandPrefix : null, rule.exactCommand, rule.projectScope));
+            } else if (hasGlob) {
+                decisions.paths.add(glob, engine.ignoreCase);
+            } else if (hasCommand) {
+                decisions.commands.add(rule.commandPrefix, rule.exactCommand);
+            } else {
+                decisions.projectScope = true;
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * 判断一次工具调用
+     *
+     * @return 没有匹配的规则时返回 null(需要询问用户)
+     */
+    public Decision evaluate(String toolName, JsonObject inputs) {
+        return evaluate(toolName, pathOf(inputs), commandOf(inputs));
+    }
+
+    /**
+     * 判断一次工具调用
+     *
+     * @param filePath 调用涉及的文件路径,可以为 null
+     * @param command  Bash 命令,可以为 null
+     * @return 没有匹配的规则时返回 null(需要询问用户)
+     */
+    public Decision evaluate(String toolName, String filePath, String command) {
+        ToolRules exact = byTool.get(toolName);
+        ToolRules any = byTool.get(PermissionRule.ANY_TOOL);
+        if (exact == null && any == null) {
+            return null;
+        }
+
+        boolean hasPath = filePath != null && !filePath.isEmpty();
+        String path = hasPath ? resolvePath(filePath) : null;
+        String cmd = command != null ? normalizeCommand(command) : null;
+
+        // 拒绝优先;无法解析的路径按原样参与拒绝规则的匹配
+        String denyPath = hasPath && path == null ? normalizePath(filePath) : path;
+        if ((exact != null && exact.deny.matches(this, denyPath, cmd, false))
+            || (any != null && any.deny.matches(this, denyPath, cmd, false))) {
+            return Decision.DENY;
+        }
+        if (hasPath && path == null) {
+            return null;
+        }
+        if ((exact != null && exact.allow.matches(this, path, cmd, true))
+            || (any != null && any.allow.matches(this, path, cmd, true))) {
+            return Decision.ALLOW;
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return byTool.isEmpty();
+    }
+
+    /**
+     * 从工具参数中取出文件路径(只取明确的路径字段)
+     */
+    public static String pathOf(JsonObject inputs) {
+        if (inputs == null) {
+            return null;
+        }
+        for (String key : new String[]{"file_path", "notebook_path", "path"}) {
+            if (inputs.has(key) && inputs.get(key).isJsonPrimitive()) {
+                return inputs.get(key).getAsString();
+            }
+        }
+        return null;
+    }
+
+    public static String commandOf(JsonObject inputs) {
+        if (inputs != null && inputs.has("command") && inputs.get("command").isJsonPrimitive()) {
+            return inputs.get("command").getAsString();
+        }
+        return null;
+    }
+
+    private boolean inProject(String path) {
+        return projectRoot != null && path != null
+            && (path.equals(projectRoot) || path.startsWith(projectRoot.endsWith("/") ? projectRoot : projectRoot + "/"));
+    }
+
+    private String resolveGlob(String glob) {
+        String normalized = glob.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        // glob 中的 .. 无法与已消除 .. 的路径对应
+        for (String segment : normalized.split("/")) {
+            if (segment.equals("..")) {
+                return null;
+            }
+        }
+        boolean absolute = normalized.startsWith("/") || (normalized.length() > 1 && normalized.charAt(1) == ':');
+        if (absolute) {
+            return normalized;
+        }
+        if (projectRoot == null) {
+            return null;
+        }
+        return projectRoot + (projectRoot.endsWith("/") ? "" : "/") + normalized;
+    }
+
+    /**
+     * 相对路径按项目根目录解析,再消除 . 和 ..
+     *
+     * @return 无法解析(相对路径但没有项目根目录、路径非法)时返回 null
+     */
+    private String resolvePath(String path) {
+        Path resolved;
+        try {
+            resolved = Paths.get(path);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!resolved.isAbsolute()) {
+            if (projectRootPath == null) {
+                return null;
+            }
+            resolved = projectRootPath.resolve(resolved);
+        }
+        return normalizePath(resolved.normalize().toString());
+    }
+
+    private static Path toNormalizedPath(String path) {
+        try {
+            return Paths.get(path).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private String normalizePath(String path) {
+        String normalized = path.replace('\\', '/');
+        return ignoreCase ? normalized.toLowerCase(Locale.ROOT) : normalized;
+    }
+
+    private static String normalizeCommand(String command) {
+        return command.trim().replaceAll("[ \\t]+", " ");
+    }
+
+    /**
+     * 一个工具的允许规则和拒绝规则
+     */
+    private static final class ToolRules {
+        final Decisions allow = new Decisions();
+        final Decisions deny = new Decisions();
+    }
+
+    /**
+     * 同一结果(允许或拒绝)的所有条件
+     */
+    private static final class Decisions {
+        boolean unconditional;
+        boolean projectScope;
+        final GlobTrie paths = new GlobTrie();
+        final CommandPrefixTrie commands = new CommandPrefixTrie();
+        /** 带有多个条件的规则 */
+        final List<Conjunction> combined = new ArrayList<>();
+
+        boolean matches(PermissionRuleEngine engine, String path, String command, boolean forAllow) {
+            // 组合命令中只有部分被规则覆盖,任何允许规则(包括不带条件的工具级规则)都不能据此放行
+            if (forAllow && command != null && SHELL_OPERATORS.matcher(command).find()) {
+                return false;
+            }
+            if (unconditional) {
+                return true;
+            }
+            if (path != null) {
+                if (projectScope && engine.inProject(path)) {
+                    return true;
+                }
+                if (paths.matches(path)) {
+                    return true;
+                }
+            }
+            if (command != null && commands.matches(command)) {
+                return true;
+            }
+            for (Conjunction conjunction : combined) {
+                if (conjunction.matches(engine, path, command)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 多个条件同时满足才匹配的规则,未设置的条件为 null/false
+     */
+    private static final class Conjunction {
+        final Pattern glob;
+        final CommandPrefixTrie command;
+        final boolean projectScope;
+
+        Conjunction(Pattern glob, String commandPrefix, boolean exactCommand, boolean projectScope) {
+            this.glob = glob;
+            if (commandPrefix != null) {
+                this.command = new CommandPrefixTrie();
+                this.command.add(commandPrefix, exactCommand);
+            } else {
+                this.command = null;
+            }
+            this.projectScope = projectScope;
+        }
+
+        boolean matches(PermissionRuleEngine engine, String path, String cmd) {
+            if (glob != null && (path == null || !glob.matcher(path).matches())) {
+                return false;
+            }
+            if (command != null && (cmd == null || !command.matches(cmd))) {
+                return false;
+            }
+            return !projectScope || engine.inProject(path);
+        }
+    }
+
+    /**
+     * 路径 glob 前缀树
+     * 每个 glob 挂在其字面前缀(第一个含通配符的分段之前)对应的节点上,
+     * 匹配时只测试沿路径经过的节点上的 glob
+     */
+    private static final class GlobTrie {
+        final Map<String, GlobTrie> children = new HashMap<>();
+        final List<Pattern> patterns = new ArrayList<>();
+
+        void add(String glob, boolean ignoreCase) {
+            String normalized = ignoreCase ? glob.toLowerCase(Locale.ROOT) : glob;
+            GlobTrie node = this;
+            for (String segment : normalized.split("/", -1)) {
+                if (isWildcard(segment)) {
+                    break;
+                }
+                node = node.children.computeIfAbsent(segment, s -> new GlobTrie());
+            }
+            node.patterns.add(Pattern.compile(toRegex(normalized)));
+        }
+
+        static Pattern compileGlob(String glob, boolean ignoreCase) {
+            return Pattern.compile(toRegex(ignoreCase ? glob.toLowerCase(Locale.ROOT) : glob));
+        }
+
+        boolean matches(String path) {
+            GlobTrie node = this;
+            if (node.test(path)) {
+                return true;
+            }
+            for (String segment : path.split("/", -1)) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return false;
+                }
+                if (node.test(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean test(String path) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isWildcard(String segment) {
+            return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int i = 0;
+            while (i < glob.length()) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                            // **/ 匹配零个或多个目录
+                            regex.append("(?:.*/)?");
+                            i += 3;
+                        } else {
+                            regex.append(".*");
+                            i += 2;
+                        }
+                        continue;
+                    }
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+                i++;
+            }
+            return regex.toString();
+        }
+    }
+
+    /**
+     * 命令前缀字符树
+     */
+    private static final class CommandPrefixTrie {
+        final Map<Character, CommandPrefixTrie> next = new HashMap<>();
+        /** 到此为止的前缀需要在单词边界结束 */
+        boolean wordTerminal;
+        /** 到此为止的前缀以 * 结尾,任意后续字符都匹配 */
+        boolean rawTerminal;
+        /** 到此为止的字符串是一条完整命令,只匹配完全相同的命令 */
+        boolean exactTerminal;
+
+        void add(String prefix, boolean exact) {
+            String normalized = normalizeCommand(prefix);
+            boolean raw = !exact && normalized.endsWith("*");
+            if (raw) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+            CommandPrefixTrie node = this;
+            for (int i = 0; i < normalized.length(); i++) {
+                node = node.next.computeIfAbsent(normalized.charAt(i), c -> new CommandPrefixTrie());
+            }
+            if (exact) {
+                node.exactTerminal = true;
+            } else if (raw) {
+                node.rawTerminal = true;
+            } else {
+                node.wordTerminal = true;
+            }
+        }
+
+        boolean matches(String command) {
+            CommandPrefixTrie node = this;
+            for (int i = 0; ; i++) {
+                if (node.rawTerminal) {
+                    return true;
+                }
+                if (node.wordTerminal && (i == command.length() || command.charAt(i) == ' ')) {
+                    return true;
+                }
+                if (i == command.length()) {
+                    return node.exactTerminal;
+                }
+                node = node.next.get(command.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.claudecodegui.permission;
+
+import com.github.claudecodegui.settings.ConfigPathManager;
+import com.github.claudecodegui.util.PathUtils;
+import com.github.claudecodegui.util.PlatformUtils;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 项目权限规则存储
+ * 每个项目对应一个规则文件 (~/.codemoss/permission-rules/<项目路径>.json),
+ * 规则变化时重新编译为 {@link PermissionRuleEngine},判断时直接使用编译结果,不读取文件。
+ *
+ * 没有项目路径时(例如默认项目)规则只保存在内存中。
+ *
+ * 不带条件的允许规则("总是允许"某个工具)只在本次 IDE 会话内有效(会话规则),不写入文件;
+ * 旧版本保存在文件中的此类规则在加载时转为会话规则。
+ */
+public class PermissionRuleStore {
+
+    private static final Logger LOG = Logger.getInstance(PermissionRuleStore.class);
+
+    private static final int RULES_VERSION = 1;
+    private static final String RULES_DIR_NAME = "permission-rules";
+    private static final String MEMORY_KEY = "";
+
+    private static final Map<String, PermissionRuleStore> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 规则文件的持久化结构
+     */
+    private static class RulesFile {
+        int version;
+        String projectPath;
+        List<PermissionRule> rules;
+    }
+
+    private final String projectPath;
+    private final Path rulesFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final List<PermissionRule> rules;
+    /** 只在本次 IDE 会话内有效的规则 */
+    private final List<PermissionRule> sessionRules = new ArrayList<>();
+    private volatile PermissionRuleEngine engine;
+
+    private PermissionRuleStore(String projectPath, Path rulesFile) {
+        this.projectPath = projectPath;
+        this.rulesFile = rulesFile;
+        this.rules = load();
+        if (rules.removeIf(this::demoteToSession)) {
+            save();
+        }
+        this.engine = compile();
+    }
+
+    /**
+     * 获取项目的规则存储(进程内共享)
+     *
+     * @param projectPath 项目根目录,为 null 时返回只在内存中的存储
+     */
+    public static PermissionRuleStore forProject(String projectPath) {
+        if (projectPath == null || projectPath.isEmpty()) {
+            return INSTANCES.computeIfAbsent(MEMORY_KEY, k -> new PermissionRuleStore(null, null));
+        }
+        return INSTANCES.computeIfAbsent(projectPath, path -> new PermissionRuleStore(
+            path,
+            new ConfigPathManager().getConfigDir()
+                .resolve(RULES_DIR_NAME)
+                .resolve(PathUtils.sanitizePath(path) + ".json")
+        ));
+    }
+
+    /**
+     * 判断一次工具调用
+     *
+     * @return 没有匹配的规则时返回 null
+     */
+    public PermissionRuleEngine.Decision evaluate(String toolName, JsonObject inputs) {
+        return engine.evaluate(toolName, inputs);
+    }
+
+    /**
+     * 保存在文件中的规则
+     */
+    public synchronized List<PermissionRule> getRules() {
+        return Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * 只在本次 IDE 会话内有效的规则
+     */
+    public synchronized List<PermissionRule> getSessionRules() {
+        return Collections.unmodifiableList(new ArrayList<>(sessionRules));
+    }
+
+    /**
+     * 添加规则,条件相同的已有规则被替换
+     * 不带条件的允许规则只作为会话规则保存
+     */
+    public synchronized void addRule(PermissionRule rule) {
+        rules.removeIf(existing -> existing.sameCondition(rule));
+        sessionRules.removeIf(existing -> existing.sameCondition(rule));
+        boolean persisted = !demoteToSession(rule);
+        if (persisted) {
+            rules.add(rule);
+        }
+        engine = compile();
+        if (persisted) {
+            save();
+        }
+    }
+
+    /**
+     * 删除满足条件的规则
+     *
+     * @return 是否删除了规则
+     */
+    public synchronized boolean removeIf(Predicate<PermissionRule> filter) {
+        boolean removedSession = sessionRules.removeIf(filter);
+        boolean removedPersisted = rules.removeIf(filter);
+        if (!removedSession && !removedPersisted) {
+            return false;
+        }
+        engine = compile();
+        if (removedPersisted) {
+            save();
+        }
+        return true;
+    }
+
+    /**
+     * 不带条件的允许规则加入会话规则
+     *
+     * @return 规则是否转为会话规则
+     */
+    private boolean demoteToSession(PermissionRule rule) {
+        if (!rule.isUnconditionalAllow()) {
+            return false;
+        }
+        sessionRules.add(rule);
+        return true;
+    }
+
+    private PermissionRuleEngine compile() {
+        List<PermissionRule> all = new ArrayList<>(rules);
+        all.addAll(sessionRules);
+        return PermissionRuleEngine.compile(all, projectPath, PlatformUtils.isWindows());
+    }
+
+    private List<PermissionRule> load() {
+        if (rulesFile == null || !Files.exists(rulesFile)) {
+            return new ArrayList<>();
+        }
+        try (Reader reader = Files.newBufferedReader(rulesFile, StandardCharsets.UTF_8)) {
+            RulesFile data = gson.fromJson(reader, RulesFile.class);
+            if (data == null || data.version != RULES_VERSION || data.rules == null) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(data.rules);
+        } catch (IOException | JsonSyntaxException e) {
+            LOG.warn("[PermissionRuleStore] 读取权限规则失败: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 先写临时文件再重命名,避免中途失败留下损坏的规则文件
+     */
+    private void save() {
+        if (rulesFile == null) {
+            return;
+        }
+        RulesFile data = new RulesFile();
+        data.version = RULES_VERSION;
+        data.projectPath = projectPath;
+        data.rules = rules;
+
+        try {
+            Files.createDirectories(rulesFile.getParent());
+            Path temp = rulesFile.resolveSibling(rulesFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(data, writer);
+            }
+            try {
+                Files.move(temp, rulesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, rulesFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOG.warn("[PermissionRuleStore] 保存权限规则失败: " + e.getMessage());
+        }
+    }
+}
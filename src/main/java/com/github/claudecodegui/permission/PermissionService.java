@@ -1,5 +1,6 @@
 package com.github.claudecodegui.permission;
 
+import com.github.claudecodegui.util.PlatformUtils;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.application.ApplicationManager;
@@ -11,6 +12,7 @@ import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 权限服务 - 处理Node.js的权限请求
@@ -23,14 +25,21 @@ public class PermissionService {
     private final Project project;
     private final Path permissionDir;
     private final Gson gson = new Gson();
-    private WatchService watchService;
+    private volatile WatchService watchService;
     private Thread watchThread;
-    private boolean running = false;
+    private volatile boolean running = false;
+
+    // 兜底轮询间隔：对话进行中使用固定短间隔，空闲时从最小值逐步翻倍到最大值
+    private static final long ACTIVE_POLL_MS = 200;
+    private static final long MIN_IDLE_POLL_MS = 500;
+    private static final long MAX_IDLE_POLL_MS = 5000;
+    private final AtomicInteger activeTurns = new AtomicInteger();
+
+    // Node 侧等待权限响应的时间（permission-handler.js 的 RESPONSE_TIMEOUT），从请求发出（sentAt）开始计算
+    private static final long RESPONSE_TIMEOUT_MS = 60_000;
+    // 预留给响应写回的时间，弹窗在 Node 超时前这么久结束
+    private static final long RESPONSE_MARGIN_MS = 2_000;
 
-    // 记忆用户选择（工具+参数级别）
-    private final Map<String, Integer> permissionMemory = new ConcurrentHashMap<>();
-    // 工具级别权限记忆（仅工具名 -> 是否总是允许）
-    private final Map<String, Boolean> toolOnlyPermissionMemory = new ConcurrentHashMap<>();
     private volatile PermissionDecisionListener decisionListener;
 
     // 多项目支持：按项目注册的权限对话框显示器
@@ -39,6 +48,13 @@ public class PermissionService {
     // 多项目支持：按项目注册的 AskUserQuestion 对话框显示器
     private final Map<Project, AskUserQuestionDialogShower> askUserQuestionDialogShowers = new ConcurrentHashMap<>();
 
+    // 项目令牌注册表（令牌随请求带回，O(1) 定位项目）
+    private final Map<Project, String> projectTokens = new ConcurrentHashMap<>();
+    private final Map<String, Project> projectsByToken = new ConcurrentHashMap<>();
+
+    // 没有令牌的请求按路径匹配项目时使用的前缀树
+    private volatile ProjectPathTrie<Project> projectPathTrie = new ProjectPathTrie<>(PlatformUtils.isWindows());
+
     // 调试日志辅助方法
     private void debugLog(String tag, String message) {
         LOG.debug(String.format("[%s] %s", tag, message));
@@ -123,9 +139,31 @@ public class PermissionService {
          * 显示权限对话框并返回用户决策
          * @param toolName 工具名称
          * @param inputs 输入参数
+         * @param deadline 截止时间（毫秒时间戳），到期未决定按拒绝处理
          * @return CompletableFuture<Integer> 返回 PermissionResponse 的值
          */
-        CompletableFuture<Integer> showPermissionDialog(String toolName, JsonObject inputs);
+        CompletableFuture<Integer> showPermissionDialog(String toolName, JsonObject inputs, long deadline);
+
+        /**
+         * 在一个对话框中显示同一通道连续发起的多个权限请求，每项可以单独允许或拒绝
+         * 默认实现依次显示单个对话框
+         *
+         * @param requests 每项包含 toolName 和 inputs
+         * @param deadline 截止时间（毫秒时间戳，取各请求中最早的），到期未决定的项按拒绝处理
+         * @return 与 requests 顺序一致的 PermissionResponse 值
+         */
+        default CompletableFuture<List<Integer>> showPermissionBatchDialog(List<JsonObject> requests, long deadline) {
+            CompletableFuture<List<Integer>> chain = CompletableFuture.completedFuture(new ArrayList<>());
+            for (JsonObject request : requests) {
+                chain = chain.thenCompose(results -> showPermissionDialog(
+                    request.get("toolName").getAsString(), request.getAsJsonObject("inputs"), deadline)
+                    .thenApply(response -> {
+                        results.add(response);
+                        return results;
+                    }));
+            }
+            return chain;
+        }
     }
 
     /**
@@ -163,6 +201,24 @@ public class PermissionService {
         return instance;
     }
 
+    /**
+     * 获取已启动的权限服务（供 bridge 建立权限通道）
+     *
+     * @return 权限服务尚未启动时返回 null
+     */
+    public static synchronized PermissionService getStartedInstance() {
+        return instance != null && instance.running ? instance : null;
+    }
+
+    /**
+     * 获取已创建的权限服务(不论是否已启动)
+     *
+     * @return 尚未创建时返回 null
+     */
+    public static synchronized PermissionService getExistingInstance() {
+        return instance;
+    }
+
     public void setDecisionListener(PermissionDecisionListener listener) {
         this.decisionListener = listener;
         debugLog("CONFIG", "Decision listener set: " + (listener != null));
@@ -178,6 +234,7 @@ public class PermissionService {
     public void registerDialogShower(Project project, PermissionDialogShower shower) {
         if (project != null && shower != null) {
             dialogShowers.put(project, shower);
+            rebuildProjectPathTrie();
             debugLog("CONFIG", "Dialog shower registered for project: " + project.getName() +
                 ", total registered: " + dialogShowers.size());
         }
@@ -192,6 +249,14 @@ public class PermissionService {
     public void unregisterDialogShower(Project project) {
         if (project != null) {
             PermissionDialogShower removed = dialogShowers.remove(project);
+            if (removed != null) {
+                permissionBatchers.remove(removed);
+            }
+            rebuildProjectPathTrie();
+            String token = projectTokens.remove(project);
+            if (token != null) {
+                projectsByToken.remove(token);
+            }
             debugLog("CONFIG", "Dialog shower unregistered for project: " + project.getName() +
                 ", was registered: " + (removed != null) + ", remaining: " + dialogShowers.size());
         }
@@ -235,75 +300,78 @@ public class PermissionService {
         // 兼容旧代码：使用默认项目注册
         if (shower != null && this.project != null) {
             dialogShowers.put(this.project, shower);
+            rebuildProjectPathTrie();
         }
         debugLog("CONFIG", "Dialog shower set (legacy): " + (shower != null));
     }
 
     /**
-     * 根据文件路径匹配项目
-     * 从 inputs 中提取文件路径，然后找到对应的项目
+     * 获取项目的权限令牌
+     * bridge 启动 Node 进程时通过环境变量传入，Node 侧在每个权限请求中带回，
+     * 用于直接定位发起请求的项目窗口
      *
-     * @param inputs 权限请求的输入参数
-     * @return 匹配的项目对应的 DialogShower，如果匹配不到则返回第一个注册的
+     * @param project 项目
+     * @return 项目在本次 IDE 运行期间固定的令牌
      */
-    private PermissionDialogShower findDialogShowerByInputs(JsonObject inputs) {
-        if (dialogShowers.isEmpty()) {
-            debugLog("MATCH_PROJECT", "No dialog showers registered");
-            return null;
-        }
-
-        // 只有一个项目时，直接返回
-        if (dialogShowers.size() == 1) {
-            Map.Entry<Project, PermissionDialogShower> entry = dialogShowers.entrySet().iterator().next();
-            debugLog("MATCH_PROJECT", "Single project registered: " + entry.getKey().getName());
-            return entry.getValue();
-        }
+    public String getProjectToken(Project project) {
+        return projectTokens.computeIfAbsent(project, p -> {
+            String token = UUID.randomUUID().toString().replace("-", "");
+            projectsByToken.put(token, p);
+            return token;
+        });
+    }
 
-        // 从 inputs 中提取文件路径
-        String filePath = extractFilePathFromInputs(inputs);
-        if (filePath == null || filePath.isEmpty()) {
-            debugLog("MATCH_PROJECT", "No file path found in inputs, using first registered project");
-            return dialogShowers.values().iterator().next();
+    /**
+     * 根据项目根路径重建前缀树（仅在注册/注销时调用）
+     */
+    private synchronized void rebuildProjectPathTrie() {
+        ProjectPathTrie<Project> trie = new ProjectPathTrie<>(PlatformUtils.isWindows());
+        for (Project registered : dialogShowers.keySet()) {
+            String basePath = registered.getBasePath();
+            if (basePath != null) {
+                trie.put(basePath, registered);
+            }
         }
+        projectPathTrie = trie;
+    }
 
-        // 规范化文件路径（统一使用 Unix 风格的 / 分隔符）
-        String normalizedFilePath = normalizePath(filePath);
-        debugLog("MATCH_PROJECT", "Extracted file path: " + filePath +
-            (filePath.equals(normalizedFilePath) ? "" : " (normalized: " + normalizedFilePath + ")"));
-
-        // 遍历所有项目，找到路径匹配的项目（选择最长匹配）
-        Project bestMatch = null;
-        int longestMatchLength = 0;
-
-        for (Map.Entry<Project, PermissionDialogShower> entry : dialogShowers.entrySet()) {
-            Project project = entry.getKey();
-            String projectPath = project.getBasePath();
-
-            if (projectPath != null) {
-                // 规范化项目路径
-                String normalizedProjectPath = normalizePath(projectPath);
-
-                // 使用新的路径匹配方法（检查路径分隔符）
-                if (isFileInProject(normalizedFilePath, normalizedProjectPath)) {
-                    if (normalizedProjectPath.length() > longestMatchLength) {
-                        longestMatchLength = normalizedProjectPath.length();
-                        bestMatch = project;
-                        debugLog("MATCH_PROJECT", "Found potential match: " + project.getName() +
-                            " (path: " + projectPath + ", length: " + normalizedProjectPath.length() + ")");
-                    }
-                }
+    /**
+     * 确定请求所属的项目
+     * 优先使用请求中的项目令牌；没有令牌的请求（旧版本 bridge）按文件路径和 Node 进程的项目根在前缀树中查找，
+     * 都匹配不到时使用第一个注册的项目
+     *
+     * @param request 权限请求（projectToken、projectRoot、inputs）
+     * @return 没有注册任何项目时返回 null
+     */
+    private Project resolveProject(JsonObject request) {
+        if (request.has("projectToken") && !request.get("projectToken").isJsonNull()) {
+            Project project = projectsByToken.get(request.get("projectToken").getAsString());
+            if (project != null) {
+                debugLog("MATCH_PROJECT", "Matched project by token: " + project.getName());
+                return project;
             }
         }
 
-        if (bestMatch != null) {
-            debugLog("MATCH_PROJECT", "Matched project: " + bestMatch.getName() + " (path: " + bestMatch.getBasePath() + ")");
-            return dialogShowers.get(bestMatch);
+        ProjectPathTrie<Project> trie = projectPathTrie;
+        JsonObject inputs = request.has("inputs") && request.get("inputs").isJsonObject()
+            ? request.getAsJsonObject("inputs") : null;
+        Project project = trie.findDeepest(extractFilePathFromInputs(inputs));
+        if (project == null && request.has("projectRoot") && !request.get("projectRoot").isJsonNull()) {
+            project = trie.findDeepest(request.get("projectRoot").getAsString());
+        }
+        if (project != null) {
+            debugLog("MATCH_PROJECT", "Matched project by path: " + project.getName());
+            return project;
         }
 
-        // 匹配失败，使用第一个注册的项目
-        Map.Entry<Project, PermissionDialogShower> firstEntry = dialogShowers.entrySet().iterator().next();
-        debugLog("MATCH_PROJECT", "No matching project found, using first: " + firstEntry.getKey().getName());
-        return firstEntry.getValue();
+        Iterator<Project> registered = dialogShowers.keySet().iterator();
+        if (registered.hasNext()) {
+            project = registered.next();
+            debugLog("MATCH_PROJECT", "No matching project found, using first: " + project.getName());
+            return project;
+        }
+        Iterator<Project> askRegistered = askUserQuestionDialogShowers.keySet().iterator();
+        return askRegistered.hasNext() ? askRegistered.next() : null;
     }
 
     /**
@@ -349,53 +417,6 @@ public class PermissionService {
         return null;
     }
 
-    /**
-     * 规范化文件路径
-     * 统一路径分隔符为 Unix 风格 (/)，确保跨平台兼容性
-     *
-     * @param path 原始路径
-     * @return 规范化后的路径，如果输入为 null 则返回 null
-     */
-    private String normalizePath(String path) {
-        if (path == null) {
-            return null;
-        }
-        // 将 Windows 风格的反斜杠替换为正斜杠
-        return path.replace('\\', '/');
-    }
-
-    /**
-     * 检查文件路径是否属于项目路径
-     * 确保匹配的是完整的路径前缀，而不是字符串前缀
-     *
-     * 例如：
-     * - /home/user/my-app/file.txt 属于 /home/user/my-app ✓
-     * - /home/user/my-app-v2/file.txt 不属于 /home/user/my-app ✓
-     *
-     * @param filePath 文件路径（已规范化）
-     * @param projectPath 项目路径（已规范化）
-     * @return true 如果文件属于该项目
-     */
-    private boolean isFileInProject(String filePath, String projectPath) {
-        if (filePath == null || projectPath == null) {
-            return false;
-        }
-
-        // 完全相等的情况
-        if (filePath.equals(projectPath)) {
-            return true;
-        }
-
-        // 确保 projectPath 以分隔符结尾，避免前缀匹配错误
-        // 例如：/home/user/my-app/ 而不是 /home/user/my-app
-        String normalizedProjectPath = projectPath.endsWith("/")
-            ? projectPath
-            : projectPath + "/";
-
-        // 检查文件路径是否以 "项目路径/" 开头
-        return filePath.startsWith(normalizedProjectPath);
-    }
-
     /**
      * 启动权限服务
      */
@@ -411,64 +432,44 @@ public class PermissionService {
         watchThread.setDaemon(true);
         watchThread.start();
 
-        debugLog("START", "Started polling on: " + permissionDir);
+        debugLog("START", "Started watching: " + permissionDir);
+    }
+
+    /**
+     * 标记一轮使用文件模式的对话开始/结束
+     * 对话进行中时缩短权限目录的兜底轮询间隔，空闲时逐步放宽；使用权限通道的对话不经过权限目录，不需要标记
+     */
+    public void onTurnStarted() {
+        activeTurns.incrementAndGet();
+    }
+
+    public void onTurnEnded() {
+        activeTurns.updateAndGet(count -> Math.max(0, count - 1));
     }
 
     /**
      * 监控文件变化
-     * 改为轮询模式，以提高在 macOS /tmp 目录下的可靠性
+     * 优先由 WatchService 事件唤醒；macOS 的 WatchService 是轮询实现且在 /tmp 下不可靠，
+     * 因此每次等待都带超时，超时后重新扫描目录作为兜底。
+     * 请求文件由 Node 侧先写临时文件再原子重命名，出现即完整，不需要等待写入完成。
      */
     private void watchLoop() {
-        debugLog("WATCH_LOOP", "Starting polling loop on: " + permissionDir);
-        int pollCount = 0;
+        debugLog("WATCH_LOOP", "Starting watch loop on: " + permissionDir);
+        registerWatchService();
+
+        long idlePollMs = MIN_IDLE_POLL_MS;
         while (running) {
             try {
-                pollCount++;
-                File dir = permissionDir.toFile();
-                if (!dir.exists()) {
-                    dir.mkdirs();
+                if (scanRequestFiles()) {
+                    idlePollMs = MIN_IDLE_POLL_MS;
+                } else {
+                    idlePollMs = Math.min(idlePollMs * 2, MAX_IDLE_POLL_MS);
                 }
-
-                // 监控普通权限请求文件
-                File[] requestFiles = dir.listFiles((d, name) -> name.startsWith("request-") && name.endsWith(".json"));
-
-                // 监控 AskUserQuestion 请求文件
-                File[] askUserQuestionFiles = dir.listFiles((d, name) -> name.startsWith("ask-user-question-") && name.endsWith(".json"));
-
-                // 每20次轮询（约10秒）输出一次状态
-                // 降低日志频率：每100次轮询（约50秒）记录一次状态
-                if (pollCount % 100 == 0) {
-                    int requestCount = requestFiles != null ? requestFiles.length : 0;
-                    int askQuestionCount = askUserQuestionFiles != null ? askUserQuestionFiles.length : 0;
-                    debugLog("POLL_STATUS", String.format("Poll #%d, found %d request files, %d ask-user-question files",
-                        pollCount, requestCount, askQuestionCount));
-                }
-
-                // 处理普通权限请求
-                if (requestFiles != null && requestFiles.length > 0) {
-                    for (File file : requestFiles) {
-                        // 简单防重：检查文件是否还存在（可能被其他线程处理了）
-                        if (file.exists()) {
-                            debugLog("REQUEST_FOUND", "Found request file: " + file.getName());
-                            handlePermissionRequest(file.toPath());
-                        }
-                    }
-                }
-
-                // 处理 AskUserQuestion 请求
-                if (askUserQuestionFiles != null && askUserQuestionFiles.length > 0) {
-                    for (File file : askUserQuestionFiles) {
-                        if (file.exists()) {
-                            debugLog("ASK_USER_QUESTION_FOUND", "Found AskUserQuestion file: " + file.getName());
-                            handleAskUserQuestionRequest(file.toPath());
-                        }
-                    }
-                }
-
-                // 轮询间隔 500ms
-                Thread.sleep(500);
+                awaitChange(activeTurns.get() > 0 ? ACTIVE_POLL_MS : idlePollMs);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
             } catch (Exception e) {
-                debugLog("POLL_ERROR", "Error in poll loop: " + e.getMessage());
+                debugLog("POLL_ERROR", "Error in watch loop: " + e.getMessage());
                 LOG.error("Error occurred", e);
                 try {
                     Thread.sleep(1000); // 出错后稍作等待
@@ -477,169 +478,418 @@ public class PermissionService {
                 }
             }
         }
-        debugLog("WATCH_LOOP", "Polling loop ended");
+        debugLog("WATCH_LOOP", "Watch loop ended");
+    }
+
+    private void registerWatchService() {
+        try {
+            Files.createDirectories(permissionDir);
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+            }
+            // 重命名到目标文件名在各平台上都表现为 ENTRY_CREATE
+            permissionDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            debugLog("WATCH_UNAVAILABLE", "WatchService unavailable, polling only: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 等待目录变化事件，最多等待 timeoutMs
+     */
+    private void awaitChange(long timeoutMs) throws InterruptedException {
+        WatchService service = this.watchService;
+        if (service == null) {
+            Thread.sleep(timeoutMs);
+            return;
+        }
+        WatchKey key = service.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return;
+        }
+        // 事件内容不重要，醒来后统一扫描目录
+        key.pollEvents();
+        if (!key.reset()) {
+            // 目录被删除（例如系统清理了临时目录），重新创建并注册
+            debugLog("WATCH_RESET", "Permission dir no longer valid, re-registering");
+            registerWatchService();
+        }
+    }
+
+    /**
+     * 扫描一次目录中的请求文件
+     *
+     * @return 是否发现了请求
+     */
+    private boolean scanRequestFiles() {
+        File[] files = permissionDir.toFile().listFiles((d, name) -> name.endsWith(".json")
+            && (name.startsWith("request-")
+                || (name.startsWith("ask-user-question-") && !name.startsWith("ask-user-question-response-"))));
+        if (files == null || files.length == 0) {
+            return false;
+        }
+
+        // 请求 ID 以通道和时间戳开头，按文件名排序即为各通道内的到达顺序
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        for (File file : files) {
+            String fileName = file.getName();
+            // 检查是否正在处理该请求
+            if (!processingRequests.add(fileName)) {
+                continue;
+            }
+            Path path = file.toPath();
+            if (fileName.startsWith("request-")) {
+                debugLog("REQUEST_FOUND", "Found request file: " + fileName);
+                String requestId = fileName.substring("request-".length(), fileName.length() - ".json".length());
+                latencyTracker.onPickedUp(requestId);
+                dispatcher.submit(channelKeyOf(requestId), () -> handlePermissionRequest(path));
+            } else {
+                debugLog("ASK_USER_QUESTION_FOUND", "Found AskUserQuestion file: " + fileName);
+                String requestId = fileName.substring("ask-user-question-".length(), fileName.length() - ".json".length());
+                dispatcher.submit(channelKeyOf(requestId), () -> handleAskUserQuestionRequest(path));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 请求所属的通道
+     * permission-handler.js 生成的请求 ID 格式为 [ask-]<进程号>-<时间戳>-<随机串>
+     */
+    private static String channelKeyOf(String requestId) {
+        String id = requestId.startsWith("ask-") ? requestId.substring("ask-".length()) : requestId;
+        int dash = id.indexOf('-');
+        return dash > 0 ? id.substring(0, dash) : id;
+    }
+
+    /**
+     * 等待处理的权限请求数
+     */
+    public int getQueuedRequestCount() {
+        return dispatcher.getQueuedCount();
+    }
+
+    /**
+     * 正在处理（包括正在显示弹窗）的权限请求数
+     */
+    public int getInFlightRequestCount() {
+        return dispatcher.getInFlightCount();
     }
 
     // 记录正在处理的请求文件，避免重复处理
     private final Set<String> processingRequests = ConcurrentHashMap.newKeySet();
 
+    private final PermissionDispatcher dispatcher = new PermissionDispatcher();
+
+    private final PermissionLatencyTracker latencyTracker = new PermissionLatencyTracker();
+
     /**
-     * 处理权限请求
+     * 权限请求各环节的耗时统计
      */
-    private void handlePermissionRequest(Path requestFile) {
-        String fileName = requestFile.getFileName().toString();
-        long startTime = System.currentTimeMillis();
-        debugLog("HANDLE_REQUEST", "Processing request file: " + fileName);
+    public PermissionLatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * 权限响应的写回方式
+     * 文件模式写入响应文件，通道模式写回请求所在 Node 进程的 stdin（见 {@link PermissionChannel}）
+     */
+    public interface ResponseSink {
+        void sendPermissionResponse(String requestId, boolean allow);
 
-        // 检查是否正在处理该请求
-        if (!processingRequests.add(fileName)) {
-            debugLog("SKIP_DUPLICATE", "Request already being processed, skipping: " + fileName);
+        void sendAskUserQuestionResponse(String requestId, JsonObject answers);
+
+        /**
+         * 一次写回多个权限响应（批量弹窗的结果）
+         *
+         * @param responses requestId -> 是否允许
+         */
+        default void sendPermissionResponses(Map<String, Boolean> responses) {
+            responses.forEach(this::sendPermissionResponse);
+        }
+    }
+
+    /**
+     * 批量弹窗交付结果期间收集的响应，交付结束后按写回方式合并写回
+     */
+    private static final ThreadLocal<Map<ResponseSink, Map<String, Boolean>>> collectingResponses = new ThreadLocal<>();
+
+    private void respond(ResponseSink sink, String requestId, boolean allow) {
+        Map<ResponseSink, Map<String, Boolean>> collecting = collectingResponses.get();
+        if (collecting != null) {
+            collecting.computeIfAbsent(sink, s -> new LinkedHashMap<>()).put(requestId, allow);
             return;
         }
+        sink.sendPermissionResponse(requestId, allow);
+    }
 
-        try {
-            Thread.sleep(100); // 等待文件写入完成
+    /**
+     * 每个前端显示器对应的合并器（同一合并器的请求才会合并到一个弹窗）
+     */
+    private final Map<PermissionDialogShower, PermissionDispatcher.Batcher<JsonObject, Integer>> permissionBatchers =
+        new ConcurrentHashMap<>();
+
+    private PermissionDispatcher.Batcher<JsonObject, Integer> permissionBatcherFor(PermissionDialogShower shower) {
+        return permissionBatchers.computeIfAbsent(shower, s -> new PermissionDispatcher.Batcher<>() {
+            @Override
+            public CompletableFuture<List<Integer>> showBatch(List<JsonObject> requests) {
+                debugLog("DIALOG_BATCH", "Showing " + requests.size() + " permission requests in one dialog");
+                long deadline = Long.MAX_VALUE;
+                for (JsonObject request : requests) {
+                    latencyTracker.onDialogShown(request.get("requestId").getAsString());
+                    deadline = Math.min(deadline, deadlineOf(request));
+                }
+                return s.showPermissionBatchDialog(requests, deadline);
+            }
 
-            if (!Files.exists(requestFile)) {
-                debugLog("FILE_MISSING", "Request file missing before read, likely already handled: " + fileName);
-                return;
+            @Override
+            public void deliver(Runnable completeAll) {
+                Map<ResponseSink, Map<String, Boolean>> collecting = new LinkedHashMap<>();
+                collectingResponses.set(collecting);
+                try {
+                    completeAll.run();
+                } finally {
+                    collectingResponses.remove();
+                }
+                collecting.forEach(ResponseSink::sendPermissionResponses);
             }
+        });
+    }
+
+    /**
+     * 文件模式：响应写入权限目录
+     */
+    private final ResponseSink fileResponseSink = new ResponseSink() {
+        @Override
+        public void sendPermissionResponse(String requestId, boolean allow) {
+            writeResponse(requestId, allow);
+        }
+
+        @Override
+        public void sendAskUserQuestionResponse(String requestId, JsonObject answers) {
+            writeAskUserQuestionResponse(requestId, answers);
+        }
+    };
 
-            String content;
+    /**
+     * 处理 bridge 通道上收到的权限请求
+     *
+     * @param request 与请求文件内容相同的 JSON（requestId、toolName、inputs）
+     * @param sink    响应写回的通道
+     */
+    public void handleChannelPermissionRequest(JsonObject request, ResponseSink sink) {
+        String requestId = request.has("requestId") ? request.get("requestId").getAsString() : "";
+        latencyTracker.onPickedUp(requestId);
+        dispatcher.submit(channelKeyOf(requestId), () -> {
             try {
-                content = Files.readString(requestFile);
-            } catch (NoSuchFileException e) {
-                debugLog("FILE_MISSING", "Request file missing while reading, likely already handled: " + fileName);
-                return;
+                decidePermission(request, latencyTracker.wrap(sink));
+            } catch (Exception e) {
+                debugLog("CHANNEL_ERROR", "Error handling channel permission request: " + e.getMessage());
+                LOG.error("Error occurred", e);
+                sink.sendPermissionResponse(requestId, false);
             }
-            debugLog("FILE_READ", "Read request content: " + content.substring(0, Math.min(200, content.length())) + "...");
+        });
+    }
 
-            JsonObject request = gson.fromJson(content, JsonObject.class);
+    /**
+     * 处理 bridge 通道上收到的 AskUserQuestion 请求
+     */
+    public void handleChannelAskUserQuestion(JsonObject request, ResponseSink sink) {
+        String requestId = request.has("requestId") ? request.get("requestId").getAsString() : "";
+        dispatcher.submit(channelKeyOf(requestId), () -> {
+            try {
+                decideAskUserQuestion(request, sink);
+            } catch (Exception e) {
+                debugLog("CHANNEL_ASK_ERROR", "Error handling channel AskUserQuestion request: " + e.getMessage());
+                LOG.error("Error occurred", e);
+                sink.sendAskUserQuestionResponse(requestId, new JsonObject());
+            }
+        });
+    }
+
+    /**
+     * 读取并删除请求文件
+     *
+     * @return 文件已被其他线程处理时返回 null
+     */
+    private JsonObject consumeRequestFile(Path requestFile) throws IOException {
+        String fileName = requestFile.getFileName().toString();
+        String content;
+        try {
+            content = Files.readString(requestFile);
+        } catch (NoSuchFileException e) {
+            debugLog("FILE_MISSING", "Request file missing while reading, likely already handled: " + fileName);
+            return null;
+        }
+        debugLog("FILE_READ", "Read request content: " + content.substring(0, Math.min(200, content.length())) + "...");
+
+        JsonObject request = gson.fromJson(content, JsonObject.class);
 
-            String requestId = request.get("requestId").getAsString();
-            String toolName = request.get("toolName").getAsString();
-            JsonObject inputs = request.get("inputs").getAsJsonObject();
+        // 立即删除请求文件，避免重复处理
+        try {
+            Files.deleteIfExists(requestFile);
+            debugLog("FILE_DELETE", "Deleted request file: " + fileName);
+        } catch (Exception e) {
+            debugLog("FILE_DELETE_ERROR", "Failed to delete request file: " + e.getMessage());
+        }
+        return request;
+    }
 
-            debugLog("REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
+    /**
+     * 处理权限请求文件（文件模式，通道不可用时的降级方案）
+     */
+    private void handlePermissionRequest(Path requestFile) {
+        String fileName = requestFile.getFileName().toString();
+        debugLog("HANDLE_REQUEST", "Processing request file: " + fileName);
 
-            // 首先检查工具级别的权限记忆（总是允许）
-            if (toolOnlyPermissionMemory.containsKey(toolName)) {
-                boolean allow = toolOnlyPermissionMemory.get(toolName);
-                debugLog("MEMORY_HIT", "Using tool-level memory for " + toolName + " -> " + (allow ? "ALLOW" : "DENY"));
-                writeResponse(requestId, allow);
-                notifyDecision(toolName, inputs, allow ? PermissionResponse.ALLOW_ALWAYS : PermissionResponse.DENY);
-                Files.deleteIfExists(requestFile);
-                processingRequests.remove(fileName);
+        try {
+            if (!Files.exists(requestFile)) {
+                debugLog("FILE_MISSING", "Request file missing before read, likely already handled: " + fileName);
                 return;
             }
 
-            // 生成内存键（工具+参数）
-            String memoryKey = toolName + ":" + inputs.toString().hashCode();
-            debugLog("MEMORY_KEY", "Generated memory key: " + memoryKey);
-
-            // 检查是否有记忆的选择（工具+参数级别）
-            if (permissionMemory.containsKey(memoryKey)) {
-                int memorized = permissionMemory.get(memoryKey);
-                PermissionResponse rememberedResponse = PermissionResponse.fromValue(memorized);
-                boolean allow = rememberedResponse != PermissionResponse.DENY;
-                debugLog("PARAM_MEMORY_HIT", "Using param-level memory: " + memoryKey + " -> " + (allow ? "ALLOW" : "DENY"));
-                writeResponse(requestId, allow);
-                notifyDecision(toolName, inputs, rememberedResponse);
-                Files.deleteIfExists(requestFile);
-                processingRequests.remove(fileName);
-                return;
+            JsonObject request = consumeRequestFile(requestFile);
+            if (request != null) {
+                decidePermission(request, latencyTracker.wrap(fileResponseSink));
             }
+        } catch (Exception e) {
+            debugLog("HANDLE_ERROR", "Error handling request: " + e.getMessage());
+            LOG.error("Error occurred", e);
+        } finally {
+            processingRequests.remove(fileName);
+        }
+    }
 
-            // 根据文件路径匹配项目，找到对应的前端弹窗显示器
-            PermissionDialogShower matchedDialogShower = findDialogShowerByInputs(inputs);
+    /**
+     * Node 侧放弃等待该请求之前、弹窗必须结束的时间
+     * 旧版本 bridge 的请求没有 sentAt 时从现在开始计算
+     */
+    private static long deadlineOf(JsonObject request) {
+        long sentAt = request.has("sentAt") && request.get("sentAt").isJsonPrimitive()
+            ? request.get("sentAt").getAsLong() : 0;
+        if (sentAt <= 0) {
+            sentAt = System.currentTimeMillis();
+        }
+        return sentAt + RESPONSE_TIMEOUT_MS - RESPONSE_MARGIN_MS;
+    }
 
-            // 如果有前端弹窗显示器，使用异步方式
-            if (matchedDialogShower != null) {
-                debugLog("DIALOG_SHOWER", "Using frontend dialog for: " + toolName);
+    /**
+     * 根据权限记忆或用户选择决定是否允许，并通过 sink 写回结果
+     */
+    private void decidePermission(JsonObject request, ResponseSink sink) throws Exception {
+        long startTime = System.currentTimeMillis();
 
-                // 立即删除请求文件，避免重复处理
-                try {
-                    Files.deleteIfExists(requestFile);
-                    debugLog("FILE_DELETE", "Deleted request file: " + fileName);
-                } catch (Exception e) {
-                    debugLog("FILE_DELETE_ERROR", "Failed to delete request file: " + e.getMessage());
-                }
+        String requestId = request.get("requestId").getAsString();
+        String toolName = request.get("toolName").getAsString();
+        JsonObject inputs = request.get("inputs").getAsJsonObject();
+
+        debugLog("REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
+        latencyTracker.onRequest(request);
+
+        // 找到发起请求的项目，先用该项目编译好的权限规则判断，命中时不弹窗
+        Project targetProject = resolveProject(request);
+        PermissionRuleStore ruleStore = PermissionRuleStore.forProject(
+            targetProject != null ? targetProject.getBasePath() : null);
+        PermissionRuleEngine.Decision ruled = ruleStore.evaluate(toolName, inputs);
+        if (ruled != null) {
+            boolean allow = ruled == PermissionRuleEngine.Decision.ALLOW;
+            debugLog("RULE_HIT", "Permission rule matched for " + toolName + " -> " + ruled);
+            sink.sendPermissionResponse(requestId, allow);
+            notifyDecision(toolName, inputs, allow ? PermissionResponse.ALLOW_ALWAYS : PermissionResponse.DENY);
+            return;
+        }
 
-                final String memKey = memoryKey;
-                final String tool = toolName;
-                final long dialogStartTime = System.currentTimeMillis();
-
-                // 异步调用前端弹窗
-                debugLog("DIALOG_SHOW", "Calling dialogShower.showPermissionDialog for: " + toolName);
-                CompletableFuture<Integer> future = matchedDialogShower.showPermissionDialog(toolName, inputs);
-
-                // 异步处理结果
-                future.thenAccept(response -> {
-                    long dialogElapsed = System.currentTimeMillis() - dialogStartTime;
-                    debugLog("DIALOG_RESPONSE", String.format("Got response %d after %dms for %s", response, dialogElapsed, tool));
-                    try {
-                        PermissionResponse decision = PermissionResponse.fromValue(response);
-                        if (decision == null) {
-                            debugLog("RESPONSE_NULL", "Response value " + response + " mapped to null, defaulting to DENY");
-                            decision = PermissionResponse.DENY;
-                        }
-
-                        boolean allow;
-                        switch (decision) {
-                            case ALLOW:
-                                allow = true;
-                                debugLog("DECISION", "ALLOW (single) for " + tool);
-                                break;
-                            case ALLOW_ALWAYS:
-                                allow = true;
-                                // 保存到工具级别权限记忆（按工具类型，不是按参数）
-                                toolOnlyPermissionMemory.put(tool, true);
-                                debugLog("DECISION", "ALLOW_ALWAYS for " + tool + ", saved to memory");
-                                break;
-                            case DENY:
-                            default:
-                                allow = false;
-                                debugLog("DECISION", "DENY for " + tool);
-                                break;
-                        }
-
-                        notifyDecision(toolName, inputs, decision);
-                        debugLog("WRITE_RESPONSE", String.format("Writing response for %s: allow=%s", requestId, allow));
-                        writeResponse(requestId, allow);
-
-                        debugLog("DIALOG_COMPLETE", "Frontend dialog processing complete: allow=" + allow);
-                    } catch (Exception e) {
-                        debugLog("DIALOG_ERROR", "Error processing dialog result: " + e.getMessage());
-                        LOG.error("Error occurred", e);
-                    } finally {
-                        processingRequests.remove(fileName);
+        // 找到发起请求的项目对应的前端弹窗显示器
+        PermissionDialogShower matchedDialogShower = targetProject != null ? dialogShowers.get(targetProject) : null;
+
+        // 如果有前端弹窗显示器，使用异步方式
+        if (matchedDialogShower != null) {
+            debugLog("DIALOG_SHOWER", "Using frontend dialog for: " + toolName);
+
+            final String tool = toolName;
+            final long dialogStartTime = System.currentTimeMillis();
+            // 排队等待显示的时间也计入 Node 侧的超时，弹窗只能使用剩余的时间
+            final long deadline = deadlineOf(request);
+
+            // 异步调用前端弹窗
+            debugLog("DIALOG_SHOW", "Calling dialogShower.showPermissionDialog for: " + toolName);
+            // 经公平队列显示，同一窗口同时只显示一个弹窗；同一通道排队中的请求合并为一个批量弹窗
+            CompletableFuture<Integer> future = dispatcher.showBatchableDialog(matchedDialogShower, channelKeyOf(requestId),
+                request, deadline,
+                single -> {
+                    latencyTracker.onDialogShown(requestId);
+                    return matchedDialogShower.showPermissionDialog(toolName, inputs, deadline);
+                },
+                permissionBatcherFor(matchedDialogShower));
+
+            // 异步处理结果
+            future.thenAccept(response -> {
+                latencyTracker.onDecided(requestId);
+                long dialogElapsed = System.currentTimeMillis() - dialogStartTime;
+                debugLog("DIALOG_RESPONSE", String.format("Got response %d after %dms for %s", response, dialogElapsed, tool));
+                try {
+                    PermissionResponse decision = PermissionResponse.fromValue(response);
+                    if (decision == null) {
+                        debugLog("RESPONSE_NULL", "Response value " + response + " mapped to null, defaulting to DENY");
+                        decision = PermissionResponse.DENY;
                     }
-                }).exceptionally(ex -> {
-                    debugLog("DIALOG_EXCEPTION", "Frontend dialog exception: " + ex.getMessage());
-                    try {
-                        writeResponse(requestId, false);
-                    } catch (Exception e) {
-                        LOG.error("Error occurred", e);
+
+                    boolean allow;
+                    switch (decision) {
+                        case ALLOW:
+                            allow = true;
+                            debugLog("DECISION", "ALLOW (single) for " + tool);
+                            break;
+                        case ALLOW_ALWAYS:
+                            allow = true;
+                            // 保存为工具级别规则（按工具类型，不是按参数），只在本次 IDE 会话内有效
+                            ruleStore.addRule(PermissionRule.forTool(tool, true));
+                            debugLog("DECISION", "ALLOW_ALWAYS for " + tool + ", saved as rule");
+                            break;
+                        case DENY:
+                        default:
+                            allow = false;
+                            debugLog("DECISION", "DENY for " + tool);
+                            break;
                     }
-                    notifyDecision(toolName, inputs, PermissionResponse.DENY);
-                    processingRequests.remove(fileName);
-                    return null;
-                });
 
-                // 异步处理，直接返回，不阻塞
-                return;
-            }
+                    notifyDecision(toolName, inputs, decision);
+                    debugLog("WRITE_RESPONSE", String.format("Writing response for %s: allow=%s", requestId, allow));
+                    respond(sink, requestId, allow);
 
-            // 降级方案：使用系统弹窗（同步阻塞）
-            debugLog("FALLBACK_DIALOG", "Using system dialog (JOptionPane) for: " + toolName);
-            CompletableFuture<Integer> future = new CompletableFuture<>();
-            ApplicationManager.getApplication().invokeLater(() -> {
-                int response = showSystemPermissionDialog(toolName, inputs);
-                future.complete(response);
+                    debugLog("DIALOG_COMPLETE", "Frontend dialog processing complete: allow=" + allow);
+                } catch (Exception e) {
+                    debugLog("DIALOG_ERROR", "Error processing dialog result: " + e.getMessage());
+                    LOG.error("Error occurred", e);
+                }
+            }).exceptionally(ex -> {
+                debugLog("DIALOG_EXCEPTION", "Frontend dialog exception: " + ex.getMessage());
+                try {
+                    respond(sink, requestId, false);
+                } catch (Exception e) {
+                    LOG.error("Error occurred", e);
+                }
+                notifyDecision(toolName, inputs, PermissionResponse.DENY);
+                return null;
             });
 
-            debugLog("DIALOG_WAIT", "Waiting for system dialog response (timeout: 30s)");
-            int response = future.get(30, TimeUnit.SECONDS);
+            // 异步处理，直接返回，不阻塞
+            return;
+        }
+
+        // 降级方案：使用系统弹窗，与前端弹窗一样异步等待结果，不占用调度线程
+        debugLog("FALLBACK_DIALOG", "Using system dialog (JOptionPane) for: " + toolName);
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            latencyTracker.onDialogShown(requestId);
+            int response = showSystemPermissionDialog(toolName, inputs);
+            latencyTracker.onDecided(requestId);
+            future.complete(response);
+        });
+
+        long timeoutMs = Math.max(0, deadlineOf(request) - System.currentTimeMillis());
+        debugLog("DIALOG_WAIT", "Waiting for system dialog response (timeout: " + timeoutMs + "ms)");
+        future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).thenAccept(response -> {
             debugLog("DIALOG_RESPONSE", "Got system dialog response: " + response);
 
             PermissionResponse decision = PermissionResponse.fromValue(response);
@@ -655,8 +905,9 @@ public class PermissionService {
                     break;
                 case ALLOW_ALWAYS:
                     allow = true;
-                    permissionMemory.put(memoryKey, PermissionResponse.ALLOW_ALWAYS.value);
-                    debugLog("MEMORY_SAVE", "Saved param-level memory: " + memoryKey);
+                    PermissionRule rule = PermissionRule.forInputs(toolName, inputs, true);
+                    ruleStore.addRule(rule);
+                    debugLog("RULE_SAVE", "Saved permission rule for " + toolName);
                     break;
                 case DENY:
                 default:
@@ -668,21 +919,20 @@ public class PermissionService {
 
             // 写入响应
             debugLog("WRITE_RESPONSE", String.format("Writing response for %s: allow=%s", requestId, allow));
-            writeResponse(requestId, allow);
-
-            // 删除请求文件
-            Files.delete(requestFile);
-            debugLog("FILE_DELETE", "Deleted request file after processing: " + fileName);
+            sink.sendPermissionResponse(requestId, allow);
 
             long elapsed = System.currentTimeMillis() - startTime;
             debugLog("REQUEST_COMPLETE", String.format("Request %s completed in %dms", requestId, elapsed));
-
-        } catch (Exception e) {
-            debugLog("HANDLE_ERROR", "Error handling request: " + e.getMessage());
-            LOG.error("Error occurred", e);
-        } finally {
-            processingRequests.remove(fileName);
-        }
+        }).exceptionally(ex -> {
+            debugLog("DIALOG_EXCEPTION", "System dialog failed or timed out: " + ex.getMessage());
+            try {
+                sink.sendPermissionResponse(requestId, false);
+            } catch (Exception e) {
+                LOG.error("Error occurred", e);
+            }
+            notifyDecision(toolName, inputs, PermissionResponse.DENY);
+            return null;
+        });
     }
 
     /**
@@ -742,7 +992,7 @@ public class PermissionService {
             debugLog("RESPONSE_CONTENT", "Response JSON: " + responseContent);
             debugLog("RESPONSE_FILE", "Target file: " + responseFile);
 
-            Files.writeString(responseFile, responseContent);
+            writeAtomically(responseFile, responseContent);
 
             // 验证文件是否写入成功
             if (Files.exists(responseFile)) {
@@ -758,114 +1008,96 @@ public class PermissionService {
     }
 
     /**
-     * 处理 AskUserQuestion 请求
+     * 处理 AskUserQuestion 请求文件（文件模式，通道不可用时的降级方案）
      */
     private void handleAskUserQuestionRequest(Path requestFile) {
         String fileName = requestFile.getFileName().toString();
-        long startTime = System.currentTimeMillis();
         debugLog("HANDLE_ASK_USER_QUESTION", "Processing AskUserQuestion file: " + fileName);
 
-        // 检查是否正在处理该请求
-        if (!processingRequests.add(fileName)) {
-            debugLog("SKIP_DUPLICATE_ASK", "AskUserQuestion already being processed, skipping: " + fileName);
-            return;
-        }
-
         try {
-            Thread.sleep(100); // 等待文件写入完成
-
             if (!Files.exists(requestFile)) {
                 debugLog("ASK_FILE_MISSING", "AskUserQuestion file missing before read, likely already handled: " + fileName);
                 return;
             }
 
-            String content;
-            try {
-                content = Files.readString(requestFile);
-            } catch (NoSuchFileException e) {
-                debugLog("ASK_FILE_MISSING", "AskUserQuestion file missing while reading, likely already handled: " + fileName);
-                return;
+            JsonObject request = consumeRequestFile(requestFile);
+            if (request != null) {
+                decideAskUserQuestion(request, fileResponseSink);
             }
-            debugLog("ASK_FILE_READ", "Read AskUserQuestion content: " + content.substring(0, Math.min(200, content.length())) + "...");
+        } catch (Exception e) {
+            debugLog("ASK_HANDLE_ERROR", "Error handling AskUserQuestion request: " + e.getMessage());
+            LOG.error("Error occurred", e);
+        } finally {
+            processingRequests.remove(fileName);
+        }
+    }
 
-            JsonObject request = gson.fromJson(content, JsonObject.class);
+    /**
+     * 显示问题对话框收集答案，并通过 sink 写回
+     */
+    private void decideAskUserQuestion(JsonObject request, ResponseSink sink) {
+        long startTime = System.currentTimeMillis();
 
-            String requestId = request.get("requestId").getAsString();
-            String toolName = request.get("toolName").getAsString();
-            // questions 是一个 JSON 对象，包含问题数据
-            JsonObject questionsData = request;
+        String requestId = request.get("requestId").getAsString();
+        String toolName = request.get("toolName").getAsString();
+        // questions 是一个 JSON 对象，包含问题数据
+        JsonObject questionsData = request;
 
-            debugLog("ASK_REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
+        debugLog("ASK_REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
 
-            // 获取 AskUserQuestion 对话框显示器
-            // 由于 AskUserQuestion 不涉及文件路径，使用第一个注册的项目
-            AskUserQuestionDialogShower dialogShower = null;
-            if (!askUserQuestionDialogShowers.isEmpty()) {
-                dialogShower = askUserQuestionDialogShowers.values().iterator().next();
-            }
+        // 获取发起请求的项目对应的 AskUserQuestion 对话框显示器
+        Project targetProject = resolveProject(request);
+        AskUserQuestionDialogShower dialogShower = targetProject != null
+            ? askUserQuestionDialogShowers.get(targetProject) : null;
+        if (dialogShower == null && !askUserQuestionDialogShowers.isEmpty()) {
+            dialogShower = askUserQuestionDialogShowers.values().iterator().next();
+        }
 
-            if (dialogShower != null) {
-                debugLog("ASK_DIALOG_SHOWER", "Using AskUserQuestion dialog shower");
+        if (dialogShower != null) {
+            debugLog("ASK_DIALOG_SHOWER", "Using AskUserQuestion dialog shower");
 
-                // 立即删除请求文件，避免重复处理
+            final long dialogStartTime = System.currentTimeMillis();
+
+            // 异步调用前端弹窗
+            debugLog("ASK_DIALOG_SHOW", "Calling dialogShower.showAskUserQuestionDialog");
+            AskUserQuestionDialogShower shower = dialogShower;
+            CompletableFuture<JsonObject> future = dispatcher.showDialog(shower, channelKeyOf(requestId),
+                () -> shower.showAskUserQuestionDialog(requestId, questionsData));
+
+            // 异步处理结果
+            future.thenAccept(answers -> {
+                long dialogElapsed = System.currentTimeMillis() - dialogStartTime;
+                debugLog("ASK_DIALOG_RESPONSE", String.format("Got answers after %dms", dialogElapsed));
                 try {
-                    Files.deleteIfExists(requestFile);
-                    debugLog("ASK_FILE_DELETE", "Deleted AskUserQuestion request file: " + fileName);
+                    debugLog("ASK_WRITE_RESPONSE", String.format("Writing AskUserQuestion response for %s", requestId));
+                    sink.sendAskUserQuestionResponse(requestId, answers);
+
+                    debugLog("ASK_DIALOG_COMPLETE", "AskUserQuestion dialog processing complete");
                 } catch (Exception e) {
-                    debugLog("ASK_FILE_DELETE_ERROR", "Failed to delete AskUserQuestion request file: " + e.getMessage());
+                    debugLog("ASK_DIALOG_ERROR", "Error processing AskUserQuestion dialog result: " + e.getMessage());
+                    LOG.error("Error occurred", e);
                 }
+            }).exceptionally(ex -> {
+                debugLog("ASK_DIALOG_EXCEPTION", "AskUserQuestion dialog exception: " + ex.getMessage());
+                try {
+                    // 用户取消或出错，写入空答案
+                    sink.sendAskUserQuestionResponse(requestId, new JsonObject());
+                } catch (Exception e) {
+                    LOG.error("Error occurred", e);
+                }
+                return null;
+            });
 
-                final long dialogStartTime = System.currentTimeMillis();
-
-                // 异步调用前端弹窗
-                debugLog("ASK_DIALOG_SHOW", "Calling dialogShower.showAskUserQuestionDialog");
-                CompletableFuture<JsonObject> future = dialogShower.showAskUserQuestionDialog(requestId, questionsData);
-
-                // 异步处理结果
-                future.thenAccept(answers -> {
-                    long dialogElapsed = System.currentTimeMillis() - dialogStartTime;
-                    debugLog("ASK_DIALOG_RESPONSE", String.format("Got answers after %dms", dialogElapsed));
-                    try {
-                        debugLog("ASK_WRITE_RESPONSE", String.format("Writing AskUserQuestion response for %s", requestId));
-                        writeAskUserQuestionResponse(requestId, answers);
-
-                        debugLog("ASK_DIALOG_COMPLETE", "AskUserQuestion dialog processing complete");
-                    } catch (Exception e) {
-                        debugLog("ASK_DIALOG_ERROR", "Error processing AskUserQuestion dialog result: " + e.getMessage());
-                        LOG.error("Error occurred", e);
-                    } finally {
-                        processingRequests.remove(fileName);
-                    }
-                }).exceptionally(ex -> {
-                    debugLog("ASK_DIALOG_EXCEPTION", "AskUserQuestion dialog exception: " + ex.getMessage());
-                    try {
-                        // 用户取消或出错，写入空答案
-                        writeAskUserQuestionResponse(requestId, new JsonObject());
-                    } catch (Exception e) {
-                        LOG.error("Error occurred", e);
-                    }
-                    processingRequests.remove(fileName);
-                    return null;
-                });
-
-                // 异步处理，直接返回，不阻塞
-                return;
-            }
-
-            // 没有对话框显示器，写入空答案（拒绝）
-            debugLog("ASK_NO_DIALOG_SHOWER", "No AskUserQuestion dialog shower available, denying");
-            writeAskUserQuestionResponse(requestId, new JsonObject());
-            Files.deleteIfExists(requestFile);
+            // 异步处理，直接返回，不阻塞
+            return;
+        }
 
-            long elapsed = System.currentTimeMillis() - startTime;
-            debugLog("ASK_REQUEST_COMPLETE", String.format("AskUserQuestion request %s completed in %dms", requestId, elapsed));
+        // 没有对话框显示器，写入空答案（拒绝）
+        debugLog("ASK_NO_DIALOG_SHOWER", "No AskUserQuestion dialog shower available, denying");
+        sink.sendAskUserQuestionResponse(requestId, new JsonObject());
 
-        } catch (Exception e) {
-            debugLog("ASK_HANDLE_ERROR", "Error handling AskUserQuestion request: " + e.getMessage());
-            LOG.error("Error occurred", e);
-        } finally {
-            processingRequests.remove(fileName);
-        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        debugLog("ASK_REQUEST_COMPLETE", String.format("AskUserQuestion request %s completed in %dms", requestId, elapsed));
     }
 
     /**
@@ -883,7 +1115,7 @@ public class PermissionService {
             debugLog("ASK_RESPONSE_CONTENT", "Response JSON: " + responseContent);
             debugLog("ASK_RESPONSE_FILE", "Target file: " + responseFile);
 
-            Files.writeString(responseFile, responseContent);
+            writeAtomically(responseFile, responseContent);
 
             // 验证文件是否写入成功
             if (Files.exists(responseFile)) {
@@ -903,22 +1135,39 @@ public class PermissionService {
      */
     public void stop() {
         running = false;
-        if (watchThread != null) {
+        // 先关闭 WatchService 唤醒等待中的监控线程
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
             try {
-                watchThread.join(1000);
-            } catch (InterruptedException e) {
+                service.close();
+            } catch (IOException e) {
                 LOG.error("Error occurred", e);
             }
         }
-        if (watchService != null) {
+        if (watchThread != null) {
+            watchThread.interrupt();
             try {
-                watchService.close();
-            } catch (IOException e) {
+                watchThread.join(1000);
+            } catch (InterruptedException e) {
                 LOG.error("Error occurred", e);
             }
         }
     }
 
+    /**
+     * 先写临时文件再原子重命名，Node 侧轮询到响应文件时内容一定完整
+     */
+    private void writeAtomically(Path target, String content) throws IOException {
+        Path temp = target.resolveSibling("." + target.getFileName() + ".tmp");
+        Files.writeString(temp, content);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     private void notifyDecision(String toolName, JsonObject inputs, PermissionResponse response) {
         PermissionDecisionListener listener = this.decisionListener;
         if (listener == null || response == null) {
@@ -0,0 +1,70 @@
+package com.github.claudecodegui.permission;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 项目根路径前缀树
+ * 按路径分段建立,查找文件所属项目时沿文件路径逐段向下,最后经过的项目根即为最长匹配,
+ * 耗时只与文件路径的深度有关,与注册的项目数量无关。
+ *
+ * 只在注册/注销项目时整体重建,查找时不加锁。
+ */
+final class ProjectPathTrie<T> {
+
+    private static final class Node<T> {
+        final Map<String, Node<T>> children = new HashMap<>();
+        T value;
+    }
+
+    private final Node<T> root = new Node<>();
+    private final boolean ignoreCase;
+
+    /**
+     * @param ignoreCase 路径是否大小写不敏感(Windows)
+     */
+    ProjectPathTrie(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    void put(String path, T value) {
+        Node<T> node = root;
+        for (String segment : segments(path)) {
+            node = node.children.computeIfAbsent(segment, s -> new Node<>());
+        }
+        node.value = value;
+    }
+
+    /**
+     * 查找包含 path 的最深的项目根
+     *
+     * @return 没有任何项目根包含 path 时返回 null
+     */
+    T findDeepest(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        Node<T> node = root;
+        T match = root.value;
+        for (String segment : segments(path)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                match = node.value;
+            }
+        }
+        return match;
+    }
+
+    private String[] segments(String path) {
+        String normalized = path.replace('\\', '/');
+        if (ignoreCase) {
+            normalized = normalized.toLowerCase(Locale.ROOT);
+        }
+        // 按完整分段匹配,/home/user/my-app-v2 不会匹配 /home/user/my-app
+        return normalized.split("/+");
+    }
+}
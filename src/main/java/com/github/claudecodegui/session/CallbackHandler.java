@@ -61,6 +61,15 @@ public class CallbackHandler {
         }
     }
 
+    /**
+     * 通知是否还有更早的历史消息可以加载
+     */
+    public void notifyOlderMessagesAvailable(boolean hasOlder) {
+        if (callback != null) {
+            callback.onOlderMessagesAvailable(hasOlder);
+        }
+    }
+
     /**
      * 通知斜杠命令接收
      */
@@ -6,9 +6,13 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Claude消息回调处理器
@@ -21,10 +25,19 @@ import java.util.List;
 public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
     private static final Logger LOG = Logger.getInstance(ClaudeMessageHandler.class);
 
+    /**
+     * 助手消息快照的最短发布间隔
+     * 英文：Minimum interval between assistant snapshot publishes
+     * 解释：流式消息很密集，这段时间内收到的多条消息只拷贝、刷新一次界面
+     */
+    private static final long SNAPSHOT_FLUSH_INTERVAL_MS = 50;
+
     private final SessionState state;
+    private final SessionEventLoop eventLoop;
     private final CallbackHandler callbackHandler;
     private final MessageParser messageParser;
     private final MessageMerger messageMerger;
+    private final ToolResultStore toolResultStore;
     private final Gson gson;
 
     // 当前助手消息的内容累积器
@@ -32,11 +45,25 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
     // 解释：就像一个大碗，把AI说的话一点点收集起来
     private final StringBuilder assistantContent = new StringBuilder();
 
-    // 当前助手消息对象
-    // 英文：Current assistant message object
-    // 解释：正在处理的消息本身
+    // 当前助手消息对象（最近一次发布到消息列表中的实例，发布后不再修改）
+    // 英文：Current assistant message object, the instance last published to the message list
+    // 解释：正在处理的消息本身；内容变化时换成新实例，界面手里的旧实例保持不变
     private Message currentAssistantMessage = null;
 
+    // 当前助手消息的可变消息树（流式合并直接在此原地修改）
+    // 英文：Mutable raw tree of the current assistant message, merged in place
+    // 解释：只在这里改，给界面看的是 publishMessages 发布出去的快照
+    private JsonObject workingRaw = null;
+
+    // workingRaw 中 content 数组的 id→下标 索引，跨多次合并复用
+    // 英文：Persistent id→index map for workingRaw content blocks
+    private final Map<String, Integer> contentIndex = new HashMap<>();
+
+    // workingRaw 自上次发布快照后是否被修改过，以及是否已安排了一次发布（仅在事件循环线程上访问）
+    // 英文：Whether workingRaw changed since the last snapshot, and whether a flush is scheduled
+    private boolean snapshotDirty = false;
+    private boolean flushScheduled = false;
+
     // 是否正在思考
     // 英文：Whether AI is thinking
     // 解释：AI是不是在想问题（还没开始说话）
@@ -49,15 +76,19 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
      */
     public ClaudeMessageHandler(
         SessionState state,
+        SessionEventLoop eventLoop,
         CallbackHandler callbackHandler,
         MessageParser messageParser,
         MessageMerger messageMerger,
+        ToolResultStore toolResultStore,
         Gson gson
     ) {
         this.state = state;
+        this.eventLoop = eventLoop;
         this.callbackHandler = callbackHandler;
         this.messageParser = messageParser;
         this.messageMerger = messageMerger;
+        this.toolResultStore = toolResultStore;
         this.gson = gson;
     }
 
@@ -65,9 +96,18 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
      * 处理收到的消息
      * 英文：Handle received message
      * 解释：AI发来消息时，这个方法负责处理
+     * 回调发生在桥接读线程上，这里只负责把消息排进会话事件循环，真正的处理在事件循环线程上串行执行
      */
     @Override
     public void onMessage(String type, String content) {
+        eventLoop.execute(() -> dispatchMessage(type, content));
+    }
+
+    /**
+     * 分发消息（在会话事件循环线程上执行）
+     * 英文：Dispatch message on the session event loop
+     */
+    private void dispatchMessage(String type, String content) {
         // 根据消息类型选择不同的处理方式
         // 英文：Choose different handling based on message type
         // 解释：就像分拣邮件，不同类型的信放到不同的格子里
@@ -110,13 +150,21 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
      */
     @Override
     public void onError(String error) {
+        eventLoop.execute(() -> handleError(error));
+    }
+
+    /**
+     * 处理错误（在会话事件循环线程上执行）
+     * 英文：Handle error on the session event loop
+     */
+    private void handleError(String error) {
         state.setError(error);
         state.setBusy(false);
         state.setLoading(false);
 
         Message errorMessage = new Message(Message.Type.ERROR, error);
         state.addMessage(errorMessage);
-        callbackHandler.notifyMessageUpdate(state.getMessages());
+        publishMessages();
         callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
     }
 
@@ -127,10 +175,13 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
      */
     @Override
     public void onComplete(ClaudeSDKBridge.SDKResult result) {
-        state.setBusy(false);
-        state.setLoading(false);
-        state.updateLastModifiedTime();
-        callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
+        eventLoop.execute(() -> {
+            flushAssistantSnapshot();
+            state.setBusy(false);
+            state.setLoading(false);
+            state.updateLastModifiedTime();
+            callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
+        });
     }
 
     // ===== 私有方法：处理各种消息类型 =====
@@ -148,31 +199,76 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
         }
 
         try {
-            // 解析完整的 JSON 消息
+            // 解析完整的 JSON 消息，直接原地合并到会话持有的消息树
             JsonObject messageJson = gson.fromJson(content, JsonObject.class);
-            JsonObject previousRaw = currentAssistantMessage != null ? currentAssistantMessage.raw : null;
-            JsonObject mergedRaw = messageMerger.mergeAssistantMessage(previousRaw, messageJson);
+            if (workingRaw == null) {
+                workingRaw = new JsonObject();
+                contentIndex.clear();
+            }
+            messageMerger.mergeAssistantMessageInPlace(workingRaw, messageJson, contentIndex);
 
             if (currentAssistantMessage == null) {
-                currentAssistantMessage = new Message(Message.Type.ASSISTANT, "", mergedRaw);
+                currentAssistantMessage = new Message(Message.Type.ASSISTANT, "");
                 state.addMessage(currentAssistantMessage);
-            } else {
-                currentAssistantMessage.raw = mergedRaw;
             }
 
-            String aggregatedText = messageParser.extractMessageContent(mergedRaw);
+            String aggregatedText = messageParser.extractMessageContent(workingRaw);
             assistantContent.setLength(0);
             if (aggregatedText != null) {
                 assistantContent.append(aggregatedText);
             }
-            currentAssistantMessage.content = assistantContent.toString();
-            currentAssistantMessage.raw = mergedRaw;
-            callbackHandler.notifyMessageUpdate(state.getMessages());
+            snapshotDirty = true;
+            scheduleAssistantFlush();
         } catch (Exception e) {
             LOG.warn("Failed to parse assistant message JSON: " + e.getMessage());
         }
     }
 
+    /**
+     * 安排一次助手消息快照发布
+     * 英文：Schedule a throttled publish of the assistant snapshot
+     * 解释：间隔内已经安排过就不再安排，到时间后回到事件循环线程上一次性拷贝并刷新界面
+     */
+    private void scheduleAssistantFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(
+            () -> eventLoop.execute(this::flushAssistantSnapshot),
+            SNAPSHOT_FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 发布尚未发布的助手消息修改（在会话事件循环线程上执行）
+     * 英文：Publish pending assistant changes on the session event loop
+     */
+    private void flushAssistantSnapshot() {
+        flushScheduled = false;
+        if (snapshotDirty) {
+            publishMessages();
+        }
+    }
+
+    /**
+     * 发布消息列表，助手消息有未发布的修改时先换成新的消息实例
+     * 英文：Publish messages, replacing the assistant message with a fresh copy if it is dirty
+     * 解释：workingRaw 会被后续流式消息继续修改，已发布的消息实例可能正被界面线程序列化，
+     * 所以 content 和 raw 一起放进新实例再替换，每次刷新界面最多拷贝一次
+     */
+    private void publishMessages() {
+        if (snapshotDirty && currentAssistantMessage != null) {
+            Message published = new Message(Message.Type.ASSISTANT, assistantContent.toString(),
+                workingRaw != null ? workingRaw.deepCopy() : currentAssistantMessage.raw);
+            published.timestamp = currentAssistantMessage.timestamp;
+            if (state.replaceMessage(currentAssistantMessage, published)) {
+                currentAssistantMessage = published;
+            }
+        }
+        snapshotDirty = false;
+        callbackHandler.notifyMessageUpdate(state.publishMessages());
+    }
+
     /**
      * 处理思考消息
      * 英文：Handle thinking message
@@ -205,10 +301,10 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
             currentAssistantMessage = new Message(Message.Type.ASSISTANT, assistantContent.toString());
             state.addMessage(currentAssistantMessage);
         } else {
-            currentAssistantMessage.content = assistantContent.toString();
+            snapshotDirty = true;
         }
 
-        callbackHandler.notifyMessageUpdate(state.getMessages());
+        publishMessages();
     }
 
     /**
@@ -239,6 +335,9 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
                 : null;
 
             if (toolUseId != null) {
+                // 大型结果只保留预览和句柄，完整内容留在 Java 端按需拉取
+                toolResultStore.externalizeBlock(toolResultBlock);
+
                 // 构造包含 tool_result 的 user 消息
                 JsonArray contentArray = new JsonArray();
                 contentArray.add(toolResultBlock);
@@ -255,7 +354,7 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
                 state.addMessage(toolResultMessage);
 
                 LOG.debug("Tool result received for tool_use_id: " + toolUseId);
-                callbackHandler.notifyMessageUpdate(state.getMessages());
+                publishMessages();
             }
         } catch (Exception e) {
             LOG.warn("Failed to parse tool_result JSON: " + e.getMessage());
@@ -268,6 +367,7 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
      * 解释：AI说完这条消息了
      */
     private void handleMessageEnd() {
+        flushAssistantSnapshot();
         if (isThinking) {
             isThinking = false;
             callbackHandler.notifyThinkingStatusChanged(false);
@@ -292,9 +392,9 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
             LOG.debug("Result message received");
 
             // 如果当前消息的raw中usage为0，则用result中的usage进行更新
-            if (currentAssistantMessage != null && currentAssistantMessage.raw != null) {
-                JsonObject message = currentAssistantMessage.raw.has("message") && currentAssistantMessage.raw.get("message").isJsonObject()
-                    ? currentAssistantMessage.raw.getAsJsonObject("message")
+            if (currentAssistantMessage != null && workingRaw != null) {
+                JsonObject message = workingRaw.has("message") && workingRaw.get("message").isJsonObject()
+                    ? workingRaw.getAsJsonObject("message")
                     : null;
 
                 // 检查当前消息的usage是否全为0
@@ -314,7 +414,8 @@ public class ClaudeMessageHandler implements ClaudeSDKBridge.MessageCallback {
                     JsonObject resultUsage = resultJson.getAsJsonObject("usage");
                     if (message != null) {
                         message.add("usage", resultUsage);
-                        callbackHandler.notifyMessageUpdate(state.getMessages());
+                        snapshotDirty = true;
+                        publishMessages();
                         LOG.debug("Updated assistant message usage from result message");
                     }
                 }
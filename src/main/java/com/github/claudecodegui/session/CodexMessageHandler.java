@@ -16,6 +16,7 @@ public class CodexMessageHandler implements CodexSDKBridge.MessageCallback {
     private static final Logger LOG = Logger.getInstance(CodexMessageHandler.class);
 
     private final SessionState state;
+    private final SessionEventLoop eventLoop;
     private final CallbackHandler callbackHandler;
 
     // 当前助手消息的内容累积器
@@ -33,8 +34,9 @@ public class CodexMessageHandler implements CodexSDKBridge.MessageCallback {
      * 英文：Constructor
      * 解释：创建这个处理器
      */
-    public CodexMessageHandler(SessionState state, CallbackHandler callbackHandler) {
+    public CodexMessageHandler(SessionState state, SessionEventLoop eventLoop, CallbackHandler callbackHandler) {
         this.state = state;
+        this.eventLoop = eventLoop;
         this.callbackHandler = callbackHandler;
     }
 
@@ -45,6 +47,14 @@ public class CodexMessageHandler implements CodexSDKBridge.MessageCallback {
      */
     @Override
     public void onMessage(String type, String content) {
+        eventLoop.execute(() -> dispatchMessage(type, content));
+    }
+
+    /**
+     * 分发消息（在会话事件循环线程上执行）
+     * 英文：Dispatch message on the session event loop
+     */
+    private void dispatchMessage(String type, String content) {
         // Codex 的简化处理（主要是 content_delta）
         // 英文：Simplified handling for Codex (mainly content_delta)
         // 解释：Codex比较简单，主要就是一字一字输出内容
@@ -62,13 +72,21 @@ public class CodexMessageHandler implements CodexSDKBridge.MessageCallback {
      */
     @Override
     public void onError(String error) {
+        eventLoop.execute(() -> handleError(error));
+    }
+
+    /**
+     * 处理错误（在会话事件循环线程上执行）
+     * 英文：Handle error on the session event loop
+     */
+    private void handleError(String error) {
         state.setError(error);
         state.setBusy(false);
         state.setLoading(false);
 
         Message errorMessage = new Message(Message.Type.ERROR, error);
         state.addMessage(errorMessage);
-        callbackHandler.notifyMessageUpdate(state.getMessages());
+        callbackHandler.notifyMessageUpdate(state.publishMessages());
         callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
     }
 
@@ -79,10 +97,12 @@ public class CodexMessageHandler implements CodexSDKBridge.MessageCallback {
      */
     @Override
     public void onComplete(CodexSDKBridge.SDKResult result) {
-        state.setBusy(false);
-        state.setLoading(false);
-        state.updateLastModifiedTime();
-        callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
+        eventLoop.execute(() -> {
+            state.setBusy(false);
+            state.setLoading(false);
+            state.updateLastModifiedTime();
+            callbackHandler.notifyStateChange(state.isBusy(), state.isLoading(), state.getError());
+        });
     }
 
     // ===== 私有方法 =====
@@ -101,10 +121,15 @@ public class CodexMessageHandler implements CodexSDKBridge.MessageCallback {
             currentAssistantMessage = new Message(Message.Type.ASSISTANT, assistantContent.toString());
             state.addMessage(currentAssistantMessage);
         } else {
-            currentAssistantMessage.content = assistantContent.toString();
+            // 已发布的实例可能正被界面线程读取，换成新实例而不是原地修改
+            Message updated = new Message(Message.Type.ASSISTANT, assistantContent.toString(), currentAssistantMessage.raw);
+            updated.timestamp = currentAssistantMessage.timestamp;
+            if (state.replaceMessage(currentAssistantMessage, updated)) {
+                currentAssistantMessage = updated;
+            }
         }
 
-        callbackHandler.notifyMessageUpdate(state.getMessages());
+        callbackHandler.notifyMessageUpdate(state.publishMessages());
     }
 
     /**
@@ -4,35 +4,37 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * 消息合并器
  * 负责合并流式助手消息,确保之前展示的工具步骤不会被覆盖
+ *
+ * 原地合并:直接修改会话持有的消息树并复用 id→下标 索引,不产生深拷贝,
+ * 适合流式场景下的高频更新;发布给界面的快照由调用方拷贝。
  */
 public class MessageMerger {
 
     /**
-     * 合并流式助手消息
+     * 原地合并流式助手消息
+     * 直接修改 target,不做任何深拷贝;newRaw 必须是刚解析出来且之后不再使用的对象,
+     * 它的子节点会被直接挂到 target 上。
+     *
+     * @param target 会话持有的可变消息树
+     * @param newRaw 新收到的消息
+     * @param contentIndex target 中 content 数组的 id→下标 索引,由调用方在多次合并之间持有
      */
-    public JsonObject mergeAssistantMessage(JsonObject existingRaw, JsonObject newRaw) {
-        if (newRaw == null) {
-            return existingRaw != null ? existingRaw.deepCopy() : null;
-        }
-
-        if (existingRaw == null) {
-            return newRaw.deepCopy();
+    public void mergeAssistantMessageInPlace(JsonObject target, JsonObject newRaw, Map<String, Integer> contentIndex) {
+        if (target == null || newRaw == null) {
+            return;
         }
 
-        JsonObject merged = existingRaw.deepCopy();
-
         // 合并顶层字段(除 message 外)
         for (Map.Entry<String, JsonElement> entry : newRaw.entrySet()) {
             if ("message".equals(entry.getKey())) {
                 continue;
             }
-            merged.add(entry.getKey(), entry.getValue());
+            target.add(entry.getKey(), entry.getValue());
         }
 
         JsonObject incomingMessage = newRaw.has("message") && newRaw.get("message").isJsonObject()
@@ -40,86 +42,57 @@ public class MessageMerger {
             : null;
 
         if (incomingMessage == null) {
-            return merged;
+            return;
         }
 
-        JsonObject mergedMessage = merged.has("message") && merged.get("message").isJsonObject()
-            ? merged.getAsJsonObject("message")
-            : new JsonObject();
+        JsonObject targetMessage;
+        if (target.has("message") && target.get("message").isJsonObject()) {
+            targetMessage = target.getAsJsonObject("message");
+        } else {
+            targetMessage = new JsonObject();
+            target.add("message", targetMessage);
+        }
 
         // 复制新元数据(保留最新 stop_reason、usage 等)
         for (Map.Entry<String, JsonElement> entry : incomingMessage.entrySet()) {
             if ("content".equals(entry.getKey())) {
                 continue;
             }
-            mergedMessage.add(entry.getKey(), entry.getValue());
+            targetMessage.add(entry.getKey(), entry.getValue());
         }
 
-        mergeAssistantContentArray(mergedMessage, incomingMessage);
-        merged.add("message", mergedMessage);
-        return merged;
-    }
-
-    /**
-     * 合并助手消息的 content 数组
-     */
-    private void mergeAssistantContentArray(JsonObject targetMessage, JsonObject incomingMessage) {
-        JsonArray baseContent = targetMessage.has("content") && targetMessage.get("content").isJsonArray()
-            ? targetMessage.getAsJsonArray("content")
-            : new JsonArray();
-
-        Map<String, Integer> indexByKey = buildContentIndex(baseContent);
-
         JsonArray incomingContent = incomingMessage.has("content") && incomingMessage.get("content").isJsonArray()
             ? incomingMessage.getAsJsonArray("content")
             : null;
 
         if (incomingContent == null) {
-            targetMessage.add("content", baseContent);
             return;
         }
 
+        JsonArray baseContent;
+        if (targetMessage.has("content") && targetMessage.get("content").isJsonArray()) {
+            baseContent = targetMessage.getAsJsonArray("content");
+        } else {
+            // content 尚不存在或不是数组,索引同步失效
+            baseContent = new JsonArray();
+            targetMessage.add("content", baseContent);
+            contentIndex.clear();
+        }
+
         for (int i = 0; i < incomingContent.size(); i++) {
             JsonElement element = incomingContent.get(i);
-            JsonElement elementCopy = element.deepCopy();
-
-            if (element.isJsonObject()) {
-                JsonObject block = element.getAsJsonObject();
-                String key = getContentBlockKey(block);
-                if (key != null && indexByKey.containsKey(key)) {
-                    int idx = indexByKey.get(key);
-                    baseContent.set(idx, elementCopy);
-                    continue;
-                } else if (key != null) {
-                    baseContent.add(elementCopy);
-                    indexByKey.put(key, baseContent.size() - 1);
+            String key = element.isJsonObject() ? getContentBlockKey(element.getAsJsonObject()) : null;
+
+            if (key != null) {
+                Integer idx = contentIndex.get(key);
+                if (idx != null && idx < baseContent.size()) {
+                    baseContent.set(idx, element);
                     continue;
                 }
+                contentIndex.put(key, baseContent.size());
             }
-
-            baseContent.add(elementCopy);
-        }
-
-        targetMessage.add("content", baseContent);
-    }
-
-    /**
-     * 构建内容块索引
-     */
-    private Map<String, Integer> buildContentIndex(JsonArray contentArray) {
-        Map<String, Integer> index = new HashMap<>();
-        for (int i = 0; i < contentArray.size(); i++) {
-            JsonElement element = contentArray.get(i);
-            if (!element.isJsonObject()) {
-                continue;
-            }
-            JsonObject block = element.getAsJsonObject();
-            String key = getContentBlockKey(block);
-            if (key != null && !index.containsKey(key)) {
-                index.put(key, i);
-            }
+            baseContent.add(element);
         }
-        return index;
     }
 
     /**
@@ -0,0 +1,105 @@
+package com.github.claudecodegui.session;
+
+import com.github.claudecodegui.ClaudeSession;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * 消息列表快照
+ * 不可变、带版本号的消息列表,由 SessionState 在会话事件循环线程上发布,界面线程无锁读取
+ *
+ * 追加消息时与上一版本共享底层数组:只会写入所有已发布快照 size 之外的槽位,
+ * 因此旧快照看到的内容永远不变,发布新快照也不需要拷贝整个列表。
+ * 只允许单一写线程对最新快照调用 append,否则共享数组的槽位会被覆盖。
+ */
+public final class MessageSnapshot extends AbstractList<ClaudeSession.Message> implements RandomAccess {
+
+    static final MessageSnapshot EMPTY = new MessageSnapshot(new ClaudeSession.Message[0], 0, 0);
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final ClaudeSession.Message[] elements;
+    private final int size;
+    private final long version;
+
+    private MessageSnapshot(ClaudeSession.Message[] elements, int size, long version) {
+        this.elements = elements;
+        this.size = size;
+        this.version = version;
+    }
+
+    @Override
+    public ClaudeSession.Message get(int index) {
+        Objects.checkIndex(index, size);
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 快照版本号,每次发布单调递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 追加一条消息,返回新版本快照(与当前快照共享底层数组)
+     */
+    MessageSnapshot append(ClaudeSession.Message message) {
+        ClaudeSession.Message[] target = elements;
+        if (size == target.length) {
+            target = Arrays.copyOf(target, Math.max(MIN_CAPACITY, size * 2));
+        }
+        target[size] = message;
+        return new MessageSnapshot(target, size + 1, version + 1);
+    }
+
+    /**
+     * 用给定消息整体替换,返回新版本快照
+     */
+    MessageSnapshot replaceAll(List<ClaudeSession.Message> messages) {
+        ClaudeSession.Message[] target = messages.toArray(new ClaudeSession.Message[0]);
+        return new MessageSnapshot(target, target.length, version + 1);
+    }
+
+    /**
+     * 清空消息,返回新版本快照
+     */
+    MessageSnapshot cleared() {
+        return new MessageSnapshot(EMPTY.elements, 0, version + 1);
+    }
+
+    /**
+     * 把一条消息换成新实例,返回新版本快照
+     * 已发布快照中的槽位不能原地改写,这里拷贝底层数组(只拷贝引用)
+     *
+     * @return 消息不在列表中时返回 null
+     */
+    MessageSnapshot replaced(ClaudeSession.Message message, ClaudeSession.Message replacement) {
+        // 被替换的通常是最后几条中正在流式输出的消息
+        for (int i = size - 1; i >= 0; i--) {
+            if (elements[i] == message) {
+                ClaudeSession.Message[] target = Arrays.copyOf(elements, elements.length);
+                target[i] = replacement;
+                return new MessageSnapshot(target, size, version + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 列表内容不变、仅版本号递增的新快照
+     * 用于列表中的消息被换成新实例后通知界面
+     */
+    MessageSnapshot touched() {
+        return new MessageSnapshot(elements, size, version + 1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.claudecodegui.session;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 会话事件循环
+ * 每个会话一个的单写线程:所有对会话消息列表的修改都串行提交到这里执行,
+ * 修改完成后由 SessionState 发布新的 MessageSnapshot,其他线程只读快照,无需加锁或拷贝
+ */
+public class SessionEventLoop {
+    private static final Logger LOG = Logger.getInstance(SessionEventLoop.class);
+
+    private final ExecutorService executor;
+
+    public SessionEventLoop(String name) {
+        this.executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(name, 1);
+    }
+
+    /**
+     * 提交任务,按提交顺序依次执行
+     */
+    public void execute(Runnable task) {
+        executor.execute(() -> runSafely(task));
+    }
+
+    /**
+     * 提交任务并返回完成信号
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(() -> runSafely(task), executor);
+    }
+
+    /**
+     * 停止接收新任务(已提交的任务仍会执行完)
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            // 单个事件失败不能中断后续事件的处理
+            LOG.warn("Session event failed: " + e.getMessage(), e);
+        }
+    }
+}
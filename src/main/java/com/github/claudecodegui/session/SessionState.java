@@ -8,6 +8,9 @@ import java.util.List;
 /**
  * 会话状态管理
  * 负责维护会话的所有状态信息
+ *
+ * 消息列表只能在会话事件循环(SessionEventLoop)线程上修改,
+ * 每次修改都会发布新的 MessageSnapshot,其他线程通过 getMessages() 无锁读取
  */
 public class SessionState {
     // 会话标识
@@ -15,12 +18,12 @@ public class SessionState {
     private String channelId;
 
     // 会话状态
-    private boolean busy = false;
-    private boolean loading = false;
-    private String error = null;
+    private volatile boolean busy = false;
+    private volatile boolean loading = false;
+    private volatile String error = null;
 
-    // 消息历史
-    private final List<ClaudeSession.Message> messages = new ArrayList<>();
+    // 消息历史(不可变快照,写入只发生在会话事件循环线程)
+    private volatile MessageSnapshot messages = MessageSnapshot.EMPTY;
 
     // 会话元数据
     private String summary = null;
@@ -56,11 +59,10 @@ public class SessionState {
         return error;
     }
 
-    public List<ClaudeSession.Message> getMessages() {
-        return new ArrayList<>(messages);
-    }
-
-    public List<ClaudeSession.Message> getMessagesReference() {
+    /**
+     * 获取当前消息快照(不可变,无需拷贝)
+     */
+    public MessageSnapshot getMessages() {
         return messages;
     }
 
@@ -142,17 +144,57 @@ public class SessionState {
     }
 
     /**
-     * 添加消息
+     * 添加消息(仅限会话事件循环线程)
      */
     public void addMessage(ClaudeSession.Message message) {
-        messages.add(message);
+        messages = messages.append(message);
     }
 
     /**
-     * 清空消息
+     * 整体替换消息(仅限会话事件循环线程)
+     */
+    public void replaceMessages(List<ClaudeSession.Message> newMessages) {
+        messages = messages.replaceAll(newMessages);
+    }
+
+    /**
+     * 在已有消息之前插入更早的历史消息(仅限会话事件循环线程)
+     */
+    public void prependMessages(List<ClaudeSession.Message> olderMessages) {
+        List<ClaudeSession.Message> combined = new ArrayList<>(olderMessages.size() + messages.size());
+        combined.addAll(olderMessages);
+        combined.addAll(messages);
+        messages = messages.replaceAll(combined);
+    }
+
+    /**
+     * 把一条消息换成新实例,已发布的快照仍持有旧实例(仅限会话事件循环线程)
+     *
+     * @return 消息不在当前列表中时返回 false
+     */
+    public boolean replaceMessage(ClaudeSession.Message message, ClaudeSession.Message replacement) {
+        MessageSnapshot next = messages.replaced(message, replacement);
+        if (next == null) {
+            return false;
+        }
+        messages = next;
+        return true;
+    }
+
+    /**
+     * 清空消息(仅限会话事件循环线程)
      */
     public void clearMessages() {
-        messages.clear();
+        messages = messages.cleared();
+    }
+
+    /**
+     * 发布当前消息快照(仅限会话事件循环线程)
+     * 已有消息被原地更新后调用,递增版本号,返回可直接交给界面的快照
+     */
+    public MessageSnapshot publishMessages() {
+        messages = messages.touched();
+        return messages;
     }
 
     /**
@@ -0,0 +1,190 @@
+package com.github.claudecodegui.session;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 大型工具结果存储
+ * 把超过阈值的 tool_result 正文按内容哈希(SHA-256)只保存一份在 Java 端,
+ * 消息里只保留截断预览、原始大小和句柄,前端展开时再按句柄拉取完整内容。
+ *
+ * 保存的正文总量有上限,超出后按最近最少使用淘汰;被淘汰的句柄只能看到预览。
+ */
+public class ToolResultStore {
+
+    /**
+     * 超过该字符数的工具结果才会被外置
+     */
+    static final int INLINE_LIMIT = 8 * 1024;
+
+    /**
+     * 预览保留的字符数
+     */
+    static final int PREVIEW_LENGTH = 2 * 1024;
+
+    /**
+     * 每个会话最多保留的正文字符数(约 64MB 内存)
+     */
+    static final long MAX_RETAINED_CHARS = 32L * 1024 * 1024;
+
+    private final LinkedHashMap<String, String> bodies = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedChars = 0;
+
+    /**
+     * 外置消息中的所有大型 tool_result 块(原地修改)
+     *
+     * @param raw 原始消息(包含 message.content 或 content 数组)
+     */
+    public void externalizeMessage(JsonObject raw) {
+        if (raw == null) {
+            return;
+        }
+        JsonArray content = null;
+        if (raw.has("message") && raw.get("message").isJsonObject()) {
+            JsonObject message = raw.getAsJsonObject("message");
+            if (message.has("content") && message.get("content").isJsonArray()) {
+                content = message.getAsJsonArray("content");
+            }
+        } else if (raw.has("content") && raw.get("content").isJsonArray()) {
+            content = raw.getAsJsonArray("content");
+        }
+        if (content == null) {
+            return;
+        }
+        for (JsonElement element : content) {
+            if (element.isJsonObject()) {
+                JsonObject block = element.getAsJsonObject();
+                if (block.has("type") && "tool_result".equals(block.get("type").getAsString())) {
+                    externalizeBlock(block);
+                }
+            }
+        }
+    }
+
+    /**
+     * 外置单个 tool_result 块(原地修改)
+     * 正文较小或包含非文本内容(如图片)时保持不变
+     */
+    public void externalizeBlock(JsonObject block) {
+        if (block == null || block.has("lazy_content") || !block.has("content")) {
+            return;
+        }
+        String text = extractText(block.get("content"));
+        if (text == null || text.length() <= INLINE_LIMIT) {
+            return;
+        }
+
+        String handle = store(text);
+        int previewEnd = PREVIEW_LENGTH;
+        if (Character.isHighSurrogate(text.charAt(previewEnd - 1))) {
+            // 避免把代理对截成两半
+            previewEnd--;
+        }
+
+        JsonObject lazy = new JsonObject();
+        lazy.addProperty("handle", handle);
+        lazy.addProperty("size", text.length());
+        block.addProperty("content", text.substring(0, previewEnd));
+        block.add("lazy_content", lazy);
+    }
+
+    /**
+     * 按句柄获取完整正文
+     *
+     * @return 正文,已被淘汰或不存在时返回 null
+     */
+    public synchronized String get(String handle) {
+        return handle != null ? bodies.get(handle) : null;
+    }
+
+    /**
+     * 当前保留的正文字符数
+     */
+    public synchronized long getRetainedChars() {
+        return retainedChars;
+    }
+
+    /**
+     * 清空所有正文
+     */
+    public synchronized void clear() {
+        bodies.clear();
+        retainedChars = 0;
+    }
+
+    private synchronized String store(String text) {
+        String handle = hash(text);
+        if (bodies.containsKey(handle)) {
+            // 相同内容只保存一份,get 同时刷新访问顺序
+            bodies.get(handle);
+            return handle;
+        }
+
+        bodies.put(handle, text);
+        retainedChars += text.length();
+
+        Iterator<Map.Entry<String, String>> it = bodies.entrySet().iterator();
+        while (retainedChars > MAX_RETAINED_CHARS && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            if (eldest.getKey().equals(handle)) {
+                break;
+            }
+            retainedChars -= eldest.getValue().length();
+            it.remove();
+        }
+        return handle;
+    }
+
+    /**
+     * 提取 tool_result 的文本内容
+     * content 为字符串,或全部由 text 块组成的数组;其他形式返回 null
+     */
+    private static String extractText(JsonElement content) {
+        if (content.isJsonPrimitive()) {
+            return content.getAsString();
+        }
+        if (!content.isJsonArray()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        JsonArray array = content.getAsJsonArray();
+        for (int i = 0; i < array.size(); i++) {
+            JsonElement element = array.get(i);
+            if (!element.isJsonObject()) {
+                return null;
+            }
+            JsonObject item = element.getAsJsonObject();
+            if (!item.has("type") || !"text".equals(item.get("type").getAsString()) || !item.has("text")) {
+                return null;
+            }
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(item.get("text").getAsString());
+        }
+        return sb.toString();
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 是 JDK 必须支持的算法,不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+}
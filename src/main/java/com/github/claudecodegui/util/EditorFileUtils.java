@@ -9,6 +9,7 @@ import com.intellij.openapi.editor.SelectionModel;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.TextEditor;
+import com.intellij.openapi.fileEditor.impl.EditorHistoryManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -90,6 +91,37 @@ public class EditorFileUtils {
         return openedFiles;
     }
 
+    /**
+     * 获取最近在编辑器中打开过的文件路径（包括已关闭的），最近打开的在前
+     *
+     * 用于 @ 文件补全时让最近使用过的文件排在前面。
+     *
+     * @param project IDEA 项目对象
+     * @return 最近打开的文件路径列表（绝对路径）
+     */
+    public static List<String> getRecentFiles(Project project) {
+        List<String> recentFiles = new ArrayList<>();
+
+        if (project == null || project.isDisposed()) {
+            return recentFiles;
+        }
+
+        try {
+            // EditorHistoryManager 中最近打开的文件排在最后
+            List<VirtualFile> history = EditorHistoryManager.getInstance(project).getFileList();
+            for (int i = history.size() - 1; i >= 0; i--) {
+                VirtualFile file = history.get(i);
+                if (file != null && file.isInLocalFileSystem()) {
+                    recentFiles.add(file.getPath());
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("[EditorFileUtils] Error getting recent files: " + e.getMessage());
+        }
+
+        return recentFiles;
+    }
+
     /**
      * 获取当前激活（正在查看）的文件路径
      *
@@ -0,0 +1,159 @@
+package com.github.claudecodegui.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Webview 控制台日志转发
+ * 负责生成注入到 Webview 的控制台转发脚本,并解析 Webview 批量发回的日志
+ *
+ * 日志在 Webview 内先按级别过滤、再缓冲,按固定间隔批量发回 Java,并做每秒条数限制,
+ * 避免流式输出时每条 console.log 都产生一次 JCEF 往返。默认只转发 warn 及以上级别,
+ * 级别在注入脚本时从 {@link #MIN_LEVEL_PROPERTY_KEY} 读取,修改后重新加载 Webview 生效。
+ */
+public class WebviewConsoleForwarder {
+
+    private static final Logger LOG = Logger.getInstance(WebviewConsoleForwarder.class);
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 最低转发级别配置键,可选值: debug / log / info / warn / error / off
+     */
+    public static final String MIN_LEVEL_PROPERTY_KEY = "claude.code.webview.console.level";
+    public static final String DEFAULT_MIN_LEVEL = "warn";
+
+    /**
+     * 批量发送间隔(毫秒)
+     */
+    private static final int FLUSH_INTERVAL_MS = 1000;
+
+    /**
+     * 每秒最多转发的日志条数,超出部分只计数
+     */
+    private static final int MAX_ENTRIES_PER_SECOND = 50;
+
+    /**
+     * 批量日志消息前缀,用于在 handleJavaScriptMessage 中快速识别
+     */
+    public static final String BATCH_MESSAGE_PREFIX = "{\"type\":\"console.batch\"";
+
+    private static final Set<String> LEVELS = Set.of("debug", "log", "info", "warn", "error", "off");
+
+    private WebviewConsoleForwarder() {
+    }
+
+    /**
+     * 读取配置的最低转发级别
+     */
+    public static String getMinLevel() {
+        try {
+            String value = PropertiesComponent.getInstance().getValue(MIN_LEVEL_PROPERTY_KEY);
+            if (value != null) {
+                String level = value.trim().toLowerCase(Locale.ROOT);
+                if (LEVELS.contains(level)) {
+                    return level;
+                }
+            }
+        } catch (Exception e) {
+            LOG.debug("Failed to read console forward level: " + e.getMessage());
+        }
+        return DEFAULT_MIN_LEVEL;
+    }
+
+    /**
+     * 生成注入到 Webview 的控制台转发脚本
+     * 脚本可重复注入(页面重新加载时),只会安装一次
+     */
+    public static String buildInjectionScript() {
+        return "(function() {" +
+            "  if (window.__consoleForwardInstalled) { return; }" +
+            "  window.__consoleForwardInstalled = true;" +
+            "  var LEVELS = {debug: 0, log: 1, info: 1, warn: 2, error: 3, off: 4};" +
+            "  var minLevel = LEVELS['" + getMinLevel() + "'];" +
+            "  var buffer = [];" +
+            "  var dropped = 0;" +
+            "  var windowStart = Date.now();" +
+            "  var windowCount = 0;" +
+            "  var timer = null;" +
+            "  function serialize(arg) {" +
+            "    if (arg instanceof Error) { return arg.stack || String(arg); }" +
+            "    if (typeof arg === 'string') { return arg; }" +
+            "    try { return JSON.stringify(arg); } catch (e) { return String(arg); }" +
+            "  }" +
+            "  function flush() {" +
+            "    timer = null;" +
+            "    if (buffer.length === 0 && dropped === 0) { return; }" +
+            "    if (!window.sendToJava) { schedule(); return; }" +
+            "    var payload = JSON.stringify({type: 'console.batch', entries: buffer, dropped: dropped});" +
+            "    buffer = [];" +
+            "    dropped = 0;" +
+            "    window.sendToJava(payload);" +
+            "  }" +
+            "  function schedule() {" +
+            "    if (timer === null) { timer = setTimeout(flush, " + FLUSH_INTERVAL_MS + "); }" +
+            "  }" +
+            "  function enqueue(level, args) {" +
+            "    if (LEVELS[level] < minLevel) { return; }" +
+            "    var now = Date.now();" +
+            "    if (now - windowStart >= 1000) { windowStart = now; windowCount = 0; }" +
+            "    if (windowCount >= " + MAX_ENTRIES_PER_SECOND + ") {" +
+            "      dropped++;" +
+            "    } else {" +
+            "      windowCount++;" +
+            "      buffer.push({level: level, text: Array.prototype.map.call(args, serialize).join(' ')});" +
+            "    }" +
+            "    schedule();" +
+            "  }" +
+            "  ['debug', 'log', 'info', 'warn', 'error'].forEach(function(level) {" +
+            "    var original = console[level];" +
+            "    console[level] = function() {" +
+            "      original.apply(console, arguments);" +
+            "      enqueue(level, arguments);" +
+            "    };" +
+            "  });" +
+            "})();";
+    }
+
+    /**
+     * 处理 Webview 发回的批量日志
+     */
+    public static void handleBatch(String message) {
+        try {
+            JsonObject json = GSON.fromJson(message, JsonObject.class);
+            JsonArray entries = json.has("entries") && json.get("entries").isJsonArray()
+                ? json.getAsJsonArray("entries")
+                : new JsonArray();
+
+            for (JsonElement element : entries) {
+                if (!element.isJsonObject()) {
+                    continue;
+                }
+                JsonObject entry = element.getAsJsonObject();
+                String level = entry.has("level") ? entry.get("level").getAsString() : "log";
+                String text = "[Webview] " + (entry.has("text") ? entry.get("text").getAsString() : "");
+
+                if ("error".equals(level)) {
+                    LOG.warn(text);
+                } else if ("warn".equals(level)) {
+                    LOG.info(text);
+                } else {
+                    LOG.debug(text);
+                }
+            }
+
+            int dropped = json.has("dropped") ? json.get("dropped").getAsInt() : 0;
+            if (dropped > 0) {
+                LOG.info("[Webview] " + dropped + " console entries dropped by rate limit");
+            }
+        } catch (Exception e) {
+            LOG.warn("解析控制台日志失败: " + e.getMessage());
+        }
+    }
+}
@@ -1,4 +1,4 @@
-import { useCallback, useEffect, useMemo, useRef, useState } from 'react';
+import { useCallback, useEffect, useLayoutEffect, useMemo, useRef, useState } from 'react';
 import { useTranslation } from 'react-i18next';
 import MarkdownBlock from './components/MarkdownBlock';
 import CollapsibleTextBlock from './components/CollapsibleTextBlock';
@@ -31,6 +31,9 @@ import type {
   ClaudeMessage,
   ClaudeRawMessage,
   HistoryData,
+  HistoryEvents,
+  HistoryPage,
+  HistorySortKey,
   TodoItem,
   ToolResultBlock,
 } from './types';
@@ -55,6 +58,53 @@ const sendBridgeMessage = (event: string, payload = '') => {
   }
 };
 
+/**
+ * 合并后端推送的历史分页
+ * 第一页（offset 为 0）替换整个列表；后续页只追加到同一次查询的结果后，过期查询的分页直接丢弃
+ */
+const mergeHistoryPage = (prev: HistoryData | null, page: HistoryPage): HistoryData | null => {
+  if (!page.success) {
+    return { success: false, error: page.error };
+  }
+  const { offset, ...data } = page;
+  if (!offset) {
+    return { ...data, sessions: data.sessions ?? [] };
+  }
+  if (!prev || prev.requestId !== page.requestId) {
+    return prev;
+  }
+  return {
+    ...prev,
+    sessions: [...(prev.sessions ?? []), ...(page.sessions ?? [])],
+    hasMore: page.hasMore,
+  };
+};
+
+const applyHistoryEvents = (prev: HistoryData | null, events: HistoryEvents): HistoryData | null => {
+  if (!prev || !prev.success) {
+    return prev;
+  }
+  const removed = new Set(events.removed);
+  const updated = new Map(events.updated.map((session) => [session.sessionId, session]));
+  const existing = prev.sessions ?? [];
+  const existingIds = new Set(existing.map((session) => session.sessionId));
+
+  const sessions = existing
+    .filter((session) => !removed.has(session.sessionId))
+    .map((session) => updated.get(session.sessionId) ?? session);
+  // 更新后才符合搜索条件的会话当作新增处理
+  const added = [...events.added, ...events.updated].filter((session) => !existingIds.has(session.sessionId));
+  sessions.push(...added);
+
+  if (!prev.sort || prev.sort === 'recent') {
+    sessions.sort((a, b) => new Date(b.lastTimestamp).getTime() - new Date(a.lastTimestamp).getTime());
+  }
+
+  const sessionCount = events.sessionCount
+    ?? (prev.sessionCount ?? existing.length) + sessions.length - existing.length;
+  return { ...prev, sessions, sessionCount };
+};
+
 const formatTime = (timestamp?: string) => {
   if (!timestamp) return '';
   try {
@@ -126,6 +176,12 @@ const App = () => {
   const inputAreaRef = useRef<HTMLDivElement | null>(null);
   // 追踪用户是否在底部（用于判断是否需要自动滚动）
   const isUserAtBottomRef = useRef(true);
+  // 历史会话分页：是否还有更早的消息、是否正在加载，以及加载前的滚动锚点（距底部距离和消息数）
+  const [hasOlderMessages, setHasOlderMessages] = useState(false);
+  const hasOlderMessagesRef = useRef(false);
+  const loadingOlderRef = useRef(false);
+  const olderAnchorRef = useRef<{ distanceFromBottom: number; count: number } | null>(null);
+  const messageCountRef = useRef(0);
 
   useEffect(() => {
     permissionDialogOpenRef.current = permissionDialogOpen;
@@ -325,7 +381,8 @@ const App = () => {
 
   // 检查当前会话是否还存在（防止显示已删除的会话）
   useEffect(() => {
-    if (currentView === 'chat' && historyData?.sessions) {
+    // 只有完整加载且未过滤的列表才能判断会话是否已被删除
+    if (currentView === 'chat' && historyData?.sessions && !historyData.hasMore && !historyData.query) {
       // 只有当 currentSessionId 存在且在历史记录中找不到时才清空
       // 注意：currentSessionId 为 null 表示新会话，这是合法的，不应该清空
       if (messages.length > 0 && currentSessionId) {
@@ -412,8 +469,34 @@ const App = () => {
       }
     };
     window.showThinkingStatus = (value) => setIsThinking(isTruthy(value));
-    window.setHistoryData = (data) => setHistoryData(data);
-    window.clearMessages = () => setMessages([]);
+    window.onHistoryPage = (json) => {
+      try {
+        const page = JSON.parse(json) as HistoryPage;
+        setHistoryData((prev) => mergeHistoryPage(prev, page));
+      } catch (error) {
+        console.error('[Frontend] Failed to parse history page:', error);
+        setHistoryData({ success: false, error: String(error) });
+      }
+    };
+    window.onHistoryEvents = (json) => {
+      try {
+        const events = JSON.parse(json) as HistoryEvents;
+        setHistoryData((prev) => applyHistoryEvents(prev, events));
+      } catch (error) {
+        console.error('[Frontend] Failed to parse history events:', error);
+      }
+    };
+    window.clearMessages = () => {
+      setMessages([]);
+      hasOlderMessagesRef.current = false;
+      setHasOlderMessages(false);
+    };
+    window.setHasOlderMessages = (value) => {
+      const hasOlder = isTruthy(value);
+      hasOlderMessagesRef.current = hasOlder;
+      loadingOlderRef.current = false;
+      setHasOlderMessages(hasOlder);
+    };
     window.addErrorMessage = (message) =>
       setMessages((prev) => [...prev, { type: 'error', content: message }]);
 
@@ -456,8 +539,8 @@ const App = () => {
         });
 
         // 导入转换函数
-        import('./utils/exportMarkdown').then(({ convertMessagesToJSON, downloadJSON }) => {
-          const json = convertMessagesToJSON(messages, title);
+        import('./utils/exportMarkdown').then(async ({ convertMessagesToJSON, downloadJSON }) => {
+          const json = await convertMessagesToJSON(messages, title);
           const filename = `${title.replace(/[^a-zA-Z0-9\u4e00-\u9fa5]/g, '_')}_${sessionId.slice(0, 8)}.json`;
           downloadJSON(json, filename);
           // 注意：不在这里显示成功 toast，等待后端保存完成后再显示
@@ -741,7 +824,7 @@ const App = () => {
 
     const requestHistoryData = () => {
       if (window.sendToJava) {
-        sendBridgeMessage('load_history_data');
+        sendBridgeMessage('load_history_data', JSON.stringify({ refresh: true }));
       } else {
         historyRetryCount++;
         if (historyRetryCount < MAX_HISTORY_RETRIES) {
@@ -795,12 +878,34 @@ const App = () => {
       const distanceFromBottom = container.scrollHeight - container.scrollTop - container.clientHeight;
       // 如果距离底部小于 50 像素，认为用户在底部
       isUserAtBottomRef.current = distanceFromBottom < 50;
+
+      // 滚动到顶部附近时加载更早的历史消息，记录锚点以便插入后保持当前位置
+      if (container.scrollTop < 80 && hasOlderMessagesRef.current && !loadingOlderRef.current) {
+        loadingOlderRef.current = true;
+        olderAnchorRef.current = { distanceFromBottom, count: messageCountRef.current };
+        sendBridgeMessage('load_older_messages');
+      }
     };
 
     container.addEventListener('scroll', handleScroll);
     return () => container.removeEventListener('scroll', handleScroll);
   }, [currentView]);
 
+  // 更早的消息插入到顶部后，恢复到插入前的阅读位置
+  useLayoutEffect(() => {
+    messageCountRef.current = messages.length;
+    const anchor = olderAnchorRef.current;
+    const container = messagesContainerRef.current;
+    if (!anchor || !container || messages.length <= anchor.count) {
+      return;
+    }
+    olderAnchorRef.current = null;
+    const previousBehavior = container.style.scrollBehavior;
+    container.style.scrollBehavior = 'auto';
+    container.scrollTop = container.scrollHeight - container.clientHeight - anchor.distanceFromBottom;
+    container.style.scrollBehavior = previousBehavior;
+  }, [messages]);
+
   useEffect(() => {
     // 只有当用户在底部时，才自动滚动到底部
     if (messagesContainerRef.current && isUserAtBottomRef.current) {
@@ -1098,6 +1203,23 @@ const App = () => {
     setCurrentPermissionRequest(null);
   };
 
+  /**
+   * 处理批量权限决策（每项单独允许或拒绝，一次发回）
+   */
+  const handlePermissionBatchDecision = (channelId: string, decisions: boolean[]) => {
+    console.log('[PERM_DEBUG][FRONTEND] handlePermissionBatchDecision called');
+    console.log('[PERM_DEBUG][FRONTEND] channelId:', channelId, 'decisions:', decisions);
+    const payload = JSON.stringify({
+      channelId,
+      decisions: decisions.map((allow) => ({ allow, remember: false })),
+    });
+    sendBridgeMessage('permission_batch_decision', payload);
+    permissionDialogOpenRef.current = false;
+    currentPermissionRequestRef.current = null;
+    setPermissionDialogOpen(false);
+    setCurrentPermissionRequest(null);
+  };
+
   /**
    * 处理 AskUserQuestion 提交
    */
@@ -1185,12 +1307,15 @@ const App = () => {
     if (historyData && historyData.sessions) {
       const updatedSessions = historyData.sessions.filter(s => s.sessionId !== sessionId);
       const deletedSession = historyData.sessions.find(s => s.sessionId === sessionId);
-      const updatedTotal = (historyData.total || 0) - (deletedSession?.messageCount || 0);
+      const updatedTotal = (historyData.total || 0) - Math.max(0, deletedSession?.messageCount ?? 0);
 
       setHistoryData({
         ...historyData,
         sessions: updatedSessions,
-        total: updatedTotal
+        total: updatedTotal,
+        sessionCount: deletedSession && historyData.sessionCount !== undefined
+          ? historyData.sessionCount - 1
+          : historyData.sessionCount
       });
 
       // 如果删除的是当前会话，清空消息并重置状态
@@ -1209,6 +1334,11 @@ const App = () => {
     }
   };
 
+  // 按关键词和排序方式重新查询历史（过滤和排序在后端完成）
+  const queryHistory = (query: string, sort: HistorySortKey) => {
+    sendBridgeMessage('load_history_data', JSON.stringify({ query, sort }));
+  };
+
   // 导出会话历史
   const exportHistorySession = (sessionId: string, title: string) => {
     // 发送导出请求到 Java 后端，包含 sessionId 和 title
@@ -1691,6 +1821,9 @@ const App = () => {
       ) : currentView === 'chat' ? (
         <>
           <div className="messages-container" ref={messagesContainerRef}>
+          {hasOlderMessages && messages.length > 0 && (
+            <div className="older-messages-hint">{t('chat.loadingOlderMessages')}</div>
+          )}
           {messages.length === 0 && (
             <div
               style={{
@@ -1863,6 +1996,7 @@ const App = () => {
           onExportSession={exportHistorySession}
           onToggleFavorite={toggleFavoriteSession}
           onUpdateTitle={updateHistoryTitle}
+          onQueryChange={queryHistory}
         />
       )}
 
@@ -1930,6 +2064,7 @@ const App = () => {
         onApprove={handlePermissionApprove}
         onSkip={handlePermissionSkip}
         onApproveAlways={handlePermissionApproveAlways}
+        onBatchDecision={handlePermissionBatchDecision}
       />
 
       <AskUserQuestionDialog
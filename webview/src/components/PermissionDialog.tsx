@@ -1,11 +1,18 @@
-import { useEffect, useState } from 'react';
+import { useEffect, useRef, useState } from 'react';
 import { useTranslation } from 'react-i18next';
 
+export interface PermissionBatchItem {
+  toolName: string;
+  inputs: Record<string, any>;
+}
+
 export interface PermissionRequest {
   channelId: string;
   toolName: string;
   inputs: Record<string, any>;
   suggestions?: any;
+  /** 批量请求：同一轮中连续发起的多个工具调用，逐项允许或拒绝 */
+  items?: PermissionBatchItem[];
 }
 
 interface PermissionDialogProps {
@@ -14,6 +21,7 @@ interface PermissionDialogProps {
   onApprove: (channelId: string) => void;
   onSkip: (channelId: string) => void;
   onApproveAlways: (channelId: string) => void;
+  onBatchDecision: (channelId: string, decisions: boolean[]) => void;
 }
 
 const PermissionDialog = ({
@@ -22,30 +30,63 @@ const PermissionDialog = ({
   onApprove,
   onSkip,
   onApproveAlways,
+  onBatchDecision,
 }: PermissionDialogProps) => {
   const [showCommand, setShowCommand] = useState(true); // 默认展开命令
   const [selectedIndex, setSelectedIndex] = useState(0);
+  // 批量请求中每项是否允许，默认全部勾选
+  const [checkedItems, setCheckedItems] = useState<boolean[]>([]);
+  const checkedItemsRef = useRef<boolean[]>([]);
   const { t } = useTranslation();
 
+  const isBatch = !!request?.items && request.items.length > 0;
+
+  const updateCheckedItems = (items: boolean[]) => {
+    checkedItemsRef.current = items;
+    setCheckedItems(items);
+  };
+
   const handleApprove = () => {
     if (!request) return;
+    if (request.items && request.items.length > 0) {
+      // 批量：允许勾选的项
+      onBatchDecision(request.channelId, checkedItemsRef.current);
+      return;
+    }
     onApprove(request.channelId);
   };
 
   const handleApproveAlways = () => {
     if (!request) return;
+    if (request.items && request.items.length > 0) {
+      // 批量：全部允许
+      onBatchDecision(request.channelId, request.items.map(() => true));
+      return;
+    }
     onApproveAlways(request.channelId);
   };
 
   const handleSkip = () => {
     if (!request) return;
+    if (request.items && request.items.length > 0) {
+      // 批量：全部拒绝
+      onBatchDecision(request.channelId, request.items.map(() => false));
+      return;
+    }
     onSkip(request.channelId);
   };
 
+  const toggleItem = (index: number) => {
+    const next = [...checkedItemsRef.current];
+    next[index] = !next[index];
+    updateCheckedItems(next);
+  };
+
   useEffect(() => {
     if (isOpen && request) {
       setShowCommand(true); // 每次打开时默认展开
       setSelectedIndex(0);
+      updateCheckedItems((request.items ?? []).map(() => true));
 
       const handleKeyDown = (e: KeyboardEvent) => {
         if (e.key === '1') {
@@ -74,7 +115,7 @@ const PermissionDialog = ({
       window.addEventListener('keydown', handleKeyDown);
       return () => window.removeEventListener('keydown', handleKeyDown);
     }
-  }, [isOpen, request, onApprove, onApproveAlways, onSkip]);
+  }, [isOpen, request, onApprove, onApproveAlways, onSkip, onBatchDecision]);
 
   if (!isOpen || !request) {
     return null;
@@ -137,6 +178,59 @@ const PermissionDialog = ({
     return translated;
   };
 
+  // 批量请求中一项的摘要：命令或文件路径
+  const getItemSummary = (item: PermissionBatchItem): string => {
+    const inputs = item.inputs || {};
+    return inputs.command || inputs.file_path || inputs.notebook_path || inputs.path || inputs.url || '';
+  };
+
+  if (isBatch) {
+    const items = request.items!;
+    const checkedCount = checkedItems.filter(Boolean).length;
+    const batchOptions = [
+      { text: t('permission.allowSelected', { count: checkedCount }), onClick: handleApprove },
+      { text: t('permission.allowAll'), onClick: handleApproveAlways },
+      { text: t('permission.denyAll'), onClick: handleSkip },
+    ];
+
+    return (
+      <div className="permission-dialog-overlay">
+        <div className="permission-dialog-v3">
+          <h3 className="permission-dialog-v3-title">{t('permission.batchTitle', { count: items.length })}</h3>
+          <p className="permission-dialog-v3-subtitle">{t('permission.fromExternalProcess')}</p>
+
+          <div className="permission-dialog-v3-command-box permission-dialog-v3-batch-list">
+            {items.map((item, index) => (
+              <label key={index} className="permission-dialog-v3-batch-item">
+                <input
+                  type="checkbox"
+                  checked={!!checkedItems[index]}
+                  onChange={() => toggleItem(index)}
+                />
+                <span className="batch-item-tool">{getToolTitle(item.toolName)}</span>
+                <span className="batch-item-summary" title={getItemSummary(item)}>{getItemSummary(item)}</span>
+              </label>
+            ))}
+          </div>
+
+          <div className="permission-dialog-v3-options">
+            {batchOptions.map((option, index) => (
+              <button
+                key={index}
+                className={`permission-dialog-v3-option ${selectedIndex === index ? 'selected' : ''}`}
+                onClick={option.onClick}
+                onMouseEnter={() => setSelectedIndex(index)}
+              >
+                <span className="option-text">{option.text}</span>
+                <span className="option-key">{index + 1}</span>
+              </button>
+            ))}
+          </div>
+        </div>
+      </div>
+    );
+  }
+
   const commandContent = getCommandContent();
   const workingDirectory = getWorkingDirectory();
 
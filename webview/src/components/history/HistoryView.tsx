@@ -1,6 +1,6 @@
-import { useEffect, useMemo, useState } from 'react';
+import { useEffect, useMemo, useRef, useState } from 'react';
 import { useTranslation } from 'react-i18next';
-import type { HistoryData, HistorySessionSummary } from '../../types';
+import type { HistoryData, HistorySessionSummary, HistorySortKey } from '../../types';
 import VirtualList from './VirtualList';
 
 interface HistoryViewProps {
@@ -10,9 +10,10 @@ interface HistoryViewProps {
   onExportSession: (sessionId: string, title: string) => void; // 添加导出回调
   onToggleFavorite: (sessionId: string) => void; // 添加收藏切换回调
   onUpdateTitle: (sessionId: string, newTitle: string) => void; // 添加标题更新回调
+  onQueryChange: (query: string, sort: HistorySortKey) => void; // 搜索关键词或排序方式变化时向后端重新查询
 }
 
-const formatTimeAgo = (timestamp: string | undefined, t: (key: string) => string) => {
+const formatTimeAgo = (timestamp: string | number | undefined, t: (key: string) => string) => {
   if (!timestamp) {
     return '';
   }
@@ -34,7 +35,7 @@ const formatTimeAgo = (timestamp: string | undefined, t: (key: string) => string
   return `${Math.max(seconds, 1)} ${t('history.timeAgo.secondsAgo')}`;
 };
 
-const HistoryView = ({ historyData, onLoadSession, onDeleteSession, onExportSession, onToggleFavorite, onUpdateTitle }: HistoryViewProps) => {
+const HistoryView = ({ historyData, onLoadSession, onDeleteSession, onExportSession, onToggleFavorite, onUpdateTitle, onQueryChange }: HistoryViewProps) => {
   const { t } = useTranslation();
   const [viewportHeight, setViewportHeight] = useState(() => window.innerHeight || 600);
   const [deletingSessionId, setDeletingSessionId] = useState<string | null>(null); // 记录待删除的会话ID
@@ -42,6 +43,8 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession, onExportSess
   const [searchQuery, setSearchQuery] = useState(''); // 实际用于搜索的关键词（防抖后）
   const [editingSessionId, setEditingSessionId] = useState<string | null>(null); // 正在编辑的会话ID
   const [editingTitle, setEditingTitle] = useState(''); // 编辑中的标题内容
+  const [sortKey, setSortKey] = useState<HistorySortKey>('recent'); // 排序方式
+  const isFirstQueryRef = useRef(true);
 
   useEffect(() => {
     const handleResize = () => setViewportHeight(window.innerHeight || 600);
@@ -58,33 +61,35 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession, onExportSess
     return () => clearTimeout(timer);
   }, [inputValue]);
 
-  // 对会话进行排序和搜索过滤：收藏的在上面（按收藏时间倒序），未收藏的在下面（保持原顺序）
+  // 搜索关键词或排序方式变化时由后端过滤排序并重新分页推送（首次打开时的加载由 App 发起）
+  useEffect(() => {
+    if (isFirstQueryRef.current) {
+      isFirstQueryRef.current = false;
+      return;
+    }
+    onQueryChange(searchQuery.trim(), sortKey);
+  }, [searchQuery, sortKey]);
+
+  // 后端已完成过滤和排序；这里只把本地刚切换收藏的会话调整到前面（收藏按收藏时间倒序），其余保持后端顺序
   const sessions = useMemo(() => {
     const rawSessions = historyData?.sessions ?? [];
 
-    // 搜索过滤（不区分大小写）
-    const filteredSessions = searchQuery.trim()
-      ? rawSessions.filter(s =>
-          s.title?.toLowerCase().includes(searchQuery.toLowerCase())
-        )
-      : rawSessions;
-
     // 分离收藏和未收藏的会话
-    const favorited = filteredSessions.filter(s => s.isFavorited);
-    const unfavorited = filteredSessions.filter(s => !s.isFavorited);
+    const favorited = rawSessions.filter(s => s.isFavorited);
+    const unfavorited = rawSessions.filter(s => !s.isFavorited);
 
     // 收藏的会话按收藏时间倒序排序
     favorited.sort((a, b) => (b.favoritedAt || 0) - (a.favoritedAt || 0));
 
     // 合并：收藏的在前面，未收藏的在后面
     return [...favorited, ...unfavorited];
-  }, [historyData?.sessions, searchQuery]);
+  }, [historyData?.sessions]);
 
   const infoBar = useMemo(() => {
     if (!historyData) {
       return '';
     }
-    const sessionCount = sessions.length;
+    const sessionCount = historyData.sessionCount ?? sessions.length;
     const messageCount = historyData.total ?? 0;
     return t('history.totalSessions', { count: sessionCount, total: messageCount });
   }, [historyData, sessions.length, t]);
@@ -335,7 +340,13 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession, onExportSess
           </div>
         </div>
         <div className="history-item-meta">
-          <span>{t('history.messageCount', { count: session.messageCount })}</span>
+          {session.snippet ? (
+            <span className="history-item-snippet" title={session.snippet}>
+              {highlightText(session.snippet, searchQuery)}
+            </span>
+          ) : session.messageCount >= 0 ? (
+            <span>{t('history.messageCount', { count: session.messageCount })}</span>
+          ) : null}
           <span style={{ fontFamily: 'var(--idea-editor-font-family, monospace)', color: '#666' }}>{session.sessionId.slice(0, 8)}</span>
         </div>
       </div>
@@ -348,18 +359,32 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession, onExportSess
     <div style={{ height: '100%', display: 'flex', flexDirection: 'column' }}>
       <div className="history-header">
         <div className="history-info">{infoBar}</div>
-        {/* 搜索框 */}
-        <div className="history-search-container">
-          <input
-            type="text"
-            className="history-search-input"
-            placeholder={t('history.searchPlaceholder')}
-            value={inputValue}
-            onChange={(e) => setInputValue(e.target.value)}
-          />
-          <span
-            className="codicon codicon-search history-search-icon"
-          ></span>
+        <div className="history-controls">
+          {/* 排序方式 */}
+          <select
+            className="history-sort-select"
+            value={sortKey}
+            onChange={(e) => setSortKey(e.target.value as HistorySortKey)}
+            title={t('history.sortBy.label')}
+            aria-label={t('history.sortBy.label')}
+          >
+            <option value="recent">{t('history.sortBy.recent')}</option>
+            <option value="messages">{t('history.sortBy.messages')}</option>
+            <option value="title">{t('history.sortBy.title')}</option>
+          </select>
+          {/* 搜索框 */}
+          <div className="history-search-container">
+            <input
+              type="text"
+              className="history-search-input"
+              placeholder={t('history.searchPlaceholder')}
+              value={inputValue}
+              onChange={(e) => setInputValue(e.target.value)}
+            />
+            <span
+              className="codicon codicon-search history-search-icon"
+            ></span>
+          </div>
         </div>
       </div>
       <div style={{ flex: 1, overflow: 'hidden' }}>
@@ -0,0 +1,242 @@
+import { useEffect, useState } from 'react';
+import { useTranslation } from 'react-i18next';
+import { sendToJava } from '../../../utils/bridge';
+import styles from './style.module.less';
+
+interface LatencyPercentiles {
+  p50: number;
+  p90: number;
+  p99: number;
+  max: number;
+}
+
+interface ToolLatency {
+  tool: string;
+  count: number;
+  samples: number;
+  total: LatencyPercentiles;
+  transport: LatencyPercentiles;
+  queue: LatencyPercentiles;
+  think: LatencyPercentiles;
+  overhead: LatencyPercentiles;
+}
+
+interface PermissionLatency {
+  tools: ToolLatency[];
+  pending: number;
+}
+
+interface PermissionRuleItem {
+  tool: string;
+  pathGlob?: string;
+  commandPrefix?: string;
+  exactCommand?: boolean;
+  projectScope?: boolean;
+  allow: boolean;
+  createdAt?: number;
+  session?: boolean;
+}
+
+type MetricKey = 'total' | 'transport' | 'queue' | 'think' | 'overhead';
+
+const METRICS: MetricKey[] = ['overhead', 'transport', 'queue', 'think', 'total'];
+
+const formatMs = (ms: number): string => {
+  if (ms >= 60_000) return `${(ms / 60_000).toFixed(1)}m`;
+  if (ms >= 1_000) return `${(ms / 1_000).toFixed(1)}s`;
+  return `${ms}ms`;
+};
+
+const PermissionsSection = () => {
+  const { t } = useTranslation();
+  const [latency, setLatency] = useState<PermissionLatency | null>(null);
+  const [metric, setMetric] = useState<MetricKey>('overhead');
+  const [rules, setRules] = useState<PermissionRuleItem[]>([]);
+
+  useEffect(() => {
+    window.updatePermissionRules = (jsonStr: string) => {
+      try {
+        setRules(JSON.parse(jsonStr).rules ?? []);
+      } catch (error) {
+        console.error('Failed to parse permission rules:', error);
+      }
+    };
+
+    sendToJava('get_permission_rules');
+
+    return () => {
+      window.updatePermissionRules = undefined;
+    };
+  }, []);
+
+  useEffect(() => {
+    window.updatePermissionLatency = (jsonStr: string) => {
+      try {
+        setLatency(JSON.parse(jsonStr));
+      } catch (error) {
+        console.error('Failed to parse permission latency:', error);
+      }
+    };
+
+    sendToJava('get_permission_latency');
+
+    return () => {
+      window.updatePermissionLatency = undefined;
+    };
+  }, []);
+
+  const tools = latency?.tools ?? [];
+
+  const describeCondition = (rule: PermissionRuleItem): string => {
+    if (rule.commandPrefix) {
+      return rule.exactCommand
+        ? t('settings.permissionRules.exactCommand', { command: rule.commandPrefix })
+        : t('settings.permissionRules.commandPrefix', { command: rule.commandPrefix });
+    }
+    if (rule.pathGlob) {
+      return t('settings.permissionRules.path', { path: rule.pathGlob });
+    }
+    if (rule.projectScope) {
+      return t('settings.permissionRules.projectScope');
+    }
+    return t('settings.permissionRules.anyCall');
+  };
+
+  const deleteRule = (rule: PermissionRuleItem) => {
+    sendToJava('delete_permission_rule', {
+      tool: rule.tool,
+      pathGlob: rule.pathGlob,
+      commandPrefix: rule.commandPrefix,
+      exactCommand: rule.exactCommand ?? false,
+      projectScope: rule.projectScope ?? false,
+      allow: rule.allow,
+    });
+  };
+
+  return (
+    <div className={styles.configSection}>
+      <h3 className={styles.sectionTitle}>{t('settings.permissions')}</h3>
+      <p className={styles.sectionDesc}>{t('settings.permissionsDesc')}</p>
+
+      <div className={styles.header}>
+        <h4 className={styles.subTitle}>{t('settings.permissionRules.title')}</h4>
+        <div className={styles.actions}>
+          <button className={styles.actionButton} onClick={() => sendToJava('get_permission_rules')}>
+            <span className="codicon codicon-refresh" />
+            {t('settings.permissionLatency.refresh')}
+          </button>
+        </div>
+      </div>
+      <p className={styles.hint}>{t('settings.permissionRules.desc')}</p>
+
+      {rules.length === 0 ? (
+        <div className={`${styles.emptyState} ${styles.sectionGap}`}>
+          <span className="codicon codicon-shield" />
+          {t('settings.permissionRules.empty')}
+        </div>
+      ) : (
+        <table className={`${styles.latencyTable} ${styles.rulesTable} ${styles.sectionGap}`}>
+          <thead>
+            <tr>
+              <th>{t('settings.permissionLatency.tool')}</th>
+              <th>{t('settings.permissionRules.condition')}</th>
+              <th>{t('settings.permissionRules.decision')}</th>
+              <th />
+            </tr>
+          </thead>
+          <tbody>
+            {rules.map((rule, index) => (
+              <tr key={`${rule.tool}-${rule.commandPrefix ?? ''}-${rule.pathGlob ?? ''}-${index}`}>
+                <td className={styles.toolName}>
+                  {rule.tool === '*' ? t('settings.permissionRules.allTools') : rule.tool}
+                </td>
+                <td className={styles.condition} title={describeCondition(rule)}>
+                  {describeCondition(rule)}
+                  {rule.session && <span className={styles.sessionBadge}>{t('settings.permissionRules.session')}</span>}
+                </td>
+                <td className={rule.allow ? styles.allow : styles.deny}>
+                  {rule.allow ? t('settings.permissionRules.allow') : t('settings.permissionRules.deny')}
+                </td>
+                <td>
+                  <button
+                    className={styles.iconButton}
+                    onClick={() => deleteRule(rule)}
+                    title={t('settings.permissionRules.delete')}
+                  >
+                    <span className="codicon codicon-trash" />
+                  </button>
+                </td>
+              </tr>
+            ))}
+          </tbody>
+        </table>
+      )}
+
+      <div className={styles.header}>
+        <h4 className={styles.subTitle}>{t('settings.permissionLatency.title')}</h4>
+        <div className={styles.actions}>
+          <button className={styles.actionButton} onClick={() => sendToJava('get_permission_latency')}>
+            <span className="codicon codicon-refresh" />
+            {t('settings.permissionLatency.refresh')}
+          </button>
+          <button className={styles.actionButton} onClick={() => sendToJava('clear_permission_latency')}>
+            <span className="codicon codicon-clear-all" />
+            {t('settings.permissionLatency.clear')}
+          </button>
+        </div>
+      </div>
+      <p className={styles.hint}>{t('settings.permissionLatency.desc')}</p>
+
+      <div className={styles.metricTabs}>
+        {METRICS.map((key) => (
+          <button
+            key={key}
+            className={`${styles.metricTab} ${metric === key ? styles.active : ''}`}
+            onClick={() => setMetric(key)}
+            title={t(`settings.permissionLatency.${key}Desc`)}
+          >
+            {t(`settings.permissionLatency.${key}`)}
+          </button>
+        ))}
+      </div>
+
+      {tools.length === 0 ? (
+        <div className={styles.emptyState}>
+          <span className="codicon codicon-pulse" />
+          {t('settings.permissionLatency.empty')}
+        </div>
+      ) : (
+        <table className={styles.latencyTable}>
+          <thead>
+            <tr>
+              <th>{t('settings.permissionLatency.tool')}</th>
+              <th>{t('settings.permissionLatency.count')}</th>
+              <th>p50</th>
+              <th>p90</th>
+              <th>p99</th>
+              <th>max</th>
+            </tr>
+          </thead>
+          <tbody>
+            {tools.map((tool) => (
+              <tr key={tool.tool}>
+                <td className={styles.toolName}>{tool.tool}</td>
+                <td>{tool.count}</td>
+                <td>{formatMs(tool[metric].p50)}</td>
+                <td>{formatMs(tool[metric].p90)}</td>
+                <td>{formatMs(tool[metric].p99)}</td>
+                <td>{formatMs(tool[metric].max)}</td>
+              </tr>
+            ))}
+          </tbody>
+        </table>
+      )}
+
+      {latency && latency.pending > 0 && (
+        <p className={styles.hint}>{t('settings.permissionLatency.pending', { count: latency.pending })}</p>
+      )}
+    </div>
+  );
+};
+
+export default PermissionsSection;
@@ -17,6 +17,7 @@ import BasicConfigSection from './BasicConfigSection';
 import ProviderManageSection from './ProviderManageSection';
 import UsageSection from './UsageSection';
 import PlaceholderSection from './PlaceholderSection';
+import PermissionsSection from './PermissionsSection';
 import CommunitySection from './CommunitySection';
 import AgentSection from './AgentSection';
 import { SkillsSettingsSection } from '../skills';
@@ -700,7 +701,7 @@ const SettingsView = ({ onClose, initialTab }: SettingsViewProps) => {
           {currentTab === 'mcp' && <PlaceholderSection type="mcp" />}
 
           {/* 权限配置 */}
-          {currentTab === 'permissions' && <PlaceholderSection type="permissions" />}
+          {currentTab === 'permissions' && <PermissionsSection />}
 
           {/* Agents */}
           {currentTab === 'agents' && (
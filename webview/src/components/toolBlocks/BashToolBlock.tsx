@@ -1,6 +1,7 @@
 import { useState } from 'react';
 import { useTranslation } from 'react-i18next';
 import type { ToolInput, ToolResultBlock } from '../../types';
+import { useToolResultText } from '../../utils/toolResultLoader';
 
 interface BashToolBlockProps {
   name?: string;
@@ -11,6 +12,8 @@ interface BashToolBlockProps {
 const BashToolBlock = ({ input, result }: BashToolBlockProps) => {
   const { t } = useTranslation();
   const [expanded, setExpanded] = useState(false);
+  // 大型输出只带预览，展开时才拉取完整内容
+  const { text: output, truncated, loading } = useToolResultText(result, expanded);
 
   if (!input) {
     return null;
@@ -23,17 +26,6 @@ const BashToolBlock = ({ input, result }: BashToolBlockProps) => {
   const isCompleted = result !== undefined && result !== null;
   const isError = isCompleted && result?.is_error === true;
 
-  let output = '';
-
-  if (result) {
-    const content = result.content;
-    if (typeof content === 'string') {
-      output = content;
-    } else if (Array.isArray(content)) {
-      output = content.map((block) => block.text ?? '').join('\n');
-    }
-  }
-
   return (
     <div className="task-container">
       <div
@@ -64,6 +56,13 @@ const BashToolBlock = ({ input, result }: BashToolBlockProps) => {
                   <span>{output}</span>
                 </div>
               )}
+              {truncated && (
+                <div className="bash-output-truncated">
+                  {loading
+                    ? t('tools.loadingFullOutput')
+                    : t('tools.outputTruncated', { size: result?.lazy_content?.size ?? 0 })}
+                </div>
+              )}
             </div>
           </div>
         </div>
@@ -4,6 +4,7 @@ import type { ToolInput, ToolResultBlock } from '../../types';
 import { openFile } from '../../utils/bridge';
 import { formatParamValue, getFileName, truncate } from '../../utils/helpers';
 import { getFileIcon, getFolderIcon } from '../../utils/fileIcons';
+import { useToolResultText } from '../../utils/toolResultLoader';
 
 const CODICON_MAP: Record<string, string> = {
   read: 'codicon-eye',
@@ -104,6 +105,8 @@ const GenericToolBlock = ({ name, input, result }: GenericToolBlockProps) => {
   const isMcpTool = lowerName.startsWith('mcp__');
   const isCollapsible = ['grep', 'glob', 'write', 'save-file', 'askuserquestion'].includes(lowerName) || isMcpTool;
   const [expanded, setExpanded] = useState(false);
+  // 可折叠工具展开时显示结果，大型结果只带预览，展开时才拉取完整内容
+  const { text: output, truncated, loading } = useToolResultText(result, isCollapsible && expanded);
 
   const filePath = input ? pickFilePath(input) : undefined;
 
@@ -133,7 +136,8 @@ const GenericToolBlock = ({ name, input, result }: GenericToolBlockProps) => {
     ([key]) => !omitFields.has(key) && key !== 'pattern',
   );
 
-  const shouldShowDetails = otherParams.length > 0 && (!isCollapsible || expanded);
+  const showOutput = isCollapsible && expanded && (output.length > 0 || truncated);
+  const shouldShowDetails = (otherParams.length > 0 && (!isCollapsible || expanded)) || showOutput;
 
   // 检查是否为特殊文件（没有扩展名但确实是文件）
   const isSpecialFile = (fileName: string): boolean => {
@@ -222,6 +226,21 @@ const GenericToolBlock = ({ name, input, result }: GenericToolBlockProps) => {
                 <div className="task-field-content">{formatParamValue(value)}</div>
               </div>
             ))}
+            {showOutput && output && (
+              <div className={`bash-output-block ${isError ? 'error' : 'normal'}`}>
+                {isError && (
+                  <span className="codicon codicon-error" style={{ fontSize: '14px', marginTop: '1px' }} />
+                )}
+                <span>{output}</span>
+              </div>
+            )}
+            {showOutput && truncated && (
+              <div className="bash-output-truncated">
+                {loading
+                  ? t('tools.loadingFullOutput')
+                  : t('tools.outputTruncated', { size: result?.lazy_content?.size ?? 0 })}
+              </div>
+            )}
           </div>
         </div>
       )}
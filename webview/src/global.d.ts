@@ -40,7 +40,12 @@ interface Window {
   /**
    * Set history data
    */
-  setHistoryData?: (data: any) => void;
+  onHistoryPage?: (json: string) => void;
+
+  /**
+   * Incremental history changes (sessions added/updated/removed on disk)
+   */
+  onHistoryEvents?: (json: string) => void;
 
   /**
    * Export session data callback
@@ -52,6 +57,11 @@ interface Window {
    */
   clearMessages?: () => void;
 
+  /**
+   * Whether older messages of the loaded history session can be fetched
+   */
+  setHasOlderMessages?: (value: string | boolean) => void;
+
   /**
    * Add error message
    */
@@ -208,6 +218,16 @@ interface Window {
    */
   updateUsageStatistics?: (json: string) => void;
 
+  /**
+   * Update permission round-trip latency statistics
+   */
+  updatePermissionLatency?: (json: string) => void;
+
+  /**
+   * Update remembered permission rules of the current project
+   */
+  updatePermissionRules?: (json: string) => void;
+
   /**
    * Update slash commands list (from SDK)
    */
@@ -285,4 +305,9 @@ interface Window {
    * Selected agent changed callback - 选择智能体后的回调
    */
   onSelectedAgentChanged?: (json: string) => void;
+
+  /**
+   * Full tool result content callback - 展开被截断的工具结果时返回完整内容
+   */
+  onToolResultContent?: (json: string) => void;
 }
@@ -13,6 +13,8 @@ export interface ToolResultBlock {
   tool_use_id?: string;
   content?: string | Array<{ type?: string; text?: string }>;
   is_error?: boolean;
+  /** 大型结果被截断时存在：content 只是预览，完整内容需按 handle 向后端拉取 */
+  lazy_content?: { handle: string; size: number };
   [key: string]: unknown;
 }
 
@@ -42,16 +44,49 @@ export interface TodoItem {
 export interface HistorySessionSummary {
   sessionId: string;
   title: string;
+  /** 后台尚未统计时为 -1 */
   messageCount: number;
-  lastTimestamp?: string;
+  lastTimestamp?: string | number;
   isFavorited?: boolean;
   favoritedAt?: number;
+  hasCustomTitle?: boolean;
+  /** 全文检索命中时的内容摘要 */
+  snippet?: string;
 }
 
+export type HistorySortKey = 'recent' | 'messages' | 'title';
+
 export interface HistoryData {
   success: boolean;
   error?: string;
   sessions?: HistorySessionSummary[];
   total?: number;
   favorites?: Record<string, { favoritedAt: number }>;
+  /** 后端查询序号，用于丢弃过期的分页 */
+  requestId?: number;
+  /** 匹配当前查询的会话总数（可能多于已加载的 sessions） */
+  sessionCount?: number;
+  /** 是否还有后续分页未到达 */
+  hasMore?: boolean;
+  query?: string;
+  sort?: HistorySortKey;
+}
+
+/**
+ * 后端分页推送的历史数据
+ * offset 为 0 时替换列表，否则追加到同一 requestId 的列表后
+ */
+export interface HistoryPage extends HistoryData {
+  offset?: number;
+}
+
+/**
+ * 会话目录变化时后端推送的增量事件
+ * 只包含符合当前搜索条件的新增/更新会话；sessionCount 仅在无搜索条件时提供
+ */
+export interface HistoryEvents {
+  added: HistorySessionSummary[];
+  updated: HistorySessionSummary[];
+  removed: string[];
+  sessionCount?: number;
 }
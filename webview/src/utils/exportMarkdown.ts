@@ -1,15 +1,23 @@
 import type { ClaudeMessage, ClaudeContentBlock, ToolResultBlock } from '../types';
+import { loadToolResultContent } from './toolResultLoader';
+
+/**
+ * 大型工具结果在消息中只带预览和句柄，导出前按句柄拉取的完整内容
+ * 句柄 → 完整内容，后端已淘汰时为 null
+ */
+type ResolvedToolResults = Map<string, string | null>;
 
 /**
  * 将消息列表转换为 JSON 格式
+ * 消息中只带预览的工具结果会先向后端拉取完整内容
  */
-export function convertMessagesToJSON(messages: ClaudeMessage[], sessionTitle: string): string {
+export async function convertMessagesToJSON(messages: ClaudeMessage[], sessionTitle: string): Promise<string> {
   const exportTime = formatTimestamp(new Date().toISOString());
 
   // 过滤掉不需要导出的消息
-  const filteredMessages = messages
-    .filter(msg => shouldExportMessage(msg))
-    .map(msg => processMessageForExport(msg));
+  const exportable = messages.filter(msg => shouldExportMessage(msg));
+  const resolved = await resolveLazyToolResults(exportable);
+  const filteredMessages = exportable.map(msg => processMessageForExport(msg, resolved));
 
   const exportData = {
     format: 'claude-chat-export-v2',
@@ -22,16 +30,38 @@ export function convertMessagesToJSON(messages: ClaudeMessage[], sessionTitle: s
   return JSON.stringify(exportData, null, 2);
 }
 
+/**
+ * 拉取所有只带预览的工具结果的完整内容
+ */
+async function resolveLazyToolResults(messages: ClaudeMessage[]): Promise<ResolvedToolResults> {
+  const handles = new Set<string>();
+  for (const message of messages) {
+    for (const block of getContentBlocks(message)) {
+      const handle = block.type === 'tool_result' ? (block as ToolResultBlock).lazy_content?.handle : undefined;
+      if (handle) {
+        handles.add(handle);
+      }
+    }
+  }
+
+  const resolved: ResolvedToolResults = new Map();
+  // 逐个拉取，避免同时把所有大结果加载到内存
+  for (const handle of handles) {
+    resolved.set(handle, await loadToolResultContent(handle));
+  }
+  return resolved;
+}
+
 /**
  * 处理单个消息以便导出
  */
-function processMessageForExport(message: ClaudeMessage): any {
+function processMessageForExport(message: ClaudeMessage, resolved: ResolvedToolResults): any {
   const contentBlocks = getContentBlocks(message);
 
   // 处理内容块
   let processedBlocks: any[] = [];
   if (contentBlocks.length > 0) {
-    processedBlocks = contentBlocks.map(block => processContentBlock(block));
+    processedBlocks = contentBlocks.map(block => processContentBlock(block, resolved));
   } else if (message.content && message.content.trim()) {
     // 如果没有内容块但有content字段，使用content
     processedBlocks = [{ type: 'text', text: message.content }];
@@ -85,7 +115,7 @@ function extractRawContent(raw: any): string | null {
 /**
  * 处理内容块
  */
-function processContentBlock(block: ClaudeContentBlock | ToolResultBlock): any {
+function processContentBlock(block: ClaudeContentBlock | ToolResultBlock, resolved: ResolvedToolResults): any {
   if (block.type === 'text') {
     return {
       type: 'text',
@@ -106,8 +136,17 @@ function processContentBlock(block: ClaudeContentBlock | ToolResultBlock): any {
     };
   } else if (block.type === 'tool_result') {
     const toolResult = block as ToolResultBlock;
+    const handle = toolResult.lazy_content?.handle;
+    let fullContent: any = toolResult.content;
+    if (handle) {
+      const loaded = resolved.get(handle);
+      fullContent = typeof loaded === 'string'
+        ? loaded
+        : appendNotice(toolResult.content,
+          `\n... (仅保留预览，完整内容共 ${toolResult.lazy_content?.size ?? 0} 个字符，已无法获取)`);
+    }
     // 限制工具结果内容的长度
-    const content = limitContentLength(toolResult.content, 10000);
+    const content = limitContentLength(fullContent, 10000);
     return {
       type: 'tool_result',
       tool_use_id: toolResult.tool_use_id,
@@ -127,6 +166,19 @@ function processContentBlock(block: ClaudeContentBlock | ToolResultBlock): any {
   return block;
 }
 
+/**
+ * 在文本内容末尾追加说明
+ */
+function appendNotice(content: any, notice: string): any {
+  if (typeof content === 'string') {
+    return content + notice;
+  }
+  if (Array.isArray(content)) {
+    return [...content, { type: 'text', text: notice.trim() }];
+  }
+  return notice.trim();
+}
+
 /**
  * 限制内容长度
  */
@@ -286,7 +338,8 @@ function normalizeBlocks(raw: any): (ClaudeContentBlock | ToolResultBlock)[] | n
           type: 'tool_result',
           tool_use_id: block.tool_use_id,
           content: block.content,
-          is_error: block.is_error
+          is_error: block.is_error,
+          lazy_content: block.lazy_content
         };
       }
       if (block.type === 'image') {
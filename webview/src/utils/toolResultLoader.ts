@@ -0,0 +1,111 @@
+import { useEffect, useState } from 'react';
+import type { ToolResultBlock } from '../types';
+
+// 已拉取的完整内容缓存，只保留最近几条，避免大结果长期占用内存
+const MAX_CACHED_RESULTS = 8;
+const cache = new Map<string, string | null>();
+const pending = new Map<string, Array<(content: string | null) => void>>();
+
+function remember(handle: string, content: string | null) {
+  cache.delete(handle);
+  cache.set(handle, content);
+  while (cache.size > MAX_CACHED_RESULTS) {
+    const oldest = cache.keys().next().value;
+    if (oldest === undefined) break;
+    cache.delete(oldest);
+  }
+}
+
+/**
+ * 注册 Java 回调
+ */
+function setupToolResultCallback() {
+  if (typeof window !== 'undefined' && !window.onToolResultContent) {
+    window.onToolResultContent = (json: string) => {
+      try {
+        const data = JSON.parse(json) as { handle: string; found: boolean; content?: string };
+        const content = data.found && typeof data.content === 'string' ? data.content : null;
+        remember(data.handle, content);
+        const resolvers = pending.get(data.handle) ?? [];
+        pending.delete(data.handle);
+        resolvers.forEach((resolve) => resolve(content));
+      } catch (error) {
+        console.error('[toolResultLoader] Parse error:', error);
+      }
+    };
+  }
+}
+
+/**
+ * 按句柄拉取完整的工具结果，后端已淘汰时返回 null
+ */
+export function loadToolResultContent(handle: string): Promise<string | null> {
+  if (cache.has(handle)) {
+    return Promise.resolve(cache.get(handle) ?? null);
+  }
+
+  setupToolResultCallback();
+
+  return new Promise((resolve) => {
+    const waiting = pending.get(handle);
+    if (waiting) {
+      waiting.push(resolve);
+      return;
+    }
+    pending.set(handle, [resolve]);
+    if (window.sendToJava) {
+      window.sendToJava(`get_tool_result:${handle}`);
+    } else {
+      pending.delete(handle);
+      resolve(null);
+    }
+  });
+}
+
+/**
+ * 获取工具结果的完整文本
+ * 未截断的结果直接返回原内容；被截断的结果在 active 为 true（如用户展开）时才向后端拉取，
+ * 拉取完成前返回预览。
+ */
+export function useToolResultText(result: ToolResultBlock | null | undefined, active: boolean) {
+  const preview = toolResultText(result);
+  const handle = result?.lazy_content?.handle;
+  const [full, setFull] = useState<{ handle: string; content: string | null } | null>(null);
+
+  useEffect(() => {
+    if (!handle || !active || full?.handle === handle) {
+      return;
+    }
+    let cancelled = false;
+    loadToolResultContent(handle).then((content) => {
+      if (!cancelled) {
+        setFull({ handle, content });
+      }
+    });
+    return () => {
+      cancelled = true;
+    };
+  }, [handle, active, full]);
+
+  if (!handle) {
+    return { text: preview, truncated: false, loading: false };
+  }
+  if (full?.handle === handle && full.content !== null) {
+    return { text: full.content, truncated: false, loading: false };
+  }
+  return { text: preview, truncated: true, loading: active && full?.handle !== handle };
+}
+
+function toolResultText(result: ToolResultBlock | null | undefined): string {
+  if (!result) {
+    return '';
+  }
+  const content = result.content;
+  if (typeof content === 'string') {
+    return content;
+  }
+  if (Array.isArray(content)) {
+    return content.map((block) => block.text ?? '').join('\n');
+  }
+  return '';
+}